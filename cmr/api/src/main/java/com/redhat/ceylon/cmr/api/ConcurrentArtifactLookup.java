@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+import com.redhat.ceylon.model.cmr.RepositoryException;
+
+/**
+ * Looks up several artifacts concurrently, so that round-trips to remote
+ * repositories overlap. Each artifact is still looked up with
+ * {@link RepositoryManager#getArtifactResult(ArtifactContext)}, so it is
+ * probed against the repositories in their configured order.
+ *
+ * All lookups share a single pool of daemon threads, which bounds the number
+ * of connections we open to remote repositories.
+ */
+public final class ConcurrentArtifactLookup {
+
+    /**
+     * The maximum number of artifacts looked up at the same time.
+     */
+    public static final int MAX_CONCURRENT_LOOKUPS = 8;
+
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(MAX_CONCURRENT_LOOKUPS, MAX_CONCURRENT_LOOKUPS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ceylon-cmr-lookup-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // don't keep idle threads around between resolutions
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private ConcurrentArtifactLookup() {
+    }
+
+    /**
+     * Starts looking up the given artifacts, and returns without waiting for
+     * them. Download progress is reported to the callback of each context,
+     * or else to the {@link ArtifactCallbackStream} callback of the calling
+     * thread.
+     *
+     * @param manager the repository manager to look them up with
+     * @param contexts the artifact lookup infos
+     * @return the pending ArtifactResult of each context, in the same order,
+     * to be obtained with {@link #getArtifactResult(Future)}
+     */
+    public static List<Future<ArtifactResult>> lookUpArtifactResults(final RepositoryManager manager,
+            List<ArtifactContext> contexts) {
+        final ArtifactCallback callback = ArtifactCallbackStream.getCallback();
+        List<Future<ArtifactResult>> results = new ArrayList<>(contexts.size());
+        for (final ArtifactContext context : contexts) {
+            results.add(executor.submit(new Callable<ArtifactResult>() {
+                @Override
+                public ArtifactResult call() {
+                    ArtifactCallbackStream.setCallback(callback);
+                    try {
+                        return manager.getArtifactResult(context);
+                    } finally {
+                        ArtifactCallbackStream.setCallback(null);
+                    }
+                }
+            }));
+        }
+        return results;
+    }
+
+    /**
+     * Waits for an artifact lookup started by {@link #lookUpArtifactResults},
+     * and returns its result, or throws what looking it up threw.
+     *
+     * @param result the pending lookup
+     * @return the ArtifactResult, or null if the artifact was not found
+     * @throws RepositoryException if looking it up went wrong, or we were
+     * interrupted while waiting for it
+     */
+    public static ArtifactResult getArtifactResult(Future<ArtifactResult> result) throws RepositoryException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while looking up artifact", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RepositoryException(cause);
+        }
+    }
+}
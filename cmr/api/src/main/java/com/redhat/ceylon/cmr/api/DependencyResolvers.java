@@ -16,6 +16,7 @@
 
 package com.redhat.ceylon.cmr.api;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -42,6 +43,13 @@ public class DependencyResolvers {
         resolvers.remove(resolver);
     }
 
+    /**
+     * Returns the resolvers, in the order in which we ask them to resolve artifacts
+     */
+    public List<DependencyResolver> getResolvers() {
+        return Collections.unmodifiableList(resolvers);
+    }
+
     public ModuleInfo resolve(ArtifactResult result, Overrides overrides) {
         for (DependencyResolver dr : resolvers) {
             ModuleInfo info = dr.resolve(result, overrides);
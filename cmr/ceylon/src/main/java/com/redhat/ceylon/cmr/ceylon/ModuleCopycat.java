@@ -1,12 +1,23 @@
 package com.redhat.ceylon.cmr.ceylon;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.ModuleDependencyInfo;
@@ -33,6 +44,7 @@ import com.redhat.ceylon.model.loader.JdkProvider;
  * This is done because retrieving dependencies is actually one of the
  * slowest parts of the entire copy process. If we'd do it beforehand there
  * not be much sense in having a progress report at all.
+ * Unless more than one job was asked for, see <code>setJobs</code>.
  * @author Tako Schotanus
  */
 public class ModuleCopycat {
@@ -45,6 +57,7 @@ public class ModuleCopycat {
     private Set<String> copiedModules;
     private int count;
     private int maxCount;
+    private int jobs = 1;
 
     /**
      * Class for feedback and control during copying.
@@ -104,6 +117,20 @@ public class ModuleCopycat {
         this.jdkProvider = new JdkProvider();
     }
     
+    /**
+     * Sets how many modules get resolved and copied at the same time, one by default.
+     * With more than one job we first find all the modules to copy, resolving their
+     * dependencies concurrently, so the total we report is exact, while their artifacts
+     * are copied and signed concurrently. The feedback is still called from the calling
+     * thread and in the same order as with a single job, but only once each module has
+     * been copied, so the return values of <code>beforeCopyModule</code> and
+     * <code>beforeCopyArtifact</code> can't be used to skip anything in that case.
+     * @param jobs The number of modules to copy at the same time
+     */
+    public void setJobs(int jobs) {
+        this.jobs = Math.max(1, jobs);
+    }
+
     /**
      * This method basically calls <code>copyModule</code> on each of the artifact
      * contexts in the list it gets passed.
@@ -113,6 +140,10 @@ public class ModuleCopycat {
     public void copyModules(List<ArtifactContext> contexts) throws Exception {
         count = 0;
         maxCount = contexts.size();
+        if (jobs > 1) {
+            copyModulesConcurrently(contexts);
+            return;
+        }
         for (ArtifactContext context : contexts) {
             copyModuleInternal(context);
         }
@@ -130,6 +161,10 @@ public class ModuleCopycat {
     public void copyModule(ArtifactContext context) throws Exception {
         count = 0;
         maxCount = 1;
+        if (jobs > 1) {
+            copyModulesConcurrently(Collections.singletonList(context));
+            return;
+        }
         copyModuleInternal(context);
     }
     
@@ -193,6 +228,162 @@ public class ModuleCopycat {
         }
     }
 
+    /**
+     * What happened to a module found while walking the dependency graph,
+     * in the order we walked it, so we can give the same feedback as when
+     * copying one module at a time
+     */
+    private static class CopyStep {
+        final ArtifactContext context;
+        /** null if the module was not found or already copied */
+        final Future<List<ArtifactResult>> copy;
+        final boolean found;
+
+        CopyStep(ArtifactContext context, Future<List<ArtifactResult>> copy, boolean found) {
+            this.context = context;
+            this.copy = copy;
+            this.found = found;
+        }
+    }
+
+    private void copyModulesConcurrently(List<ArtifactContext> contexts) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(jobs, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ceylon-cmr-copy-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            Map<String, Future<Collection<ModuleVersionDetails>>> resolutions = new HashMap<>();
+            for (ArtifactContext context : contexts) {
+                resolve(executor, resolutions, context);
+            }
+            List<CopyStep> steps = new ArrayList<>();
+            for (ArtifactContext context : contexts) {
+                walkModule(executor, resolutions, steps, context);
+            }
+            for (CopyStep step : steps) {
+                reportModule(step);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Finds the module versions matching the given context on the executor, unless we already did
+     */
+    private Future<Collection<ModuleVersionDetails>> resolve(ExecutorService executor, 
+            Map<String, Future<Collection<ModuleVersionDetails>>> resolutions, final ArtifactContext context) {
+        String module = ModuleUtil.makeModuleName(context.getName(), context.getVersion());
+        Future<Collection<ModuleVersionDetails>> resolution = resolutions.get(module);
+        if (resolution == null && !jdkProvider.isJDKModule(context.getName())) {
+            resolution = executor.submit(new Callable<Collection<ModuleVersionDetails>>() {
+                @Override
+                public Collection<ModuleVersionDetails> call() throws Exception {
+                    return getModuleVersions(srcRepoman, context.getName(), context.getVersion(), 
+                            ModuleQuery.Type.ALL, null, null, null, null);
+                }
+            });
+            resolutions.put(module, resolution);
+        }
+        return resolution;
+    }
+
+    /**
+     * Same walk as <code>copyModuleInternal</code>, except we only start copying the
+     * artifacts on the executor, and resolve all the dependencies of a module before
+     * walking them
+     */
+    private void walkModule(ExecutorService executor, Map<String, Future<Collection<ModuleVersionDetails>>> resolutions, 
+            List<CopyStep> steps, final ArtifactContext context) throws Exception {
+        if (jdkProvider.isJDKModule(context.getName())) {
+            return;
+        }
+        String module = ModuleUtil.makeModuleName(context.getName(), context.getVersion());
+        if (!copiedModules.add(module)) {
+            steps.add(new CopyStep(context, null, true));
+            return;
+        }
+        Collection<ModuleVersionDetails> versions = get(resolve(executor, resolutions, context));
+        if (versions.isEmpty()) {
+            steps.add(new CopyStep(context, null, false));
+            return;
+        }
+        // the lookup may change the context, so take our copy before it starts
+        ArtifactContext depContext = context.copy();
+        Future<List<ArtifactResult>> copy = executor.submit(new Callable<List<ArtifactResult>>() {
+            @Override
+            public List<ArtifactResult> call() throws Exception {
+                List<ArtifactResult> results = srcRepoman.getArtifactResults(context);
+                for (ArtifactResult r : results) {
+                    copyArtifact(context, r);
+                }
+                return results;
+            }
+        });
+        steps.add(new CopyStep(context, copy, true));
+        if (!context.isIgnoreDependencies()) {
+            ModuleVersionDetails ver = versions.iterator().next();
+            maxCount += countNonJdkDeps(ver.getDependencies());
+            List<ArtifactContext> depContexts = new ArrayList<>(ver.getDependencies().size());
+            for (ModuleDependencyInfo dep : ver.getDependencies()) {
+                ArtifactContext copyContext = depContext.copy();
+                copyContext.setName(dep.getName());
+                copyContext.setVersion(dep.getVersion());
+                resolve(executor, resolutions, copyContext);
+                depContexts.add(copyContext);
+            }
+            for (ArtifactContext copyContext : depContexts) {
+                walkModule(executor, resolutions, steps, copyContext);
+            }
+        }
+    }
+
+    /**
+     * Waits for the given module to be copied and gives the same feedback 
+     * <code>copyModuleInternal</code> would have
+     */
+    private void reportModule(CopyStep step) throws Exception {
+        if (!step.found) {
+            if (feedback != null) {
+                feedback.notFound(step.context);
+            }
+            return;
+        }
+        List<ArtifactResult> results = step.copy != null ? get(step.copy) : null;
+        if (feedback == null) {
+            return;
+        }
+        feedback.beforeCopyModule(step.context, count++, maxCount);
+        boolean copiedModule = false;
+        if (results != null) {
+            int artCnt = 0;
+            for (ArtifactResult r : results) {
+                feedback.beforeCopyArtifact(step.context, r, artCnt++, results.size());
+                feedback.afterCopyArtifact(step.context, r, artCnt, results.size(), true);
+                copiedModule = true;
+            }
+        }
+        feedback.afterCopyModule(step.context, count, maxCount, copiedModule);
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
     private int countNonJdkDeps(NavigableSet<ModuleDependencyInfo> dependencies) {
         int cnt = 0;
         for (ModuleDependencyInfo dep : dependencies) {
@@ -56,7 +56,7 @@ public abstract class AbstractCeylonArtifactResult extends AbstractArtifactResul
     protected ModuleInfo resolve(){
         if(!resolved){
             Overrides overrides = ((CmrRepository)repository()).getRoot().getService(Overrides.class);
-            this.infos = Configuration.getResolvers(manager).resolve(this, overrides);
+            this.infos = ResolutionCache.get().resolve(this, Configuration.getResolvers(manager), overrides);
             resolved = true;
         }
         return infos;
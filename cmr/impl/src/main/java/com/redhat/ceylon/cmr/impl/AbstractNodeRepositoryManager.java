@@ -57,6 +57,7 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     protected static final String CACHED = ".cached";
     protected static final String ORIGIN = ".origin";
     protected static final String MISSING = ".missing";
+    protected static final String ETAG = ".etag";
 
     private List<CmrRepository> roots = new CopyOnWriteArrayList<>(); // lookup roots - order matters!
     private List<CmrRepository> allRoots;
@@ -256,6 +257,7 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     }
 
     private void putArtifactInternal(ArtifactContext context, InputStream content) throws RepositoryException {
+        forgetModuleInfo(context);
         final Node parent = getOrCreateParent(context);
         log.debug("Adding artifact " + context + " to cache " + cache.getDisplayString());
         log.debug(" -> " + NodeUtils.getFullPath(parent));
@@ -280,6 +282,7 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
 
     @Override
     protected void putFolder(ArtifactContext context, File folder) throws RepositoryException {
+        forgetModuleInfo(context);
         Node parent = getOrCreateParent(context);
         log.debug("Adding folder " + context + " to cache " + cache.getDisplayString());
         log.debug(" -> " + NodeUtils.getFullPath(parent));
@@ -362,6 +365,7 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     }
 
     public void removeArtifact(ArtifactContext context) throws RepositoryException {
+        forgetModuleInfo(context);
         Node parent = getFromCacheNode(context, false);
         log.debug("Remove artifact " + context + " to repository " + cache.getDisplayString());
         if (parent != null) {
@@ -379,6 +383,13 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         }
     }
 
+    private void forgetModuleInfo(ArtifactContext context) {
+        ContentStore store = cache.getRoot().getService(ContentStore.class);
+        if (store instanceof FileContentStore) {
+            ModuleInfoIndex.get(((FileContentStore) store).getRootFolder()).forget(context.getName(), context.getVersion());
+        }
+    }
+
     protected void removeNode(Node parent, String child) throws IOException {
         if (parent instanceof OpenNode) {
             final OpenNode on = (OpenNode) parent;
@@ -423,6 +434,19 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         }
     }
 
+    /**
+     * Returns the persistent lookup index of the given repository, if it is
+     * a remote repository we can index, or null.
+     */
+    protected LookupIndex getLookupIndex(CmrRepository repository) {
+        return null;
+    }
+
+    protected boolean isOffline(CmrRepository repo) {
+        ContentStore cs = repo.getRoot().getService(ContentStore.class);
+        return cs != null && cs.isOffline();
+    }
+
     /**
      * Cache is only used for remote repos; see issue #47.
      */
@@ -438,7 +462,37 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
                 log.debug("  -> Skipping Maven repo for non-Maven lookup");
                 continue;
             }
-            Node child = fromRepository(repository, context, addLeaf);
+            LookupIndex index = null;
+            String key = null;
+            if (addLeaf
+                    && !repository.isMaven()
+                    && repository.getRoot().isRemote()
+                    && !isOffline(repository)) {
+                index = getLookupIndex(repository);
+                if (index != null) {
+                    key = LookupIndex.getKey(context);
+                    if (index.isMissing(key)) {
+                        log.debug("  -> Skipping " + repository.getDisplayString() + ", we recently found out it doesn't have it");
+                        continue;
+                    }
+                }
+            }
+            Node child;
+            if (index != null) {
+                LookupOutcome.start();
+                boolean notFound;
+                try {
+                    child = fromRepository(repository, context, addLeaf);
+                } finally {
+                    notFound = LookupOutcome.stop();
+                }
+                // only remember that it's missing if the repository told us so,
+                // not if it refused or failed to answer
+                if (child != null || notFound)
+                    index.record(key, child != null);
+            } else {
+                child = fromRepository(repository, context, addLeaf);
+            }
             if (child != null)
                 return child;
 
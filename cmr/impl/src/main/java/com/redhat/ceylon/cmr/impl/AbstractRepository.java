@@ -39,6 +39,7 @@ import com.redhat.ceylon.cmr.api.ModuleVersionQuery;
 import com.redhat.ceylon.cmr.api.ModuleVersionResult;
 import com.redhat.ceylon.cmr.api.Overrides;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.spi.ContentStore;
 import com.redhat.ceylon.cmr.spi.Node;
 import com.redhat.ceylon.cmr.spi.OpenNode;
 import com.redhat.ceylon.common.Versions;
@@ -303,7 +304,7 @@ public abstract class AbstractRepository implements CmrRepository {
 
             ModuleInfoReader reader = getModuleInfoReader(suffix);
             if (reader != null) {
-                int[] versions = reader.getBinaryVersions(module, version, file);
+                int[] versions = getBinaryVersions(reader, module, version, file);
                 if (versions == null)
                     return false; // can't verify
                 if (binaryMajor != null
@@ -398,7 +399,7 @@ public abstract class AbstractRepository implements CmrRepository {
             if (file != null) {
                 ModuleInfoReader reader = getModuleInfoReader(artifact);
                 if (reader != null) {
-                    return reader.matchesModuleInfo(moduleName, version, file, query, getOverrides());
+                    return matchesModuleInfo(reader, moduleName, version, file, query);
                 }
             }
         } catch (Exception e) {
@@ -703,7 +704,7 @@ public abstract class AbstractRepository implements CmrRepository {
             if (file != null) {
                 ModuleInfoReader reader = getModuleInfoReader(suffix);
                 if (reader != null) {
-                    ModuleVersionDetails mvd2 = reader.readModuleInfo(name, version, file, memberName != null, getOverrides());
+                    ModuleVersionDetails mvd2 = readModuleInfo(reader, name, version, file, memberName != null);
                     Set<String> matchingMembers = null;
                     if (memberName != null) {
                         matchingMembers = matchMembers(mvd2, lookup);
@@ -795,6 +796,37 @@ public abstract class AbstractRepository implements CmrRepository {
         return artifact;
     }
     
+    private ModuleVersionDetails readModuleInfo(ModuleInfoReader reader, String name, String version, File file, boolean includeMembers) {
+        ModuleInfoIndex index = getModuleInfoIndex(reader);
+        if (index != null)
+            return index.readModuleInfo(reader, name, version, file, includeMembers, getOverrides());
+        return reader.readModuleInfo(name, version, file, includeMembers, getOverrides());
+    }
+
+    private int[] getBinaryVersions(ModuleInfoReader reader, String name, String version, File file) {
+        ModuleInfoIndex index = getModuleInfoIndex(reader);
+        if (index != null)
+            return index.getBinaryVersions(reader, name, version, file);
+        return reader.getBinaryVersions(name, version, file);
+    }
+
+    private boolean matchesModuleInfo(ModuleInfoReader reader, String name, String version, File file, String query) {
+        ModuleInfoIndex index = getModuleInfoIndex(reader);
+        if (index != null)
+            return index.matchesModuleInfo(reader, name, version, file, query, getOverrides());
+        return reader.matchesModuleInfo(name, version, file, query, getOverrides());
+    }
+
+    // only file repositories are indexed, remote archives would have to be downloaded anyway
+    private ModuleInfoIndex getModuleInfoIndex(ModuleInfoReader reader) {
+        if (!ModuleInfoIndex.canIndex(reader))
+            return null;
+        ContentStore store = root.getService(ContentStore.class);
+        if (store instanceof FileContentStore)
+            return ModuleInfoIndex.get(((FileContentStore) store).getRootFolder());
+        return null;
+    }
+
     private ModuleInfoReader getModuleInfoReader(Node infoNode) {
         String suffix = ArtifactContext.getSuffixFromNode(infoNode);
         return getModuleInfoReader(suffix);
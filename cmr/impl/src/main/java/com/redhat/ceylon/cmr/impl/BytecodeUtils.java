@@ -26,6 +26,13 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -64,6 +71,16 @@ public final class BytecodeUtils extends AbstractDependencyResolver implements M
     private static final String IGNORE_ANNOTATION = "com.redhat.ceylon.compiler.java.metadata.Ignore";
     private static final String LOCAL_CONTAINER_ANNOTATION = "com.redhat.ceylon.compiler.java.metadata.LocalContainer";
 
+    private static final String MODULE_DESCRIPTOR = ClassHeader.toDescriptor(MODULE_ANNOTATION);
+    private static final String PACKAGE_DESCRIPTOR = ClassHeader.toDescriptor(PACKAGE_ANNOTATION);
+    private static final String IGNORE_DESCRIPTOR = ClassHeader.toDescriptor(IGNORE_ANNOTATION);
+    private static final String LOCAL_CONTAINER_DESCRIPTOR = ClassHeader.toDescriptor(LOCAL_CONTAINER_ANNOTATION);
+
+    /** We list the members of archives with many classes on at most this many threads */
+    private static final int MAX_SCAN_THREADS = 4;
+    /** Each thread listing members should read at least this many classes */
+    private static final int CLASSES_PER_SCAN_THREAD = 500;
+
     @Override
     public ModuleInfo resolve(DependencyContext context, Overrides overrides) {
         if (context.ignoreInner()) {
@@ -129,31 +146,6 @@ public final class BytecodeUtils extends AbstractDependencyResolver implements M
         return ret;
     }
 
-    private static List<ClassFile> readClassFiles(final File jarFile) {
-        try {
-            try(JarFile jar = new JarFile(jarFile)){
-            	List<ClassFile> ret = new ArrayList<ClassFile>(jar.size());
-                Enumeration<JarEntry> entries = jar.entries();
-                while (entries.hasMoreElements()) {
-                    JarEntry entry = entries.nextElement();
-                    String name = entry.getName().toLowerCase();
-                    if(name.endsWith(".class")){
-                        try(InputStream stream = jar.getInputStream(entry)){
-                            try {
-								ret.add(ClassFile.read(stream));
-							} catch (ConstantPoolException e) {
-								throw new RuntimeException(e);
-							}
-                        }
-                    }
-                }
-            	return ret;
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read class file for module " + jarFile.getPath(), e);
-        }
-    }
-
     private static ClassFile readModuleInfo(String moduleName, final File jarFile) {
 		// default module has no module descriptor
 		if(Module.DEFAULT_MODULE_NAME.equals(moduleName))
@@ -241,32 +233,116 @@ public final class BytecodeUtils extends AbstractDependencyResolver implements M
         return mvd;
     }
 
-    private Set<String> getMembers(File moduleArchive) {
-        HashSet<String> members = new HashSet<>(); 
-        for (ClassFile cls : readClassFiles(moduleArchive)) {
-            if (shouldAddMember(cls)) {
-                try {
-					members.add(classNameToDeclName(cls.getName().replace('/', '.')));
-				} catch (ConstantPoolException e) {
-					throw new RuntimeException(e);
-				}
+    /**
+     * Lists the members of the given module archive. We only read the name
+     * and class-level annotations of every class, and read the classes of
+     * large archives on several threads, each with its own jar file.
+     */
+    private static Set<String> getMembers(File moduleArchive) {
+        List<String> classes = new ArrayList<String>();
+        int threads;
+        try (JarFile jar = new JarFile(moduleArchive)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().toLowerCase().endsWith(".class")) {
+                    classes.add(entry.getName());
+                }
+            }
+            threads = Math.min(MAX_SCAN_THREADS, Math.min(
+                    Runtime.getRuntime().availableProcessors(),
+                    classes.size() / CLASSES_PER_SCAN_THREAD));
+            if (threads < 2) {
+                Set<String> members = new HashSet<String>();
+                addMembers(moduleArchive, jar, classes, new AtomicInteger(), members);
+                return members;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read class file for module " + moduleArchive.getPath(), e);
+        }
+        return getMembers(moduleArchive, classes, threads);
+    }
+
+    private static Set<String> getMembers(final File moduleArchive, final List<String> classes, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ceylon-cmr-members-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final AtomicInteger next = new AtomicInteger();
+        final List<Set<String>> results = new ArrayList<Set<String>>(threads);
+        List<Callable<Void>> workers = new ArrayList<>(threads);
+        for (int w = 0; w < threads; w++) {
+            final Set<String> members = new HashSet<String>();
+            results.add(members);
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    // reads on the same jar file are serialised, so each worker opens its own
+                    try (JarFile jar = new JarFile(moduleArchive)) {
+                        addMembers(moduleArchive, jar, classes, next, members);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            // the workers share the class list, so the first failure is enough
+            for (Future<Void> result : executor.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading class files for module " + moduleArchive.getPath(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException("Failed to read class file for module " + moduleArchive.getPath(), cause);
+        } finally {
+            executor.shutdown();
+        }
+        Set<String> ret = results.get(0);
+        for (int i = 1; i < results.size(); i++) {
+            ret.addAll(results.get(i));
+        }
+        return ret;
+    }
+
+    private static void addMembers(File moduleArchive, JarFile jar, List<String> classes,
+            AtomicInteger next, Set<String> members) throws IOException {
+        int index;
+        while ((index = next.getAndIncrement()) < classes.size()) {
+            JarEntry entry = jar.getJarEntry(classes.get(index));
+            try (InputStream stream = jar.getInputStream(entry)) {
+                ClassHeader cls = ClassHeader.read(stream, entry.getSize());
+                if (shouldAddMember(cls)) {
+                    members.add(classNameToDeclName(cls.getName()));
+                }
+            } catch (IOException e) {
+                throw new IOException("Failed to read class file " + entry.getName() + " of module " + moduleArchive.getPath(), e);
             }
         }
-        return members;
     }
 
-    private boolean shouldAddMember(ClassFile cls) {
+    private static boolean shouldAddMember(ClassHeader cls) {
         // ignore what we must ignore
-        if (ClassFileUtil.findAnnotation(cls, IGNORE_ANNOTATION) != null) {
+        if (cls.hasAnnotation(IGNORE_DESCRIPTOR)) {
             return false;
         }
         // ignore module and package descriptors
-        if (ClassFileUtil.findAnnotation(cls, MODULE_ANNOTATION) != null 
-        		|| ClassFileUtil.findAnnotation(cls, PACKAGE_ANNOTATION) != null) {
+        if (cls.hasAnnotation(MODULE_DESCRIPTOR) 
+        		|| cls.hasAnnotation(PACKAGE_DESCRIPTOR)) {
             return false;
         }
         // ignore local types
-        if (ClassFileUtil.findAnnotation(cls, LOCAL_CONTAINER_ANNOTATION) != null) {
+        if (cls.hasAnnotation(LOCAL_CONTAINER_DESCRIPTOR)) {
             return false;
         }
         return true;
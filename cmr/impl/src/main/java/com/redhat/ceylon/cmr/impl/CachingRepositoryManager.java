@@ -18,14 +18,20 @@ package com.redhat.ceylon.cmr.impl;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.CmrRepository;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.spi.ContentStore;
 import com.redhat.ceylon.cmr.spi.Node;
 import com.redhat.ceylon.cmr.spi.StructureBuilder;
+import com.redhat.ceylon.common.FileUtil;
 import com.redhat.ceylon.common.log.Logger;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.cmr.RepositoryException;
@@ -62,37 +68,106 @@ public class CachingRepositoryManager extends AbstractNodeRepositoryManager {
         this.cachingDir = cachingDir;
     }
 
+    @Override
+    protected LookupIndex getLookupIndex(CmrRepository repository) {
+        return LookupIndex.get(cachingDir, repository.getDisplayString());
+    }
+
     protected ArtifactResult getArtifactResult(ArtifactContext context, Node node) throws RepositoryException {
         try {
+            CmrRepository repository = NodeUtils.getRepository(node);
+            LookupIndex index = repository != null && repository.getRoot().isRemote() ? getLookupIndex(repository) : null;
+            String key = index != null ? LookupIndex.getKey(context) : null;
+            ContentStore store = repository != null ? repository.getRoot().getService(ContentStore.class) : null;
+            RemoteContentStore remote = store instanceof RemoteContentStore ? (RemoteContentStore) store : null;
+            RemoteContentStore.RetryingSizedInputStream download = null;
             ArtifactResult result = caching.getArtifactResult(context);
             if (result != null) {
                 boolean valid = false;
                 File file = result.artifact();
+                String etag;
                 if (file.exists()) {
-                    long lm = node.getLastModified();
-                    valid = (lm == -1 || lm < file.lastModified());
+                    if (index != null && index.isFound(key, context.getVersion())) {
+                        // released versions don't change, no need to ask the repository
+                        valid = true;
+                    } else if (remote != null && (etag = readETag(file)) != null) {
+                        // revalidate and download in a single conditional request
+                        download = remote.getContentIfModified(node, file.lastModified(), etag);
+                        valid = (download == null || !download.isModified());
+                    } else {
+                        long lm = node.getLastModified();
+                        valid = (lm == -1 || lm < file.lastModified());
+                    }
                 }
                 if (valid) {
+                    if (download != null)
+                        IOUtils.safeClose(download.getInputStream());
+                    if (index != null)
+                        index.record(key, true);
                     return result;
                 }
+            } else if (remote != null) {
+                download = remote.getContentIfModified(node, -1, null);
             }
 
             final boolean previous = context.isForceOperation();
             context.setForceOperation(true);
             try {
                 context.setSuffixes(ArtifactContext.getSuffixFromNode(node)); // Make sure we'll have only one suffix
-                caching.putArtifact(context, node.getInputStream());
+                InputStream content = download != null ? download.getInputStream() : node.getInputStream();
+                try {
+                    caching.putArtifact(context, content);
+                } finally {
+                    if (download != null)
+                        IOUtils.safeClose(content);
+                }
             } finally {
                 context.setForceOperation(previous);
             }
-            return caching.getArtifactResult(context);
+            result = caching.getArtifactResult(context);
+            if (result != null)
+                writeETag(result.artifact(), download != null ? download.getETag() : null);
+            if (index != null && result != null)
+                index.record(key, true);
+            return result;
         } catch (IOException e) {
             throw new RepositoryException(e);
         }
     }
 
+    /**
+     * Returns the entity tag the repository gave us for the given cached
+     * file, if any
+     */
+    private static String readETag(File file) {
+        File etagFile = new File(file.getPath() + ETAG);
+        if (!etagFile.isFile())
+            return null;
+        try {
+            return new String(Files.readAllBytes(etagFile.toPath()), "UTF-8");
+        } catch (IOException e) {
+            // just revalidate using the date
+            return null;
+        }
+    }
+
+    private static void writeETag(File file, String etag) {
+        File etagFile = new File(file.getPath() + ETAG);
+        if (etag == null) {
+            FileUtil.deleteQuietly(etagFile);
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(etagFile), "UTF-8")) {
+            writer.write(etag);
+        } catch (IOException e) {
+            // we'll just revalidate using the date
+            FileUtil.deleteQuietly(etagFile);
+        }
+    }
+
     @Override
     public void putArtifact(ArtifactContext context, InputStream content) throws RepositoryException {
+        forgetLookups(context);
         caching.putArtifact(context, content); // first copy to local
         final File file = caching.getArtifact(context); // should be here
         try {
@@ -104,6 +179,26 @@ public class CachingRepositoryManager extends AbstractNodeRepositoryManager {
         }
     }
 
+    @Override
+    protected void putFolder(ArtifactContext context, File folder) throws RepositoryException {
+        forgetLookups(context);
+        super.putFolder(context, folder);
+    }
+
+    @Override
+    public void removeArtifact(ArtifactContext context) throws RepositoryException {
+        forgetLookups(context);
+        super.removeArtifact(context);
+    }
+
+    private void forgetLookups(ArtifactContext context) {
+        if (cache.getRoot().isRemote()) {
+            // load our own index, so that we also forget what it recorded on disk
+            getLookupIndex(cache);
+            LookupIndex.forgetEverywhere(cache.getDisplayString(), context.getName(), context.getVersion());
+        }
+    }
+
     @Override
     public String toString() {
         return "CachingRepositoryManager: " + getCache();
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The name and the class-level runtime visible annotation types of a class
+ * file, which is all we need to list the members of a module.
+ * <p>
+ * Unlike {@link com.redhat.ceylon.langtools.classfile.ClassFile#read(InputStream)}
+ * this does not build the constant pool, fields, methods and their attributes:
+ * we only remember where the constant pool entries start, skip over fields and
+ * methods (including their Code attributes) using the attribute lengths, and
+ * only decode the few strings we need.
+ */
+final class ClassHeader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = toModifiedUTF8("RuntimeVisibleAnnotations");
+
+    private final byte[] bytes;
+    private int pos;
+    private int[] constants;
+
+    private String name;
+    private Set<String> annotations = Collections.emptySet();
+
+    private ClassHeader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Reads the header of the class file in the given stream
+     *
+     * @param stream the class file, which we do not close
+     * @param size   the size of the class file, or -1 if unknown
+     */
+    static ClassHeader read(InputStream stream, long size) throws IOException {
+        ClassHeader header = new ClassHeader(readFully(stream, size));
+        try {
+            header.parse();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file", e);
+        }
+        return header;
+    }
+
+    /**
+     * Returns the class name, using dots as separators
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns true if the class has the annotation with the given field
+     * descriptor, as obtained with {@link #toDescriptor(String)}
+     */
+    boolean hasAnnotation(String descriptor) {
+        return annotations.contains(descriptor);
+    }
+
+    /**
+     * Returns the field descriptor of the given class name
+     */
+    static String toDescriptor(String className) {
+        return "L" + className.replace('.', '/') + ";";
+    }
+
+    private void parse() throws IOException {
+        if (u4() != MAGIC)
+            throw new IOException("Not a class file");
+        // minor and major versions
+        pos += 4;
+        readConstantPool();
+        // access flags
+        pos += 2;
+        int thisClass = u2();
+        name = utf8(classNameIndex(thisClass)).replace('/', '.');
+        // super class
+        pos += 2;
+        int interfaces = u2();
+        pos += 2 * interfaces;
+        skipMembers(); // fields
+        skipMembers(); // methods
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            int attributeName = u2();
+            int length = u4();
+            int end = pos + length;
+            if (utf8Equals(attributeName, RUNTIME_VISIBLE_ANNOTATIONS))
+                readAnnotationTypes();
+            pos = end;
+        }
+    }
+
+    private void readConstantPool() throws IOException {
+        int count = u2();
+        constants = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = u1();
+            constants[i] = pos;
+            switch (tag) {
+            case 1: // Utf8
+                pos += 2 + u2At(pos);
+                break;
+            case 7: // Class
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                pos += 2;
+                break;
+            case 15: // MethodHandle
+                pos += 3;
+                break;
+            case 3: // Integer
+            case 4: // Float
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                pos += 4;
+                break;
+            case 5: // Long
+            case 6: // Double
+                pos += 8;
+                // takes two entries
+                i++;
+                break;
+            default:
+                throw new IOException("Invalid constant pool tag " + tag + " at entry " + i);
+            }
+        }
+    }
+
+    private void skipMembers() {
+        int count = u2();
+        for (int i = 0; i < count; i++) {
+            // access flags, name and descriptor
+            pos += 6;
+            int attributes = u2();
+            for (int j = 0; j < attributes; j++) {
+                // name
+                pos += 2;
+                int length = u4();
+                pos += length;
+            }
+        }
+    }
+
+    private void readAnnotationTypes() throws IOException {
+        int count = u2();
+        Set<String> types = new HashSet<String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            types.add(utf8(u2()));
+            skipAnnotationValues();
+        }
+        annotations = types;
+    }
+
+    private void skipAnnotationValues() throws IOException {
+        int pairs = u2();
+        for (int i = 0; i < pairs; i++) {
+            // element name
+            pos += 2;
+            skipElementValue();
+        }
+    }
+
+    private void skipElementValue() throws IOException {
+        int tag = u1();
+        switch (tag) {
+        case 'B': case 'C': case 'D': case 'F': case 'I': case 'J': case 'S': case 'Z':
+        case 's': case 'c':
+            pos += 2;
+            break;
+        case 'e':
+            pos += 4;
+            break;
+        case '@':
+            // type
+            pos += 2;
+            skipAnnotationValues();
+            break;
+        case '[':
+            int count = u2();
+            for (int i = 0; i < count; i++)
+                skipElementValue();
+            break;
+        default:
+            throw new IOException("Invalid annotation element value tag " + (char) tag);
+        }
+    }
+
+    private int classNameIndex(int classIndex) throws IOException {
+        int offset = constantOffset(classIndex);
+        if (bytes[offset - 1] != 7)
+            throw new IOException("Constant pool entry " + classIndex + " is not a class");
+        return u2At(offset);
+    }
+
+    private String utf8(int index) throws IOException {
+        int offset = constantOffset(index);
+        if (bytes[offset - 1] != 1)
+            throw new IOException("Constant pool entry " + index + " is not a UTF-8 string");
+        // modified UTF-8, which DataInputStream knows how to decode
+        return new DataInputStream(new ByteArrayInputStream(bytes, offset, 2 + u2At(offset))).readUTF();
+    }
+
+    private boolean utf8Equals(int index, byte[] expected) throws IOException {
+        int offset = constantOffset(index);
+        if (bytes[offset - 1] != 1 || u2At(offset) != expected.length)
+            return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[offset + 2 + i] != expected[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int constantOffset(int index) throws IOException {
+        if (index <= 0 || index >= constants.length || constants[index] == 0)
+            throw new IOException("Invalid constant pool index " + index);
+        return constants[index];
+    }
+
+    private int u1() {
+        return bytes[pos++] & 0xFF;
+    }
+
+    private int u2() {
+        int ret = u2At(pos);
+        pos += 2;
+        return ret;
+    }
+
+    private int u2At(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private int u4() {
+        int ret = ((bytes[pos] & 0xFF) << 24)
+                | ((bytes[pos + 1] & 0xFF) << 16)
+                | ((bytes[pos + 2] & 0xFF) << 8)
+                | (bytes[pos + 3] & 0xFF);
+        pos += 4;
+        return ret;
+    }
+
+    private static byte[] readFully(InputStream stream, long size) throws IOException {
+        byte[] buffer = new byte[size > 0 && size < Integer.MAX_VALUE ? (int) size : 8192];
+        int length = 0;
+        int read;
+        while ((read = stream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                int next = stream.read();
+                if (next == -1)
+                    break;
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[length++] = (byte) next;
+            }
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    private static byte[] toModifiedUTF8(String string) {
+        // only used for ASCII strings, for which it is the same as ASCII
+        byte[] ret = new byte[string.length()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = (byte) string.charAt(i);
+        return ret;
+    }
+}
@@ -63,6 +63,10 @@ public class FileContentStore implements ContentStore, StructureBuilder {
         return root.getPath();
     }
 
+    File getRootFolder() {
+        return root;
+    }
+
     File getFile(Node node) {
         if (node == null)
             throw new IllegalArgumentException("Null node");
@@ -125,7 +129,8 @@ public class FileContentStore implements ContentStore, StructureBuilder {
             throw new IOException("Ceylon repository is not a directory: " + root);
         }
         final File parent = getFile(NodeUtils.firstParent(node));
-        if (parent.exists() == false && parent.mkdirs() == false)
+        // another thread may be creating the same folder concurrently
+        if (parent.exists() == false && parent.mkdirs() == false && parent.isDirectory() == false)
             throw new IOException("Cannot create dirs: " + parent);
 
         File file;
@@ -33,6 +33,8 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
@@ -154,9 +156,36 @@ public class IOUtils {
     }
 
     static void writeToFile(File file, InputStream inputStream) throws IOException {
+        if (inputStream instanceof FileInputStream) {
+            // copying a local file: let the OS move the bytes rather than our buffer
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                transfer(((FileInputStream) inputStream).getChannel(), out.getChannel());
+            }
+            return;
+        }
         copyStream(inputStream, new FileOutputStream(file), false, true);
     }
 
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+        while (position < size) {
+            long transferred = in.transferTo(position, size - position, out);
+            if (transferred <= 0)
+                break;
+            position += transferred;
+        }
+        // the file may have grown since we asked for its size
+        in.position(position);
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                out.write(buffer);
+            buffer.clear();
+        }
+    }
+
     static String sha1(InputStream is) {
         final MessageDigest digest;
         try {
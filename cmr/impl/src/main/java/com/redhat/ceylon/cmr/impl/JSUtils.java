@@ -258,19 +258,28 @@ public final class JSUtils extends AbstractDependencyResolver implements ModuleI
         return string.toLowerCase().contains(query);
     }
 
+    /**
+     * Returns the model file next to the given plain .js file (not a -model.js
+     * file), which may not exist, or null if it's not a plain .js file
+     */
+    static File getModelFile(File jsFile) {
+        String name = jsFile.getName().toLowerCase();
+        if (!name.endsWith(ArtifactContext.JS_MODEL) && name.endsWith(ArtifactContext.JS)) {
+            name = jsFile.getName();
+            name = name.substring(0, name.length() - 3) + ArtifactContext.JS_MODEL;
+            return new File(jsFile.getParentFile(), name);
+        }
+        return null;
+    }
+
     private static Map<String,Object> loadJsonModel(File jsFile) {
         try {
             // If what we have is a plain .js file (not a -model.js file)
             // we first check if a model file exists and if so we use that
             // one instead of the given file
-            String name = jsFile.getName().toLowerCase();
-            if (!name.endsWith(ArtifactContext.JS_MODEL) && name.endsWith(ArtifactContext.JS)) {
-                name = jsFile.getName();
-                name = name.substring(0, name.length() - 3) + ArtifactContext.JS_MODEL;
-                File modelFile = new File(jsFile.getParentFile(), name);
-                if (modelFile.isFile()) {
-                    jsFile = modelFile;
-                }
+            File modelFile = getModelFile(jsFile);
+            if (modelFile != null && modelFile.isFile()) {
+                jsFile = modelFile;
             }
             Map<String, Object> model = readJsonModel(jsFile);
             if (model == null) {
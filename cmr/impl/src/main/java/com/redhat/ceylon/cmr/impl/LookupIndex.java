@@ -0,0 +1,235 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.ModuleUtil;
+
+/**
+ * Persistent record of the artifacts we found, or did not find, in a remote
+ * repository, so that repeated builds do not probe remote repositories again
+ * for artifacts we know they don't have, or for released artifacts we
+ * already have.
+ * <p>
+ * Each repository has its own index file in the given index folder, named
+ * after the SHA-1 of its URL. Every lookup result is appended to it as a
+ * record of the artifact, whether we found it, found it missing or forgot
+ * about it, and when, and the last record for an artifact wins. We only
+ * trust missing artifacts for {@link #MISSING_TTL} milliseconds (one hour by
+ * default, see the {@code ceylon.cmr.missing.ttl} system property, in
+ * seconds), since they may be published at any time, while released
+ * versions never change once published.
+ */
+public final class LookupIndex {
+
+    static final String INDEX_FOLDER = ".lookup-index";
+
+    /** How long we trust that an artifact is missing, in milliseconds */
+    static final long MISSING_TTL;
+    /** We rewrite index files that have this many more records than entries */
+    private static final int MAX_STALE_RECORDS = 1000;
+    private static final int VERSION = 1;
+
+    private static final byte FOUND = 'F';
+    private static final byte MISSING = 'M';
+    private static final byte FORGOTTEN = 'U';
+
+    private static final ConcurrentMap<File, LookupIndex> indexes = new ConcurrentHashMap<>();
+
+    static {
+        long ttl = 60 * 60;
+        String property = SecurityActions.getProperty("ceylon.cmr.missing.ttl");
+        if (property != null) {
+            try {
+                ttl = Long.parseLong(property);
+            } catch (NumberFormatException e) {
+                // keep the default
+            }
+        }
+        MISSING_TTL = ttl * 1000;
+    }
+
+    private static class Entry {
+        final long time;
+        final boolean found;
+
+        Entry(long time, boolean found) {
+            this.time = time;
+            this.found = found;
+        }
+    }
+
+    private final CacheFile file;
+    private final String url;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private LookupIndex(File file, String url) {
+        this.file = new CacheFile(file, VERSION);
+        this.url = url;
+        load();
+    }
+
+    /**
+     * Returns the index of the repository with the given URL, stored in the
+     * given folder
+     */
+    public static LookupIndex get(File folder, String url) {
+        File file = new File(new File(folder, INDEX_FOLDER), CacheFile.sha1(url));
+        LookupIndex index = indexes.get(file);
+        if (index == null) {
+            LookupIndex newIndex = new LookupIndex(file, url);
+            index = indexes.putIfAbsent(file, newIndex);
+            if (index == null)
+                index = newIndex;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the key of the given artifact lookup
+     */
+    public static String getKey(ArtifactContext context) {
+        StringBuilder key = new StringBuilder();
+        key.append(context.getName()).append('/').append(context.getVersion()).append('/');
+        String[] suffixes = context.getSuffixes();
+        for (int i = 0; i < suffixes.length; i++) {
+            if (i > 0)
+                key.append('|');
+            key.append(suffixes[i]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns true if we recently found out that the artifact with the given
+     * key is missing
+     */
+    public boolean isMissing(String key) {
+        Entry entry = entries.get(key);
+        return entry != null
+                && !entry.found
+                && System.currentTimeMillis() - entry.time < MISSING_TTL;
+    }
+
+    /**
+     * Returns true if we found the artifact with the given key and it is
+     * a released version, which can't have changed since
+     */
+    public boolean isFound(String key, String version) {
+        Entry entry = entries.get(key);
+        return entry != null
+                && entry.found
+                && ModuleUtil.isReleasedVersion(version);
+    }
+
+    /**
+     * Records whether we found the artifact with the given key
+     */
+    public void record(String key, boolean found) {
+        Entry previous = entries.get(key);
+        if (found && previous != null && previous.found)
+            return;
+        Entry entry = new Entry(System.currentTimeMillis(), found);
+        entries.put(key, entry);
+        append(key, entry);
+    }
+
+    /**
+     * Forgets what we know about every artifact of the given module version,
+     * because we just published or removed some of them
+     */
+    public void forget(String name, String version) {
+        String prefix = name + "/" + version + "/";
+        for (String key : entries.keySet()) {
+            if (key.startsWith(prefix) && entries.remove(key) != null) {
+                append(key, null);
+            }
+        }
+    }
+
+    /**
+     * Forgets what every index of the repository with the given URL knows
+     * about the given module version, since several repository managers
+     * may use the same repository, each with its own index
+     */
+    public static void forgetEverywhere(String url, String name, String version) {
+        for (LookupIndex index : indexes.values()) {
+            if (index.url.equals(url))
+                index.forget(name, version);
+        }
+    }
+
+    private void append(String key, Entry entry) {
+        file.append(new Record(key, entry));
+    }
+
+    private static class Record implements CacheFile.RecordWriter {
+        final String key;
+        /** The entry, or null if we forgot about the artifact */
+        final Entry entry;
+
+        Record(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(DataOutputStream data) throws IOException {
+            CacheFile.writeString(data, key);
+            if (entry != null) {
+                data.writeByte(entry.found ? FOUND : MISSING);
+                data.writeLong(entry.time);
+            } else {
+                data.writeByte(FORGOTTEN);
+            }
+        }
+    }
+
+    private void load() {
+        int records = file.load(new CacheFile.RecordReader() {
+            @Override
+            public void read(DataInputStream data) throws IOException {
+                String key = CacheFile.readString(data);
+                byte status = data.readByte();
+                if (status == FORGOTTEN)
+                    entries.remove(key);
+                else if (status == FOUND || status == MISSING)
+                    entries.put(key, new Entry(data.readLong(), status == FOUND));
+                else
+                    throw new IOException("Invalid record status " + status);
+            }
+        });
+        if (records == -1 || records - entries.size() > MAX_STALE_RECORDS) {
+            List<Record> current = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                current.add(new Record(entry.getKey(), entry.getValue()));
+            }
+            file.rewrite(current);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.impl;
+
+/**
+ * Thread local record of how a remote repository answered while we looked
+ * up an artifact in it, so that we only remember that it's missing when the
+ * repository told us so, and not when it refused or failed to answer.
+ */
+public final class LookupOutcome {
+
+    private static final int NOT_FOUND = 1;
+    private static final int UNANSWERED = 2;
+
+    private static final ThreadLocal<int[]> outcome = new ThreadLocal<int[]>();
+
+    private LookupOutcome() {
+    }
+
+    /**
+     * Starts recording the answers of the current thread's requests
+     */
+    public static void start() {
+        outcome.set(new int[1]);
+    }
+
+    /**
+     * Stops recording, and returns true if a request told us that what we
+     * asked for does not exist, and no other request went unanswered
+     */
+    public static boolean stop() {
+        int[] current = outcome.get();
+        outcome.remove();
+        return current != null && current[0] == NOT_FOUND;
+    }
+
+    /**
+     * Records that a request got a definite "not found" answer (404 or 410)
+     */
+    public static void notFound() {
+        int[] current = outcome.get();
+        if (current != null)
+            current[0] |= NOT_FOUND;
+    }
+
+    /**
+     * Records that a request got an answer that doesn't tell us whether
+     * what we asked for exists, such as an authentication or server error
+     */
+    public static void unanswered() {
+        int[] current = outcome.get();
+        if (current != null)
+            current[0] |= UNANSWERED;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.redhat.ceylon.cmr.api.ModuleDependencyInfo;
+import com.redhat.ceylon.cmr.api.ModuleInfo;
+import com.redhat.ceylon.cmr.api.ModuleVersionArtifact;
+import com.redhat.ceylon.cmr.api.ModuleVersionDetails;
+import com.redhat.ceylon.cmr.api.Overrides;
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.common.config.Repositories;
+
+/**
+ * Persistent index of the module information we read from the archives of
+ * a file repository, so that searching and completing modules does not
+ * have to open every archive of the repository again.
+ * <p>
+ * Each repository has its own index file in the given index folder, named
+ * after the SHA-1 of the repository folder. Every archive we read is
+ * appended to it as a record with the size and modification time of the
+ * archive, and of the -model.js file next to .js archives, which is what
+ * {@link JSUtils} reads when there is one. The last record for an archive
+ * wins. Records no longer match once their archive changes, and the
+ * repository managers forget the records of the module versions they
+ * publish or remove.
+ * <p>
+ * We store what the {@link ModuleInfoReader} reads without overrides, and
+ * apply the overrides to the dependencies when asked. Only .car and .js
+ * archives are indexed, since the information of .jar archives also
+ * depends on the module descriptors next to them.
+ */
+public final class ModuleInfoIndex {
+
+    static final String INDEX_FOLDER = ".module-index";
+
+    /** We rewrite index files that have this many more records than entries */
+    private static final int MAX_STALE_RECORDS = 1000;
+    private static final int VERSION = 2;
+
+    private static final ConcurrentMap<File, ModuleInfoIndex> indexes = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        /** The size and modification time of the model file, 0 if there is none */
+        final long modelSize;
+        final long modelLastModified;
+        /** What the reader read without overrides, or null if it found nothing */
+        final ModuleVersionDetails details;
+        final boolean hasMembers;
+
+        Entry(long size, long lastModified, long modelSize, long modelLastModified,
+                ModuleVersionDetails details, boolean hasMembers) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.modelSize = modelSize;
+            this.modelLastModified = modelLastModified;
+            this.details = details;
+            this.hasMembers = hasMembers;
+        }
+
+        boolean matches(File file) {
+            if (size != file.length() || lastModified != file.lastModified())
+                return false;
+            File modelFile = JSUtils.getModelFile(file);
+            if (modelFile == null)
+                return modelSize == 0 && modelLastModified == 0;
+            // both are 0 if it does not exist
+            return modelSize == modelFile.length() && modelLastModified == modelFile.lastModified();
+        }
+    }
+
+    private final CacheFile file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ModuleInfoIndex(File file) {
+        this.file = new CacheFile(file, VERSION);
+        load();
+    }
+
+    /**
+     * Returns the index of the given repository folder, stored in the cache
+     * repository
+     */
+    public static ModuleInfoIndex get(File repositoryFolder) {
+        return get(new File(Repositories.get().getCacheRepoDir(), INDEX_FOLDER), repositoryFolder);
+    }
+
+    /**
+     * Returns the index of the given repository folder, stored in the given
+     * index folder
+     */
+    public static ModuleInfoIndex get(File indexFolder, File repositoryFolder) {
+        File file = new File(indexFolder, CacheFile.sha1(FileUtil.absoluteFile(repositoryFolder).getPath()));
+        ModuleInfoIndex index = indexes.get(file);
+        if (index == null) {
+            ModuleInfoIndex newIndex = new ModuleInfoIndex(file);
+            index = indexes.putIfAbsent(file, newIndex);
+            if (index == null)
+                index = newIndex;
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if we index the information read by the given reader
+     */
+    public static boolean canIndex(ModuleInfoReader reader) {
+        return reader == BytecodeUtils.INSTANCE || reader == JSUtils.INSTANCE;
+    }
+
+    /**
+     * Same as {@link ModuleInfoReader#readModuleInfo}, but only reads the
+     * archive if it is not indexed yet, or has changed
+     */
+    public ModuleVersionDetails readModuleInfo(ModuleInfoReader reader, String name, String version, File archive,
+            boolean includeMembers, Overrides overrides) {
+        Entry entry = getEntry(reader, name, version, archive, includeMembers);
+        if (entry.details == null)
+            return null;
+        return copy(entry.details, includeMembers, overrides);
+    }
+
+    /**
+     * Same as {@link ModuleInfoReader#getBinaryVersions}, but only reads the
+     * archive if it is not indexed yet, or has changed
+     */
+    public int[] getBinaryVersions(ModuleInfoReader reader, String name, String version, File archive) {
+        Entry entry = getEntry(reader, name, version, archive, false);
+        if (entry.details == null || entry.details.getArtifactTypes().isEmpty())
+            return reader.getBinaryVersions(name, version, archive);
+        ModuleVersionArtifact artifact = entry.details.getArtifactTypes().first();
+        Integer major = artifact.getMajorBinaryVersion();
+        Integer minor = artifact.getMinorBinaryVersion();
+        return new int[]{major != null ? major : 0, minor != null ? minor : 0};
+    }
+
+    /**
+     * Same as {@link ModuleInfoReader#matchesModuleInfo}, but only reads the
+     * archive if it is not indexed yet, or has changed
+     */
+    public boolean matchesModuleInfo(ModuleInfoReader reader, String name, String version, File archive,
+            String query, Overrides overrides) {
+        Entry entry = getEntry(reader, name, version, archive, false);
+        if (entry.details == null)
+            return reader.matchesModuleInfo(name, version, archive, query, overrides);
+        ModuleVersionDetails details = copy(entry.details, false, overrides);
+        if (details.getDoc() != null && matches(details.getDoc(), query))
+            return true;
+        if (details.getLicense() != null && matches(details.getLicense(), query))
+            return true;
+        for (String author : details.getAuthors()) {
+            if (matches(author, query))
+                return true;
+        }
+        for (ModuleDependencyInfo dep : details.getDependencies()) {
+            if (matches(dep.getModuleName(), query))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets what we know about the archives of the given module version,
+     * because we just published or removed some of them
+     */
+    public void forget(String name, String version) {
+        String prefix = name + "/" + version + "/";
+        for (String key : entries.keySet()) {
+            if (key.startsWith(prefix) && entries.remove(key) != null) {
+                append(key, null);
+            }
+        }
+    }
+
+    private Entry getEntry(ModuleInfoReader reader, String name, String version, File archive, boolean includeMembers) {
+        String key = name + "/" + version + "/" + archive.getName();
+        Entry entry = entries.get(key);
+        if (entry != null
+                && entry.matches(archive)
+                && (entry.hasMembers || !includeMembers || entry.details == null)) {
+            return entry;
+        }
+        // read the stamp first, so that we notice if the archive changes while we read it
+        long size = archive.length();
+        long lastModified = archive.lastModified();
+        File modelFile = JSUtils.getModelFile(archive);
+        long modelSize = modelFile != null ? modelFile.length() : 0;
+        long modelLastModified = modelFile != null ? modelFile.lastModified() : 0;
+        ModuleVersionDetails details = reader.readModuleInfo(name, version, archive, includeMembers, null);
+        entry = new Entry(size, lastModified, modelSize, modelLastModified, details, includeMembers);
+        entries.put(key, entry);
+        append(key, entry);
+        return entry;
+    }
+
+    private static ModuleVersionDetails copy(ModuleVersionDetails details, boolean includeMembers, Overrides overrides) {
+        ModuleVersionDetails ret = new ModuleVersionDetails(details.getModule(), details.getVersion(),
+                details.getDoc(), details.getLicense(), details.getAuthors(),
+                details.getDependencies(), details.getArtifactTypes(), false, null);
+        if (overrides != null) {
+            ModuleInfo info = overrides.applyOverrides(details.getModule(), details.getVersion(),
+                    new ModuleInfo(null, details.getDependencies()));
+            ret.getDependencies().clear();
+            ret.getDependencies().addAll(info.getDependencies());
+        }
+        if (includeMembers) {
+            ret.setMembers(details.getMembers());
+        }
+        return ret;
+    }
+
+    private static boolean matches(String string, String query) {
+        return string.toLowerCase().contains(query);
+    }
+
+    private void append(String key, Entry entry) {
+        file.append(new Record(key, entry));
+    }
+
+    /**
+     * The record of an archive, or of an archive we forgot if its entry is null
+     */
+    private static class Record implements CacheFile.RecordWriter {
+        final String key;
+        final Entry entry;
+
+        Record(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(DataOutputStream data) throws IOException {
+            CacheFile.writeString(data, key);
+            if (entry != null) {
+                data.writeLong(entry.size);
+                data.writeLong(entry.lastModified);
+                data.writeLong(entry.modelSize);
+                data.writeLong(entry.modelLastModified);
+                data.writeBoolean(entry.hasMembers);
+                data.writeBoolean(entry.details != null);
+                if (entry.details != null)
+                    writeDetails(data, entry.details, entry.hasMembers);
+            } else {
+                // forgotten
+                data.writeLong(-1);
+            }
+        }
+    }
+
+    private static void writeDetails(DataOutputStream data, ModuleVersionDetails details, boolean hasMembers) throws IOException {
+        CacheFile.writeString(data, details.getModule());
+        CacheFile.writeString(data, details.getVersion());
+        CacheFile.writeString(data, details.getDoc());
+        CacheFile.writeString(data, details.getLicense());
+        writeStrings(data, details.getAuthors());
+        data.writeInt(details.getDependencies().size());
+        for (ModuleDependencyInfo dep : details.getDependencies()) {
+            CacheFile.writeString(data, dep.getName());
+            CacheFile.writeString(data, dep.getVersion());
+            data.writeBoolean(dep.isOptional());
+            data.writeBoolean(dep.isExport());
+        }
+        data.writeInt(details.getArtifactTypes().size());
+        for (ModuleVersionArtifact artifact : details.getArtifactTypes()) {
+            CacheFile.writeString(data, artifact.getSuffix());
+            writeInteger(data, artifact.getMajorBinaryVersion());
+            writeInteger(data, artifact.getMinorBinaryVersion());
+        }
+        if (hasMembers)
+            writeStrings(data, details.getMembers());
+    }
+
+    private static ModuleVersionDetails readDetails(DataInputStream data, boolean hasMembers) throws IOException {
+        ModuleVersionDetails details = new ModuleVersionDetails(CacheFile.readString(data), CacheFile.readString(data));
+        details.setDoc(CacheFile.readString(data));
+        details.setLicense(CacheFile.readString(data));
+        readStrings(data, details.getAuthors());
+        int dependencies = data.readInt();
+        for (int i = 0; i < dependencies; i++) {
+            details.getDependencies().add(new ModuleDependencyInfo(CacheFile.readString(data), CacheFile.readString(data),
+                    data.readBoolean(), data.readBoolean()));
+        }
+        int artifacts = data.readInt();
+        for (int i = 0; i < artifacts; i++) {
+            details.getArtifactTypes().add(new ModuleVersionArtifact(CacheFile.readString(data),
+                    readInteger(data), readInteger(data)));
+        }
+        if (hasMembers)
+            readStrings(data, details.getMembers());
+        return details;
+    }
+
+    private static void writeStrings(DataOutputStream data, Set<String> strings) throws IOException {
+        data.writeInt(strings.size());
+        for (String string : strings)
+            CacheFile.writeString(data, string);
+    }
+
+    private static void readStrings(DataInputStream data, Set<String> strings) throws IOException {
+        int size = data.readInt();
+        for (int i = 0; i < size; i++)
+            strings.add(CacheFile.readString(data));
+    }
+
+    private static void writeInteger(DataOutputStream data, Integer integer) throws IOException {
+        data.writeBoolean(integer != null);
+        if (integer != null)
+            data.writeInt(integer);
+    }
+
+    private static Integer readInteger(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readInt() : null;
+    }
+
+    private void load() {
+        int records = file.load(new CacheFile.RecordReader() {
+            @Override
+            public void read(DataInputStream data) throws IOException {
+                String key = CacheFile.readString(data);
+                long size = data.readLong();
+                if (size == -1) {
+                    entries.remove(key);
+                } else {
+                    long lastModified = data.readLong();
+                    long modelSize = data.readLong();
+                    long modelLastModified = data.readLong();
+                    boolean hasMembers = data.readBoolean();
+                    ModuleVersionDetails details = data.readBoolean() ? readDetails(data, hasMembers) : null;
+                    entries.put(key, new Entry(size, lastModified, modelSize, modelLastModified, details, hasMembers));
+                }
+            }
+        });
+        if (records == -1 || records - entries.size() > MAX_STALE_RECORDS) {
+            List<Record> current = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                current.add(new Record(entry.getKey(), entry.getValue()));
+            }
+            file.rewrite(current);
+        }
+    }
+}
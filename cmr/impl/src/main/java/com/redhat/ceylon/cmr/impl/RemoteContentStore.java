@@ -51,15 +51,34 @@ public class RemoteContentStore extends URLContentStore {
     }
     
     protected SizedInputStream openSizedStream(final URL url) throws IOException {
+        return openSizedStream(url, -1, null);
+    }
+
+    /**
+     * Opens the given URL with a conditional GET, which only transfers its
+     * contents if they were modified since the given time and no longer
+     * match the given entity tag. Returns null if we can't get it.
+     */
+    RetryingSizedInputStream openSizedStream(final URL url, long ifModifiedSince, String ifNoneMatch) throws IOException {
         if (connectionAllowed()) {
             try {
-                return new RetryingSizedInputStream(url, proxy, timeout);
+                return new RetryingSizedInputStream(url, proxy, timeout, ifModifiedSince, ifNoneMatch);
             } catch (NotGettable e) {
                 // fall through
             }
         }
         return null;
     }
+
+    /**
+     * Opens the contents of the given node with a conditional GET, see
+     * {@link #openSizedStream(URL, long, String)}
+     */
+    RetryingSizedInputStream getContentIfModified(Node node, long ifModifiedSince, String ifNoneMatch) throws IOException {
+        final URL url = getURL(compatiblePath(NodeUtils.getFullPath(node, SEPARATOR)));
+        log.debug("Fetching resource if modified: " + url);
+        return openSizedStream(url, ifModifiedSince, ifNoneMatch);
+    }
     
     /**
      * A {@link SizedInputStream} that can reconnect some number f times
@@ -77,6 +96,10 @@ public class RemoteContentStore extends URLContentStore {
          * the {@link ReconnectingInputStream} has to reconnect.
          */
         private boolean rangeRequests;
+        /** The entity tag of the resource, if the server sent one */
+        private String etag;
+        /** False if the server told us the resource was not modified */
+        private boolean modified = true;
         /** The number of attempts to download the resource */
         private final Attempts attempts = new Attempts();
         /** The <em>current</em> stream: Gets mutated when {@link ReconnectingInputStream} reconnects */
@@ -88,6 +111,10 @@ public class RemoteContentStore extends URLContentStore {
         private final long contentLength;
         
         public RetryingSizedInputStream(URL url, Proxy proxy, int timeout) throws NotGettable, IOException {
+            this(url, proxy, timeout, -1, null);
+        }
+
+        public RetryingSizedInputStream(URL url, Proxy proxy, int timeout, long ifModifiedSince, String ifNoneMatch) throws NotGettable, IOException {
             super(null, 0);
             this.url = url;
             this.proxy = proxy;
@@ -95,16 +122,24 @@ public class RemoteContentStore extends URLContentStore {
             long length = 0;
             connecting: while (true) {
                 try{
-                    connection = makeConnection(url, -1);
+                    connection = makeConnection(url, -1, ifModifiedSince, ifNoneMatch);
                     int code = connection.getResponseCode();
+                    if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        debug("Not modified: " + url);
+                        modified = false;
+                        etag = ifNoneMatch;
+                        stream = connection.getInputStream();
+                        break connecting;
+                    }
                     if (code != -1 && code != 200) {
                         log.info("Got " + code + " for url: " + url);
                         NotGettable notGettable = new NotGettable();
                         cleanUpStreams(notGettable);
                         throw notGettable;
                     }
-                    String acceptRange = connection.getHeaderField("Accept-Range");
-                    rangeRequests = acceptRange == null || !acceptRange.equalsIgnoreCase("none");
+                    String acceptRanges = connection.getHeaderField("Accept-Ranges");
+                    rangeRequests = acceptRanges == null || !acceptRanges.equalsIgnoreCase("none");
+                    etag = connection.getHeaderField("ETag");
                     debug("Connection: "+connection.getHeaderField("Connection"));
                     debug("Got " + code + " for url: " + url);
                     length = connection.getContentLengthLong();
@@ -161,6 +196,11 @@ public class RemoteContentStore extends URLContentStore {
 
         protected HttpURLConnection makeConnection(URL url, long start)
                 throws IOException, SocketTimeoutException, NotGettable {
+            return makeConnection(url, start, -1, null);
+        }
+
+        protected HttpURLConnection makeConnection(URL url, long start, long ifModifiedSince, String ifNoneMatch)
+                throws IOException, SocketTimeoutException, NotGettable {
             URLConnection conn;
             if (proxy != null) {
                 conn = url.openConnection(proxy);
@@ -175,9 +215,19 @@ public class RemoteContentStore extends URLContentStore {
             huc.setReadTimeout(timeout * Constants.READ_TIMEOUT_MULTIPLIER);
             boolean useRangeRequest = start > 0;
             if (useRangeRequest) {
-                String range = "bytes "+start+"-";
-                debug("Using Range request for" + range + " of " + url);
+                String range = "bytes="+start+"-";
+                debug("Using Range request for " + range + " of " + url);
                 huc.setRequestProperty("Range", range);
+                if (etag != null) {
+                    // only resume if the resource did not change in the meantime
+                    huc.setRequestProperty("If-Range", etag);
+                }
+            }
+            if (ifModifiedSince > 0) {
+                huc.setIfModifiedSince(ifModifiedSince);
+            }
+            if (ifNoneMatch != null) {
+                huc.setRequestProperty("If-None-Match", ifNoneMatch);
             }
             addCredentials(huc);
             debug("Connecting to " + url);
@@ -188,6 +238,22 @@ public class RemoteContentStore extends URLContentStore {
         public long getSize() {
             return contentLength;
         }
+
+        /**
+         * Returns false if the server told us the resource was not modified
+         * since our conditional GET, in which case the stream is empty
+         */
+        public boolean isModified() {
+            return modified;
+        }
+
+        /**
+         * Returns the entity tag of the resource, or null if the server did
+         * not send one
+         */
+        public String getETag() {
+            return etag;
+        }
         
         public InputStream getInputStream() {
             return reconnectingStream;
@@ -254,18 +320,30 @@ public class RemoteContentStore extends URLContentStore {
                         final int code = connection.getResponseCode();
                         debug("Got " + code + " for reconnection to url: " + url);
                         if (rangeRequests && code == 206) {
+                            String contentRange = connection.getHeaderField("Content-Range");
+                            if (contentRange != null && !contentRange.startsWith("bytes " + bytesRead + "-")) {
+                                throw new IOException("Got unexpected Content-Range " + contentRange + " when resuming from " + bytesRead);
+                            }
                             stream = connection.getInputStream();
                         } else if (code == 200) {
+                            if (etag != null && !etag.equals(connection.getHeaderField("ETag"))) {
+                                throw new IOException("Resource changed while downloading " + url);
+                            }
                             if (rangeRequests) {
-                                debug("Looks like " + url.getHost() + ":" + url.getPort() + " does support range request, to reading first " + bytesRead + " bytes");
+                                debug("Looks like " + url.getHost() + ":" + url.getPort() + " does not support range requests, skipping first " + bytesRead + " bytes");
                             }
                             // we didn't make a range request
                             // (or the server didn't understand the Range header)
                             // so spool the appropriate number of bytes
                             stream = connection.getInputStream();
                             try {
-                                for (long ii = 0; ii < bytesRead; ii++) {
-                                    stream.read();
+                                byte[] buf = new byte[8192];
+                                long left = bytesRead;
+                                while (left > 0) {
+                                    int read = stream.read(buf, 0, (int) Math.min(buf.length, left));
+                                    if (read == -1)
+                                        throw new IOException("Resource shrank while reconnecting to " + url);
+                                    left -= read;
                                 }
                             } catch (IOException spoolException) {
                                 maybeRetry(url, spoolException, "spooling");
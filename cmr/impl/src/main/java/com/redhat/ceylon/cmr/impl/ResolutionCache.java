@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.redhat.ceylon.cmr.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.redhat.ceylon.cmr.api.DependencyResolver;
+import com.redhat.ceylon.cmr.api.DependencyResolvers;
+import com.redhat.ceylon.cmr.api.ModuleDependencyInfo;
+import com.redhat.ceylon.cmr.api.ModuleInfo;
+import com.redhat.ceylon.cmr.api.Overrides;
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.common.config.Repositories;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+
+/**
+ * Persistent cache of the module information the dependency resolvers find
+ * in artifacts, so that the compiler, the runner and the other tools do not
+ * all resolve the dependencies of the same artifacts again.
+ * <p>
+ * Resolutions are keyed by the SHA-1 of the artifact and of the module
+ * descriptors next to it, so they hold for every copy of an artifact, in
+ * any repository, and never need to be invalidated. We remember the SHA-1
+ * of each file we hash along with its size and modification time, and only
+ * hash it again once it changes.
+ * <p>
+ * We only cache what the resolvers that read nothing but the artifact and
+ * its descriptors find, which excludes Maven POMs, and we cache it without
+ * overrides. The overrides are applied to the cached information when asked,
+ * so changing them never requires resolving anything again.
+ */
+public final class ResolutionCache {
+
+    static final String CACHE_FOLDER = ".resolution-cache";
+    private static final String CACHE_FILE = "resolutions";
+
+    /** We rewrite cache files that have this many more records than entries */
+    private static final int MAX_STALE_RECORDS = 1000;
+    private static final int VERSION = 1;
+
+    private static final byte HASH = 'H';
+    private static final byte RESOLUTION = 'R';
+
+    private static final ConcurrentMap<File, ResolutionCache> caches = new ConcurrentHashMap<>();
+
+    private static class Hash {
+        final long size;
+        final long lastModified;
+        final String sha1;
+
+        Hash(long size, long lastModified, String sha1) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+
+        boolean matches(File file) {
+            return size == file.length() && lastModified == file.lastModified();
+        }
+    }
+
+    private static class Resolution {
+        /** What the resolvers found without overrides, or null if they found nothing */
+        final ModuleInfo info;
+
+        Resolution(ModuleInfo info) {
+            this.info = info;
+        }
+    }
+
+    private final CacheFile file;
+    private final Map<String, Hash> hashes = new ConcurrentHashMap<>();
+    private final Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    private ResolutionCache(File file) {
+        this.file = new CacheFile(file, VERSION);
+        load();
+    }
+
+    /**
+     * Returns the resolution cache stored in the cache repository
+     */
+    public static ResolutionCache get() {
+        return get(new File(Repositories.get().getCacheRepoDir(), CACHE_FOLDER));
+    }
+
+    /**
+     * Returns the resolution cache stored in the given folder
+     */
+    public static ResolutionCache get(File folder) {
+        File file = new File(FileUtil.absoluteFile(folder), CACHE_FILE);
+        ResolutionCache cache = caches.get(file);
+        if (cache == null) {
+            ResolutionCache newCache = new ResolutionCache(file);
+            cache = caches.putIfAbsent(file, newCache);
+            if (cache == null)
+                cache = newCache;
+        }
+        return cache;
+    }
+
+    /**
+     * Same as {@link DependencyResolvers#resolve(ArtifactResult, Overrides)},
+     * but only asks the resolvers if we never resolved the same artifact and
+     * descriptors before
+     */
+    public ModuleInfo resolve(ArtifactResult result, DependencyResolvers resolvers, Overrides overrides) {
+        List<DependencyResolver> list = resolvers.getResolvers();
+        int cacheable = 0;
+        while (cacheable < list.size() && isCacheable(list.get(cacheable)))
+            cacheable++;
+        String key = cacheable > 0 ? getKey(result) : null;
+        if (key == null)
+            return resolve(result, list, overrides);
+        Resolution resolution = resolutions.get(key);
+        if (resolution == null) {
+            resolution = new Resolution(resolve(result, list.subList(0, cacheable), null));
+            resolutions.put(key, resolution);
+            append(key, resolution);
+        }
+        if (resolution.info != null) {
+            if (overrides != null)
+                return overrides.applyOverrides(result.name(), result.version(), resolution.info);
+            return new ModuleInfo(resolution.info.getFilter(),
+                    new LinkedHashSet<ModuleDependencyInfo>(resolution.info.getDependencies()));
+        }
+        // none of the cacheable resolvers found anything, ask the others
+        return resolve(result, list.subList(cacheable, list.size()), overrides);
+    }
+
+    private static ModuleInfo resolve(ArtifactResult result, List<DependencyResolver> resolvers, Overrides overrides) {
+        for (DependencyResolver dr : resolvers) {
+            ModuleInfo info = dr.resolve(result, overrides);
+            if (info != null) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if what the given resolver finds only depends on the
+     * artifact and the module descriptors next to it
+     */
+    private static boolean isCacheable(DependencyResolver resolver) {
+        return resolver == BytecodeUtils.INSTANCE
+                || resolver == JSUtils.INSTANCE
+                || resolver == PropertiesDependencyResolver.INSTANCE
+                || resolver == XmlDependencyResolver.INSTANCE
+                || resolver == OSGiDependencyResolver.INSTANCE;
+    }
+
+    private String getKey(ArtifactResult result) {
+        File artifact;
+        try {
+            artifact = result.artifact();
+        } catch (RuntimeException e) {
+            // let the resolvers deal with it
+            return null;
+        }
+        if (artifact == null || !artifact.isFile())
+            return null;
+        String sha1 = sha1(artifact);
+        if (sha1 == null)
+            return null;
+        StringBuilder key = new StringBuilder(sha1);
+        key.append('/').append(artifact.getName())
+            .append('/').append(result.name())
+            .append('/').append(result.version());
+        // the descriptors the resolvers look for next to the artifact
+        String[] descriptors = {
+                "module.xml",
+                XmlDependencyResolver.INSTANCE.getQualifiedToplevelDescriptorName(result.name(), result.version()),
+                "module.properties",
+                PropertiesDependencyResolver.INSTANCE.getQualifiedToplevelDescriptorName(result.name(), result.version())
+        };
+        for (String descriptor : descriptors) {
+            File descriptorFile = new File(artifact.getParentFile(), descriptor);
+            if (descriptorFile.isFile()) {
+                String descriptorSha1 = sha1(descriptorFile);
+                if (descriptorSha1 == null)
+                    return null;
+                key.append('/').append(descriptor).append('=').append(descriptorSha1);
+            }
+        }
+        return key.toString();
+    }
+
+    private String sha1(File file) {
+        String path = file.getAbsolutePath();
+        Hash hash = hashes.get(path);
+        if (hash != null && hash.matches(file))
+            return hash.sha1;
+        // read the stamp first, so that we notice if the file changes while we hash it
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String sha1;
+        try {
+            sha1 = IOUtils.sha1(new FileInputStream(file));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        if (sha1 == null)
+            return null;
+        hash = new Hash(size, lastModified, sha1);
+        hashes.put(path, hash);
+        append(path, hash);
+        return sha1;
+    }
+
+    private void append(String key, Object entry) {
+        file.append(new Record(key, entry));
+    }
+
+    private static class Record implements CacheFile.RecordWriter {
+        final String key;
+        final Object entry;
+
+        Record(String key, Object entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(DataOutputStream data) throws IOException {
+            if (entry instanceof Hash) {
+                Hash hash = (Hash) entry;
+                data.writeByte(HASH);
+                CacheFile.writeString(data, key);
+                data.writeLong(hash.size);
+                data.writeLong(hash.lastModified);
+                CacheFile.writeString(data, hash.sha1);
+            } else {
+                ModuleInfo info = ((Resolution) entry).info;
+                data.writeByte(RESOLUTION);
+                CacheFile.writeString(data, key);
+                data.writeBoolean(info != null);
+                if (info != null) {
+                    CacheFile.writeString(data, info.getFilter());
+                    data.writeInt(info.getDependencies().size());
+                    for (ModuleDependencyInfo dep : info.getDependencies()) {
+                        CacheFile.writeString(data, dep.getName());
+                        CacheFile.writeString(data, dep.getVersion());
+                        data.writeBoolean(dep.isOptional());
+                        data.writeBoolean(dep.isExport());
+                    }
+                }
+            }
+        }
+    }
+
+    private static ModuleInfo readInfo(DataInputStream data) throws IOException {
+        String filter = CacheFile.readString(data);
+        int size = data.readInt();
+        Set<ModuleDependencyInfo> dependencies = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            dependencies.add(new ModuleDependencyInfo(CacheFile.readString(data), CacheFile.readString(data),
+                    data.readBoolean(), data.readBoolean()));
+        }
+        return new ModuleInfo(filter, dependencies);
+    }
+
+    private void load() {
+        int records = file.load(new CacheFile.RecordReader() {
+            @Override
+            public void read(DataInputStream data) throws IOException {
+                byte type = data.readByte();
+                String key = CacheFile.readString(data);
+                if (type == HASH) {
+                    hashes.put(key, new Hash(data.readLong(), data.readLong(), CacheFile.readString(data)));
+                } else if (type == RESOLUTION) {
+                    resolutions.put(key, new Resolution(data.readBoolean() ? readInfo(data) : null));
+                } else {
+                    throw new IOException("Invalid record type " + type);
+                }
+            }
+        });
+        // forget the files that changed, and what we resolved for contents
+        // we no longer have
+        Set<String> sha1s = new HashSet<>();
+        for (Iterator<Map.Entry<String, Hash>> it = hashes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Hash> entry = it.next();
+            if (entry.getValue().matches(new File(entry.getKey())))
+                sha1s.add(entry.getValue().sha1);
+            else
+                it.remove();
+        }
+        for (Iterator<String> it = resolutions.keySet().iterator(); it.hasNext(); ) {
+            String key = it.next();
+            int slash = key.indexOf('/');
+            if (slash == -1 || !sha1s.contains(key.substring(0, slash)))
+                it.remove();
+        }
+        if (records == -1 || records - hashes.size() - resolutions.size() > MAX_STALE_RECORDS) {
+            List<Record> current = new ArrayList<>(hashes.size() + resolutions.size());
+            for (Map.Entry<String, Hash> entry : hashes.entrySet()) {
+                current.add(new Record(entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<String, Resolution> entry : resolutions.entrySet()) {
+                current.add(new Record(entry.getKey(), entry.getValue()));
+            }
+            file.rewrite(current);
+        }
+    }
+}
@@ -28,7 +28,6 @@ import com.redhat.ceylon.cmr.api.ArtifactCallbackStream;
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.CmrRepository;
 import com.redhat.ceylon.cmr.api.Overrides;
-import com.redhat.ceylon.cmr.spi.ContentStore;
 import com.redhat.ceylon.cmr.spi.Node;
 import com.redhat.ceylon.cmr.spi.OpenNode;
 import com.redhat.ceylon.cmr.spi.SizedInputStream;
@@ -45,6 +44,7 @@ import com.redhat.ceylon.model.cmr.RepositoryException;
  */
 public class RootRepositoryManager extends AbstractNodeRepositoryManager {
     private final FileContentStore fileContentStore;
+    private final File rootDir;
 
     private static File getRootDir() {
         com.redhat.ceylon.common.config.Repositories.Repository rootRepo = Repositories.get().getCacheRepository();
@@ -64,6 +64,7 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
     }
     public RootRepositoryManager(File rootDir, Logger log, Overrides overrides, boolean upgradeDist) {
         super(log, overrides, upgradeDist);
+        this.rootDir = rootDir;
         if(rootDir != null){
             this.fileContentStore = new FileContentStore(rootDir);
             final CmrRepository aaca = new DefaultRepository(new RootNode(fileContentStore, fileContentStore));
@@ -116,6 +117,14 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
         }
     }
 
+    @Override
+    protected LookupIndex getLookupIndex(CmrRepository repository) {
+        // we keep them in the cache
+        if (rootDir == null)
+            return null;
+        return LookupIndex.get(rootDir, repository.getDisplayString());
+    }
+
     @Override
     protected ArtifactResult artifactNotFound(ArtifactContext context) throws RepositoryException {
         boolean hasRemote = false;
@@ -163,11 +172,6 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
         return super.artifactNotFound(context);
     }
     
-    private boolean isOffline(CmrRepository repo) {
-        ContentStore cs = repo.getRoot().getService(ContentStore.class);
-        return cs != null && cs.isOffline();
-    }
-
     private File putContent(ArtifactContext context, Node node, InputStream stream, long length) throws IOException {
         log.debug("  Creating local copy of external node: " + node + " at repo: " + 
                 (fileContentStore != null ? fileContentStore.getDisplayString() : null));
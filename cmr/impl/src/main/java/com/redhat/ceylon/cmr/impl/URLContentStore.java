@@ -58,6 +58,10 @@ import com.redhat.ceylon.common.log.Logger;
 
 /**
  * URL based content store.
+ * <p>
+ * We never disconnect our connections, but release them once we've read
+ * their responses so that the JDK can reuse their sockets for the next
+ * requests to the same repository (see {@link WS#release(HttpURLConnection)}).
  *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
@@ -157,7 +161,7 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                 }
                 return ret;
             }finally{
-                con.disconnect();
+                WS.release(con);
             }
         }catch(Exception x){
             log.debug("Failed to determine if remote host is a Herd repo: "+x.getMessage());
@@ -387,13 +391,22 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                 conn.connect();
                 int code = huc.getResponseCode();
                 log.debug("Connect: " + huc.getHeaderField("Connection"));
-                huc.disconnect();
+                // don't disconnect, that would close the socket we can reuse for the next request
+                WS.release(huc);
                 log.debug("Got " + code + " for url: " + url);
                 if (code == 200) {
                     return huc;
                 }
+                if (code == HttpURLConnection.HTTP_NOT_FOUND
+                        || code == HttpURLConnection.HTTP_GONE) {
+                    LookupOutcome.notFound();
+                } else {
+                    LookupOutcome.unanswered();
+                }
+                return null;
             }
         }
+        LookupOutcome.unanswered();
         return null;
     }
 
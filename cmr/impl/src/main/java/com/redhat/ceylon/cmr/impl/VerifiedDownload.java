@@ -5,6 +5,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import com.redhat.ceylon.cmr.api.ArtifactCallback;
 import com.redhat.ceylon.cmr.api.ArtifactCallbackStream;
@@ -29,6 +32,8 @@ class VerifiedDownload {
     protected final FileContentStore fileContentStore;
     protected final Node tempNode;
     protected final File tempFile;
+    /** The SHA-1 of the download, computed while we fetch it */
+    protected MessageDigest digest;
     
     /** 
      * Prepare for the download 
@@ -73,6 +78,13 @@ class VerifiedDownload {
         log.debug("  FETCH: saving " + node + " to " + tempFile);
         final File file;
         try {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+                stream = new DigestInputStream(stream, digest);
+            } catch (NoSuchAlgorithmException e) {
+                // we'll read the file again in verify()
+                digest = null;
+            }
             if (callback != null) {
                 callback.start(NodeUtils.getFullPath(node), length != -1 ? length : node.getSize(), node.getStoreDisplayString());
                 stream = new ArtifactCallbackStream(callback, stream);
@@ -110,7 +122,9 @@ class VerifiedDownload {
     protected void verify(final OpenNode on) throws IOException {
         log.debug("  VERIFY: " + tempFile);
         // Now validate the temporary file has a sha1 which matches the remote sha1
-        final String computedSha1 = IOUtils.sha1(new FileInputStream(tempFile));
+        final String computedSha1 = digest != null 
+                ? IOUtils.toHexString(digest.digest()) 
+                : IOUtils.sha1(new FileInputStream(tempFile));
         if (computedSha1 != null) {
             log.debug("    Computed sha1(" + tempFile + "): " + computedSha1);
             ByteArrayInputStream shaStream = new ByteArrayInputStream(computedSha1.getBytes("ASCII"));
@@ -148,7 +148,7 @@ public class WS {
                     }
                 }
             }finally{
-                connection.disconnect();
+                release(connection);
             }
         }catch(XMLStreamException x){
             throw new RuntimeException(x);
@@ -157,6 +157,35 @@ public class WS {
         }
     }
 
+    /**
+     * Reads whatever is left of the response body or error stream of the
+     * given connection and closes it, which lets the JDK keep the underlying
+     * socket alive for the next request to the same host, rather than closing
+     * it like {@link HttpURLConnection#disconnect()} does. The number of idle
+     * connections kept per host is set by the {@code http.maxConnections}
+     * system property.
+     */
+    public static void release(HttpURLConnection connection) {
+        InputStream is;
+        try {
+            is = connection.getInputStream();
+        } catch (IOException x) {
+            is = connection.getErrorStream();
+        }
+        if (is == null)
+            return;
+        try {
+            try {
+                byte[] buf = new byte[4096];
+                while (is.read(buf) != -1) {}
+            } finally {
+                is.close();
+            }
+        } catch (IOException x) {
+            // the connection can't be reused, nothing more to do
+        }
+    }
+
     public static List<Link> collectLinks(HttpURLConnection con) {
         List<String> linkHeaders = con.getHeaderFields().get("Link");
         List<Link> ret = new LinkedList<Link>();
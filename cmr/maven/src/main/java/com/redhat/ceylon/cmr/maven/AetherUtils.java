@@ -16,6 +16,8 @@
 
 package com.redhat.ceylon.cmr.maven;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -27,7 +29,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -70,6 +85,8 @@ import com.redhat.ceylon.cmr.impl.IOUtils;
 import com.redhat.ceylon.cmr.impl.LazyArtifactResult;
 import com.redhat.ceylon.cmr.impl.NodeUtils;
 import com.redhat.ceylon.cmr.spi.Node;
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.ModuleUtil;
 import com.redhat.ceylon.common.log.Logger;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.cmr.ArtifactResultType;
@@ -81,12 +98,32 @@ import com.redhat.ceylon.model.cmr.RepositoryException;
  * Aether utils.
  * <p/>
  * We actually use JBoss ShrinkWrap Resolver.
+ * <p/>
+ * Building a resolver system reads the Maven settings and sets up a new
+ * repository session, so we keep the ones we are done with for later lookups.
+ * Released artifacts, version ranges and the dependencies of POM files are
+ * resolved once per process, and we fetch the direct dependencies of an
+ * artifact in the background since we will most likely need them next.
  *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public class AetherUtils {
     private static final ScopeType[] SCOPES = new ScopeType[]{ScopeType.COMPILE, ScopeType.PROVIDED, ScopeType.RUNTIME};
     private static final SingleScopedStrategy SCOPED_STRATEGY = new SingleScopedStrategy(SCOPES);
+    private static final int PREFETCH_THREADS = 4;
+    /** How long we trust a resolved version range, since new versions may be published meanwhile */
+    private static final long VERSION_RANGE_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    /** Idle resolver systems, per settings and offline mode */
+    private static final ConcurrentMap<String, Queue<MavenResolverSystem>> resolvers = new ConcurrentHashMap<>();
+    /** Released artifacts, being or already resolved */
+    private static final ConcurrentMap<String, Future<MavenResolvedArtifact>> artifacts = new ConcurrentHashMap<>();
+    /** Recently resolved version ranges */
+    private static final ConcurrentMap<String, ResolvedVersionRange> versionRanges = new ConcurrentHashMap<>();
+    /** Dependencies of POM files, by content */
+    private static final ConcurrentMap<String, MavenArtifactInfo[]> pomDependencies = new ConcurrentHashMap<>();
+
+    private static ExecutorService prefetcher;
 
     private Logger log;
     private int timeout;
@@ -101,7 +138,8 @@ public class AetherUtils {
     }
 
     MavenArtifactInfo[] getDependencies(File pomXml, String name, String version) {
-        MavenResolverSystem system = getResolver();
+        // loading a POM changes the session, so this one can't be reused
+        MavenResolverSystem system = newResolver();
         PomEquippedResolveStage resolverStage = system.loadPomFromFile(pomXml);
         String coordinates = toCanonicalForm(name, version);
         MavenStrategyStage strategyStage = resolverStage.resolve(coordinates);
@@ -112,8 +150,15 @@ public class AetherUtils {
     MavenArtifactInfo[] getDependencies(InputStream pomXml, String name, String version) {
         File tempFile = null;
         try {
-            tempFile = IOUtils.toTempFile(pomXml);
-            return getDependencies(tempFile, name, version);
+            byte[] pom = readFully(pomXml);
+            String key = getCacheKey(CacheFile.sha1(pom) + ":" + toCanonicalForm(name, version));
+            MavenArtifactInfo[] dependencies = pomDependencies.get(key);
+            if (dependencies == null) {
+                tempFile = IOUtils.toTempFile(new ByteArrayInputStream(pom));
+                dependencies = getDependencies(tempFile, name, version);
+                pomDependencies.put(key, dependencies);
+            }
+            return dependencies;
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         } finally {
@@ -218,9 +263,7 @@ public class AetherUtils {
         final String name = toCanonicalForm(groupId, artifactId);
         final String coordinates = toCanonicalForm(name, version);
         try {
-            final MavenStrategyStage mss = getResolver().resolve(coordinates);
-            final MavenFormatStage mfs = mss.using(SCOPED_STRATEGY);
-            final MavenResolvedArtifact info = mfs.asSingleResolvedArtifact();
+            final MavenResolvedArtifact info = resolveArtifact(coordinates, version);
             if (info == null) {
                 log.debug("No artifact found: " + coordinates);
                 return null;
@@ -301,8 +344,10 @@ public class AetherUtils {
                     ArtifactResult dr;
                     if(isCeylon)
                         dr = createArtifactResult(manager, dContext.getName(), dVersion, export, optional, repositoryDisplayString);
-                    else
+                    else{
+                        prefetchArtifact(toCanonicalForm(toCanonicalForm(dGroupId, dArtifactId), dVersion), dVersion);
                         dr = createArtifactResult(manager, repository, dGroupId, dArtifactId, dVersion, export, optional, repositoryDisplayString);
+                    }
                     dependencies.add(dr);
                 }
 
@@ -333,18 +378,15 @@ public class AetherUtils {
     }
 
     public void search(String groupId, String artifactId, String version, ModuleVersionResult result, Overrides overrides, String repositoryDisplayString){
-        MavenResolverSystem resolver = getResolver();
         if(version == null || version.isEmpty()){
-            MavenVersionRangeResult resolveVersionRange = resolver.resolveVersionRange(groupId+":"+artifactId+":(,)");
-            List<MavenCoordinate> versions = resolveVersionRange.getVersions();
+            List<MavenCoordinate> versions = resolveVersionRange(groupId+":"+artifactId+":(,)");
             for(MavenCoordinate co : versions){
                 if(co.getVersion() != null && !co.getVersion().isEmpty())
                     addSearchResult(co.getGroupId(), co.getArtifactId(), co.getVersion(), result, overrides, repositoryDisplayString);
             }
         }else{
             try{
-                MavenVersionRangeResult resolveVersionRange = resolver.resolveVersionRange(groupId+":"+artifactId+":["+version+",]");
-                List<MavenCoordinate> versions = resolveVersionRange.getVersions();
+                List<MavenCoordinate> versions = resolveVersionRange(groupId+":"+artifactId+":["+version+",]");
                 for(MavenCoordinate co : versions){
                     // make sure the version matches because with maven if we ask for [1,] we also get 2.x
                     if(co.getVersion() != null && co.getVersion().startsWith(version))
@@ -378,10 +420,7 @@ public class AetherUtils {
             }
             artifactOverrides = overrides.getArtifactOverrides(ctx);
         }
-        MavenResolverSystem resolver = getResolver();
-        final MavenStrategyStage mss = resolver.resolve(groupId+":"+artifactId+":"+version);
-        final MavenFormatStage mfs = mss.using(SCOPED_STRATEGY);
-        final MavenResolvedArtifact info = mfs.asSingleResolvedArtifact();
+        final MavenResolvedArtifact info = resolveArtifact(groupId+":"+artifactId+":"+version, version);
         if(info != null){
             StringBuilder description = new StringBuilder();
             StringBuilder licenseBuilder = new StringBuilder();
@@ -558,9 +597,7 @@ public class AetherUtils {
         final String name = toCanonicalForm(groupId, artifactId);
         final String coordinates = toCanonicalForm(toCanonicalForm(toCanonicalForm(name, "jar"), classifier), version);
         try {
-            final MavenStrategyStage source_mss = getResolver().resolve(coordinates);
-            final MavenFormatStage source_mfs = source_mss.using(SCOPED_STRATEGY);
-            final MavenResolvedArtifact info = source_mfs.asSingleResolvedArtifact();
+            final MavenResolvedArtifact info = resolveArtifact(coordinates, version);
             if (info != null) {
                 return new SingleArtifactResult(repository, name, version, info.asFile(), repositoryDisplayString);
             }
@@ -601,7 +638,158 @@ public class AetherUtils {
         return "classpath:settings.xml";
     }
 
-    private MavenResolverSystem getResolver() {
+    /**
+     * Resolves the artifact with the given coordinates, only once per process
+     * for released versions, unless someone deleted the resolved file since
+     */
+    private MavenResolvedArtifact resolveArtifact(final String coordinates, String version) {
+        if (!ModuleUtil.isReleasedVersion(version))
+            return resolveArtifactUncached(coordinates);
+        final String key = getCacheKey(coordinates);
+        Future<MavenResolvedArtifact> future = artifacts.get(key);
+        if (future != null && future.isDone()) {
+            MavenResolvedArtifact info = getResolvedArtifact(future);
+            if (info != null && info.asFile() != null && info.asFile().exists())
+                return info;
+            artifacts.remove(key, future);
+        }
+        ResolutionTask task = new ResolutionTask(key, new Callable<MavenResolvedArtifact>() {
+            @Override
+            public MavenResolvedArtifact call() throws Exception {
+                return resolveArtifactUncached(coordinates);
+            }
+        });
+        future = artifacts.putIfAbsent(key, task);
+        if (future == null) {
+            future = task;
+            task.run();
+        }
+        return getResolvedArtifact(future);
+    }
+
+    /**
+     * Starts resolving the released artifact with the given coordinates in
+     * the background, unless it is already being or was already resolved
+     */
+    private void prefetchArtifact(final String coordinates, String version) {
+        if (!ModuleUtil.isReleasedVersion(version))
+            return;
+        String key = getCacheKey(coordinates);
+        if (artifacts.containsKey(key))
+            return;
+        ResolutionTask task = new ResolutionTask(key, new Callable<MavenResolvedArtifact>() {
+            @Override
+            public MavenResolvedArtifact call() throws Exception {
+                return resolveArtifactUncached(coordinates);
+            }
+        });
+        if (artifacts.putIfAbsent(key, task) == null)
+            getPrefetcher().execute(task);
+    }
+
+    private MavenResolvedArtifact resolveArtifactUncached(String coordinates) {
+        MavenResolverSystem resolver = borrowResolver();
+        final MavenStrategyStage mss = resolver.resolve(coordinates);
+        final MavenFormatStage mfs = mss.using(SCOPED_STRATEGY);
+        final MavenResolvedArtifact info = mfs.asSingleResolvedArtifact();
+        releaseResolver(resolver);
+        return info;
+    }
+
+    private static MavenResolvedArtifact getResolvedArtifact(Future<MavenResolvedArtifact> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RepositoryException(cause);
+        }
+    }
+
+    /**
+     * Resolves the given version range, only once per {@link #VERSION_RANGE_TTL}
+     * so that we don't miss versions published since
+     */
+    private List<MavenCoordinate> resolveVersionRange(String range) {
+        String key = getCacheKey(range);
+        long now = System.currentTimeMillis();
+        ResolvedVersionRange resolved = versionRanges.get(key);
+        if (resolved == null || now - resolved.time > VERSION_RANGE_TTL) {
+            MavenResolverSystem resolver = borrowResolver();
+            MavenVersionRangeResult resolveVersionRange = resolver.resolveVersionRange(range);
+            resolved = new ResolvedVersionRange(now,
+                    Collections.unmodifiableList(new ArrayList<>(resolveVersionRange.getVersions())));
+            releaseResolver(resolver);
+            versionRanges.put(key, resolved);
+        }
+        return resolved.versions;
+    }
+
+    private static class ResolvedVersionRange {
+        final long time;
+        final List<MavenCoordinate> versions;
+
+        ResolvedVersionRange(long time, List<MavenCoordinate> versions) {
+            this.time = time;
+            this.versions = versions;
+        }
+    }
+
+    private String getCacheKey(String coordinates) {
+        return settingsXml + "|" + offline + "|" + coordinates;
+    }
+
+    /**
+     * Returns an idle resolver system for our settings, which the caller
+     * should only give back with {@link #releaseResolver} if it was used
+     * successfully, since failed resolutions may leave state behind
+     */
+    private MavenResolverSystem borrowResolver() {
+        Queue<MavenResolverSystem> idle = resolvers.get(getCacheKey(""));
+        MavenResolverSystem resolver = idle != null ? idle.poll() : null;
+        return resolver != null ? resolver : newResolver();
+    }
+
+    private void releaseResolver(MavenResolverSystem resolver) {
+        String key = getCacheKey("");
+        Queue<MavenResolverSystem> idle = resolvers.get(key);
+        if (idle == null) {
+            Queue<MavenResolverSystem> newIdle = new ConcurrentLinkedQueue<>();
+            idle = resolvers.putIfAbsent(key, newIdle);
+            if (idle == null)
+                idle = newIdle;
+        }
+        idle.offer(resolver);
+    }
+
+    private static synchronized ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newFixedThreadPool(PREFETCH_THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ceylon-cmr-maven-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IOUtils.copyStream(stream, bytes, false, true);
+        return bytes.toByteArray();
+    }
+
+    private MavenResolverSystem newResolver() {
         ClassLoader classLoader = AetherUtils.class.getClassLoader();
         if (classLoader == null)
             classLoader = ClassLoader.getSystemClassLoader();
@@ -614,6 +802,30 @@ public class AetherUtils {
         }
     }
 
+    /**
+     * Forgets the resolution of an artifact if it failed or found nothing,
+     * so that the next lookup tries again
+     */
+    private static class ResolutionTask extends FutureTask<MavenResolvedArtifact> {
+        private final String key;
+
+        private ResolutionTask(String key, Callable<MavenResolvedArtifact> callable) {
+            super(callable);
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                if (get() != null)
+                    return;
+            } catch (InterruptedException | ExecutionException e) {
+                // forget it
+            }
+            artifacts.remove(key, this);
+        }
+    }
+
     private static abstract class MavenArtifactResult extends AbstractArtifactResult {
         private String repositoryDisplayString;
 
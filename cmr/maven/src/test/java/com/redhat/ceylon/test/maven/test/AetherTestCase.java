@@ -168,6 +168,29 @@ public class AetherTestCase extends AbstractAetherTest {
         }
     }
 
+    @Test
+    public void testAetherResolutionCache() throws Throwable {
+        // two repositories with the same settings share what they resolved
+        RepositoryManager first = new SimpleRepositoryManager(createAetherRepository(), log);
+        RepositoryManager second = new SimpleRepositoryManager(createAetherRepository(), log);
+        ArtifactResult result = first.getArtifactResult("org.osgi:org.osgi.core", "4.0.0");
+        Assert.assertNotNull(result);
+        File artifact = result.artifact();
+        Assert.assertNotNull(artifact);
+        Assert.assertTrue(artifact.exists());
+        Assert.assertTrue(result.dependencies().isEmpty());
+        for (int i = 0; i < 3; i++) {
+            ArtifactResult again = second.getArtifactResult("org.osgi:org.osgi.core", "4.0.0");
+            Assert.assertNotNull(again);
+            Assert.assertEquals(result.name(), again.name());
+            Assert.assertEquals(result.version(), again.version());
+            Assert.assertEquals(artifact, again.artifact());
+            Assert.assertTrue(again.dependencies().isEmpty());
+        }
+        // unknown artifacts are not remembered as such
+        Assert.assertNull(first.getArtifactResult("org.osgi:org.osgi.missing", "4.0.0"));
+    }
+
     private String getOverridesFileName() throws URISyntaxException{
         URL overridessURL = getClass().getClassLoader().getResource("maven-settings/overrides.xml");
         return new File(overridessURL.toURI()).getPath();
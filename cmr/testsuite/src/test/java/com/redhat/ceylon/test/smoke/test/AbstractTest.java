@@ -69,7 +69,7 @@ public class AbstractTest {
 
     protected Logger log = new CMRJULLogger();
 
-    private Path temp;
+    protected Path temp;
 
     protected static final ModuleDependencyInfo IGNORE_DEPS = new ModuleDependencyInfo("$", "$", false, false);
     
@@ -23,13 +23,27 @@ import static org.junit.Assert.assertFalse;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.Set;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -37,9 +51,12 @@ import org.junit.Test;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.CmrRepository;
+import com.redhat.ceylon.cmr.api.ConcurrentArtifactLookup;
 import com.redhat.ceylon.cmr.api.DebianVersionComparator;
+import com.redhat.ceylon.cmr.api.DependencyResolvers;
 import com.redhat.ceylon.cmr.api.MavenVersionComparator;
 import com.redhat.ceylon.cmr.api.ModuleDependencyInfo;
+import com.redhat.ceylon.cmr.api.ModuleInfo;
 import com.redhat.ceylon.cmr.api.ModuleQuery;
 import com.redhat.ceylon.cmr.api.ModuleQuery.Retrieval;
 import com.redhat.ceylon.cmr.api.ModuleQuery.Type;
@@ -51,10 +68,17 @@ import com.redhat.ceylon.cmr.api.Overrides;
 import com.redhat.ceylon.cmr.api.RepositoryBuilder;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.cmr.api.RepositoryManagerBuilder;
+import com.redhat.ceylon.cmr.impl.BytecodeUtils;
+import com.redhat.ceylon.cmr.impl.Configuration;
 import com.redhat.ceylon.cmr.impl.DefaultRepository;
+import com.redhat.ceylon.cmr.impl.IOUtils;
 import com.redhat.ceylon.cmr.impl.JDKRepository;
+import com.redhat.ceylon.cmr.impl.JSUtils;
+import com.redhat.ceylon.cmr.impl.LookupIndex;
 import com.redhat.ceylon.cmr.impl.MavenRepositoryHelper;
+import com.redhat.ceylon.cmr.impl.ModuleInfoIndex;
 import com.redhat.ceylon.cmr.impl.RemoteContentStore;
+import com.redhat.ceylon.cmr.impl.ResolutionCache;
 import com.redhat.ceylon.cmr.impl.SimpleRepositoryManager;
 import com.redhat.ceylon.cmr.spi.OpenNode;
 import com.redhat.ceylon.common.Constants;
@@ -62,6 +86,9 @@ import com.redhat.ceylon.common.Versions;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.cmr.ImportType;
 import com.redhat.ceylon.test.smoke.support.InMemoryContentStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
@@ -121,6 +148,106 @@ public class SmokeTestCase extends AbstractTest {
         Assert.assertEquals("Expected two artifacts for 'ceylon.json-1.0.0'", 2, json2.size());
     }
 
+    @Test
+    public void testGetBatch() throws Exception {
+        RepositoryManager manager = getRepositoryManager();
+
+        List<ArtifactContext> contexts = new ArrayList<>();
+        contexts.add(new ArtifactContext("org.jboss.acme", "1.0.0.Final", ArtifactContext.CAR));
+        contexts.add(new ArtifactContext("hello", "1.0.0", ArtifactContext.CAR));
+        contexts.add(new ArtifactContext("com.redhat.missing", "1.0.0", ArtifactContext.CAR));
+        contexts.add(new ArtifactContext("hello", "1.2.1", ArtifactContext.CAR));
+        contexts.add(new ArtifactContext("test-jar", "0.1", ArtifactContext.CAR, ArtifactContext.JAR));
+        contexts.add(new ArtifactContext("org.jboss.acme", "1.0.0.Final", ArtifactContext.CAR));
+        List<Future<ArtifactResult>> results = ConcurrentArtifactLookup.lookUpArtifactResults(manager, contexts);
+        Assert.assertEquals(contexts.size(), results.size());
+        Assert.assertNull("Module 'com.redhat.missing-1.0.0' found", ConcurrentArtifactLookup.getArtifactResult(results.get(2)));
+        for (int i : new int[]{0, 1, 3, 4, 5}) {
+            ArtifactContext context = contexts.get(i);
+            ArtifactResult result = ConcurrentArtifactLookup.getArtifactResult(results.get(i));
+            Assert.assertNotNull("Module '" + context + "' not found", result);
+            Assert.assertEquals(context.getName(), result.name());
+            Assert.assertEquals(context.getVersion(), result.version());
+            Assert.assertEquals(manager.getArtifact(context), result.artifact());
+        }
+    }
+
+    @Test
+    public void testLookupIndex() throws Exception {
+        File folder = temp.toFile();
+        LookupIndex index = LookupIndex.get(folder, "http://example.com/repo");
+        Assert.assertSame(index, LookupIndex.get(folder, "http://example.com/repo"));
+        Assert.assertNotSame(index, LookupIndex.get(folder, "http://example.com/other"));
+
+        String missing = LookupIndex.getKey(new ArtifactContext("com.acme.missing", "1.0.0", ArtifactContext.CAR, ArtifactContext.JAR));
+        String released = LookupIndex.getKey(new ArtifactContext("com.acme.found", "1.0.0", ArtifactContext.CAR));
+        String snapshot = LookupIndex.getKey(new ArtifactContext("com.acme.found", "1.1.0-SNAPSHOT", ArtifactContext.CAR));
+        String range = LookupIndex.getKey(new ArtifactContext("com.acme.found", "[1.0,)", ArtifactContext.CAR));
+        String latest = LookupIndex.getKey(new ArtifactContext("com.acme.found", "LATEST", ArtifactContext.CAR));
+        Assert.assertFalse(index.isMissing(missing));
+        index.record(missing, false);
+        index.record(released, true);
+        index.record(snapshot, true);
+        index.record(range, true);
+        index.record(latest, true);
+        Assert.assertTrue(index.isMissing(missing));
+        Assert.assertFalse(index.isMissing(released));
+        Assert.assertTrue(index.isFound(released, "1.0.0"));
+        Assert.assertFalse(index.isFound(snapshot, "1.1.0-SNAPSHOT"));
+        Assert.assertFalse(index.isFound(range, "[1.0,)"));
+        Assert.assertFalse(index.isFound(latest, "LATEST"));
+        Assert.assertFalse(index.isFound(missing, "1.0.0"));
+
+        index.forget("com.acme.missing", "1.0.0");
+        Assert.assertFalse(index.isMissing(missing));
+        Assert.assertTrue(index.isFound(released, "1.0.0"));
+
+        // another index of the same repository forgets it too
+        File otherFolder = new File(folder, "other");
+        LookupIndex other = LookupIndex.get(otherFolder, "http://example.com/repo");
+        other.record(released, true);
+        LookupIndex.forgetEverywhere("http://example.com/repo", "com.acme.found", "1.0.0");
+        Assert.assertFalse(index.isFound(released, "1.0.0"));
+        Assert.assertFalse(other.isFound(released, "1.0.0"));
+
+        File[] files = new File(folder, ".lookup-index").listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(1, files.length);
+    }
+
+    @Test
+    public void testLookupIndexOnlyRemembersNotFound() throws Exception {
+        // a repository that doesn't have com.acme.missing, and fails to tell for com.acme.broken
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean broken = exchange.getRequestURI().getPath().contains("/com/acme/broken/");
+                exchange.sendResponseHeaders(broken ? 503 : 404, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String repoURL = "http://localhost:" + server.getAddress().getPort() + "/repo";
+            RepositoryManagerBuilder builder = getRepositoryManagerBuilder(false, 20000, java.net.Proxy.NO_PROXY);
+            RemoteContentStore rcs = new RemoteContentStore(repoURL, log, false, 20000, java.net.Proxy.NO_PROXY);
+            CmrRepository repo = new DefaultRepository(rcs.createRoot());
+            RepositoryManager manager = builder.addRepository(repo).buildRepository();
+
+            ArtifactContext missing = new ArtifactContext("com.acme.missing", "1.0.0", ArtifactContext.CAR);
+            ArtifactContext broken = new ArtifactContext("com.acme.broken", "1.0.0", ArtifactContext.CAR);
+            Assert.assertNull(manager.getArtifactResult(missing));
+            Assert.assertNull(manager.getArtifactResult(broken));
+
+            LookupIndex index = LookupIndex.get(temp.toFile(), repo.getDisplayString());
+            Assert.assertTrue(index.isMissing(LookupIndex.getKey(missing)));
+            Assert.assertFalse(index.isMissing(LookupIndex.getKey(broken)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     public void testPut() throws Exception {
         RepositoryManager manager = getRepositoryManager();
@@ -938,6 +1065,136 @@ public class SmokeTestCase extends AbstractTest {
         testSearchResultsMember("", Type.JVM, "com.acme", true, true, expected2);
     }
 
+    @Test
+    public void testMembersOfLargeArchive() throws Exception {
+        File car = new File(getRepositoryRoot(), "com/acme/helloworld/1.0.0/com.acme.helloworld-1.0.0.car");
+        Set<String> expected = new HashSet<>(Arrays.asList("com.acme.helloworld::hello", "com.acme.helloworld::run"));
+        ModuleVersionDetails details = BytecodeUtils.INSTANCE.readModuleInfo("com.acme.helloworld", "1.0.0", car, true, null);
+        assertEquals(expected, details.getMembers());
+
+        // enough copies of the classes to list them on several threads
+        File large = new File(temp.toFile(), "com.acme.helloworld-1.0.0.car");
+        try (ZipFile zip = new ZipFile(car);
+                ZipOutputStream out = new ZipOutputStream(new FileOutputStream(large))) {
+            for (int i = 0; i < 1000; i++) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    out.putNextEntry(new ZipEntry(i == 0 ? entry.getName() : "copy" + i + "/" + entry.getName()));
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        IOUtils.copyStream(in, out, false, false);
+                    }
+                    out.closeEntry();
+                }
+            }
+        }
+        details = BytecodeUtils.INSTANCE.readModuleInfo("com.acme.helloworld", "1.0.0", large, true, null);
+        assertEquals(expected, details.getMembers());
+    }
+
+    @Test
+    public void testModuleInfoIndex() throws Exception {
+        File repo = new File(temp.toFile(), "repo");
+        File car = new File(repo, "com/acme/helloworld/1.0.0/com.acme.helloworld-1.0.0.car");
+        car.getParentFile().mkdirs();
+        Files.copy(new File(getRepositoryRoot(), "com/acme/helloworld/1.0.0/com.acme.helloworld-1.0.0.car").toPath(), car.toPath());
+        ModuleVersionDetails expected = BytecodeUtils.INSTANCE.readModuleInfo("com.acme.helloworld", "1.0.0", car, true, null);
+
+        ModuleInfoIndex index = ModuleInfoIndex.get(new File(temp.toFile(), "index"), repo);
+        ModuleVersionDetails details = index.readModuleInfo(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car, true, null);
+        assertEquals(expected.getDoc(), details.getDoc());
+        assertEquals(expected.getLicense(), details.getLicense());
+        assertEquals(expected.getAuthors(), details.getAuthors());
+        assertEquals(expected.getDependencies(), details.getDependencies());
+        assertEquals(expected.getArtifactTypes(), details.getArtifactTypes());
+        assertEquals(expected.getMembers(), details.getMembers());
+        Assert.assertArrayEquals(BytecodeUtils.INSTANCE.getBinaryVersions("com.acme.helloworld", "1.0.0", car),
+                index.getBinaryVersions(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car));
+        Assert.assertTrue(index.matchesModuleInfo(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car, "epardaud", null));
+        Assert.assertFalse(index.matchesModuleInfo(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car, "nothing", null));
+
+        // the index does not read the archive again while it has the same size and time
+        long lastModified = car.lastModified();
+        Files.write(car.toPath(), new byte[(int) car.length()]);
+        car.setLastModified(lastModified);
+        details = index.readModuleInfo(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car, true, null);
+        assertEquals(expected.getMembers(), details.getMembers());
+
+        // but does once it changes
+        car.setLastModified(lastModified + 10000);
+        try {
+            index.readModuleInfo(BytecodeUtils.INSTANCE, "com.acme.helloworld", "1.0.0", car, false, null);
+            Assert.fail("Expected the broken archive to be read");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testModuleInfoIndexOfJsModel() throws Exception {
+        File repo = new File(temp.toFile(), "repo");
+        File js = new File(repo, "hello/1.2.1/hello-1.2.1.js");
+        File model = new File(repo, "hello/1.2.1/hello-1.2.1-model.js");
+        js.getParentFile().mkdirs();
+        Files.copy(new File(getRepositoryRoot(), "hello/1.2.1/hello-1.2.1.js").toPath(), js.toPath());
+        Files.copy(new File(getRepositoryRoot(), "hello/1.2.1/hello-1.2.1-model.js").toPath(), model.toPath());
+
+        ModuleInfoIndex index = ModuleInfoIndex.get(new File(temp.toFile(), "index"), repo);
+        ModuleVersionDetails details = index.readModuleInfo(JSUtils.INSTANCE, "hello", "1.2.1", js, false, null);
+        assertEquals("1.2.1", details.getDependencies().iterator().next().getVersion());
+
+        // the module info is read from the model file, so changing it alone is noticed
+        long lastModified = model.lastModified();
+        String contents = new String(Files.readAllBytes(model.toPath()), "UTF-8");
+        Files.write(model.toPath(), contents.replace("ceylon.language\\/1.2.1", "ceylon.language\\/1.2.0").getBytes("UTF-8"));
+        model.setLastModified(lastModified + 10000);
+        details = index.readModuleInfo(JSUtils.INSTANCE, "hello", "1.2.1", js, false, null);
+        assertEquals("1.2.0", details.getDependencies().iterator().next().getVersion());
+    }
+
+    @Test
+    public void testResolutionCache() throws Exception {
+        File repo = new File(temp.toFile(), "repo");
+        File car = new File(repo, "moduletest/0.1/moduletest-0.1.car");
+        car.getParentFile().mkdirs();
+        Files.copy(new File(getRepositoryRoot(), "moduletest/0.1/moduletest-0.1.car").toPath(), car.toPath());
+        RepositoryManager manager = getRepositoryManagerBuilder(repo, true, 20000, java.net.Proxy.NO_PROXY).buildRepository();
+        ArtifactResult result = manager.getArtifactResult(new ArtifactContext("moduletest", "0.1", ArtifactContext.CAR));
+        Assert.assertNotNull(result);
+        DependencyResolvers resolvers = Configuration.getResolvers(manager);
+        Overrides overrides = RepositoryManagerBuilder.parseOverrides("testsuite/src/test/resources/overrides.xml");
+        ModuleInfo expected = resolvers.resolve(result, null);
+        ModuleInfo expectedWithOverrides = resolvers.resolve(result, overrides);
+        Assert.assertEquals(1, expected.getDependencies().size());
+        Assert.assertEquals(0, expectedWithOverrides.getDependencies().size());
+
+        ResolutionCache cache = ResolutionCache.get(new File(temp.toFile(), "cache"));
+        assertEquals(expected, cache.resolve(result, resolvers, null));
+        // we cache what we resolve without overrides, and apply them when asked
+        assertEquals(expectedWithOverrides, cache.resolve(result, resolvers, overrides));
+        assertEquals(expected, cache.resolve(result, resolvers, null));
+
+        // the cache does not read the artifact again while it has the same size and time
+        long lastModified = car.lastModified();
+        Files.write(car.toPath(), new byte[(int) car.length()]);
+        car.setLastModified(lastModified);
+        assertEquals(expected, cache.resolve(result, resolvers, null));
+
+        // but does once it changes
+        car.setLastModified(lastModified + 10000);
+        try {
+            cache.resolve(result, resolvers, null);
+            Assert.fail("Expected the broken artifact to be read");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // and knows it once it has the same contents again, wherever it is
+        Files.copy(new File(getRepositoryRoot(), "moduletest/0.1/moduletest-0.1.car").toPath(), car.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(expected, cache.resolve(result, resolvers, null));
+    }
+
     @Test
     public void testSearchModulesFilteredByDocLicenseAndAuthor() throws Exception {
         ModuleDetails[] expected = new ModuleDetails[]{
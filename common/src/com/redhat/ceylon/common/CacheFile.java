@@ -0,0 +1,251 @@
+package com.redhat.ceylon.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+/**
+ * File of records that the tools append to, to remember what they found
+ * out between runs, and that the caches which own them read back when they
+ * start.
+ * <p>
+ * The file starts with the version of its format, and each record is
+ * prefixed with its length and written at once, so that we can skip those
+ * that were only partly written by a process that died. The last record
+ * for a key usually wins, so the file grows with records nobody reads
+ * anymore, and its cache rewrites it with only its current entries once
+ * there are too many of them.
+ * <p>
+ * Since these files are only caches, errors are never reported: we keep
+ * what we could read, and do without what we could not write.
+ */
+public final class CacheFile {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Reads the records of a cache file, as written by a {@link RecordWriter}
+     */
+    public interface RecordReader {
+        void read(DataInputStream data) throws IOException;
+    }
+
+    /**
+     * Writes a record to a cache file
+     */
+    public interface RecordWriter {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    private final File file;
+    private final int version;
+
+    /**
+     * @param file    the cache file, which need not exist
+     * @param version the version of the format of its records, files of
+     *                other versions are deleted when we read them
+     */
+    public CacheFile(File file, int version) {
+        this.file = file;
+        this.version = version;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads every record of the file, until one of them can't be read
+     *
+     * @return the number of records we read, or -1 if some of them could
+     * not be read, in which case the file should be rewritten
+     */
+    public synchronized int load(RecordReader reader) {
+        if (!file.isFile())
+            return 0;
+        int records = 0;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != version) {
+                    // written by another version, start again
+                    in.close();
+                    FileUtil.delete(file);
+                    return 0;
+                }
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length < 0 || length > in.available())
+                        throw new IOException("Invalid record length " + length);
+                    byte[] record = new byte[length];
+                    in.readFully(record);
+                    records++;
+                    reader.read(new DataInputStream(new ByteArrayInputStream(record)));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // keep what we could read
+            return -1;
+        } catch (RuntimeException e) {
+            // keep what we could read
+            return -1;
+        }
+        return records;
+    }
+
+    /**
+     * Appends the given record to the file
+     */
+    public synchronized void append(RecordWriter record) {
+        try {
+            FileUtil.mkdirs(file.getParentFile());
+            OutputStream out = new FileOutputStream(file, true);
+            try {
+                if (file.length() == 0)
+                    new DataOutputStream(out).writeInt(version);
+                writeRecord(out, record);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // do without it
+        } catch (RuntimeException e) {
+            // do without it
+        }
+    }
+
+    /**
+     * Replaces the file with one that only has the given records
+     */
+    public synchronized void rewrite(Collection<? extends RecordWriter> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(out).writeInt(version);
+            for (RecordWriter record : records) {
+                writeRecord(out, record);
+            }
+        } catch (IOException e) {
+            // can't happen in memory
+            return;
+        }
+        replace(file, out.toByteArray(), out.size());
+    }
+
+    private static void writeRecord(OutputStream out, RecordWriter record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        record.write(data);
+        data.flush();
+        ByteArrayOutputStream prefixed = new ByteArrayOutputStream(bytes.size() + 4);
+        new DataOutputStream(prefixed).writeInt(bytes.size());
+        bytes.writeTo(prefixed);
+        prefixed.writeTo(out);
+    }
+
+    /**
+     * Replaces the given file with the given contents, so that other
+     * processes see either the old or the new file, but never part of it
+     *
+     * @return true if the file now has the given contents
+     */
+    public static boolean replace(File file, byte[] contents, int length) {
+        File tmp = new File(file.getPath() + ".tmp" + System.nanoTime());
+        try {
+            FileUtil.mkdirs(file.getParentFile());
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(contents, 0, length);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                FileUtil.delete(file);
+                if (!tmp.renameTo(file))
+                    return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            FileUtil.deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Writes the given string, which may be null or longer than what
+     * {@link DataOutputStream#writeUTF(String)} supports
+     */
+    public static void writeString(DataOutputStream data, String string) throws IOException {
+        if (string == null) {
+            data.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(UTF8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}
+     */
+    public static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length == -1)
+            return null;
+        if (length < 0 || length > data.available())
+            throw new IOException("Invalid string length " + length);
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Returns the hexadecimal SHA-1 of the given string, to name the cache
+     * file of a repository, jar or configuration after it
+     */
+    public static String sha1(String string) {
+        return sha1(string.getBytes(UTF8));
+    }
+
+    /**
+     * Returns the hexadecimal SHA-1 of the given bytes
+     */
+    public static String sha1(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // can't happen, specs say SHA-1 must be implemented
+            throw new RuntimeException(e);
+        }
+        byte[] hash = digest.digest(bytes);
+        char[] ret = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            ret[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            ret[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(ret);
+    }
+}
@@ -94,4 +94,19 @@ public abstract class ModuleUtil {
     public static boolean isMavenModule(String name){
         return name != null && name.indexOf(':') != -1;
     }
+
+    /**
+     * Returns true if the given version denotes a single release, which
+     * never changes once published, as opposed to a snapshot, a version
+     * range or a symbolic version such as LATEST or RELEASE
+     */
+    public static boolean isReleasedVersion(String version) {
+        return version != null
+                && !version.endsWith("SNAPSHOT")
+                && !version.startsWith("[")
+                && !version.startsWith("(")
+                && version.indexOf(',') == -1
+                && !version.equals("LATEST")
+                && !version.equals("RELEASE");
+    }
 }
@@ -153,6 +153,15 @@ public class StatusPrinter {
         log(capturedLine);
     }
 
+    public String getCapturedLine(){
+        return capturedLine;
+    }
+
+    public void logLine(String line){
+        clearLine();
+        log(line);
+    }
+
     public static boolean canPrint() {
         return System.console() != null;
     }
@@ -31,6 +31,7 @@ public class DefaultToolOptions {
     public final static String COMPILER_NOPOM = "compiler.nopom";
     public final static String COMPILER_GENERATE_MODULE_INFO = "compiler.generatemoduleinfo";
     public final static String COMPILER_PACK200 = "compiler.pack200";
+    public final static String COMPILER_JOBS = "compiler.jobs";
     
     public final static String RUNTOOL_COMPILE = "runtool.compile";
     public final static String TESTTOOL_COMPILE = "testtool.compile";
@@ -233,6 +234,14 @@ public class DefaultToolOptions {
         return config.getBoolOption(COMPILER_PACK200, false);
     }
     
+    public static int getCompilerJobs() {
+        return getCompilerJobs(CeylonConfig.get());
+    }
+    
+    public static int getCompilerJobs(CeylonConfig config) {
+        return (int)config.getNumberOption(COMPILER_JOBS, 1);
+    }
+    
     public static String getRunToolCompileFlags() {
         return getRunToolCompileFlags(CeylonConfig.get());
     }
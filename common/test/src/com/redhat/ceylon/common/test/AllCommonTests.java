@@ -7,6 +7,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class) 
 @SuiteClasses({
     ConfigSuite.class,
+    CacheFileTest.class,
 })
 public class AllCommonTests {
 }
@@ -0,0 +1,111 @@
+package com.redhat.ceylon.common.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.FileUtil;
+
+public class CacheFileTest {
+
+    private File tmp;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = File.createTempFile("cache-file", "");
+        tmp.delete();
+        tmp.mkdirs();
+        file = new File(new File(tmp, "folder"), "cache");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(tmp);
+    }
+
+    private static class StringRecord implements CacheFile.RecordWriter {
+        final String string;
+
+        StringRecord(String string) {
+            this.string = string;
+        }
+
+        @Override
+        public void write(DataOutputStream data) throws IOException {
+            CacheFile.writeString(data, string);
+        }
+    }
+
+    private static List<String> load(CacheFile cache, int expectedRecords) {
+        final List<String> strings = new ArrayList<String>();
+        int records = cache.load(new CacheFile.RecordReader() {
+            @Override
+            public void read(DataInputStream data) throws IOException {
+                strings.add(CacheFile.readString(data));
+            }
+        });
+        Assert.assertEquals(expectedRecords, records);
+        return strings;
+    }
+
+    @Test
+    public void testAppend() {
+        CacheFile cache = new CacheFile(file, 1);
+        Assert.assertTrue(load(cache, 0).isEmpty());
+        cache.append(new StringRecord("a"));
+        cache.append(new StringRecord(null));
+        cache.append(new StringRecord("été"));
+        Assert.assertEquals(Arrays.asList("a", null, "été"), load(new CacheFile(file, 1), 3));
+    }
+
+    @Test
+    public void testRewrite() {
+        CacheFile cache = new CacheFile(file, 1);
+        cache.append(new StringRecord("a"));
+        cache.append(new StringRecord("b"));
+        cache.rewrite(Arrays.asList(new StringRecord[] { new StringRecord("c") }));
+        Assert.assertEquals(Arrays.asList("c"), load(cache, 1));
+        Assert.assertEquals(1, tmp.listFiles().length);
+        Assert.assertEquals(1, file.getParentFile().listFiles().length);
+    }
+
+    @Test
+    public void testOtherVersion() {
+        new CacheFile(file, 1).append(new StringRecord("a"));
+        Assert.assertTrue(load(new CacheFile(file, 2), 0).isEmpty());
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testPartialRecord() throws IOException {
+        CacheFile cache = new CacheFile(file, 1);
+        cache.append(new StringRecord("a"));
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true));
+        try {
+            // the length of a record we never finished writing
+            out.writeInt(100);
+            out.writeInt(1);
+        } finally {
+            out.close();
+        }
+        Assert.assertEquals(Arrays.asList("a"), load(cache, -1));
+    }
+
+    @Test
+    public void testSha1() {
+        Assert.assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", CacheFile.sha1(""));
+        Assert.assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", CacheFile.sha1("abc"));
+    }
+}
@@ -492,6 +492,9 @@ public enum Option {
     CEYLONTIMEOUT("-timeout", "opt.arg.number",       "opt.ceylontimeout", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONCONTINUE("-continue", "opt.ceyloncontinue", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONPROGRESS("-progress", "opt.ceylonprogress", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONJOBS("-jobs", "opt.arg.number", "opt.ceylonjobs", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONINCREMENTAL("-incremental", "opt.ceylonincremental", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONPROFILE("-profile-report", "opt.arg.file", "opt.ceylonprofile", OptionKind.STANDARD, OptionGroup.CEYLON),
     // Backwards-compat
     CEYLONMAVENOVERRIDES("-maven-overrides", "opt.arg.url",        "opt.ceylonoverrides", OptionKind.STANDARD, OptionGroup.CEYLON) {
             @Override
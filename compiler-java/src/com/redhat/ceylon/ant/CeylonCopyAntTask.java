@@ -51,6 +51,7 @@ public class CeylonCopyAntTask extends OutputRepoUsingCeylonAntTask {
     private Boolean src;
     private Boolean scripts;
     private Boolean all;
+    private Integer jobs;
     
     public CeylonCopyAntTask() {
         super("copy");
@@ -131,6 +132,14 @@ public class CeylonCopyAntTask extends OutputRepoUsingCeylonAntTask {
         this.all = all;
     }
 
+    /**
+     * The number of modules to copy at the same time (defaults: 1)
+     */
+    @OptionEquivalent
+    public void setJobs(Integer jobs) {
+        this.jobs = jobs;
+    }
+
 
     /**
      * Check that all required attributes have been set and nothing silly has
@@ -183,6 +192,10 @@ public class CeylonCopyAntTask extends OutputRepoUsingCeylonAntTask {
             appendOption(cmd, "--all");
         }
 
+        if (jobs != null) {
+            appendOptionArgument(cmd, "--jobs", jobs.toString());
+        }
+
         for (Module module : moduleSet.getModules()) {
             log("Adding module: "+module, Project.MSG_VERBOSE);
             cmd.createArgument().setValue(module.toVersionedSpec());
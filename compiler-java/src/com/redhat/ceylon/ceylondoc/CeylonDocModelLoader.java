@@ -105,6 +105,13 @@ public class CeylonDocModelLoader extends ReflectionModelLoader {
         }
     }
 
+    /**
+     * Closes the jar files we opened to load classes
+     */
+    public void close() {
+        classLoader.close();
+    }
+
     @Override
     protected List<String> getPackageList(Module module, String packageName) {
         return classLoader.getPackageList(module, packageName);
@@ -613,6 +613,10 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             makeDoc();
         } finally {
             FileUtil.deleteQuietly(tempDestDir);
+            if (typeChecker != null) {
+                ModuleManager moduleManager = typeChecker.getPhasedUnits().getModuleManager();
+                ((CeylonDocModelLoader) ((CeylonDocModuleManager) moduleManager).getModelLoader()).close();
+            }
         }
     }
     
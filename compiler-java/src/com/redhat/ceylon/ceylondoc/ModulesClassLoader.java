@@ -53,6 +53,14 @@ class ModulesClassLoader extends ClassLoader {
         jars.addJar(artifact, module, skipContents);
     }
 
+    /**
+     * Closes the jar files we opened, which are opened again if we need
+     * to load more classes from them
+     */
+    public void close() {
+        jars.close();
+    }
+
     public boolean packageExists(Module module, String name) {
         String moduleName = module.getNameAsString();
         if(jdkProvider.isJDKModule(moduleName)){
@@ -21,6 +21,7 @@ package com.redhat.ceylon.compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
@@ -51,6 +52,7 @@ import com.redhat.ceylon.common.tools.CeylonTool;
 import com.redhat.ceylon.common.ModuleSpec;
 import com.redhat.ceylon.common.tools.ModuleWildcardsHelper;
 import com.redhat.ceylon.common.tools.SourceArgumentsResolver;
+import com.redhat.ceylon.compiler.java.launcher.CompileServer;
 import com.redhat.ceylon.compiler.java.launcher.Main;
 import com.redhat.ceylon.compiler.java.launcher.Main.ExitState.CeylonState;
 import com.redhat.ceylon.compiler.typechecker.analyzer.Warning;
@@ -187,6 +189,7 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
     private List<String> modulesOrFiles = Arrays.asList("*");
     private boolean continueOnErrors;
     private boolean progress;
+    private boolean incremental;
     private List<String> javac = Collections.emptyList();
     private String encoding;
     private String resourceRoot = DefaultToolOptions.getCompilerResourceRootName();
@@ -194,6 +197,9 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
     private String osgiProvidedBundles = DefaultToolOptions.getCompilerOsgiProvidedBundles();
     private boolean noPom = DefaultToolOptions.getCompilerNoPom();
     private boolean pack200 = DefaultToolOptions.getCompilerPack200();
+    private int jobs = DefaultToolOptions.getCompilerJobs();
+    private Integer server;
+    private File profile;
     private EnumSet<Warning> suppressWarnings = EnumUtil.enumsFromStrings(Warning.class, DefaultToolOptions.getCompilerSuppressWarnings());
     private boolean flatClasspath;
     private boolean autoExportMavenDependencies;
@@ -307,6 +313,41 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         this.progress = progress;
     }
 
+    @Option(longName="incremental")
+    @Description("Only compile the source files of the given modules that changed since " +
+            "their last incremental compilation, along with the source files that depend on " +
+            "them, and keep the rest of the existing module archives. " +
+            "The first incremental compilation of a module compiles all of it.")
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    @OptionArgument(longName="jobs", argumentName="number")
+    @Description("Number of threads used to parse the source files and to run the independent " +
+            "preparation phases of the Java backend over the source units. Diagnostics are " +
+            "still reported in unit order." +
+            " (default: 1)")
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
+    @OptionArgument(longName="server", argumentName="port")
+    @Description("Sends the compilation to the compile server listening on the given " +
+            "local port, started with `ceylon compile-server`, instead of compiling " +
+            "in this process. Note that `--javac` options with relative paths are " +
+            "resolved against the working directory of the server.")
+    public void setServer(int server) {
+        this.server = server;
+    }
+
+    @OptionArgument(longName="profile", argumentName="file")
+    @Description("Writes a JSON report of the wall time, CPU time and memory allocated " +
+            "by each phase of the compilation, with the slowest source files of each " +
+            "phase, to the given file.")
+    public void setProfile(File profile) {
+        this.profile = profile;
+    }
+
     @OptionArgument(shortName='E', argumentName="encoding")
     @Description("Sets the encoding used for reading source files" +
             "(default: platform-specific).")
@@ -426,6 +467,28 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
             arguments.add("-progress");
         }
 
+        if (incremental) {
+            arguments.add("-incremental");
+        }
+
+        if (profile != null) {
+            arguments.add("-profile-report");
+            arguments.add(applyCwd(profile).getAbsolutePath());
+        }
+
+        if (jobs < 1) {
+            throw new IllegalArgumentException("Invalid number of jobs: " + jobs);
+        }
+        if (jobs > 1) {
+            arguments.add("-jobs");
+            arguments.add(String.valueOf(jobs));
+        }
+
+        if (server != null 
+                && (server < 1 || server > 65535)) {
+            throw new IllegalArgumentException("Invalid server port: " + server);
+        }
+
         if (offline) {
             arguments.add("-offline");
         }
@@ -586,10 +649,29 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
      */
     @Override
     public void run() throws IOException {
+        if (server != null) {
+            runOnServer();
+            return;
+        }
         Result result = compiler.compile(arguments.toArray(new String[arguments.size()]));
         handleExitCode(result.exitCode, compiler.exitState);
     }
 
+    private void runOnServer() throws IOException {
+        List<String> args = new ArrayList<>(arguments.size() + 2);
+        if (cwd == null) {
+            // resolve our relative paths against our own directory, not the server's
+            args.add("-cwd");
+            args.add(new File("").getAbsolutePath());
+        }
+        args.addAll(arguments);
+        PrintWriter out = new PrintWriter(System.err, true);
+        Main.ExitState exitState = CompileServer.compile(server, 
+                args.toArray(new String[args.size()]), out);
+        out.flush();
+        handleExitCode(exitState.javacExitCode.exitCode, exitState);
+    }
+
     private void handleExitCode(
             int javacExitCode,
             Main.ExitState exitState) {
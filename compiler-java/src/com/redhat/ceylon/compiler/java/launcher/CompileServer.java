@@ -0,0 +1,378 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.redhat.ceylon.compiler.java.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.tools.JavaFileManager;
+
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.common.config.Repositories;
+import com.redhat.ceylon.compiler.java.launcher.Main.ExitState;
+import com.redhat.ceylon.compiler.java.launcher.Main.ExitState.CeylonState;
+import com.redhat.ceylon.compiler.java.tools.CeylonLog;
+import com.redhat.ceylon.compiler.java.tools.CeyloncFileManager;
+import com.redhat.ceylon.langtools.tools.javac.file.JavacFileManager;
+import com.redhat.ceylon.langtools.tools.javac.file.ZipFileIndexCache;
+import com.redhat.ceylon.langtools.tools.javac.main.Main.Result;
+import com.redhat.ceylon.langtools.tools.javac.util.Context;
+
+/**
+ * A compile server keeps the compiler loaded and warmed up between
+ * compilations, and runs the compilations sent to it by
+ * {@link #compile(int, String[], Writer)} (that is, by
+ * {@code ceylon compile --server}) over a socket bound to the
+ * loopback interface.
+ * <p>
+ * Compilations run one at a time, each with its own javac
+ * {@link Context}: the Ceylon model loaded for a compilation is
+ * part of the javac symbol table, so it can't be reused by the next
+ * one. What is reused, besides the JVM itself, is the index of every
+ * module archive read by earlier compilations. An archive is indexed
+ * again when its time stamp changes, and its index is dropped when no
+ * compilation used it for {@link #IDLE_ARCHIVE_TIME} milliseconds.
+ * <p>
+ * The arguments are those of the compiler, so relative paths are
+ * resolved against the working directory of the server, unless
+ * given with {@code -cwd}.
+ * <p>
+ * Any local process can connect to the server, so it only accepts
+ * clients that send the random token it writes to a file only its
+ * user can read, in the {@code .compile-server} folder of the cache
+ * repository.
+ */
+public class CompileServer implements Closeable {
+
+    private static final int PROTOCOL_VERSION = 2;
+
+    private static final byte OUTPUT = 'O';
+    private static final byte EXIT = 'X';
+    private static final byte REFUSED = 'R';
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final long IDLE_ARCHIVE_TIME = 10 * 60 * 1000;
+
+    private static final String TOKEN_FOLDER = ".compile-server";
+
+    private final ServerSocket serverSocket;
+
+    private final File tokenFile;
+
+    private final byte[] token;
+
+    private final ZipFileIndexCache archiveCache = new ZipFileIndexCache();
+
+    /**
+     * Listen on the given port of the loopback interface, or on any
+     * free port if {@code port} is 0.
+     */
+    public CompileServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        token = toHex(random).getBytes(UTF8);
+        tokenFile = getTokenFile(getPort());
+        try {
+            writeToken(tokenFile, token);
+            // in case we're killed before we're closed
+            tokenFile.deleteOnExit();
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Run compilations until this server is {@link #close() closed}.
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                handle(socket);
+            } catch (IOException | RuntimeException e) {
+                // the client went away or sent garbage, keep serving the others
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        archiveCache.clearCache();
+        Files.deleteIfExists(tokenFile.toPath());
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        int version = in.readInt();
+        if (version != PROTOCOL_VERSION) {
+            refuse(data, "unsupported protocol version " + version);
+            return;
+        }
+        int tokenLength = in.readInt();
+        if (tokenLength != token.length) {
+            refuse(data, "wrong token");
+            return;
+        }
+        byte[] clientToken = new byte[tokenLength];
+        in.readFully(clientToken);
+        if (!MessageDigest.isEqual(token, clientToken)) {
+            refuse(data, "wrong token");
+            return;
+        }
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in);
+        }
+
+        PrintWriter out = new PrintWriter(new OutputWriter(data), true);
+        Main compiler = new Main("ceylon compile", out);
+        Context context = new Context();
+        context.put(ZipFileIndexCache.class, archiveCache);
+        CeyloncFileManager.preRegister(context);
+        CeylonLog.preRegister(context);
+        ExitState exitState;
+        try {
+            compiler.compile(args, context);
+            exitState = compiler.exitState;
+        } catch (RuntimeException | Error e) {
+            // what the compile tool would have reported as a system error,
+            // but the server lives on for the next compilation
+            e.printStackTrace(out);
+            exitState = ExitState.remote(Result.SYSERR, CeylonState.SYS, 0, e, 0, 0, 0, 0);
+        } finally {
+            JavaFileManager fileManager = context.get(JavaFileManager.class);
+            if (fileManager instanceof JavacFileManager) {
+                ((JavacFileManager) fileManager).close();
+            }
+            archiveCache.clearCache(IDLE_ARCHIVE_TIME);
+        }
+        out.flush();
+        writeExitState(data, exitState);
+        data.flush();
+    }
+
+    /**
+     * Run a compilation in the compile server listening on the given
+     * port of the loopback interface, copying its diagnostics to
+     * {@code out}.
+     */
+    public static ExitState compile(int port, String[] args, Writer out) throws IOException {
+        File tokenFile = getTokenFile(port);
+        byte[] token;
+        try {
+            token = Files.readAllBytes(tokenFile.toPath());
+        } catch (NoSuchFileException e) {
+            throw new IOException("No compile server token in " + tokenFile 
+                    + ", is the compile server running on port " + port + "?");
+        }
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            data.writeInt(PROTOCOL_VERSION);
+            data.writeInt(token.length);
+            data.write(token);
+            data.writeInt(args.length);
+            for (String arg : args) {
+                writeString(data, arg);
+            }
+            data.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte kind = in.readByte();
+                if (kind == OUTPUT) {
+                    out.write(readString(in));
+                    out.flush();
+                } else if (kind == EXIT) {
+                    return readExitState(in);
+                } else if (kind == REFUSED) {
+                    throw new IOException("The compile server refused the compilation: " + readString(in));
+                } else {
+                    throw new IOException("Unexpected compile server response: " + kind);
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void writeExitState(DataOutputStream data, ExitState exitState) throws IOException {
+        data.writeByte(EXIT);
+        writeString(data, exitState.javacExitCode.name());
+        writeString(data, exitState.ceylonState.name());
+        data.writeInt(exitState.errorCount);
+        data.writeInt(exitState.ceylonCodegenExceptionCount);
+        data.writeInt(exitState.ceylonCodegenErroneousCount);
+        data.writeInt(exitState.ceylonCodegenGarbageCount);
+        data.writeInt(exitState.nonCeylonErrorCount);
+        String exception = exitState.abortingException != null
+                ? exitState.abortingException.toString() : "";
+        writeString(data, exception);
+    }
+
+    private static ExitState readExitState(DataInputStream in) throws IOException {
+        Result javacExitCode = Result.valueOf(readString(in));
+        CeylonState ceylonState = CeylonState.valueOf(readString(in));
+        int errorCount = in.readInt();
+        int codegenExceptionCount = in.readInt();
+        int codegenErroneousCount = in.readInt();
+        int codegenGarbageCount = in.readInt();
+        int nonCeylonErrorCount = in.readInt();
+        String exception = readString(in);
+        // the stack trace, if any, is already part of the output
+        Throwable abortingException = exception.isEmpty()
+                ? null : new Exception("Compile server: " + exception);
+        return ExitState.remote(javacExitCode, ceylonState, errorCount, abortingException,
+                codegenExceptionCount, codegenErroneousCount, codegenGarbageCount, nonCeylonErrorCount);
+    }
+
+    private static void refuse(DataOutputStream data, String reason) throws IOException {
+        data.writeByte(REFUSED);
+        writeString(data, reason);
+        data.flush();
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8
+     * bytes, since writeUTF() can't write strings longer than 64k
+     */
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * The file holding the token of the compile server listening on the
+     * given port
+     */
+    public static File getTokenFile(int port) {
+        File folder = new File(Repositories.get().getCacheRepoDir(), TOKEN_FOLDER);
+        return new File(folder, port + ".token");
+    }
+
+    /**
+     * Writes the given token to a new file which only the current user
+     * can read
+     */
+    private static void writeToken(File file, byte[] token) throws IOException {
+        FileUtil.mkdirs(file.getParentFile());
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+            Files.createFile(path);
+            if (!file.setReadable(false, false)
+                    || !file.setReadable(true, true)
+                    || !file.setWritable(false, false)
+                    || !file.setWritable(true, true)) {
+                Files.deleteIfExists(path);
+                throw new IOException("Could not make the compile server token private: " + file);
+            }
+        }
+        Files.write(path, token);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends what's written to it to the client as {@link #OUTPUT} chunks
+     */
+    private static class OutputWriter extends Writer {
+        private final DataOutputStream data;
+
+        OutputWriter(DataOutputStream data) {
+            this.data = data;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            synchronized (data) {
+                data.writeByte(OUTPUT);
+                writeString(data, new String(cbuf, off, len));
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (data) {
+                data.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -46,7 +46,10 @@ import com.redhat.ceylon.compiler.EnvironmentException;
 import com.redhat.ceylon.compiler.java.tools.CeylonLocation;
 import com.redhat.ceylon.compiler.java.tools.CeylonLog;
 import com.redhat.ceylon.compiler.java.tools.CeyloncFileManager;
+import com.redhat.ceylon.compiler.java.tools.IncrementalSources;
+import com.redhat.ceylon.compiler.java.tools.JavacLogger;
 import com.redhat.ceylon.compiler.java.tools.LanguageCompiler;
+import com.redhat.ceylon.compiler.java.util.Profiler;
 import com.redhat.ceylon.compiler.java.util.Timer;
 import com.redhat.ceylon.javax.annotation.processing.Processor;
 import com.redhat.ceylon.javax.tools.JavaFileManager;
@@ -129,6 +132,9 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
     /** A timer used to calculate task execution times times */
     private Timer timer = null;
     
+    /** Measures the phases of the compilation if we're asked to */
+    private Profiler profiler = null;
+    
     /**
      * Rich information about the failure (or success) of a compilation.
      * 
@@ -220,6 +226,32 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
             this(javacExitCode, ceylonState, errorCount, abortingException, null); 
         }
         
+        private ExitState(Result javacExitCode, CeylonState ceylonState, int errorCount,
+                Throwable abortingException,
+                int ceylonCodegenExceptionCount, int ceylonCodegenErroneousCount,
+                int ceylonCodegenGarbageCount, int nonCeylonErrorCount) {
+            this.javacExitCode = javacExitCode;
+            this.ceylonState = ceylonState;
+            this.errorCount = errorCount;
+            this.abortingException = abortingException;
+            this.ceylonCodegenExceptionCount = ceylonCodegenExceptionCount;
+            this.ceylonCodegenErroneousCount = ceylonCodegenErroneousCount;
+            this.ceylonCodegenGarbageCount = ceylonCodegenGarbageCount;
+            this.nonCeylonErrorCount = nonCeylonErrorCount;
+        }
+        
+        /**
+         * The state of a compilation which ran in a {@link CompileServer}
+         */
+        static ExitState remote(Result javacExitCode, CeylonState ceylonState, int errorCount,
+                Throwable abortingException,
+                int ceylonCodegenExceptionCount, int ceylonCodegenErroneousCount,
+                int ceylonCodegenGarbageCount, int nonCeylonErrorCount) {
+            return new ExitState(javacExitCode, ceylonState, errorCount, abortingException,
+                    ceylonCodegenExceptionCount, ceylonCodegenErroneousCount,
+                    ceylonCodegenGarbageCount, nonCeylonErrorCount);
+        }
+        
         /**
          * javac had errors logged. Causes:
          * <ul>
@@ -611,6 +643,7 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
             // because it needs to know if we need logging or not
             timer = Timer.instance(context);
             timer.init();
+            profiler = Profiler.instance(context);
             
             boolean forceStdOut = options.get("stdout") != null;
             if (forceStdOut) {
@@ -629,8 +662,14 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
             }
 
             if(!classnames.isEmpty()) {
-                this.filenames.addAll(addModuleFiles(filenames));
+                this.filenames.addAll(addModuleFiles(filenames, context));
                 classnames.clear();
+                if (this.filenames.isEmpty() && fileObjects.isEmpty()
+                        && options.isSet(Option.CEYLONINCREMENTAL)) {
+                    // every module is up to date
+                    this.exitState = ExitState.ok();
+                    return OK;
+                }
             }
             
             if (!this.filenames.isEmpty()) {
@@ -703,6 +742,15 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
                 timer.end();
             }
             timer = null;
+            if (profiler != null) {
+                // after closing the compiler, which writes the module archives
+                try {
+                    profiler.writeReport();
+                } catch (IOException ex) {
+                    ioMessage(ex);
+                }
+            }
+            profiler = null;
         }
         this.exitState = ExitState.ok();
         return OK;
@@ -710,15 +758,24 @@ public class Main extends com.redhat.ceylon.langtools.tools.javac.main.Main {
 
     // Now add the files for each of the modules that were given on the command line
     @SuppressWarnings("unchecked")
-    private ListBuffer<File> addModuleFiles(Collection<File> f) throws IOException {
+    private ListBuffer<File> addModuleFiles(Collection<File> f, Context context) throws IOException {
         Iterable<File> srcdirs = (Iterable<File>) ((JavacFileManager)fileManager).getLocation(StandardLocation.SOURCE_PATH);
         Iterable<File> resdirs = (Iterable<File>) ((JavacFileManager)fileManager).getLocation(CeylonLocation.RESOURCE_PATH);
         SourceArgumentsResolver resolver = new SourceArgumentsResolver(srcdirs, resdirs, Constants.CEYLON_SUFFIX, Constants.JAVA_SUFFIX);
         resolver.parse(classnames.toList());
         ListBuffer<File> filenames = new ListBuffer<File>();
         filenames.addAll(f);
-        filenames.addAll(resolver.getSourceFiles());
-        filenames.addAll(resolver.getResourceFiles());
+        if (options.isSet(Option.CEYLONINCREMENTAL) && fileManager instanceof CeyloncFileManager) {
+            // only the units that changed since the last compilation, and their dependents
+            IncrementalSources incrementalSources = new IncrementalSources(srcdirs, resdirs,
+                    ((CeyloncFileManager)fileManager).getOutputRepositoryManager(),
+                    ((CeyloncFileManager)fileManager).getRepositoryManager(),
+                    new JavacLogger(options, Log.instance(context)));
+            filenames.addAll(incrementalSources.getFilesToCompile(classnames.toList()));
+        } else {
+            filenames.addAll(resolver.getSourceFiles());
+            filenames.addAll(resolver.getResourceFiles());
+        }
         return filenames;
     }
     
@@ -26,14 +26,23 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.antlr.runtime.Token;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.cmr.impl.InvalidArchiveException;
+import com.redhat.ceylon.cmr.impl.ShaSigner;
+import com.redhat.ceylon.cmr.util.JarUtils;
 import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.StatusPrinter;
 import com.redhat.ceylon.compiler.java.codegen.AnnotationModelVisitor;
@@ -55,6 +64,8 @@ import com.redhat.ceylon.compiler.java.tools.CeylonPhasedUnit;
 import com.redhat.ceylon.compiler.java.tools.CeyloncFileManager;
 import com.redhat.ceylon.compiler.java.tools.LanguageCompiler;
 import com.redhat.ceylon.compiler.java.tools.LanguageCompiler.CompilerDelegate;
+import com.redhat.ceylon.compiler.java.tools.UnitDependencies;
+import com.redhat.ceylon.compiler.java.util.Profiler;
 import com.redhat.ceylon.compiler.java.util.Util;
 import com.redhat.ceylon.compiler.typechecker.analyzer.AnalysisError;
 import com.redhat.ceylon.compiler.typechecker.analyzer.UnsupportedError;
@@ -114,6 +125,7 @@ import com.redhat.ceylon.model.loader.model.LazyModule;
 import com.redhat.ceylon.model.typechecker.model.Declaration;
 import com.redhat.ceylon.model.typechecker.model.ModelUtil;
 import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.ModuleImport;
 import com.redhat.ceylon.model.typechecker.model.Setter;
 import com.redhat.ceylon.model.typechecker.model.Type;
 import com.redhat.ceylon.model.typechecker.model.TypedDeclaration;
@@ -138,6 +150,7 @@ public class CeylonEnter extends Enter {
     private AbstractModelLoader modelLoader;
     private Options options;
     private Timer timer;
+    private Profiler profiler;
     private CeyloncFileManager fileManager;
     private boolean verbose;
     private Check chk;
@@ -150,6 +163,11 @@ public class CeylonEnter extends Enter {
     private TaskListener taskListener;
     private SourceLanguage sourceLanguage;
     private StatusPrinter sp;
+    private int jobs;
+    private boolean incremental;
+    private Map<Module, UnitDependencies> unitDependencies = new HashMap<Module, UnitDependencies>();
+    /** The archives of the modules we added to the class path */
+    private Map<Module, File> moduleArtifacts = new HashMap<Module, File>();
 
     
     protected CeylonEnter(Context context) {
@@ -169,9 +187,12 @@ public class CeylonEnter extends Enter {
         modelLoader = CeylonModelLoader.instance(context);
         options = Options.instance(context);
         timer = com.redhat.ceylon.compiler.java.util.Timer.instance(context);
+        profiler = Profiler.instance(context);
         fileManager = (CeyloncFileManager) context.get(JavaFileManager.class);
         verbose = options.get(Option.VERBOSE) != null;
         isBootstrap = options.get(Option.BOOTSTRAPCEYLON) != null;
+        jobs = getJobs(options);
+        incremental = options.isSet(Option.CEYLONINCREMENTAL);
         chk = Check.instance(context);
         types = Types.instance(context);
         symtab = Symtab.instance(context);
@@ -191,6 +212,20 @@ public class CeylonEnter extends Enter {
         }
     }
 
+    /**
+     * The number of threads the compiler may use, as set by {@code -jobs}
+     */
+    public static int getJobs(Options options) {
+        String jobs = options.get(Option.CEYLONJOBS);
+        if(jobs == null)
+            return 1;
+        try{
+            return Math.max(1, Integer.parseInt(jobs));
+        }catch(NumberFormatException x){
+            return 1;
+        }
+    }
+
     @Override
     public void main(List<JCCompilationUnit> trees) {
         // complete the javac AST with a completed ceylon model
@@ -393,7 +428,9 @@ public class CeylonEnter extends Enter {
                 if (taskListener != null) {
                     taskListener.started(event);
                 }
+                Profiler.Measurement measurement = profiler.start("transform", phasedUnit.getPathRelativeToSrcDir());
                 ceylonTree.defs = gen.transformAfterTypeChecking(ceylonTree.ceylonTree).toList();
+                profiler.end(measurement);
                 if (taskListener != null) {
                     taskListener.finished(event);
                 }
@@ -471,6 +508,7 @@ public class CeylonEnter extends Enter {
 
         if(modulesAddedToClassPath.add(module)){
             if(artifact != null && artifact.exists()){
+                moduleArtifacts.put(module, artifact);
                 ArrayList<File> newClassPath = new ArrayList<File>(classPath);
                 newClassPath.add(artifact);
                 try {
@@ -497,75 +535,268 @@ public class CeylonEnter extends Enter {
             sp.log("Preparation phase");
         }
 
-        int size = listOfUnits.size();
-        
-        int i=1;
-        // This phase is proper to the Java backend 
-        ForcedCaptureVisitor fcv = new ForcedCaptureVisitor();
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progressPreparation(1, i++, size, pu);
-            Unit unit = pu.getUnit();
-            final CompilationUnit compilationUnit = pu.getCompilationUnit();
-            compilationUnit.visit(fcv);
-            for (Declaration d: unit.getDeclarations()) {
-                if (d instanceof TypedDeclaration 
-                        && !(d instanceof Setter)
-                        // skip already captured members
-                        && !d.isCaptured()) {
-                    compilationUnit.visit(new MethodOrValueReferenceVisitor((TypedDeclaration) d));
+        ExecutorService executor = jobs > 1 ? newPreparationExecutor() : null;
+        try{
+            // This phase is proper to the Java backend 
+            runPreparationPhase(1, "prepare.capture", listOfUnits, executor, new UnitPreparationFactory(){
+                @Override
+                public UnitPreparation create() {
+                    final ForcedCaptureVisitor fcv = new ForcedCaptureVisitor();
+                    return new UnitPreparation(){
+                        @Override
+                        public void prepare(PhasedUnit pu) {
+                            Unit unit = pu.getUnit();
+                            final CompilationUnit compilationUnit = pu.getCompilationUnit();
+                            compilationUnit.visit(fcv);
+                            for (Declaration d: unit.getDeclarations()) {
+                                if (d instanceof TypedDeclaration 
+                                        && !(d instanceof Setter)
+                                        // skip already captured members
+                                        && !d.isCaptured()) {
+                                    compilationUnit.visit(new MethodOrValueReferenceVisitor((TypedDeclaration) d));
+                                }
+                            }
+                        }
+                    };
+                }
+            });
+
+            // Extra phases for the compiler
+            runPreparationPhase(2, "prepare.unsupported", listOfUnits, executor, new UnitPreparationFactory(){
+                @Override
+                public UnitPreparation create() {
+                    final UnsupportedVisitor uv = new UnsupportedVisitor();
+                    return new UnitPreparation(){
+                        @Override
+                        public void prepare(PhasedUnit pu) {
+                            pu.getCompilationUnit().visit(uv);
+                        }
+                    };
+                }
+            });
+            // boxing visitor depends on boxing decl
+            // boxing decl is always sequential since it sets the boxing state of
+            // refined declarations that can live in other units
+            runPreparationPhase(3, "prepare.boxingDeclarations", listOfUnits, null, new UnitPreparationFactory(){
+                @Override
+                public UnitPreparation create() {
+                    final BoxingDeclarationVisitor boxingDeclarationVisitor = new CompilerBoxingDeclarationVisitor(gen);
+                    return new UnitPreparation(){
+                        @Override
+                        public void prepare(PhasedUnit pu) {
+                            pu.getCompilationUnit().visit(boxingDeclarationVisitor);
+                        }
+                    };
                 }
+            });
+            // the others can run at the same time, as long as they only touch
+            // the tree and model of the unit they visit
+            runPreparationPhase(4, "prepare.boxing", listOfUnits, executor, new UnitPreparationFactory(){
+                @Override
+                public UnitPreparation create() {
+                    final JvmMissingNativeVisitor mnv = new JvmMissingNativeVisitor(modelLoader);
+                    final BoxingVisitor boxingVisitor = new CompilerBoxingVisitor(gen);
+                    final DeferredVisitor deferredVisitor = new DeferredVisitor();
+                    final DefiniteAssignmentVisitor dav = new DefiniteAssignmentVisitor();
+                    final TypeParameterCaptureVisitor tpCaptureVisitor = new TypeParameterCaptureVisitor();
+                    return new UnitPreparation(){
+                        @Override
+                        public void prepare(PhasedUnit pu) {
+                            CompilationUnit compilationUnit = pu.getCompilationUnit();
+                            compilationUnit.visit(mnv);
+                            compilationUnit.visit(boxingVisitor);
+                            compilationUnit.visit(deferredVisitor);
+                            compilationUnit.visit(dav);
+                            compilationUnit.visit(tpCaptureVisitor);
+                        }
+                    };
+                }
+            });
+            // the annotation model visitor publishes the annotation constructors
+            // of a unit and reads those of other units while it fills them in,
+            // so it must see the units in order
+            AnnotationModelVisitor amv = new AnnotationModelVisitor(gen);
+            for (PhasedUnit pu : listOfUnits) {
+                Profiler.Measurement measurement = profiler.start("prepare.annotations", pu.getPathRelativeToSrcDir());
+                pu.getCompilationUnit().visit(amv);
+                profiler.end(measurement);
+            }
+            // the local interface visitor allocates companion class names from a
+            // single set shared by all the units, so it must see them in order
+            InterfaceVisitor localInterfaceVisitor = new InterfaceVisitor();
+            for (PhasedUnit pu : listOfUnits) {
+                Profiler.Measurement measurement = profiler.start("prepare.localInterfaces", pu.getPathRelativeToSrcDir());
+                pu.getCompilationUnit().visit(localInterfaceVisitor);
+                profiler.end(measurement);
             }
+
+            runPreparationPhase(5, "prepare.warnings", listOfUnits, executor, new UnitPreparationFactory(){
+                @Override
+                public UnitPreparation create() {
+                    return new UnitPreparation(){
+                        @Override
+                        public void prepare(PhasedUnit pu) {
+                            CompilationUnit compilationUnit = pu.getCompilationUnit();
+                            compilationUnit.visit(new WarningSuppressionVisitor<Warning>(Warning.class, pu.getSuppressedWarnings()));
+                        }
+                    };
+                }
+            });
+        }finally{
+            if(executor != null)
+                executor.shutdownNow();
         }
         
-        UnsupportedVisitor uv = new UnsupportedVisitor();
-        JvmMissingNativeVisitor mnv = new JvmMissingNativeVisitor(modelLoader);
-        BoxingDeclarationVisitor boxingDeclarationVisitor = new CompilerBoxingDeclarationVisitor(gen);
-        BoxingVisitor boxingVisitor = new CompilerBoxingVisitor(gen);
-        DeferredVisitor deferredVisitor = new DeferredVisitor();
-        AnnotationModelVisitor amv = new AnnotationModelVisitor(gen);
-        DefiniteAssignmentVisitor dav = new DefiniteAssignmentVisitor();
-        TypeParameterCaptureVisitor tpCaptureVisitor = new TypeParameterCaptureVisitor();
-        InterfaceVisitor localInterfaceVisitor = new InterfaceVisitor();
-        // Extra phases for the compiler
-        
-        // boxing visitor depends on boxing decl
-        i=1;
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progressPreparation(2, i++, size, pu);
-            pu.getCompilationUnit().visit(uv);
+        // errors are attached to the tree nodes, so they are always reported in unit order
+        collectTreeErrors(true, true);
+
+        if(incremental){
+            timer.startTask("Recording unit dependencies");
+            recordUnitDependencies(listOfUnits);
+            timer.endTask();
         }
-        i=1;
+    }
+
+    /**
+     * Records which declarations each unit declares and uses, for the
+     * next incremental compilation of their module.
+     */
+    private void recordUnitDependencies(java.util.List<PhasedUnit> listOfUnits) {
+        Iterable<? extends File> sourcePath = fileManager.getLocation(StandardLocation.SOURCE_PATH);
         for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progressPreparation(3, i++, size, pu);
-            pu.getCompilationUnit().visit(boxingDeclarationVisitor);
+            if (!(pu instanceof CeylonPhasedUnit))
+                continue;
+            File sourceFile = new File(((CeylonPhasedUnit) pu).getFileObject().getName());
+            String sha1 = ShaSigner.sha1(sourceFile);
+            if (sha1 == null)
+                continue;
+            Module module = pu.getPackage().getModule();
+            UnitDependencies dependencies = unitDependencies.get(module);
+            if (dependencies == null) {
+                dependencies = new UnitDependencies();
+                unitDependencies.put(module, dependencies);
+            }
+            dependencies.addUnit(JarUtils.toPlatformIndependentPath(sourcePath, sourceFile.getPath()), sha1, pu);
         }
-        i=1;
-        // the others can run at the same time
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progressPreparation(4, i++, size, pu);
-            CompilationUnit compilationUnit = pu.getCompilationUnit();
-            compilationUnit.visit(mnv);
-            compilationUnit.visit(boxingVisitor);
-            compilationUnit.visit(deferredVisitor);
-            compilationUnit.visit(amv);
-            compilationUnit.visit(dav);
-            compilationUnit.visit(tpCaptureVisitor);
-            compilationUnit.visit(localInterfaceVisitor);
+        // the modules we import but don't compile, so that the next compilation
+        // notices when they were compiled again elsewhere
+        for (Map.Entry<Module, UnitDependencies> entry : unitDependencies.entrySet()) {
+            for (ModuleImport moduleImport : entry.getKey().getImports()) {
+                Module imported = moduleImport.getModule();
+                File artifact = moduleArtifacts.get(imported);
+                if (artifact == null || unitDependencies.containsKey(imported))
+                    continue;
+                String sha1 = ShaSigner.sha1(artifact);
+                if (sha1 != null)
+                    entry.getValue().addImport(imported.getNameAsString(), imported.getVersion(), sha1);
+            }
         }
-        
-        i=1;
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progressPreparation(5, i++, size, pu);
-            CompilationUnit compilationUnit = pu.getCompilationUnit();
-            compilationUnit.visit(new WarningSuppressionVisitor<Warning>(Warning.class, pu.getSuppressedWarnings()));
+    }
+
+    /**
+     * The dependencies of the units of the given module compiled by this
+     * compilation, or null if we're not compiling incrementally.
+     */
+    public UnitDependencies getUnitDependencies(Module module) {
+        if (!incremental)
+            return null;
+        UnitDependencies dependencies = unitDependencies.get(module);
+        return dependencies != null ? dependencies : new UnitDependencies();
+    }
+
+    /**
+     * The work done on a single unit during a preparation phase.
+     */
+    private interface UnitPreparation {
+        void prepare(PhasedUnit pu);
+    }
+
+    /**
+     * Creates the {@link UnitPreparation} used by a single thread: visitors are
+     * stateful so each thread needs its own instances.
+     */
+    private interface UnitPreparationFactory {
+        UnitPreparation create();
+    }
+
+    private ExecutorService newPreparationExecutor() {
+        return Executors.newFixedThreadPool(jobs, new ThreadFactory(){
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ceylon-preparation-"+count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Runs the given preparation phase over every unit, sequentially if there is no
+     * executor, or otherwise spread over the executor threads. In both cases this
+     * method only returns once every unit has been prepared, and if preparing units
+     * failed we rethrow the failure of the first unit in list order.
+     */
+    private void runPreparationPhase(final int phase, final String name, final java.util.List<PhasedUnit> listOfUnits, 
+            ExecutorService executor, final UnitPreparationFactory factory) {
+        final int size = listOfUnits.size();
+        if(executor == null || size < 2){
+            UnitPreparation preparation = factory.create();
+            int i=1;
+            for (PhasedUnit pu : listOfUnits) {
+                if(sp != null)
+                    progressPreparation(phase, i++, size, pu);
+                Profiler.Measurement measurement = profiler.start(name, pu.getPathRelativeToSrcDir());
+                preparation.prepare(pu);
+                profiler.end(measurement);
+            }
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        final Throwable[] failures = new Throwable[size];
+        java.util.List<Callable<Void>> workers = new ArrayList<Callable<Void>>(jobs);
+        for(int w=0;w<jobs;w++){
+            workers.add(new Callable<Void>(){
+                @Override
+                public Void call() {
+                    UnitPreparation preparation = factory.create();
+                    int index;
+                    while((index = next.getAndIncrement()) < size){
+                        PhasedUnit pu = listOfUnits.get(index);
+                        if(sp != null){
+                            synchronized(sp){
+                                progressPreparation(phase, done.incrementAndGet(), size, pu);
+                            }
+                        }
+                        Profiler.Measurement measurement = profiler.start(name, pu.getPathRelativeToSrcDir());
+                        try{
+                            preparation.prepare(pu);
+                        }catch(RuntimeException|Error x){
+                            failures[index] = x;
+                            // stop handing out units to every worker
+                            next.set(size);
+                        }finally{
+                            profiler.end(measurement);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            // invokeAll is our barrier: it only returns once every worker is done
+            executor.invokeAll(workers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        for(Throwable failure : failures){
+            if(failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            if(failure instanceof Error)
+                throw (Error)failure;
         }
-        
-        collectTreeErrors(true, true);
     }
 
     private void progressPreparation(int phase, int i, int size, PhasedUnit pu) {
@@ -5,6 +5,7 @@ import com.redhat.ceylon.compiler.java.loader.UnknownTypeCollector;
 import com.redhat.ceylon.compiler.java.loader.model.CompilerModuleManager;
 import com.redhat.ceylon.compiler.java.loader.model.LazyModuleSourceMapper;
 import com.redhat.ceylon.compiler.java.tools.LanguageCompiler.CompilerDelegate;
+import com.redhat.ceylon.compiler.java.util.Profiler;
 import com.redhat.ceylon.compiler.typechecker.TypeChecker;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
@@ -58,47 +59,60 @@ public final class CeyloncCompilerDelegate implements
     @Override
     public void typeCheck(java.util.List<PhasedUnit> listOfUnits) {
         StatusPrinter sp = getStatusPrinter();
+        Profiler profiler = Profiler.instance(context);
 
         int size = listOfUnits.size();
         int i=1;
         for (PhasedUnit pu : listOfUnits) {
             if(sp != null)
                 progress(sp, 1, i++, size, pu);
+            Profiler.Measurement measurement = profiler.start("typecheck.scanDeclarations", pu.getPathRelativeToSrcDir());
             pu.validateTree();
             pu.scanDeclarations();
+            profiler.end(measurement);
         }
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
                 progress(sp, 2, i++, size, pu);
-            pu.scanTypeDeclarations(); 
+            Profiler.Measurement measurement = profiler.start("typecheck.scanTypeDeclarations", pu.getPathRelativeToSrcDir());
+            pu.scanTypeDeclarations();
+            profiler.end(measurement);
         } 
         i=1;
         for (PhasedUnit pu: listOfUnits) { 
             if(sp != null)
                 progress(sp, 3, i++, size, pu);
+            Profiler.Measurement measurement = profiler.start("typecheck.validateRefinement", pu.getPathRelativeToSrcDir());
             pu.validateRefinement();
+            profiler.end(measurement);
         }
         
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
                 progress(sp, 4, i++, size, pu);
-            pu.analyseTypes(); 
+            Profiler.Measurement measurement = profiler.start("typecheck.analyseTypes", pu.getPathRelativeToSrcDir());
+            pu.analyseTypes();
+            profiler.end(measurement);
         }
         
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
                 progress(sp, 5, i++, size, pu);
+            Profiler.Measurement measurement = profiler.start("typecheck.analyseFlow", pu.getPathRelativeToSrcDir());
             pu.analyseFlow();
+            profiler.end(measurement);
         }
 
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
                 progress(sp, 6, i++, size, pu);
+            Profiler.Measurement measurement = profiler.start("typecheck.analyseUsage", pu.getPathRelativeToSrcDir());
             pu.analyseUsage();
+            profiler.end(measurement);
         }
         
         i=1;
@@ -106,7 +120,9 @@ public final class CeyloncCompilerDelegate implements
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
                 progress(sp, 7, i++, size, pu);
+            Profiler.Measurement measurement = profiler.start("typecheck.collectUnknownTypes", pu.getPathRelativeToSrcDir());
             pu.getCompilationUnit().visit(utc);
+            profiler.end(measurement);
         }
     }
 
@@ -0,0 +1,273 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.redhat.ceylon.compiler.java.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.impl.ShaSigner;
+import com.redhat.ceylon.cmr.util.JarUtils;
+import com.redhat.ceylon.common.Constants;
+import com.redhat.ceylon.common.ModuleDescriptorReader;
+import com.redhat.ceylon.common.ModuleDescriptorReader.NoSuchModuleException;
+import com.redhat.ceylon.common.log.Logger;
+import com.redhat.ceylon.common.tools.SourceArgumentsResolver;
+import com.redhat.ceylon.model.typechecker.model.Module;
+
+/**
+ * Selects the source files of the given modules that an incremental
+ * compilation has to compile, using the {@link UnitDependencies} stored
+ * in the cars of their previous compilation.
+ * <p>
+ * A module is compiled entirely when we can't tell what changed in it:
+ * when it has no car or its car has no dependencies, when one of its
+ * units was added or removed, when its module or package descriptors
+ * changed, when it has Java sources, or when the archive of a module
+ * it imports changed. Otherwise we only compile the units whose
+ * contents changed and the units that depend on them, in any of the
+ * modules, and the car keeps the classes of the others. The resources
+ * of a module are added again when any of them changed, or when any
+ * of its units is compiled.
+ */
+public class IncrementalSources {
+
+    private static final String PACKAGE_DESCRIPTOR = "package.ceylon";
+
+    private final Iterable<File> sourcePath;
+    private final Iterable<File> resourcePath;
+    private final RepositoryManager outputRepository;
+    private final RepositoryManager repositoryManager;
+    private final Logger log;
+
+    /**
+     * @param outputRepository where the cars of the previous compilation are
+     * @param repositoryManager where the imported modules are
+     */
+    public IncrementalSources(Iterable<File> sourcePath, Iterable<File> resourcePath,
+            RepositoryManager outputRepository, RepositoryManager repositoryManager, Logger log) {
+        this.sourcePath = sourcePath;
+        this.resourcePath = resourcePath;
+        this.outputRepository = outputRepository;
+        this.repositoryManager = repositoryManager;
+        this.log = log;
+    }
+
+    private class ModuleSources {
+        final String name;
+        final List<File> resourceFiles;
+        /** The source files of the module, by unit path */
+        final Map<String, File> sourceFiles = new LinkedHashMap<String, File>();
+        UnitDependencies dependencies;
+        boolean full;
+        boolean resourcesChanged;
+
+        ModuleSources(String name, List<File> sourceFiles, List<File> resourceFiles) {
+            this.name = name;
+            this.resourceFiles = resourceFiles;
+            for (File file : sourceFiles) {
+                this.sourceFiles.put(JarUtils.toPlatformIndependentPath(sourcePath, file.getPath()), file);
+            }
+        }
+
+        private void compileFully(String reason) {
+            log.debug("Compiling all of module " + name + ": " + reason);
+            full = true;
+        }
+    }
+
+    /**
+     * Returns the source and resource files to compile for the given
+     * modules
+     */
+    public List<File> getFilesToCompile(List<String> moduleNames) throws IOException {
+        List<ModuleSources> modules = new ArrayList<ModuleSources>(moduleNames.size());
+        for (String moduleName : moduleNames) {
+            SourceArgumentsResolver resolver = new SourceArgumentsResolver(sourcePath, resourcePath,
+                    Constants.CEYLON_SUFFIX, Constants.JAVA_SUFFIX);
+            resolver.parse(Collections.singletonList(moduleName));
+            modules.add(new ModuleSources(moduleName, resolver.getSourceFiles(), resolver.getResourceFiles()));
+        }
+
+        // find out what changed in every module
+        UnitDependencies allDependencies = new UnitDependencies();
+        Set<String> changedUnits = new HashSet<String>();
+        for (ModuleSources module : modules) {
+            module.dependencies = readDependencies(module);
+            if (module.dependencies == null) {
+                // we can't tell which units of the other modules depend on this one
+                module.compileFully("no dependencies recorded");
+                log.debug("Compiling all the modules");
+                return getAllFiles(modules);
+            }
+            allDependencies.addAll(module.dependencies);
+            Set<String> moduleChangedUnits = getChangedUnits(module, moduleNames);
+            if (module.full) {
+                changedUnits.addAll(module.dependencies.getUnits());
+            } else {
+                changedUnits.addAll(moduleChangedUnits);
+            }
+        }
+
+        Set<String> dirtyUnits = allDependencies.getDependentUnits(changedUnits);
+        List<File> result = new ArrayList<File>();
+        for (ModuleSources module : modules) {
+            if (module.full) {
+                result.addAll(module.sourceFiles.values());
+                result.addAll(module.resourceFiles);
+                continue;
+            }
+            boolean dirty = false;
+            for (Map.Entry<String, File> entry : module.sourceFiles.entrySet()) {
+                if (dirtyUnits.contains(entry.getKey())) {
+                    log.debug("Compiling " + entry.getKey());
+                    result.add(entry.getValue());
+                    dirty = true;
+                }
+            }
+            if (dirty || module.resourcesChanged) {
+                if (module.resourcesChanged) {
+                    log.debug("Adding the resources of module " + module.name);
+                }
+                result.addAll(module.resourceFiles);
+            } else {
+                log.debug("Module " + module.name + " is up to date");
+            }
+        }
+        return result;
+    }
+
+    private List<File> getAllFiles(List<ModuleSources> modules) {
+        List<File> result = new ArrayList<File>();
+        for (ModuleSources module : modules) {
+            result.addAll(module.sourceFiles.values());
+            result.addAll(module.resourceFiles);
+        }
+        return result;
+    }
+
+    private UnitDependencies readDependencies(ModuleSources module) throws IOException {
+        String version = null;
+        if (!Module.DEFAULT_MODULE_NAME.equals(module.name)) {
+            for (File sourceFolder : sourcePath) {
+                try {
+                    version = new ModuleDescriptorReader(module.name, sourceFolder).getModuleVersion();
+                    break;
+                } catch (NoSuchModuleException e) {
+                    // try the next source folder
+                }
+            }
+            if (version == null) {
+                return null;
+            }
+        }
+        File car = outputRepository.getArtifact(new ArtifactContext(module.name, version, ArtifactContext.CAR));
+        return UnitDependencies.read(car);
+    }
+
+    /**
+     * Returns the units of the given module that changed, or marks the
+     * module to be compiled fully if it changed in a way we can't track.
+     * The imports of the given modules we compile are tracked by their
+     * units instead.
+     */
+    private Set<String> getChangedUnits(ModuleSources module, List<String> moduleNames) {
+        Set<String> changedUnits = new HashSet<String>();
+        for (Map.Entry<String, String> entry : module.dependencies.getImports().entrySet()) {
+            String nameAndVersion = entry.getKey();
+            if (moduleNames.contains(nameAndVersion.substring(0, nameAndVersion.indexOf('/')))) {
+                continue;
+            }
+            if (!entry.getValue().equals(getImportSha1(nameAndVersion))) {
+                module.compileFully("imported module " + entry.getKey() + " changed");
+                return changedUnits;
+            }
+        }
+        module.resourcesChanged = resourcesChanged(module);
+        for (String path : module.dependencies.getUnits()) {
+            if (!module.sourceFiles.containsKey(path)) {
+                module.compileFully(path + " was removed");
+                return changedUnits;
+            }
+        }
+        for (Map.Entry<String, File> entry : module.sourceFiles.entrySet()) {
+            String path = entry.getKey();
+            if (path.endsWith(Constants.JAVA_SUFFIX)) {
+                module.compileFully("it has Java sources");
+                return changedUnits;
+            }
+            String previousSha1 = module.dependencies.getSha1(path);
+            if (previousSha1 == null) {
+                module.compileFully(path + " was added");
+                return changedUnits;
+            }
+            if (!previousSha1.equals(ShaSigner.sha1(entry.getValue()))) {
+                String fileName = entry.getValue().getName();
+                if (fileName.equals(Constants.MODULE_DESCRIPTOR)
+                        || fileName.equals(PACKAGE_DESCRIPTOR)) {
+                    module.compileFully(path + " changed");
+                    return changedUnits;
+                }
+                changedUnits.add(path);
+            }
+        }
+        return changedUnits;
+    }
+
+    /**
+     * The SHA-1 of the archive of the given imported module, or null
+     * if we can't find it
+     */
+    private String getImportSha1(String nameAndVersion) {
+        int slash = nameAndVersion.indexOf('/');
+        String name = nameAndVersion.substring(0, slash);
+        String version = nameAndVersion.substring(slash + 1);
+        File artifact = repositoryManager.getArtifact(new ArtifactContext(name, version, 
+                ArtifactContext.CAR, ArtifactContext.JAR));
+        return artifact != null ? ShaSigner.sha1(artifact) : null;
+    }
+
+    /**
+     * Whether a resource of the given module was added, removed or
+     * changed since its last compilation
+     */
+    private boolean resourcesChanged(ModuleSources module) {
+        Map<String, String> previous = module.dependencies.getResources();
+        if (previous.size() != module.resourceFiles.size()) {
+            return true;
+        }
+        for (File file : module.resourceFiles) {
+            String previousSha1 = previous.get(JarUtils.toPlatformIndependentPath(resourcePath, file.getPath()));
+            if (previousSha1 == null || !previousSha1.equals(ShaSigner.sha1(file))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -45,7 +45,9 @@ import com.redhat.ceylon.cmr.util.JarUtils.JarEntryFilter;
 import com.redhat.ceylon.common.Constants;
 import com.redhat.ceylon.common.FileUtil;
 import com.redhat.ceylon.common.log.Logger;
+import com.redhat.ceylon.compiler.java.loader.CeylonEnter;
 import com.redhat.ceylon.compiler.java.loader.CeylonModelLoader;
+import com.redhat.ceylon.compiler.java.util.Profiler;
 import com.redhat.ceylon.javax.tools.JavaFileObject;
 import com.redhat.ceylon.javax.tools.StandardLocation;
 import com.redhat.ceylon.langtools.source.util.TaskListener;
@@ -136,6 +138,8 @@ public class JarOutputRepositoryManager {
         final private Set<String> modifiedSourceFiles = new HashSet<String>();
         final private Set<String> modifiedResourceFilesRel = new HashSet<String>();
         final private Set<String> modifiedResourceFilesFull = new HashSet<String>();
+        /** The resource files we added, by path relative to their resource folder */
+        final private Map<String, String> modifiedResourcePaths = new HashMap<String, String>();
         /** Mapping of class file name to originating source file name*/
         final private Properties writtenClassesMapping = new Properties(); 
         private Logger cmrLog;
@@ -157,6 +161,9 @@ public class JarOutputRepositoryManager {
         private boolean writeJava9Module;
         private TaskListener taskListener;
         private JarEntryManifestFileObject manifest;
+        /** The dependencies of the units we compiled, if compiling incrementally */
+        private UnitDependencies unitDependencies;
+        private Profiler profiler;
         private Log log;
 		private JdkProvider jdkProvider;
 
@@ -199,6 +206,8 @@ public class JarOutputRepositoryManager {
             }
             this.resourceRootPath = rrp + rootName + "/";
             this.taskListener = taskListener;
+            this.unitDependencies = CeylonEnter.instance(ceyloncFileManager.getContext()).getUnitDependencies(module);
+            this.profiler = Profiler.instance(ceyloncFileManager.getContext());
             
             this.originalJarFile = repoManager.getArtifact(carContext);
             this.outputJarFile = File.createTempFile("ceylon-compiler-", ".car");
@@ -242,6 +251,7 @@ public class JarOutputRepositoryManager {
         }
 
         public void close() throws IOException {
+            Profiler.Measurement measurement = profiler.start("car", module.getNameAsString());
             try {
                 // Create the .src archive
                 Set<String> copiedSourceFiles = srcCreator.copy(modifiedSourceFiles);
@@ -286,6 +296,11 @@ public class JarOutputRepositoryManager {
                 JarEntryFilter jarFilter = getJarFilter(previousMapping, copiedSourceFiles);
                 writeMappingJarEntry(manifestFirst, foldersAdded, previousMapping, jarFilter);
                 
+                // Add META-INF/dependencies.txt
+                if (unitDependencies != null) {
+                    writeDependenciesJarEntry(manifestFirst, foldersAdded);
+                }
+                
                 manifestFirst.close();
                 
                 File finalCarFile = File.createTempFile("ceylon-compiler-", ".car");
@@ -317,6 +332,7 @@ public class JarOutputRepositoryManager {
                 throw e;
             } finally {
                 FileUtil.deleteQuietly(outputJarFile);
+                profiler.end(measurement);
             }
         }
 
@@ -334,6 +350,7 @@ public class JarOutputRepositoryManager {
                     } else {
                         return modifiedResourceFilesRel.contains(entryFullName)
                                 || entryFullName.equals(MAPPING_FILE)
+                                || entryFullName.equals(UnitDependencies.DEPENDENCIES_FILE)
                                 || (writeOsgiManifest && OsgiUtil.OsgiManifest.isManifestFileName(entryFullName))
                                 || (writeMavenManifest && MavenPomUtil.isMavenDescriptor(entryFullName, module));
                     }
@@ -407,6 +424,46 @@ public class JarOutputRepositoryManager {
             }
         }
 
+        /** 
+         * Add a {@code META-INF/dependencies.txt} entry which records the
+         * dependencies between the source units of the module, for the next
+         * incremental compilation. The units we did not compile keep their
+         * previous dependencies, unless their source file is gone. The
+         * resources are only recorded again when we added them to the car,
+         * which we always do for all of them.
+         */
+        private void writeDependenciesJarEntry(JarOutputStream outputStream, Set<String> foldersAlreadyAdded) throws IOException {
+            UnitDependencies newDependencies = new UnitDependencies();
+            UnitDependencies previousDependencies = UnitDependencies.read(originalJarFile);
+            if (previousDependencies != null) {
+                for (String path : previousDependencies.getUnits()) {
+                    if (FileUtil.applyPath(srcCreator.getPaths(), path) != null) {
+                        newDependencies.addUnit(path, previousDependencies.getSha1(path), 
+                                previousDependencies.getDeclarations(path), previousDependencies.getUses(path));
+                    }
+                }
+                if (modifiedResourcePaths.isEmpty()) {
+                    for (Map.Entry<String, String> entry : previousDependencies.getResources().entrySet()) {
+                        newDependencies.addResource(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            for (Map.Entry<String, String> entry : modifiedResourcePaths.entrySet()) {
+                String sha1 = ShaSigner.sha1(new File(entry.getValue()));
+                if (sha1 != null) {
+                    newDependencies.addResource(entry.getKey(), sha1);
+                }
+            }
+            newDependencies.addAll(unitDependencies);
+            JarUtils.makeFolder(foldersAlreadyAdded, outputStream, META_INF+"/");
+            outputStream.putNextEntry(new ZipEntry(UnitDependencies.DEPENDENCIES_FILE));
+            try {
+                newDependencies.write(outputStream);
+            } finally {
+                outputStream.closeEntry();
+            }
+        }
+
         public JavaFileObject getJavaFileObject(String fileName, File sourceFile) {
             String entryName = fileName.replace(File.separatorChar, '/');
             
@@ -427,7 +484,9 @@ public class JarOutputRepositoryManager {
             	addMappingEntry(entryName, JarUtils.toPlatformIndependentPath(srcCreator.getPaths(), sourceFile.getPath()));
             } else {
                 modifiedResourceFilesRel.add(entryName);
-                modifiedResourceFilesFull.add(FileUtil.applyPath(resourceCreator.getPaths(), fileName).getPath());
+                String resourceFile = FileUtil.applyPath(resourceCreator.getPaths(), fileName).getPath();
+                modifiedResourceFilesFull.add(resourceFile);
+                modifiedResourcePaths.put(fileName.replace(File.separatorChar, '/'), resourceFile);
                 if (OsgiUtil.CeylonManifest.isManifestFileName(entryName) && 
                         (module.isDefault() || writeOsgiManifest)) {
                     manifest = new JarEntryManifestFileObject(outputJarFile.getPath(), entryName, 
@@ -45,8 +45,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
-import org.antlr.runtime.ANTLRStringStream;
-import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.CharStream;
 
 import com.redhat.ceylon.cmr.util.JarUtils;
 import com.redhat.ceylon.common.FileUtil;
@@ -57,6 +56,7 @@ import com.redhat.ceylon.compiler.java.codegen.CeylonFileObject;
 import com.redhat.ceylon.compiler.java.codegen.CeylonTransformer;
 import com.redhat.ceylon.compiler.java.loader.CeylonEnter;
 import com.redhat.ceylon.compiler.java.loader.CeylonModelLoader;
+import com.redhat.ceylon.compiler.java.util.Profiler;
 import com.redhat.ceylon.compiler.java.util.Timer;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import com.redhat.ceylon.compiler.typechecker.analyzer.Warning;
@@ -64,9 +64,8 @@ import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
-import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
-import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
+import com.redhat.ceylon.compiler.typechecker.parser.ParallelParser;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
 import com.redhat.ceylon.compiler.typechecker.parser.RecognitionError;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
@@ -138,6 +137,7 @@ public class LanguageCompiler extends JavaCompiler {
     private Options options;
     
     private Timer timer;
+    private Profiler profiler;
     private boolean isBootstrap;
     private boolean addedDefaultModuleToClassPath;
     private boolean treatLikelyBugsAsErrors = false;
@@ -145,6 +145,9 @@ public class LanguageCompiler extends JavaCompiler {
     private List<JavaFileObject> resourceFileObjects;
     private Map<String,CeylonFileObject> moduleNamesToFileObjects = new HashMap<String,CeylonFileObject>();
     private SourceLanguage sourceLanguage;
+    private int jobs;
+    /** The Ceylon sources parsed ahead of {@link #parse(JavaFileObject)} when we have several jobs */
+    private Map<JavaFileObject,ParsedSource> parsedSources = new HashMap<JavaFileObject,ParsedSource>();
 
     /** Get the PhasedUnits instance for this context. */
     public static PhasedUnits getPhasedUnitsInstance(final Context context) {
@@ -230,7 +233,9 @@ public class LanguageCompiler extends JavaCompiler {
         options = Options.instance(context);
         isBootstrap = options.get(Option.BOOTSTRAPCEYLON) != null;
         timer = Timer.instance(context);
+        profiler = Profiler.instance(context);
         sourceLanguage = SourceLanguage.instance(context);
+        jobs = CeylonEnter.getJobs(options);
         boolean isProgressPrinted = options.get(Option.CEYLONPROGRESS) != null && StatusPrinter.canPrint();
         if(isProgressPrinted && taskListener == null){
             taskListener.add(new StatusPrinterTaskListener(getStatusPrinterInstance(context)));
@@ -352,19 +357,25 @@ public class LanguageCompiler extends JavaCompiler {
      */
     public JCTree.JCCompilationUnit parse(JavaFileObject filename) {
         JavaFileObject prev = log.useSource(filename);
+        Profiler.Measurement measurement = profiler.start("parse", filename);
         try {
             JCTree.JCCompilationUnit t;
             if (filename.getName().endsWith(".java")) {
 
                 t = parse(filename, readSource(filename));
             } else {
-                t = ceylonParse(filename, readSource(filename));
+                ParsedSource parsed = parsedSources.remove(filename);
+                if (parsed != null)
+                    t = ceylonParse(filename, parsed.source, parsed.result);
+                else
+                    t = ceylonParse(filename, readSource(filename), null);
                 t.endPositions = new JavacParser.EmptyEndPosTable(null);
             }
             if (t.endPositions != null)
                 log.setEndPosTable(filename, t.endPositions);
             return t;
         } finally {
+            profiler.end(measurement);
             log.useSource(prev);
         }
     }
@@ -372,7 +383,7 @@ public class LanguageCompiler extends JavaCompiler {
     protected JCCompilationUnit parse(JavaFileObject filename, CharSequence readSource) {
         // FIXME
         if (filename instanceof CeylonFileObject)
-            return ceylonParse(filename, readSource);
+            return ceylonParse(filename, readSource, null);
         else
             return super.parse(filename, readSource);
     }
@@ -399,7 +410,66 @@ public class LanguageCompiler extends JavaCompiler {
         
     }
     
-    private JCCompilationUnit ceylonParse(JavaFileObject filename, CharSequence readSource) {
+    /**
+     * A Ceylon source file read and parsed by {@link #parseCeylonSources(Iterable)}
+     */
+    private static class ParsedSource implements ParallelParser.Source {
+        final String source;
+        ParallelParser.Result result;
+
+        ParsedSource(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public CharStream open() {
+            return new NewlineFixingStringStream(source);
+        }
+    }
+
+    /**
+     * Lexes and parses the given Ceylon source files on our jobs' threads,
+     * ahead of {@link #parse(JavaFileObject)} which then only has to report
+     * their errors and register their units, in order. The files are read
+     * beforehand on this thread, since neither the file manager nor the log
+     * are thread-safe.
+     */
+    private void parseCeylonSources(Iterable<JavaFileObject> fileObjects) {
+        if (shouldStop(CompileState.PARSE))
+            return;
+        Profiler.Measurement measurement = profiler.start("parse", (String)null);
+        try {
+            java.util.List<ParsedSource> sources = new java.util.ArrayList<ParsedSource>();
+            for (JavaFileObject fileObject : fileObjects) {
+                if (fileObject.getName().endsWith(".java")
+                        || parsedSources.containsKey(fileObject))
+                    continue;
+                JavaFileObject prev = log.useSource(fileObject);
+                CharSequence source;
+                try {
+                    source = readSource(fileObject);
+                } finally {
+                    log.useSource(prev);
+                }
+                if (source == null)
+                    continue;
+                ParsedSource parsed = new ParsedSource(source.toString());
+                parsedSources.put(fileObject, parsed);
+                sources.add(parsed);
+            }
+            java.util.List<ParallelParser.Result> results = ParallelParser.parse(sources, jobs);
+            for (int i = 0; i < results.size(); i++) {
+                sources.get(i).result = results.get(i);
+            }
+        } catch (IOException e) {
+            // we parse strings, we can't get here
+            throw new RuntimeException(e);
+        } finally {
+            profiler.end(measurement);
+        }
+    }
+
+    private JCCompilationUnit ceylonParse(JavaFileObject filename, CharSequence readSource, ParallelParser.Result parsed) {
         if(ceylonEnter.hasRun())
             throw new RunTwiceException("Trying to load new source file after CeylonEnter has been called: "+filename);
         try {
@@ -446,20 +516,16 @@ public class LanguageCompiler extends JavaCompiler {
                 return gen.makeJCCompilationUnitPlaceholder(phasedUnit.getCompilationUnit(), filename, pkgName, phasedUnit);
             }
             if (phasedUnit == null) {
-                ANTLRStringStream input = new NewlineFixingStringStream(source);
-                CeylonLexer lexer = new CeylonLexer(input);
+                if (parsed == null)
+                    parsed = ParallelParser.parse(new NewlineFixingStringStream(source));
+                CompilationUnit cu = parsed.getCompilationUnit();
 
-                CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-                CeylonParser parser = new CeylonParser(tokens);
-                CompilationUnit cu = parser.compilationUnit();
-
-                java.util.List<LexError> lexerErrors = lexer.getErrors();
+                java.util.List<LexError> lexerErrors = parsed.getLexErrors();
                 for (LexError le : lexerErrors) {
                     printError(le, le.getMessage(), "ceylon.lexer", map);
                 }
 
-                java.util.List<ParseError> parserErrors = parser.getErrors();
+                java.util.List<ParseError> parserErrors = parsed.getParseErrors();
                 for (ParseError pe : parserErrors) {
                     printError(pe, pe.getMessage(), "ceylon.parser", map);
                 }
@@ -504,7 +570,10 @@ public class LanguageCompiler extends JavaCompiler {
          * Stef: see javadoc for fixDefaultPackage() for why this is here.
          */
         modelLoader.fixDefaultPackage();
+        if (jobs > 1)
+            parseCeylonSources(fileObjects);
         List<JCCompilationUnit> trees = super.parseFiles(fileObjects);
+        parsedSources.clear();
         timer.startTask("loadCompiledModules");
         LinkedList<JCCompilationUnit> moduleTrees = new LinkedList<JCCompilationUnit>();
         // now load modules and associate their moduleless packages with the corresponding modules
@@ -518,7 +587,12 @@ public class LanguageCompiler extends JavaCompiler {
     }
 
     private List<JCCompilationUnit> loadCompiledModules(List<JCCompilationUnit> trees, LinkedList<JCCompilationUnit> moduleTrees) {
-        compilerDelegate.visitModules(phasedUnits);
+        Profiler.Measurement measurement = profiler.start("moduleVisit", (String)null);
+        try {
+            compilerDelegate.visitModules(phasedUnits);
+        } finally {
+            profiler.end(measurement);
+        }
         Modules modules = ceylonContext.getModules();
         // now make sure the phase units have their modules and packages set correctly
         for (PhasedUnit pu : phasedUnits.getPhasedUnits()) {
@@ -738,29 +812,39 @@ public class LanguageCompiler extends JavaCompiler {
     }
 
     public Env<AttrContext> attribute(Env<AttrContext> env) {
-        if (env.toplevel.sourcefile instanceof CeylonFileObject || isBootstrap) {
-            try {
-                sourceLanguage.push(Language.CEYLON);
-                return super.attribute(env);
-            } finally {
-                sourceLanguage.pop();
+        Profiler.Measurement measurement = profiler.start("attribute", env.toplevel.sourcefile);
+        try {
+            if (env.toplevel.sourcefile instanceof CeylonFileObject || isBootstrap) {
+                try {
+                    sourceLanguage.push(Language.CEYLON);
+                    return super.attribute(env);
+                } finally {
+                    sourceLanguage.pop();
+                }
             }
+            return super.attribute(env);
+        } finally {
+            profiler.end(measurement);
         }
-        return super.attribute(env);
     }
 
     @Override
     protected JavaFileObject genCode(Env<AttrContext> env, JCClassDecl cdef) throws IOException {
-        if (env.toplevel.sourcefile instanceof CeylonFileObject) {
-            try {
-                sourceLanguage.push(Language.CEYLON);
-                // call our own genCode
-                return genCodeUnlessError(env, cdef);
-            } finally {
-                sourceLanguage.pop();
+        Profiler.Measurement measurement = profiler.start("generate", env.toplevel.sourcefile);
+        try {
+            if (env.toplevel.sourcefile instanceof CeylonFileObject) {
+                try {
+                    sourceLanguage.push(Language.CEYLON);
+                    // call our own genCode
+                    return genCodeUnlessError(env, cdef);
+                } finally {
+                    sourceLanguage.pop();
+                }
             }
+            return super.genCode(env, cdef);
+        } finally {
+            profiler.end(measurement);
         }
-        return super.genCode(env, cdef);
     }
 
     @Override
@@ -824,29 +908,39 @@ public class LanguageCompiler extends JavaCompiler {
     }
 
     protected void desugar(final Env<AttrContext> env, Queue<Pair<Env<AttrContext>, JCClassDecl>> results) {
-        if (env.toplevel.sourcefile instanceof CeylonFileObject) {
-            try {
-                sourceLanguage.push(Language.CEYLON);
-                super.desugar(env, results);
-                return;
-            } finally {
-                sourceLanguage.pop();
+        Profiler.Measurement measurement = profiler.start("desugar", env.toplevel.sourcefile);
+        try {
+            if (env.toplevel.sourcefile instanceof CeylonFileObject) {
+                try {
+                    sourceLanguage.push(Language.CEYLON);
+                    super.desugar(env, results);
+                    return;
+                } finally {
+                    sourceLanguage.pop();
+                }
             }
+            super.desugar(env, results);
+        } finally {
+            profiler.end(measurement);
         }
-        super.desugar(env, results);
     }
     
     protected void flow(Env<AttrContext> env, Queue<Env<AttrContext>> results) {
-        if (env.toplevel.sourcefile instanceof CeylonFileObject) {
-            try {
-                sourceLanguage.push(Language.CEYLON);
-                super.flow(env, results);
-                return;
-            } finally {
-                sourceLanguage.pop();
+        Profiler.Measurement measurement = profiler.start("flow", env.toplevel.sourcefile);
+        try {
+            if (env.toplevel.sourcefile instanceof CeylonFileObject) {
+                try {
+                    sourceLanguage.push(Language.CEYLON);
+                    super.flow(env, results);
+                    return;
+                } finally {
+                    sourceLanguage.pop();
+                }
             }
+            super.flow(env, results);   
+        } finally {
+            profiler.end(measurement);
         }
-        super.flow(env, results);   
     }
 
     @Override
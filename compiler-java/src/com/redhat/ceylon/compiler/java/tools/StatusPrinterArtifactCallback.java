@@ -32,39 +32,53 @@ import com.redhat.ceylon.common.StatusPrinter;
 final class StatusPrinterArtifactCallback implements ArtifactCallback {
 
     private StatusPrinter sp;
+    // the status line of our artifact, since the printer may be showing another one's
+    private String line;
     private long size;
     private long read;
     private int previousPercentage;
 
-    StatusPrinterArtifactCallback(StatusPrinter sp) {
+    StatusPrinterArtifactCallback(StatusPrinter sp, String line) {
         this.sp = sp;
+        this.line = line;
     }
 
+    String getLine() {
+        synchronized (sp) {
+            return line;
+        }
+    }
 
     @Override
     public void start(String nodeFullPath, long size, String contentStore) {
-        this.size = size;
-        read = 0;
-        previousPercentage = 0;
-        this.sp.logCapturedLine();
-        // leave 6 for size
-        int fitOn = Math.max(0, this.sp.getRemaining() - 6);
-        this.sp.log(" from "+contentStore+" ("+(size/1024)+"kb)", fitOn);
-        this.sp.captureLine();
+        synchronized (sp) {
+            this.size = size;
+            read = 0;
+            previousPercentage = 0;
+            this.sp.logLine(line);
+            // leave 6 for size
+            int fitOn = Math.max(0, this.sp.getRemaining() - 6);
+            this.sp.log(" from "+contentStore+" ("+(size/1024)+"kb)", fitOn);
+            this.sp.captureLine();
+            line = this.sp.getCapturedLine();
+        }
     }
 
     @Override
     public void read(byte[] bytes, int length) {
-        read += length;
-        if(size != -1){
-            int percentage = (int) Math.floor((((double)read)/size) * 100);
-            if(previousPercentage != percentage){
-                this.sp.logCapturedLine();
-                this.sp.logRight(" "+percentage+"% ");
-                previousPercentage = percentage;
+        synchronized (sp) {
+            read += length;
+            if(size != -1){
+                int percentage = (int) Math.floor((((double)read)/size) * 100);
+                if(previousPercentage != percentage){
+                    this.sp.logLine(line);
+                    this.sp.logRight(" "+percentage+"% ");
+                    previousPercentage = percentage;
+                }
+            }else{
+                this.sp.logLine(line);
+                this.sp.logRight(" "+(read/1024)+"kb ");
             }
-        }else{
-            this.sp.logRight(" "+(read/1024)+"kb ");
         }
     }
 
@@ -75,4 +89,4 @@ final class StatusPrinterArtifactCallback implements ArtifactCallback {
     @Override
     public void error(File localFile, Throwable err) {
     }
-}
\ No newline at end of file
+}
@@ -20,6 +20,9 @@
 
 package com.redhat.ceylon.compiler.java.tools;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.common.StatusPrinter;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
@@ -35,6 +38,9 @@ public class StatusPrinterProgressListener implements ProgressListener {
 
     private ModuleValidator validator;
     StatusPrinter sp;
+    // the artifacts being retrieved, several at once when they are prefetched
+    private Map<Module, StatusPrinterArtifactCallback> retrieving = new HashMap<Module, StatusPrinterArtifactCallback>();
+    private long started;
 
     public StatusPrinterProgressListener(ModuleValidator validator, StatusPrinter sp) {
         this.validator = validator;
@@ -43,18 +49,21 @@ public class StatusPrinterProgressListener implements ProgressListener {
 
     @Override
     public void retrievingModuleArtifact(Module module, ArtifactContext artifactContext) {
-        long done = validator.numberOfModulesAlreadySearched();
-        long todo = validator.numberOfModulesNotAlreadySearched();
-        long total = done + todo;
-        sp.clearLine();
-        sp.log("["+(done+1)+"/"+total+"]: ");
-        int moduleSize = sp.remainingForPercentage(0.4);
-        int versionSize = sp.remainingForPercentage(0.1);
-        sp.log(module.getNameAsString(), moduleSize);
-        sp.log("/");
-        sp.log(module.getVersion(), versionSize);
-        sp.captureLine();
-        artifactContext.setCallback(new StatusPrinterArtifactCallback(sp));
+        synchronized (sp) {
+            long done = started++;
+            long total = validator.numberOfModulesAlreadySearched() + validator.numberOfModulesNotAlreadySearched();
+            sp.clearLine();
+            sp.log("["+(done+1)+"/"+total+"]: ");
+            int moduleSize = sp.remainingForPercentage(0.4);
+            int versionSize = sp.remainingForPercentage(0.1);
+            sp.log(module.getNameAsString(), moduleSize);
+            sp.log("/");
+            sp.log(module.getVersion(), versionSize);
+            sp.captureLine();
+            StatusPrinterArtifactCallback callback = new StatusPrinterArtifactCallback(sp, sp.getCapturedLine());
+            retrieving.put(module, callback);
+            artifactContext.setCallback(callback);
+        }
     }
 
     @Override
@@ -63,13 +72,22 @@ public class StatusPrinterProgressListener implements ProgressListener {
 
     @Override
     public void retrievingModuleArtifactFailed(Module module, ArtifactContext artifactContext) {
-        sp.logCapturedLine();
-        sp.log(" FAIL");
+        retrieved(module, " FAIL");
     }
 
     @Override
     public void retrievingModuleArtifactSuccess(Module module, ArtifactResult artifact) {
-        sp.logCapturedLine();
-        sp.log(" OK");
+        retrieved(module, " OK");
+    }
+
+    private void retrieved(Module module, String status) {
+        synchronized (sp) {
+            StatusPrinterArtifactCallback callback = retrieving.remove(module);
+            if (callback != null)
+                sp.logLine(callback.getLine());
+            else
+                sp.logCapturedLine();
+            sp.log(status);
+        }
     }
 }
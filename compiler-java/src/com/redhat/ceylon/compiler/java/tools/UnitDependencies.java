@@ -0,0 +1,346 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.redhat.ceylon.compiler.java.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Scope;
+
+/**
+ * The declaration dependency graph of the source units of a module,
+ * which we store in its car as {@link #DEPENDENCIES_FILE} so that the
+ * next incremental compilation only has to compile the units that
+ * changed since, and the units that depend on them.
+ * <p>
+ * Every unit is recorded under its path relative to its source
+ * folder, with the SHA-1 of its contents, the qualified names of the
+ * toplevel declarations it declares, and the qualified names of the
+ * toplevel declarations of other units it uses. A use of a member
+ * counts as a use of its toplevel container, and declarations of the
+ * language module and of Java modules are not recorded since they
+ * are not compiled from source.
+ * <p>
+ * We also record the SHA-1 of every resource file of the module, and
+ * of the archive of every module it imports, so that a change to a
+ * resource or to an imported module compiled elsewhere is noticed.
+ */
+public class UnitDependencies {
+
+    public static final String DEPENDENCIES_FILE = "META-INF/dependencies.txt";
+
+    private static final String SHA1 = ".sha1";
+    private static final String DECLARES = ".declares";
+    private static final String USES = ".uses";
+    private static final String RESOURCE = "resource:";
+    private static final String IMPORT = "import:";
+
+    static class UnitInfo {
+        final String sha1;
+        final Set<String> declares;
+        final Set<String> uses;
+
+        UnitInfo(String sha1, Set<String> declares, Set<String> uses) {
+            this.sha1 = sha1;
+            this.declares = declares;
+            this.uses = uses;
+        }
+    }
+
+    private final Map<String, UnitInfo> units = new TreeMap<String, UnitInfo>();
+    /** The SHA-1 of the resource files, by path */
+    private final Map<String, String> resources = new TreeMap<String, String>();
+    /** The SHA-1 of the archives of the imported modules, by name/version */
+    private final Map<String, String> imports = new TreeMap<String, String>();
+
+    public Set<String> getUnits() {
+        return Collections.unmodifiableSet(units.keySet());
+    }
+
+    public boolean hasUnit(String path) {
+        return units.containsKey(path);
+    }
+
+    /**
+     * The SHA-1 of the given unit when it was last compiled, or null
+     * if we don't know about this unit.
+     */
+    public String getSha1(String path) {
+        UnitInfo info = units.get(path);
+        return info != null ? info.sha1 : null;
+    }
+
+    public Set<String> getDeclarations(String path) {
+        UnitInfo info = units.get(path);
+        return info != null ? Collections.unmodifiableSet(info.declares) : Collections.<String>emptySet();
+    }
+
+    public Set<String> getUses(String path) {
+        UnitInfo info = units.get(path);
+        return info != null ? Collections.unmodifiableSet(info.uses) : Collections.<String>emptySet();
+    }
+
+    public void addUnit(String path, String sha1, Set<String> declares, Set<String> uses) {
+        units.put(path, new UnitInfo(sha1, new TreeSet<String>(declares), new TreeSet<String>(uses)));
+    }
+
+    /**
+     * Records the given typechecked unit
+     */
+    public void addUnit(String path, String sha1, PhasedUnit phasedUnit) {
+        Set<String> declares = new TreeSet<String>();
+        for (Declaration declaration : phasedUnit.getUnit().getDeclarations()) {
+            if (declaration.isToplevel()) {
+                declares.add(declaration.getQualifiedNameString());
+            }
+        }
+        UsesVisitor visitor = new UsesVisitor(declares);
+        phasedUnit.getCompilationUnit().visit(visitor);
+        units.put(path, new UnitInfo(sha1, declares, visitor.uses));
+    }
+
+    public void removeUnit(String path) {
+        units.remove(path);
+    }
+
+    /**
+     * The SHA-1 of the resource files of the module when it was last
+     * compiled, by path relative to their resource folder
+     */
+    public Map<String, String> getResources() {
+        return Collections.unmodifiableMap(resources);
+    }
+
+    public void addResource(String path, String sha1) {
+        resources.put(path, sha1);
+    }
+
+    /**
+     * The SHA-1 of the archives of the modules imported by the module
+     * when it was last compiled, by module name and version separated
+     * with a slash
+     */
+    public Map<String, String> getImports() {
+        return Collections.unmodifiableMap(imports);
+    }
+
+    public void addImport(String name, String version, String sha1) {
+        imports.put(name + "/" + version, sha1);
+    }
+
+    /**
+     * Adds all the units, resources and imports of the given graph to
+     * this one, replacing those we already have.
+     */
+    public void addAll(UnitDependencies other) {
+        units.putAll(other.units);
+        resources.putAll(other.resources);
+        imports.putAll(other.imports);
+    }
+
+    /**
+     * Returns the given units along with every unit that depends on
+     * them, directly or not.
+     */
+    public Set<String> getDependentUnits(Collection<String> changedUnits) {
+        Set<String> result = new HashSet<String>(changedUnits);
+        Set<String> changedDeclarations = new HashSet<String>();
+        for (String path : changedUnits) {
+            changedDeclarations.addAll(getDeclarations(path));
+        }
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (Map.Entry<String, UnitInfo> entry : units.entrySet()) {
+                if (!result.contains(entry.getKey())
+                        && !Collections.disjoint(entry.getValue().uses, changedDeclarations)) {
+                    result.add(entry.getKey());
+                    changedDeclarations.addAll(entry.getValue().declares);
+                    added = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, UnitInfo> entry : units.entrySet()) {
+            String path = entry.getKey();
+            UnitInfo info = entry.getValue();
+            properties.setProperty(path + SHA1, info.sha1);
+            properties.setProperty(path + DECLARES, join(info.declares));
+            properties.setProperty(path + USES, join(info.uses));
+        }
+        for (Map.Entry<String, String> entry : resources.entrySet()) {
+            properties.setProperty(RESOURCE + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : imports.entrySet()) {
+            properties.setProperty(IMPORT + entry.getKey(), entry.getValue());
+        }
+        properties.store(out, "");
+    }
+
+    public static UnitDependencies read(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        UnitDependencies result = new UnitDependencies();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(RESOURCE)) {
+                result.resources.put(key.substring(RESOURCE.length()), properties.getProperty(key));
+            } else if (key.startsWith(IMPORT)) {
+                result.imports.put(key.substring(IMPORT.length()), properties.getProperty(key));
+            } else if (key.endsWith(SHA1)) {
+                String path = key.substring(0, key.length() - SHA1.length());
+                result.units.put(path, new UnitInfo(properties.getProperty(key),
+                        split(properties.getProperty(path + DECLARES)),
+                        split(properties.getProperty(path + USES))));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the graph stored in the given car, or returns null if the
+     * car does not exist or has no graph.
+     */
+    public static UnitDependencies read(File car) throws IOException {
+        if (car == null || !car.isFile()) {
+            return null;
+        }
+        JarFile jarFile = new JarFile(car);
+        try {
+            JarEntry entry = jarFile.getJarEntry(DEPENDENCIES_FILE);
+            if (entry == null) {
+                return null;
+            }
+            InputStream inputStream = jarFile.getInputStream(entry);
+            try {
+                return read(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    private static String join(Set<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    private static Set<String> split(String names) {
+        Set<String> result = new TreeSet<String>();
+        if (names != null && !names.isEmpty()) {
+            Collections.addAll(result, names.split(","));
+        }
+        return result;
+    }
+
+    /**
+     * Collects the toplevel declarations used by a unit
+     */
+    private static class UsesVisitor extends Visitor {
+        private final Set<String> declares;
+        final Set<String> uses = new TreeSet<String>();
+
+        UsesVisitor(Set<String> declares) {
+            this.declares = declares;
+        }
+
+        private void use(Declaration declaration) {
+            if (declaration == null) {
+                return;
+            }
+            Declaration toplevel = declaration;
+            Scope container = toplevel.getContainer();
+            while (!(container instanceof Package)) {
+                if (container instanceof Declaration) {
+                    toplevel = (Declaration) container;
+                    container = toplevel.getContainer();
+                } else if (container != null) {
+                    container = container.getContainer();
+                } else {
+                    return;
+                }
+            }
+            Module module = ((Package) container).getModule();
+            if (module == null
+                    || module.isJava()
+                    || Module.LANGUAGE_MODULE_NAME.equals(module.getNameAsString())) {
+                return;
+            }
+            String name = toplevel.getQualifiedNameString();
+            if (!declares.contains(name)) {
+                uses.add(name);
+            }
+        }
+
+        @Override
+        public void visit(Tree.MemberOrTypeExpression that) {
+            use(that.getDeclaration());
+            super.visit(that);
+        }
+
+        @Override
+        public void visit(Tree.SimpleType that) {
+            use(that.getDeclarationModel());
+            super.visit(that);
+        }
+
+        @Override
+        public void visit(Tree.ImportMemberOrType that) {
+            use(that.getDeclarationModel());
+            super.visit(that);
+        }
+
+        @Override
+        public void visit(Tree.MetaLiteral that) {
+            use(that.getDeclaration());
+            super.visit(that);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.redhat.ceylon.compiler.java.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.javax.tools.FileObject;
+import com.redhat.ceylon.javax.tools.JavaFileManager;
+import com.redhat.ceylon.javax.tools.StandardLocation;
+import com.redhat.ceylon.langtools.tools.javac.file.JavacFileManager;
+import com.redhat.ceylon.langtools.tools.javac.main.Option;
+import com.redhat.ceylon.langtools.tools.javac.util.Context;
+import com.redhat.ceylon.langtools.tools.javac.util.Options;
+
+/**
+ * Measures where a compilation spends its time when the
+ * {@code -profile-report <file>} option is set, and writes a JSON report to
+ * that file at the end of the compilation.
+ * <p>
+ * For every phase we report the wall time, the CPU time and the bytes
+ * allocated by the threads that ran it, along with the units that took
+ * the longest in that phase. A phase can be measured many times, for
+ * example javac runs flow analysis class by class, interleaved with the
+ * other phases, so each phase accumulates all of its measurements.
+ * Measurements are exclusive: when a phase triggers another one (a
+ * class being completed while attributing another, for example) the
+ * time spent in the inner phase is only counted for the inner phase.
+ * When phases run on several threads (see {@code -jobs}) their times
+ * are summed over the threads.
+ */
+public class Profiler {
+
+    private static final Context.Key<Profiler> profilerKey = new Context.Key<Profiler>();
+
+    /** The number of slowest units reported for each phase */
+    static final int SLOWEST_UNITS = 10;
+
+    public static Profiler instance(Context context) {
+        Profiler instance = context.get(profilerKey);
+        if (instance == null){
+            instance = new Profiler(context);
+            context.put(profilerKey, instance);
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final File reportFile;
+    private final ThreadMXBean threads;
+    private final boolean cpuTime;
+    private final boolean allocatedBytes;
+    private final Map<String, Phase> phases = new LinkedHashMap<String, Phase>();
+    private final ThreadLocal<Deque<Measurement>> measurements = new ThreadLocal<Deque<Measurement>>(){
+        @Override
+        protected Deque<Measurement> initialValue() {
+            return new ArrayDeque<Measurement>();
+        }
+    };
+    private final long start = System.nanoTime();
+    private Iterable<? extends File> sourcePath;
+
+    private Profiler(Context context) {
+        this.context = context;
+        String file = Options.instance(context).get(Option.CEYLONPROFILE);
+        reportFile = file != null ? new File(file) : null;
+        if (reportFile != null) {
+            threads = ManagementFactory.getThreadMXBean();
+            cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+            allocatedBytes = threads instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        } else {
+            threads = null;
+            cpuTime = false;
+            allocatedBytes = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return reportFile != null;
+    }
+
+    /**
+     * Starts measuring the given phase for the given unit (which may be
+     * null), until the returned measurement is {@link #end(Measurement)
+     * ended}. Returns null if we're not profiling.
+     */
+    public Measurement start(String phase, String unit) {
+        if (reportFile == null)
+            return null;
+        Deque<Measurement> stack = measurements.get();
+        Measurement outer = stack.peek();
+        if (outer != null)
+            outer.pause();
+        Measurement measurement = new Measurement(getPhase(phase), unit);
+        stack.push(measurement);
+        measurement.resume();
+        return measurement;
+    }
+
+    /**
+     * Starts measuring the given phase for the given source file
+     */
+    public Measurement start(String phase, FileObject unit) {
+        if (reportFile == null)
+            return null;
+        return start(phase, unitName(unit));
+    }
+
+    /**
+     * Ends the given measurement, which may be null
+     */
+    public void end(Measurement measurement) {
+        if (measurement == null)
+            return;
+        Deque<Measurement> stack = measurements.get();
+        if (!stack.contains(measurement))
+            return;
+        // also end the ones we failed to end because of an exception
+        while (!stack.isEmpty()) {
+            Measurement top = stack.pop();
+            top.pause();
+            top.record();
+            if (top == measurement)
+                break;
+        }
+        Measurement outer = stack.peek();
+        if (outer != null)
+            outer.resume();
+    }
+
+    private synchronized Phase getPhase(String name) {
+        Phase phase = phases.get(name);
+        if (phase == null) {
+            phase = new Phase(name);
+            phases.put(name, phase);
+        }
+        return phase;
+    }
+
+    private String unitName(FileObject unit) {
+        if (unit == null)
+            return null;
+        if (sourcePath == null) {
+            JavaFileManager fileManager = context.get(JavaFileManager.class);
+            if (fileManager instanceof JavacFileManager) {
+                sourcePath = ((JavacFileManager) fileManager).getLocation(StandardLocation.SOURCE_PATH);
+            }
+            if (sourcePath == null) {
+                sourcePath = Collections.<File>emptyList();
+            }
+        }
+        return FileUtil.relativeFile(sourcePath, unit.getName()).replace(File.separatorChar, '/');
+    }
+
+    private long cpuTime() {
+        return cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long allocatedBytes() {
+        return allocatedBytes
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+
+    /**
+     * Writes the report, if we're profiling
+     */
+    public void writeReport() throws IOException {
+        if (reportFile == null)
+            return;
+        long wallTime = System.nanoTime() - start;
+        File parent = reportFile.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+        try {
+            out.write("{\n");
+            out.write("  \"wallTimeNanos\": " + wallTime + ",\n");
+            out.write("  \"phases\": [");
+            List<Phase> phases;
+            synchronized (this) {
+                phases = new ArrayList<Phase>(this.phases.values());
+            }
+            boolean first = true;
+            for (Phase phase : phases) {
+                if (!first)
+                    out.write(",");
+                first = false;
+                phase.write(out);
+            }
+            out.write("\n  ]\n");
+            out.write("}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeString(Writer out, String string) throws IOException {
+        out.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"': out.write("\\\""); break;
+            case '\\': out.write("\\\\"); break;
+            case '\n': out.write("\\n"); break;
+            case '\r': out.write("\\r"); break;
+            case '\t': out.write("\\t"); break;
+            default:
+                if (c < 0x20) {
+                    out.write(String.format("\\u%04x", (int) c));
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * The accumulated measurements of a phase
+     */
+    private class Phase {
+        final String name;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong wallTime = new AtomicLong();
+        final AtomicLong cpuTime = new AtomicLong();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final ConcurrentHashMap<String, AtomicLong> unitWallTimes = new ConcurrentHashMap<String, AtomicLong>();
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        void add(String unit, long wallTime, long cpuTime, long allocatedBytes) {
+            count.incrementAndGet();
+            this.wallTime.addAndGet(wallTime);
+            this.cpuTime.addAndGet(cpuTime);
+            this.allocatedBytes.addAndGet(allocatedBytes);
+            if (unit != null) {
+                AtomicLong unitWallTime = unitWallTimes.get(unit);
+                if (unitWallTime == null) {
+                    AtomicLong newUnitWallTime = new AtomicLong();
+                    unitWallTime = unitWallTimes.putIfAbsent(unit, newUnitWallTime);
+                    if (unitWallTime == null)
+                        unitWallTime = newUnitWallTime;
+                }
+                unitWallTime.addAndGet(wallTime);
+            }
+        }
+
+        void write(Writer out) throws IOException {
+            out.write("\n    {\n");
+            out.write("      \"name\": ");
+            writeString(out, name);
+            out.write(",\n");
+            out.write("      \"count\": " + count.get() + ",\n");
+            out.write("      \"wallTimeNanos\": " + wallTime.get() + ",\n");
+            out.write("      \"cpuTimeNanos\": " + (Profiler.this.cpuTime ? cpuTime.get() : -1) + ",\n");
+            out.write("      \"allocatedBytes\": " + (Profiler.this.allocatedBytes ? allocatedBytes.get() : -1) + ",\n");
+            out.write("      \"slowestUnits\": [");
+            List<Map.Entry<String, AtomicLong>> units = new ArrayList<Map.Entry<String, AtomicLong>>(unitWallTimes.entrySet());
+            Collections.sort(units, new Comparator<Map.Entry<String, AtomicLong>>() {
+                @Override
+                public int compare(Map.Entry<String, AtomicLong> a, Map.Entry<String, AtomicLong> b) {
+                    long aTime = a.getValue().get();
+                    long bTime = b.getValue().get();
+                    return aTime < bTime ? 1 : (aTime == bTime ? a.getKey().compareTo(b.getKey()) : -1);
+                }
+            });
+            for (int i = 0; i < units.size() && i < SLOWEST_UNITS; i++) {
+                Map.Entry<String, AtomicLong> unit = units.get(i);
+                if (i > 0)
+                    out.write(",");
+                out.write("\n        { \"unit\": ");
+                writeString(out, unit.getKey());
+                out.write(", \"wallTimeNanos\": " + unit.getValue().get() + " }");
+            }
+            out.write(units.isEmpty() ? "]\n" : "\n      ]\n");
+            out.write("    }");
+        }
+    }
+
+    /**
+     * A single measurement of a phase, for at most one unit, on the
+     * current thread.
+     */
+    public class Measurement {
+        private final Phase phase;
+        private final String unit;
+        private long wallTime;
+        private long cpuTime;
+        private long allocatedBytes;
+        private long wallTimeStart;
+        private long cpuTimeStart;
+        private long allocatedBytesStart;
+
+        private Measurement(Phase phase, String unit) {
+            this.phase = phase;
+            this.unit = unit;
+        }
+
+        private void resume() {
+            wallTimeStart = System.nanoTime();
+            cpuTimeStart = cpuTime();
+            allocatedBytesStart = allocatedBytes();
+        }
+
+        private void pause() {
+            wallTime += System.nanoTime() - wallTimeStart;
+            cpuTime += cpuTime() - cpuTimeStart;
+            allocatedBytes += allocatedBytes() - allocatedBytesStart;
+        }
+
+        private void record() {
+            phase.add(unit, wallTime, cpuTime, allocatedBytes);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.redhat.ceylon.tools.compileserver;
+
+import com.redhat.ceylon.common.tool.CeylonBaseTool;
+import com.redhat.ceylon.common.tool.Description;
+import com.redhat.ceylon.common.tool.OptionArgument;
+import com.redhat.ceylon.common.tool.RemainingSections;
+import com.redhat.ceylon.common.tool.Summary;
+import com.redhat.ceylon.compiler.java.launcher.CompileServer;
+
+@Summary("Runs a compile server which keeps the compiler loaded between compilations")
+@Description("Starts a server which runs the compilations sent to it by "
+        + "`ceylon compile --server=<port>`, saving the time it takes to start "
+        + "a new JVM and load the compiler for each compilation. Module archives "
+        + "read by a compilation stay indexed for the following ones, until they "
+        + "change."
+        + "\n\n"
+        + "The server only accepts connections from the local machine, runs one "
+        + "compilation at a time, and runs until it is killed. Once it is ready "
+        + "it prints the port it is listening on."
+        + "\n\n"
+        + "Clients must send a random token, which the server writes to a file "
+        + "that only its user can read, in the `.compile-server` folder of the "
+        + "cache repository. So only the user who started the server can use it.")
+@RemainingSections("## Examples"
+        + "\n\n"
+        + "Starting a compile server on port 9999:"
+        + "\n\n"
+        + "    ceylon compile-server --port=9999"
+        + "\n\n"
+        + "Compiling a module with it:"
+        + "\n\n"
+        + "    ceylon compile --server=9999 com.example.foo")
+public class CeylonCompileServerTool extends CeylonBaseTool {
+
+    private int port = 0;
+
+    @OptionArgument(argumentName="port")
+    @Description("The port to listen on (default: any free port)")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public void run() throws Exception {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        try (CompileServer server = new CompileServer(port)) {
+            System.out.println("Listening on port " + server.getPort());
+            System.out.flush();
+            server.serve();
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class CeylonCopyTool extends OutputRepoUsingTool {
     private Boolean src;
     private Boolean scripts;
     private Boolean all;
+    private int jobs = 1;
     
     public CeylonCopyTool() {
         super(CeylonCopyMessages.RESOURCE_BUNDLE);
@@ -97,6 +98,12 @@ public class CeylonCopyTool extends OutputRepoUsingTool {
         this.all = all;
     }
 
+    @OptionArgument(argumentName = "jobs")
+    @Description("Copy up to `jobs` modules at the same time (default: `1`)")
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
     @Option(shortName='d')
     @OptionArgument(argumentName = "flags")
     @Description("Produce verbose output. " +
@@ -123,6 +130,9 @@ public class CeylonCopyTool extends OutputRepoUsingTool {
     
     @Override
     public void run() throws Exception {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("Invalid number of jobs: " + jobs);
+        }
         Set<String> artifacts = new LinkedHashSet<String>();
         boolean defaults = js == null 
                 && jvm == null
@@ -239,6 +249,7 @@ public class CeylonCopyTool extends OutputRepoUsingTool {
                 errorNewline();
             }
         });
+        copier.setJobs(jobs);
         copier.copyModules(acs);
     }
 
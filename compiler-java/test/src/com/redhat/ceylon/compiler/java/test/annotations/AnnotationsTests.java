@@ -19,12 +19,15 @@
  */
 package com.redhat.ceylon.compiler.java.test.annotations;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
 import com.redhat.ceylon.compiler.java.test.CompilerTests;
+import com.redhat.ceylon.compiler.java.test.ErrorCollector;
 
 public class AnnotationsTests extends CompilerTests {
     @Test
@@ -179,6 +182,15 @@ public class AnnotationsTests extends CompilerTests {
         compile("AnnotationConstructorUse.ceylon");
     }
     
+    @Test
+    public void testAnnotationConstructorsWithJobs(){
+        List<String> options = new ArrayList<String>(defaultOptions);
+        options.add("-jobs");
+        options.add("4");
+        ErrorCollector c = new ErrorCollector();
+        assertCompilesOk(c, getCompilerTask(options, c, "AnnotationConstructor.ceylon", "AnnotationConstructorUse.ceylon").call2());
+    }
+    
     @Test
     public void testAnnotationTarget(){
         compareWithJavaSource("AnnotationTarget");
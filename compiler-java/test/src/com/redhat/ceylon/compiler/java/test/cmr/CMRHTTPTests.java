@@ -24,6 +24,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -40,6 +41,12 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.CmrRepository;
+import com.redhat.ceylon.cmr.impl.CMRJULLogger;
+import com.redhat.ceylon.cmr.impl.CachingRepositoryManager;
+import com.redhat.ceylon.cmr.impl.DefaultRepository;
+import com.redhat.ceylon.cmr.impl.RemoteContentStore;
 import com.redhat.ceylon.compiler.java.launcher.Main.ExitState;
 import com.redhat.ceylon.compiler.java.test.CompilerError;
 import com.redhat.ceylon.compiler.java.test.CompilerTests;
@@ -51,7 +58,7 @@ public class CMRHTTPTests extends CompilerTests {
     interface ExpectedError {}
     
     enum TimeoutIn implements ExpectedError {
-        None, Head, GetInitial, GetMiddle, PutInitial, PutMiddle;
+        None, Head, GetInitial, GetMiddle, GetMiddleOnce, PutInitial, PutMiddle;
     }
 
     enum HttpError implements ExpectedError {
@@ -60,9 +67,17 @@ public class CMRHTTPTests extends CompilerTests {
 
     class RequestCounter{
         volatile int count;
+        volatile int ranges;
+        volatile int notModified;
         synchronized void add(){
             count++;
         }
+        synchronized void addRange(){
+            ranges++;
+        }
+        synchronized void addNotModified(){
+            notModified++;
+        }
         synchronized void check(int count){
             Assert.assertEquals(count, this.count);
         }
@@ -256,7 +271,91 @@ public class CMRHTTPTests extends CompilerTests {
         }
     }
 
-    
+    @Test
+    public void testMdlHTTPResume() throws IOException {
+        RequestCounter rq = new RequestCounter();
+        String moduleA = "com.redhat.ceylon.compiler.java.test.cmr.modules.depend.a";
+        
+        // Clean up any cached version
+        File carFileInCache = getModuleArchive(moduleA, "6.6.6", cacheDir);
+        if(carFileInCache.exists())
+            carFileInCache.delete();
+
+        // Compile the first module in its own repo 
+        File repo = makeRepo();
+        
+        Boolean result = getCompilerTask(Arrays.asList("-out", repo.getPath()),
+                "modules/depend/a/module.ceylon", "modules/depend/a/package.ceylon", "modules/depend/a/A.ceylon").call();
+        Assert.assertEquals(Boolean.TRUE, result);
+        
+        File carFile = getModuleArchive(moduleA, "6.6.6", repo.getPath());
+        assertTrue(carFile.exists());
+
+        final int port = allocPortForTest();
+        final String repoAURL = getRepoUrl(port);
+        
+        // now serve the first repo over HTTP, stalling once in the middle of a download
+        HttpServer server = startServer(port, repo, false, rq, TimeoutIn.GetMiddleOnce); 
+        
+        try{
+            // the download times out once and must resume where it stopped
+            result = getCompilerTask(Arrays.asList("-out", destDir, "-rep", repoAURL, "-verbose:cmr", "-cp", getClassPathAsPath(), "-timeout", "50"),
+                    "modules/depend/b/module.ceylon", "modules/depend/b/package.ceylon", "modules/depend/b/a.ceylon", "modules/depend/b/B.ceylon").call();
+            Assert.assertEquals(Boolean.TRUE, result);
+        }finally{
+            server.stop(1);
+        }
+        
+        // make sure it cached the whole module, which also passed its SHA1 check
+        assertTrue(carFileInCache.exists());
+        Assert.assertEquals(carFile.length(), carFileInCache.length());
+        Assert.assertEquals(1, rq.ranges);
+    }
+
+    @Test
+    public void testMdlHTTPConditionalGet() throws IOException {
+        RequestCounter rq = new RequestCounter();
+        // snapshots are revalidated every time
+        String module = "com.redhat.ceylon.compiler.java.test.cmr.modules.etag";
+        String version = "1.0-SNAPSHOT";
+
+        File repo = makeRepo();
+        File src = new File(repo, module.replace('.', '/')+"/"+version+"/"+module+"-"+version+ArtifactContext.SRC);
+        src.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(src);
+        try{
+            writer.write("not really a source archive");
+        }finally{
+            writer.close();
+        }
+
+        final int port = allocPortForTest();
+        final String repoAURL = getRepoUrl(port);
+        File cache = new File("build/test-cache-http");
+        cleanCars(cache.getPath());
+        
+        HttpServer server = startServer(port, repo, false, rq); 
+        
+        try{
+            CMRJULLogger log = new CMRJULLogger();
+            CmrRepository remote = new DefaultRepository(new RemoteContentStore(repoAURL, log, false, 5000, null).createRoot());
+            CachingRepositoryManager manager = new CachingRepositoryManager(remote, cache, log);
+            ArtifactContext context = new ArtifactContext(module, version, ArtifactContext.SRC);
+            
+            File first = manager.getArtifact(context);
+            assertNotNull(first);
+            Assert.assertEquals(src.length(), first.length());
+            Assert.assertEquals(0, rq.notModified);
+            
+            // the second lookup revalidates our copy without downloading it again
+            File second = manager.getArtifact(context);
+            Assert.assertEquals(first, second);
+            Assert.assertEquals(1, rq.notModified);
+        }finally{
+            server.stop(1);
+        }
+    }
+
     @Test
     public void testMdlHTTPOutputRepo() throws IOException{
         testMdlHTTPOutputRepo(true, 9);
@@ -303,8 +402,9 @@ public class CMRHTTPTests extends CompilerTests {
 
     @Test
     public void testMdlHTTPMixedCompilation() throws IOException{
-        testMdlHTTPMixedCompilation(false, 133);
-        testMdlHTTPMixedCompilation(true, 20);
+        // the lookup index spares us revalidating the released car we just published
+        testMdlHTTPMixedCompilation(false, 132);
+        testMdlHTTPMixedCompilation(true, 19);
     }
     
     private void testMdlHTTPMixedCompilation(boolean herd, int requests) throws IOException{
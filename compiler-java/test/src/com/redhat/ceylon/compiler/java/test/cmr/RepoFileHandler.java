@@ -65,6 +65,7 @@ public class RepoFileHandler implements HttpHandler {
     private boolean herd;
     private TimeoutIn timeoutIn;
     private HttpError httpError;
+    private boolean timedOutOnce;
 
     public RepoFileHandler(String destdir, boolean herd, RequestCounter rq, ExpectedError error) {
         this.folder = destdir;
@@ -158,12 +159,43 @@ public class RepoFileHandler implements HttpHandler {
                     log("Serving file "+file.getPath());
                     if(timeoutIn == TimeoutIn.GetInitial)
                         timeout();
-                    t.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.length());
+                    long start = 0;
+                    if(file.isFile()){
+                        String etag = "\""+file.length()+"-"+file.lastModified()+"\"";
+                        t.getResponseHeaders().add("ETag", etag);
+                        t.getResponseHeaders().add("Accept-Ranges", "bytes");
+                        if(etag.equals(t.getRequestHeaders().getFirst("If-None-Match"))){
+                            if(rq != null)
+                                rq.addNotModified();
+                            t.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                            t.close();
+                            return;
+                        }
+                        String range = t.getRequestHeaders().getFirst("Range");
+                        if(range != null && range.startsWith("bytes=") && range.endsWith("-")){
+                            start = Long.parseLong(range.substring(6, range.length()-1));
+                            if(rq != null)
+                                rq.addRange();
+                        }
+                    }
+                    if(start > 0){
+                        t.getResponseHeaders().add("Content-Range", "bytes "+start+"-"+(file.length()-1)+"/"+file.length());
+                        t.sendResponseHeaders(HttpURLConnection.HTTP_PARTIAL, file.length() - start);
+                    }else{
+                        t.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.length());
+                    }
                     OutputStream os = t.getResponseBody();
                     // only write the contents if it's not a directory, otherwise the CMR expects an empty 200 response
                     if(!file.isDirectory()){
                         InputStream is = new FileInputStream(file);
-                        copy(is, os, Method.Get);
+                        try{
+                            long skipped = 0;
+                            while(skipped < start)
+                                skipped += is.skip(start - skipped);
+                            copy(is, os, Method.Get);
+                        }finally{
+                            is.close();
+                        }
                     }
                     t.close();
                     return;
@@ -236,6 +268,10 @@ public class RepoFileHandler implements HttpHandler {
             if((timeoutIn == TimeoutIn.GetMiddle && method == Method.Get)
                     || (timeoutIn == TimeoutIn.PutMiddle && method == Method.Put))
                 timeout();
+            if(timeoutIn == TimeoutIn.GetMiddleOnce && method == Method.Get && !timedOutOnce){
+                timedOutOnce = true;
+                timeout();
+            }
         }
         out.flush();
     }
@@ -83,7 +83,9 @@ import com.redhat.ceylon.model.loader.AbstractModelLoader;
 import com.redhat.ceylon.model.loader.ModelLoader;
 import com.redhat.ceylon.model.loader.ModelLoader.DeclarationType;
 import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
+import com.redhat.ceylon.model.loader.model.LazyClass;
 import com.redhat.ceylon.model.loader.model.LazyElement;
+import com.redhat.ceylon.model.loader.model.LazyInterface;
 import com.redhat.ceylon.model.typechecker.model.Annotation;
 import com.redhat.ceylon.model.typechecker.model.Class;
 import com.redhat.ceylon.model.typechecker.model.ClassOrInterface;
@@ -1267,6 +1269,71 @@ public class ModelLoaderTests extends CompilerTests {
         }, Arrays.asList("-verbose:loader"));
     }
 
+    @Test
+    public void parallelLoaderLoadsIdenticalModels(){
+        // whatever test, doesn't matter
+        verifyCompilerClassLoading("Any.ceylon", new RunnableTest(){
+            @Override
+            public void test(final ModelLoader loader) {
+                // make a task that loads the jdk and language module by name, and returns what it found
+                Callable<Map<String,Declaration>> task = new Callable<Map<String,Declaration>>(){
+                    @Override
+                    public Map<String,Declaration> call() throws Exception {
+                        Map<String,Declaration> found = new HashMap<String,Declaration>();
+                        for(String moduleName : JDKUtils.getJDKModuleNames()) {
+                            Module mod = loader.getLoadedModule(moduleName, JDKUtils.jdk.version);
+                            Assert.assertNotNull(mod);
+                            for (String pkgName : JDKUtils.getJDKPackagesByModule(moduleName)) {
+                                collect(loader, mod, mod.getDirectPackage(pkgName), found);
+                            }
+                        }
+                        Module languageModule = loader.getLoadedModule(AbstractModelLoader.CEYLON_LANGUAGE, Versions.CEYLON_VERSION_NUMBER);
+                        Assert.assertNotNull(languageModule);
+                        collect(loader, languageModule, languageModule.getDirectPackage(AbstractModelLoader.CEYLON_LANGUAGE), found);
+                        return found;
+                    }
+                };
+                List<Callable<Map<String,Declaration>>> tasks = new ArrayList<Callable<Map<String,Declaration>>>(10);
+                for(int i=0;i<10;i++){
+                    tasks.add(task);
+                }
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(10, 10, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<Runnable>(10));
+                try {
+                    List<Future<Map<String,Declaration>>> futures = executor.invokeAll(tasks);
+                    Map<String,Declaration> expected = futures.get(0).get();
+                    Assert.assertFalse(expected.isEmpty());
+                    for(Future<Map<String,Declaration>> f : futures){
+                        Map<String,Declaration> found = f.get();
+                        Assert.assertEquals(expected.keySet(), found.keySet());
+                        for(Entry<String,Declaration> entry : found.entrySet()){
+                            Assert.assertSame(entry.getKey(), expected.get(entry.getKey()), entry.getValue());
+                        }
+                    }
+                    executor.shutdown();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            private void collect(ModelLoader loader, Module mod, Package p, Map<String,Declaration> found) {
+                Assert.assertNotNull(p);
+                for(Declaration decl : p.getMembers()){
+                    // skip Java constructor overloads, they share the name of their abstraction
+                    if(decl.isOverloaded() && !decl.isAbstraction())
+                        continue;
+                    found.put(decl.getQualifiedNameString(), decl);
+                    if((decl instanceof LazyClass || decl instanceof LazyInterface) && !decl.isAnonymous()){
+                        // also look it up by name, which goes through the published declarations
+                        String name = p.getQualifiedNameString() + "." + decl.getName();
+                        found.put("by name: " + name, loader.getDeclaration(mod, name, DeclarationType.TYPE));
+                    }
+                }
+            }
+        });
+    }
+
     @Ignore("This is the single-threaded version of parallelLoader that loads the JDK entirely to benchmark the model loader")
     @Test
     public void jdkModelLoaderSpeedTest(){
@@ -160,6 +160,31 @@ public class RecoveryTests extends CompilerTests {
         compile(30, "ClassWithBrokenMembers.ceylon");
     }
 
+    @Test
+    public void testRcvBrokenFilesWithJobs(){
+        String[] ceylon = {"BrokenClass.ceylon", "BrokenMethod.ceylon", "BrokenAttribute.ceylon"};
+        List<String> options = new ArrayList<String>(defaultOptions);
+        options.add("-jobs");
+        options.add("4");
+        // parsing in parallel must report the same errors in the same order
+        Assert.assertEquals(getDiagnostics(defaultOptions, ceylon), getDiagnostics(options, ceylon));
+    }
+
+    private List<String> getDiagnostics(List<String> options, String... ceylon) {
+        DiagnosticCollector<JavaFileObject> errorCollector = new DiagnosticCollector<JavaFileObject>();
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Boolean success = getCompilerTask(options, (DiagnosticListener)errorCollector , ceylon).call();
+        Assert.assertFalse(success);
+        List<String> diagnostics = new ArrayList<String>();
+        for(Diagnostic<? extends JavaFileObject> diagnostic : errorCollector.getDiagnostics()){
+            diagnostics.add("("+diagnostic.getKind()+") "
+                    +(diagnostic.getSource() != null ? diagnostic.getSource().getName() : "")
+                    +"["+diagnostic.getLineNumber()+","+diagnostic.getColumnNumber()+"]: "
+                    +diagnostic.getMessage(Locale.getDefault()));
+        }
+        return diagnostics;
+    }
+
     @Test
     public void testRcvDuplicateDeclarations(){
         // this is https://github.com/ceylon/ceylon-compiler/issues/250
@@ -23,8 +23,17 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
@@ -32,6 +41,8 @@ import java.util.zip.ZipEntry;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
+import com.redhat.ceylon.cmr.impl.CMRJULLogger;
 import com.redhat.ceylon.common.FileUtil;
 import com.redhat.ceylon.common.tool.OptionArgumentException;
 import com.redhat.ceylon.common.tool.ToolModel;
@@ -39,6 +50,9 @@ import com.redhat.ceylon.common.tool.ToolUsageError;
 import com.redhat.ceylon.compiler.CeylonCompileTool;
 import com.redhat.ceylon.compiler.CompilerErrorException;
 import com.redhat.ceylon.compiler.SystemErrorException;
+import com.redhat.ceylon.compiler.java.launcher.CompileServer;
+import com.redhat.ceylon.compiler.java.tools.IncrementalSources;
+import com.redhat.ceylon.compiler.java.tools.UnitDependencies;
 
 public class CompilerToolTests extends AbstractToolTests {
     
@@ -280,6 +294,245 @@ public class CompilerToolTests extends AbstractToolTests {
         }
     }
   
+    @Test
+    public void testCompileOnServer()  throws Exception {
+        final CompileServer server = new CompileServer(0);
+        Thread serverThread = new Thread("compile-server") {
+            @Override
+            public void run() {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
+            Assert.assertNotNull(model);
+            String port = "--server=" + server.getPort();
+            // twice, the second one with the archives already indexed
+            for (int i = 0; i < 2; i++) {
+                CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                        options(port, "--src=test/src", "com.redhat.ceylon.tools.test.ceylon"));
+                tool.run();
+            }
+            CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                    options(port, "--src=test/src", "com.redhat.ceylon.tools.test.analysis"));
+            try{
+                tool.run();
+                Assert.fail("Tool should have thrown an exception");
+            }catch(CompilerErrorException x){
+                Assert.assertEquals("There were 3 errors", x.getMessage());
+            }
+            
+            // arguments longer than 64k, like a long class path
+            StringBuilder classPath = new StringBuilder(getClassPathAsPath());
+            while (classPath.length() < 70000) {
+                classPath.append(File.pathSeparator).append("build/no-such-folder");
+            }
+            tool = pluginFactory.bindArguments(model, getMainTool(),
+                    Arrays.asList(port, "--src=test/src", "--sysrep", getSysRepPath(), "--out", destDir,
+                            "--javac=-cp=" + classPath, "com.redhat.ceylon.tools.test.ceylon"));
+            tool.run();
+            
+            // only the user of the server can read its token
+            Path tokenFile = CompileServer.getTokenFile(server.getPort()).toPath();
+            if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+                Assert.assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), 
+                        Files.getPosixFilePermissions(tokenFile));
+            }
+            // and it refuses clients without the token
+            byte[] token = Files.readAllBytes(tokenFile);
+            Files.write(tokenFile, "not the token".getBytes("UTF-8"));
+            try {
+                CompileServer.compile(server.getPort(), new String[0], new StringWriter());
+                Assert.fail("Server should have refused the compilation");
+            } catch (IOException x) {
+                Assert.assertTrue(x.getMessage(), x.getMessage().contains("wrong token"));
+            } finally {
+                Files.write(tokenFile, token);
+            }
+        } finally {
+            server.close();
+        }
+        Assert.assertFalse(CompileServer.getTokenFile(server.getPort()).exists());
+    }
+    
+    @Test
+    public void testCompileIncremental()  throws Exception {
+        File srcDir = new File(destFile("incrementaltest"), "src");
+        FileUtil.delete(srcDir.getParentFile());
+        srcDir.mkdirs();
+        FileUtil.copyAll(new File("test/src/com/redhat/ceylon/tools/test/incrementaltest/src"), srcDir);
+        File moduleDir = new File(srcDir, "incrementaltest");
+        
+        ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
+        Assert.assertNotNull(model);
+        CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--incremental", "--src=" + srcDir.getPath(), "incrementaltest"));
+        tool.run();
+        
+        File carFile = getModuleArchive("incrementaltest", "1");
+        UnitDependencies dependencies = UnitDependencies.read(carFile);
+        assertNotNull(dependencies);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(
+                    "incrementaltest/module.ceylon", "incrementaltest/greeting.ceylon",
+                    "incrementaltest/greet.ceylon", "incrementaltest/answer.ceylon")), 
+                dependencies.getUnits());
+        Assert.assertEquals(Collections.singleton("incrementaltest::Greeting"), 
+                dependencies.getUses("incrementaltest/greet.ceylon"));
+        Assert.assertEquals(Collections.singleton("incrementaltest::greet"), 
+                dependencies.getDeclarations("incrementaltest/greet.ceylon"));
+        
+        // nothing changed: the car is left alone
+        long lastModified = carFile.lastModified() - 10000;
+        carFile.setLastModified(lastModified);
+        tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--incremental", "--src=" + srcDir.getPath(), "incrementaltest"));
+        tool.run();
+        Assert.assertEquals(lastModified, carFile.lastModified());
+        
+        // a changed unit is compiled along with the units that use it
+        FileWriter writer = new FileWriter(new File(moduleDir, "greeting.ceylon"));
+        try {
+            writer.write("shared class Greeting(shared String name) {\n" +
+                    "    shared String text => \"Hi \" + name;\n" +
+                    "}\n");
+        } finally {
+            writer.close();
+        }
+        IncrementalSources sources = new IncrementalSources(
+                Collections.singletonList(srcDir), Collections.<File>emptyList(),
+                CeylonUtils.repoManager().outRepo(destDir).buildOutputManager(),
+                CeylonUtils.repoManager().systemRepo(getSysRepPath()).buildManager(),
+                new CMRJULLogger());
+        Assert.assertEquals(new HashSet<File>(Arrays.asList(
+                    new File(moduleDir, "greeting.ceylon"), new File(moduleDir, "greet.ceylon"))),
+                new HashSet<File>(sources.getFilesToCompile(Collections.singletonList("incrementaltest"))));
+        
+        tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--incremental", "--src=" + srcDir.getPath(), "incrementaltest"));
+        tool.run();
+        // the classes of the units we did not compile are still there
+        JarFile car = new JarFile(carFile);
+        try {
+            assertNotNull(car.getEntry("incrementaltest/answer_.class"));
+            assertNotNull(car.getEntry("incrementaltest/greet_.class"));
+            assertNotNull(car.getEntry("incrementaltest/Greeting.class"));
+        } finally {
+            car.close();
+        }
+        Assert.assertEquals(4, UnitDependencies.read(carFile).getUnits().size());
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testCompileIncrementalResourcesAndImports()  throws Exception {
+        File testDir = destFile("incrementalimporttest");
+        FileUtil.delete(testDir);
+        File importedSrcDir = new File(testDir, "imported-src");
+        File srcDir = new File(testDir, "src");
+        File resourceDir = new File(testDir, "resource");
+        writeFile(new File(importedSrcDir, "incrementalimported/module.ceylon"), 
+                "module incrementalimported \"1\" {}\n");
+        writeFile(new File(importedSrcDir, "incrementalimported/package.ceylon"), 
+                "shared package incrementalimported;\n");
+        writeFile(new File(importedSrcDir, "incrementalimported/value.ceylon"), 
+                "shared Integer importedValue => 1;\n");
+        writeFile(new File(srcDir, "incrementalimporter/module.ceylon"), 
+                "module incrementalimporter \"1\" { import incrementalimported \"1\"; }\n");
+        writeFile(new File(srcDir, "incrementalimporter/run.ceylon"), 
+                "import incrementalimported { importedValue }\n" +
+                "shared Integer importerValue => importedValue + 1;\n");
+        File resource = new File(resourceDir, "incrementalimporter/hello.txt");
+        writeFile(resource, "Hello");
+        
+        ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
+        Assert.assertNotNull(model);
+        CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--src=" + importedSrcDir.getPath(), "incrementalimported"));
+        tool.run();
+        tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--incremental", "--src=" + srcDir.getPath(), "--resource=" + resourceDir.getPath(), 
+                        "incrementalimporter"));
+        tool.run();
+        
+        File carFile = getModuleArchive("incrementalimporter", "1");
+        UnitDependencies dependencies = UnitDependencies.read(carFile);
+        assertNotNull(dependencies);
+        Assert.assertEquals(Collections.singleton("incrementalimporter/hello.txt"), 
+                dependencies.getResources().keySet());
+        Assert.assertTrue(dependencies.getImports().containsKey("incrementalimported/1"));
+        
+        IncrementalSources sources = new IncrementalSources(
+                Collections.singletonList(srcDir), Collections.singletonList(resourceDir),
+                CeylonUtils.repoManager().outRepo(destDir).buildOutputManager(),
+                CeylonUtils.repoManager().systemRepo(getSysRepPath())
+                    .userRepos(Collections.singletonList(destDir)).buildManager(),
+                new CMRJULLogger());
+        List<String> modules = Collections.singletonList("incrementalimporter");
+        Assert.assertEquals(Collections.emptyList(), sources.getFilesToCompile(modules));
+        
+        // a changed resource is added again, without compiling the units
+        writeFile(resource, "Hi");
+        Assert.assertEquals(Collections.singletonList(resource), sources.getFilesToCompile(modules));
+        tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--incremental", "--src=" + srcDir.getPath(), "--resource=" + resourceDir.getPath(), 
+                        "incrementalimporter"));
+        tool.run();
+        JarFile car = new JarFile(carFile);
+        try {
+            ZipEntry entry = car.getEntry("incrementalimporter/hello.txt");
+            assertNotNull(entry);
+            Assert.assertEquals(2, entry.getSize());
+        } finally {
+            car.close();
+        }
+        Assert.assertEquals(Collections.emptyList(), sources.getFilesToCompile(modules));
+        
+        // an imported module compiled again elsewhere makes us compile everything
+        writeFile(new File(importedSrcDir, "incrementalimported/value.ceylon"), 
+                "shared Integer importedValue => 2;\n");
+        tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--src=" + importedSrcDir.getPath(), "incrementalimported"));
+        tool.run();
+        Assert.assertEquals(new HashSet<File>(Arrays.asList(
+                    new File(srcDir, "incrementalimporter/module.ceylon"), 
+                    new File(srcDir, "incrementalimporter/run.ceylon"), resource)),
+                new HashSet<File>(sources.getFilesToCompile(modules)));
+    }
+
+    @Test
+    public void testCompileProfile()  throws Exception {
+        File profile = destFile("profile.json");
+        profile.delete();
+        ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
+        Assert.assertNotNull(model);
+        CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                options("--profile=" + profile.getPath(), "--src=test/src", "com.redhat.ceylon.tools.test.ceylon"));
+        tool.run();
+        
+        assertTrue(profile.exists());
+        String report = new String(Files.readAllBytes(profile.toPath()), "UTF-8");
+        for (String phase : Arrays.asList("parse", "moduleVisit", "typecheck.analyseTypes", 
+                "prepare.boxing", "transform", "attribute", "flow", "desugar", "generate", "car")) {
+            assertTrue(phase, report.contains("\"name\": \"" + phase + "\""));
+        }
+        assertTrue(report.contains("\"unit\": \"com/redhat/ceylon/tools/test/ceylon/foo.ceylon\""));
+    }
+
     @Test
     public void testCompileWithErroneous()  throws Exception {
         ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
@@ -22,10 +22,13 @@ package com.redhat.ceylon.tools.test;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.redhat.ceylon.common.Versions;
 import com.redhat.ceylon.common.tool.OptionArgumentException;
 import com.redhat.ceylon.common.tool.ToolModel;
 import com.redhat.ceylon.tools.copy.CeylonCopyTool;
@@ -95,4 +98,44 @@ public class CopyToolTests extends AbstractToolTests {
             Assert.assertTrue(f.length() != 0);
         }
     }
+
+    @Test
+    public void testJobs() throws Exception {
+        File sequential = new File(getOutPath(), "jobs1");
+        File concurrent = new File(getOutPath(), "jobs4");
+        copyLanguageModule(sequential, 1);
+        copyLanguageModule(concurrent, 4);
+
+        Set<String> files = listFiles(concurrent, "", new TreeSet<String>());
+        Assert.assertEquals(listFiles(sequential, "", new TreeSet<String>()), files);
+        Assert.assertTrue(getModuleArchive("ceylon.language", Versions.CEYLON_VERSION_NUMBER, concurrent.getPath()).exists());
+        Assert.assertTrue(files.size() > 2);
+    }
+
+    private void copyLanguageModule(File out, int jobs) throws Exception {
+        ToolModel<CeylonCopyTool> model = pluginLoader.loadToolModel("copy");
+        Assert.assertNotNull(model);
+        CeylonCopyTool tool = pluginFactory.bindArguments(model, getMainTool(), 
+                Arrays.asList(
+                        "--rep", "../dist/dist/repo",
+                        "--out", out.getPath(),
+                        "--offline",
+                        "--with-dependencies",
+                        "--jobs", String.valueOf(jobs),
+                        "ceylon.language/"+Versions.CEYLON_VERSION_NUMBER));
+        tool.run();
+    }
+
+    private static Set<String> listFiles(File folder, String prefix, Set<String> files) {
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory())
+                    listFiles(child, prefix + child.getName() + "/", files);
+                else
+                    files.add(prefix + child.getName() + ":" + child.length());
+            }
+        }
+        return files;
+    }
 }
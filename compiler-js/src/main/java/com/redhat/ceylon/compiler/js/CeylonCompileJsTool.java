@@ -74,6 +74,7 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
     private boolean modulify = true;
     private boolean comments = false;
     private boolean skipSrc = false;
+    private int jobs = DefaultToolOptions.getCompilerJobs();
 
     private String encoding = DefaultToolOptions.getDefaultEncoding();
 
@@ -116,6 +117,13 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         this.profile = profile;
     }
 
+    @OptionArgument(longName="jobs", argumentName="number")
+    @Description("Number of threads used to parse the source files. " +
+            "Units are still processed in the same order. (default: 1)")
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
     @Option
     @Description("Create lexical scope-style JS code")
     public void setLexicalScopeStyle(boolean flag) {
@@ -217,6 +225,9 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
 
     @Override
     public void initialize(CeylonTool mainTool) throws IOException {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("Invalid number of jobs: " + jobs);
+        }
     }
 
     @Override
@@ -330,7 +341,7 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         }
         //getting the type checker does process all types in the source directory
         tcb.verbose(opts.hasVerboseFlag("ast")).setRepositoryManager(repoman);
-        tcb.usageWarnings(false).encoding(encoding);
+        tcb.usageWarnings(false).encoding(encoding).jobs(jobs);
 
         typeChecker = tcb.getTypeChecker();
         t1=System.nanoTime();
@@ -1639,11 +1639,47 @@ public final class Array<Element>
         return array;
     }
 
+    /**
+     * The backing array of an {@code Array<Integer>}, so that 
+     * the numeric functions can work on it without boxing, 
+     * or null
+     */
+    @Ignore
+    public final long[] unsafeLongArray() {
+        return longArray;
+    }
+
+    /**
+     * The backing array of an {@code Array<Float>}, so that 
+     * the numeric functions can work on it without boxing, 
+     * or null
+     */
+    @Ignore
+    public final double[] unsafeDoubleArray() {
+        return doubleArray;
+    }
+
     @Override
     public boolean contains(@Name("element") 
     @TypeInfo("ceylon.language::Object")
     java.lang.Object element) {
-        // FIXME Very inefficient for primitive types due to boxing
+        if (longArray!=null) {
+            for (int i=0; i<size; i++) {
+                if (Integer.equals(longArray[i], element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        else if (doubleArray!=null) {
+            for (int i=0; i<size; i++) {
+                if (Float.equals(doubleArray[i], element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // FIXME Very inefficient for the other primitive types due to boxing
         for (int i=0; i<size; i++) {
             Element elem = unsafeItem(i);
             if (elem != null && elem.equals(element)) {
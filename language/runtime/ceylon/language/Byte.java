@@ -60,9 +60,17 @@ public final class Byte implements
         this.value = value;
     }
     
+    /** All 256 values, so boxing never allocates */
+    private static final Byte[] CACHE = new Byte[256];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Byte((byte) i);
+        }
+    }
+    
     @Ignore
     public static Byte instance(byte value) {
-        return new Byte(value);
+        return CACHE[value & 0xff];
     }
     
     @Ignore
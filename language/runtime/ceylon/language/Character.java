@@ -48,8 +48,19 @@ public final class Character
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    /** The ASCII characters, which are boxed the most */
+    private static final Character[] CACHE = new Character[128];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Character(i);
+        }
+    }
+    
     @Ignore
     public static Character instance(int c) {
+        if (c >= 0 && c < CACHE.length) {
+            return CACHE[c];
+        }
         return new Character(c);
     }
 
@@ -83,8 +83,40 @@ public final class Integer
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    /**
+     * Boxed instances of small values, shared by 
+     * {@link #instance(long)}, so that boxing in generic code
+     * doesn't allocate for the most common values. The range 
+     * is given by the system properties 
+     * {@code ceylon.integer.cache.low} and 
+     * {@code ceylon.integer.cache.high}, and defaults to 
+     * -128..1023.
+     */
+    private static final long CACHE_LOW = 
+            Long.getLong("ceylon.integer.cache.low", -128);
+    private static final long CACHE_HIGH = 
+            Long.getLong("ceylon.integer.cache.high", 1023);
+    private static final Integer[] CACHE = makeCache();
+    
+    private static Integer[] makeCache() {
+        long size = CACHE_HIGH - CACHE_LOW + 1;
+        if (size <= 0 || size > 1<<24) {
+            // empty or unreasonable range: disable the cache
+            return new Integer[0];
+        }
+        Integer[] cache = new Integer[(int) size];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new Integer(CACHE_LOW + i);
+        }
+        return cache;
+    }
+    
     @Ignore
     public static Integer instance(long l) {
+        long index = l - CACHE_LOW;
+        if (index >= 0 && index < CACHE.length) {
+            return CACHE[(int) index];
+        }
         return new Integer(l);
     }
 
@@ -4,6 +4,7 @@ import java.util.Locale;
 
 import com.redhat.ceylon.compiler.java.Util;
 import com.redhat.ceylon.compiler.java.language.AbstractCallable;
+import com.redhat.ceylon.compiler.java.language.CodePointIndex;
 import com.redhat.ceylon.compiler.java.language.StringTokens;
 import com.redhat.ceylon.compiler.java.metadata.Annotation;
 import com.redhat.ceylon.compiler.java.metadata.Annotations;
@@ -57,6 +58,10 @@ public final class String
     @Ignore
     public final java.lang.String value;
     
+    /** Lazily built by codePoints() */
+    @Ignore
+    private transient CodePointIndex codePoints;
+    
     @Ignore @Override
     public Comparable$impl<String> $ceylon$language$Comparable$impl() {
         return new Comparable$impl<String>(String.$TypeDescriptor$, this);
@@ -98,6 +103,20 @@ public final class String
         return value;
     }
 
+    /**
+     * The code point index of this string, which we keep
+     * for as long as this string lives.
+     */
+    @Ignore
+    private CodePointIndex codePoints() {
+        CodePointIndex codePoints = this.codePoints;
+        if (codePoints == null) {
+            codePoints = CodePointIndex.create(value);
+            this.codePoints = codePoints;
+        }
+        return codePoints;
+    }
+
     @Ignore
     public static java.lang.String toString(java.lang.String value) {
         return value;
@@ -231,15 +250,12 @@ public final class String
     @Override
     @TypeInfo("ceylon.language::Integer")
     public long getSize() {
-        //TODO: should we cache this value in an instvar?
-        // But remember that we'll mostly be using the static verion
-        // of this method! So an instvar won't help much.
-        return value.codePointCount(0, value.length());
+        return codePoints().size();
     }
 
     @Ignore
     public static long getSize(java.lang.String value) {
-        return value.codePointCount(0, value.length());
+        return CodePointIndex.of(value).size();
     }
 
     @Override
@@ -280,15 +296,27 @@ public final class String
     @Override
     @TypeInfo("ceylon.language::Null|ceylon.language::Character")
     public Character getFromLast(@Name("index") long key) {
-        return getFromLast(value, key);
+        return getFromLast(value, codePoints, key);
     }
 
     @Ignore
     public static Character getFromLast(java.lang.String value, long key) {
+        return getFromLast(value, null, key);
+    }
+
+    /**
+     * @param codePoints the index of the string, if we
+     *        already built it, or null
+     */
+    @Ignore
+    private static Character getFromLast(java.lang.String value, 
+            CodePointIndex codePoints, long key) {
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(value.length(), -index-1);
+            int offset = codePoints != null ? 
+                    codePoints.offsetByCodePoints(value.length(), -index-1) : 
+                    CodePointIndex.offsetByCodePoints(value, value.length(), -index-1);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -300,15 +328,27 @@ public final class String
     @Override
     @TypeInfo("ceylon.language::Null|ceylon.language::Character")
     public Character getFromFirst(@Name("index") long key) {
-        return getFromFirst(value, key);
+        return getFromFirst(value, codePoints, key);
     }
 
     @Ignore
     public static Character getFromFirst(java.lang.String value, long key) {
+        return getFromFirst(value, null, key);
+    }
+
+    /**
+     * @param codePoints the index of the string, if we
+     *        already built it, or null
+     */
+    @Ignore
+    private static Character getFromFirst(java.lang.String value, 
+            CodePointIndex codePoints, long key) {
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(0, index);
+            int offset = codePoints != null ? 
+                    codePoints.offsetByCodePoints(0, index) : 
+                    CodePointIndex.offsetByCodePoints(value, 0, index);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -355,7 +395,7 @@ public final class String
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static Sequential<? extends ceylon.language.Integer> 
     getKeys(java.lang.String value) {
-        long size = value.codePointCount(0, value.length());
+        long size = CodePointIndex.of(value).size();
         if (size==0) {
             return (Sequential) empty_.get_();
         }
@@ -432,7 +472,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)from);
+            start = CodePointIndex.offsetByCodePoints(value, 0, (int)from);
         }
         catch (IndexOutOfBoundsException e) {
             return false;
@@ -458,7 +498,7 @@ public final class String
         try {
             int offset;
             try {
-                offset = value.offsetByCodePoints(0, (int)index);
+                offset = CodePointIndex.offsetByCodePoints(value, 0, (int)index);
             }
             catch (IndexOutOfBoundsException e) {
                 return false;
@@ -508,7 +548,7 @@ public final class String
                     int offset;
                     {
                         try {
-                            offset = value.offsetByCodePoints(0, start);
+                            offset = CodePointIndex.offsetByCodePoints(value, 0, start);
                         }
                         catch (IndexOutOfBoundsException e) {
                             offset = value.length();
@@ -524,7 +564,7 @@ public final class String
                             if (result<0) {
                                 return finished_.get_();
                             }
-                            index += value.codePointCount(offset, result);
+                            index += CodePointIndex.codePointCount(value, offset, result);
                             long c = index;
                             offset = result + len;
                             if (index>=stop) {
@@ -546,7 +586,7 @@ public final class String
                 int index = start;
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, start);
+                    offset = CodePointIndex.offsetByCodePoints(value, 0, start);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return 0;
@@ -557,7 +597,7 @@ public final class String
                     if (result<0) {
                         return size;
                     }
-                    index += value.codePointCount(offset, result);
+                    index += CodePointIndex.codePointCount(value, offset, result);
                     offset = result + len;
                     if (index>=stop) {
                         return size;
@@ -599,7 +639,7 @@ public final class String
             String string = (String) sublist;
             int offset;
             try {
-                offset = value.offsetByCodePoints(0, (int)from);
+                offset = CodePointIndex.offsetByCodePoints(value, 0, (int)from);
             }
             catch (IndexOutOfBoundsException e) {
                 return value.isEmpty();
@@ -636,7 +676,7 @@ public final class String
             try {
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, (int)index);
+                    offset = CodePointIndex.offsetByCodePoints(value, 0, (int)index);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return sublist.getEmpty();
@@ -694,7 +734,7 @@ public final class String
                     int offset;
                     {
                         try {
-                            offset = value.offsetByCodePoints(0, start);
+                            offset = CodePointIndex.offsetByCodePoints(value, 0, start);
                         }
                         catch (IndexOutOfBoundsException e) {
                             offset = value.length();
@@ -707,7 +747,7 @@ public final class String
                             if (result<0) {
                                 return finished_.get_();
                             }
-                            index += value.codePointCount(offset, result);
+                            index += CodePointIndex.codePointCount(value, offset, result);
                             long i = index;
                             offset = result + len;
                             index++; 
@@ -724,7 +764,7 @@ public final class String
                 }
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, start);
+                    offset = CodePointIndex.offsetByCodePoints(value, 0, start);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return 0;
@@ -775,11 +815,11 @@ public final class String
         }
         if (sublist instanceof String) {
             String string = (String) sublist;
-            int start = value.offsetByCodePoints(0, (int)from);
+            int start = CodePointIndex.offsetByCodePoints(value, 0, (int)from);
             int index = value.indexOf(string.value, start);
             if (index >= 0) {
                 return Integer.instance(from + 
-                        value.codePointCount(start, index));
+                        CodePointIndex.codePointCount(value, start, index));
             } else {
                 return null;
             }
@@ -820,7 +860,7 @@ public final class String
             int start;
             try {
                 start = 
-                        value.offsetByCodePoints(value.length(), 
+                        CodePointIndex.offsetByCodePoints(value, value.length(), 
                                 -(int)from 
                                 - Util.toInt(sublist.getSize()));
             }
@@ -830,7 +870,7 @@ public final class String
             int index = value.lastIndexOf(string.value, start);
             if (index >= 0) {
                 return Integer.instance(
-                        value.codePointCount(0, index));
+                        CodePointIndex.codePointCount(value, 0, index));
             }
             else {
                 return null;
@@ -880,14 +920,14 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)from);
+            start = CodePointIndex.offsetByCodePoints(value, 0, (int)from);
         }
         catch (java.lang.IndexOutOfBoundsException e) {
             return null;
         }
         int index = value.indexOf(element, start);
         if (index >= 0) {
-            int result = value.codePointCount(start, index);
+            int result = CodePointIndex.codePointCount(value, start, index);
             if (result>=length) {
                 return null;
             }
@@ -933,7 +973,7 @@ public final class String
         int start;
         try {
             start = 
-                    value.offsetByCodePoints(value.length(), 
+                    CodePointIndex.offsetByCodePoints(value, value.length(), 
                             -(int)from - 1);
         }
         catch (java.lang.IndexOutOfBoundsException e) {
@@ -942,13 +982,13 @@ public final class String
         int index = value.lastIndexOf(element, start);
         if (index >= 0) {
             int dist = 
-                    value.codePointCount(start, 
+                    CodePointIndex.codePointCount(value, start, 
                             value.length());
             if (dist>length) {
                 return null;
             }
             return Integer.instance( 
-                    value.codePointCount(0, index));
+                    CodePointIndex.codePointCount(value, 0, index));
         }
         else {
             return null;
@@ -1094,8 +1134,14 @@ public final class String
 
     public boolean longerThan(@TypeInfo("ceylon.language::Integer")
     @Name("length") long length) {
+        CodePointIndex codePoints = this.codePoints;
         try {
-            value.offsetByCodePoints(0, Util.toInt(length+1));
+            if (codePoints != null) {
+                codePoints.offsetByCodePoints(0, Util.toInt(length+1));
+            }
+            else {
+                CodePointIndex.offsetByCodePoints(value, 0, Util.toInt(length+1));
+            }
             return true;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1107,7 +1153,7 @@ public final class String
     public static boolean longerThan(java.lang.String value, 
             long length) {
         try {
-            value.offsetByCodePoints(0, Util.toInt(length+1));
+            CodePointIndex.offsetByCodePoints(value, 0, Util.toInt(length+1));
             return true;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1117,8 +1163,14 @@ public final class String
 
     public boolean shorterThan(@TypeInfo("ceylon.language::Integer")
     @Name("length") long length) {
+        CodePointIndex codePoints = this.codePoints;
         try {
-            value.offsetByCodePoints(0, Util.toInt(length));
+            if (codePoints != null) {
+                codePoints.offsetByCodePoints(0, Util.toInt(length));
+            }
+            else {
+                CodePointIndex.offsetByCodePoints(value, 0, Util.toInt(length));
+            }
             return false;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1130,7 +1182,7 @@ public final class String
     public static boolean shorterThan(java.lang.String value, 
             long length) {
         try {
-            value.offsetByCodePoints(0, Util.toInt(length));
+            CodePointIndex.offsetByCodePoints(value, 0, Util.toInt(length));
             return false;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1265,10 +1317,17 @@ public final class String
             long length) {
         if (length <= 0) {
             return "";
-        } else if (length >= getSize(value)) {
+        } else if (length >= value.length()) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, Util.toInt(length));
+            int offset;
+            try {
+                offset = CodePointIndex.offsetByCodePoints(value, 0, (int) length);
+            }
+            catch (IndexOutOfBoundsException e) {
+                // fewer code points than that
+                return value;
+            }
             return value.substring(0, offset);
         }
     }
@@ -1286,7 +1345,7 @@ public final class String
         } else if (length >= getSize(value)) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, 
+            int offset = CodePointIndex.offsetByCodePoints(value, 0, 
                     Util.toInt(value.length()-length));
             return value.substring(offset, value.length());
         }
@@ -1333,14 +1392,21 @@ public final class String
     @Override
     public String measure(@Name("from") final Integer from,
                           @Name("length") final long length) {
-        return instance(measure(value, from.longValue(), length));
+        return instance(measure(codePoints(), from.longValue(), length));
     }
 
     @Ignore
     public static java.lang.String measure(java.lang.String value, 
             final long from, final long length) {
+        return measure(CodePointIndex.of(value), from, length);
+    }
+
+    @Ignore
+    private static java.lang.String measure(CodePointIndex codePoints, 
+            final long from, final long length) {
+        java.lang.String value = codePoints.string();
         long fromIndex = from;
-        long len = getSize(value);
+        long len = codePoints.size();
         if (fromIndex >= len || length <= 0) {
             return "";
         }
@@ -1351,26 +1417,33 @@ public final class String
         else {
             resultLength = length;
         }
-        int start = value.offsetByCodePoints(0, Util.toInt(fromIndex));
-        int end = value.offsetByCodePoints(start, Util.toInt(resultLength));
+        int start = codePoints.offsetByCodePoints(0, Util.toInt(fromIndex));
+        int end = codePoints.offsetByCodePoints(start, Util.toInt(resultLength));
         return value.substring(start, end);
     }
 
     @Override
     public String span(@Name("from") final Integer from,
                        @Name("to") final Integer to) {
-        return instance(span(value, from.longValue(), to.longValue()));
+        return instance(span(codePoints(), from.longValue(), to.longValue()));
     }
 
     @Override
     public String spanFrom(@Name("from") final Integer from) {
-        return instance(spanFrom(value, from.longValue()));
+        return instance(spanFrom(codePoints(), from.longValue()));
     }
     
     @Ignore
     public static java.lang.String spanFrom(java.lang.String value, 
             long from) {
-        long len = getSize(value);
+        return spanFrom(CodePointIndex.of(value), from);
+    }
+    
+    @Ignore
+    private static java.lang.String spanFrom(CodePointIndex codePoints, 
+            long from) {
+        java.lang.String value = codePoints.string();
+        long len = codePoints.size();
         if (len == 0) {
             return "";
         }
@@ -1381,8 +1454,8 @@ public final class String
         if (from < 0) {
             from = 0;
         }
-        int start = value.offsetByCodePoints(0, Util.toInt(from));
-        int end = value.offsetByCodePoints(start, 
+        int start = codePoints.offsetByCodePoints(0, Util.toInt(from));
+        int end = codePoints.offsetByCodePoints(start, 
                 Util.toInt(toIndex - from + 1));
         return value.substring(start, end);
     }
@@ -1463,7 +1536,7 @@ public final class String
                     return false;
                 }
                 else {
-                    return value.offsetByCodePoints(0, index)<=to;
+                    return CodePointIndex.offsetByCodePoints(value, 0, index)<=to;
                 }
             }
         };
@@ -1487,7 +1560,7 @@ public final class String
                 else {
                     try {
                         start = 
-                                value.offsetByCodePoints(0, 
+                                CodePointIndex.offsetByCodePoints(value, 0, 
                                         Util.toInt(from));
                     }
                     catch (IndexOutOfBoundsException e) {
@@ -1500,7 +1573,7 @@ public final class String
                 try {
                     int offset = 
                             start + 
-                            value.offsetByCodePoints(start, 
+                            CodePointIndex.offsetByCodePoints(value, start, 
                                     Util.toInt(index));
                     return Character.instance(
                             value.codePointAt(offset));
@@ -1520,7 +1593,7 @@ public final class String
             }
             @Override
             public long getSize() {
-                return value.codePointCount(start, 
+                return CodePointIndex.codePointCount(value, start, 
                                 value.length());
             }
             @Override
@@ -1573,13 +1646,20 @@ public final class String
 
     @Override
     public String spanTo(@Name("to") final Integer to) {
-        return instance(spanTo(value, to.longValue()));
+        return instance(spanTo(codePoints(), to.longValue()));
     }
     
     @Ignore
     public static java.lang.String spanTo(java.lang.String value, 
             final long to) {
-        long len = getSize(value);
+        return spanTo(CodePointIndex.of(value), to);
+    }
+    
+    @Ignore
+    private static java.lang.String spanTo(CodePointIndex codePoints, 
+            final long to) {
+        java.lang.String value = codePoints.string();
+        long len = codePoints.size();
         if (len == 0) {
             return "";
         }
@@ -1591,7 +1671,7 @@ public final class String
             toIndex = len - 1;
         }
         int start = 0;
-        int end = value.offsetByCodePoints(start, Util.toInt(toIndex + 1));
+        int end = codePoints.offsetByCodePoints(start, Util.toInt(toIndex + 1));
         return value.substring(start, end);
     }
     
@@ -1599,7 +1679,14 @@ public final class String
     @Ignore
     public static java.lang.String span(java.lang.String value, 
             long from, long to) {
-        long len = getSize(value);
+        return span(CodePointIndex.of(value), from, to);
+    }
+
+    @Ignore
+    private static java.lang.String span(CodePointIndex codePoints, 
+            long from, long to) {
+        java.lang.String value = codePoints.string();
+        long len = codePoints.size();
         if (len == 0) {
             return "";
         }
@@ -1618,8 +1705,8 @@ public final class String
         if (from < 0) {
             from = 0;
         }
-        int start = value.offsetByCodePoints(0, Util.toInt(from));
-        int end = value.offsetByCodePoints(start, 
+        int start = codePoints.offsetByCodePoints(0, Util.toInt(from));
+        int end = codePoints.offsetByCodePoints(start, 
                 Util.toInt(to - from + 1));
         java.lang.String result = value.substring(start, end);
         return reverse ? getReversed(result) : result;
@@ -1838,7 +1925,7 @@ public final class String
         }
         else {
             int intIndex =
-                    value.offsetByCodePoints(0, 
+                    CodePointIndex.offsetByCodePoints(value, 0, 
                             Util.toInt(index));
             first = value.substring(0,intIndex);
             second = value.substring(intIndex);
@@ -2008,13 +2095,13 @@ public final class String
     @Override
     public String getRest() {
         return value.isEmpty() ? this :
-            instance(value.substring(value.offsetByCodePoints(0, 1)));
+            instance(value.substring(CodePointIndex.offsetByCodePoints(value, 0, 1)));
     }
 
     @Ignore
     public static java.lang.String getRest(java.lang.String value) {
         return value.isEmpty() ? "" :
-            value.substring(value.offsetByCodePoints(0, 1));
+            value.substring(CodePointIndex.offsetByCodePoints(value, 0, 1));
     }
     
     @Ignore
@@ -2166,7 +2253,7 @@ public final class String
             Character ch = Character.instance(codePoint);
             offset -= java.lang.Character.charCount(codePoint);
             if (f.$call$(ch).booleanValue()) {
-                int index = value.codePointCount(0, offset);
+                int index = CodePointIndex.codePointCount(value, 0, offset);
                 return new Entry<Integer,Character>(
                         Integer.$TypeDescriptor$, Character.$TypeDescriptor$,
                         Integer.instance(index), ch);
@@ -2316,7 +2403,7 @@ public final class String
             int cp = value.codePointBefore(offset);
             offset-=java.lang.Character.charCount(cp);
             if (fun.$call$(Character.instance(cp)).booleanValue()) {
-                int index = value.codePointCount(0, offset);
+                int index = CodePointIndex.codePointCount(value, 0, offset);
                 return Integer.instance(index);
             }
         }
@@ -2693,7 +2780,7 @@ public final class String
     
     @Ignore
     public static java.lang.String pad(java.lang.String value, long size, int character) {
-        int length = value.codePointCount(0, value.length());
+        int length = CodePointIndex.of(value).size();
         if (size<=length) return value;
         long leftPad = (size-length)/2;
         long rightPad = leftPad + (size-length)%2;
@@ -2735,7 +2822,7 @@ public final class String
     
     @Ignore
     public static java.lang.String padLeading(java.lang.String value, long size, int character) {
-        int length = value.codePointCount(0, value.length());
+        int length = CodePointIndex.of(value).size();
         if (size<=length) return value;
         long leftPad = size-length;
         java.lang.StringBuilder builder = new java.lang.StringBuilder();
@@ -2773,7 +2860,7 @@ public final class String
     
     @Ignore
     public static java.lang.String padTrailing(java.lang.String value, long size, int character) {
-        int length = value.codePointCount(0, value.length());
+        int length = CodePointIndex.of(value).size();
         if (size<=length) return value;
         long rightPad = size-length;
         java.lang.StringBuilder builder = new java.lang.StringBuilder(value);
@@ -2857,7 +2944,7 @@ public final class String
             long length){
         int count = 0;
         int dest = Util.toInt(destinationPosition);
-        for (int index = value.offsetByCodePoints(0,Util.toInt(sourcePosition)); 
+        for (int index = CodePointIndex.offsetByCodePoints(value, 0,Util.toInt(sourcePosition)); 
                 count<length;) {
             int codePoint = value.codePointAt(index);
             ((int[])destination.toArray())[count+dest] = codePoint;
@@ -5,6 +5,7 @@ import com.redhat.ceylon.compiler.java.metadata.Name;
 import com.redhat.ceylon.compiler.java.metadata.Object;
 import com.redhat.ceylon.compiler.java.metadata.Transient;
 import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.runtime.serialization.ClassReferences;
 import com.redhat.ceylon.compiler.java.runtime.serialization.Serializable;
 
 import ceylon.language.Array;
@@ -63,7 +64,7 @@ public class reach_ {
             java.lang.Object i) {
         final Serializable instance = (Serializable)i;
         return new BaseIterator<ReachableReference>(ReachableReference.$TypeDescriptor$) {
-            java.util.Iterator<ReachableReference> it = instance.$references$().iterator();
+            java.util.Iterator<ReachableReference> it = ClassReferences.of(instance).getReferences().iterator();
             int index = 0;
             @Override
             public java.lang.Object next() {
@@ -0,0 +1,91 @@
+package ceylon.language;
+
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Method;
+import com.redhat.ceylon.compiler.java.metadata.Name;
+import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+
+@Ceylon(major = 8)
+@Method
+public final class min_ {
+
+    private min_() {}
+
+    @SuppressWarnings("unchecked")
+    @TypeParameters({@TypeParameter(value="Value", satisfies="ceylon.language::Comparable<Value>"),
+                     @TypeParameter(value="Absent", satisfies="ceylon.language::Null")})
+    @TypeInfo(value="Absent|Value", erased=true)
+    public static <Value extends Comparable<? super Value>, Absent> java.lang.Object min(
+            @Ignore final TypeDescriptor $reifiedValue,
+            @Ignore final TypeDescriptor $reifiedAbsent,
+            @Name("values")
+            @TypeInfo("ceylon.language::Iterable<Value,Absent>")
+            final Iterable<? extends Value, ? extends Absent> values) {
+        if (values instanceof Array) {
+            // search the backing array, without boxing
+            Array<?> array = (Array<?>) values;
+            long[] longs = array.unsafeLongArray();
+            if (longs != null && longs.length > 0) {
+                long min = longs[0];
+                for (int i = 1; i < longs.length; i++) {
+                    if (longs[i] < min) {
+                        min = longs[i];
+                    }
+                }
+                return Integer.instance(min);
+            }
+            double[] doubles = array.unsafeDoubleArray();
+            if (doubles != null && doubles.length > 0) {
+                double min = doubles[0];
+                for (int i = 1; i < doubles.length; i++) {
+                    if (doubles[i] < min) {
+                        min = doubles[i];
+                    }
+                }
+                return Float.instance(min);
+            }
+        }
+        Iterator<? extends Value> it = values.iterator();
+        java.lang.Object first = it.next();
+        if (first instanceof Finished) {
+            return null;
+        }
+        else if (first instanceof Integer) {
+            long min = ((Integer) first).longValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Integer) {
+                long value = ((Integer) val).longValue();
+                if (value < min) {
+                    min = value;
+                }
+            }
+            return Integer.instance(min);
+        }
+        else if (first instanceof Float) {
+            double min = ((Float) first).doubleValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Float) {
+                double value = ((Float) val).doubleValue();
+                if (value < min) {
+                    min = value;
+                }
+            }
+            return Float.instance(min);
+        }
+        else {
+            Value min = (Value) first;
+            java.lang.Object val;
+            while (!((val = it.next()) instanceof Finished)) {
+                if (((Value) val).compare(min) == smaller_.get_()) {
+                    min = (Value) val;
+                }
+            }
+            return min;
+        }
+    }
+
+}
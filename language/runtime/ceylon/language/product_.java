@@ -0,0 +1,106 @@
+package ceylon.language;
+
+import com.redhat.ceylon.compiler.java.language.LazyIterable;
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Method;
+import com.redhat.ceylon.compiler.java.metadata.Name;
+import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+
+@Ceylon(major = 8)
+@Method
+public final class product_ {
+
+    private product_() {}
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @TypeParameters(@TypeParameter(value="Value", satisfies="ceylon.language::Numeric<Value>"))
+    @TypeInfo("Value")
+    public static <Value extends Numeric<Value>> Value product(
+            @Ignore final TypeDescriptor $reifiedValue,
+            @Name("values")
+            @TypeInfo("ceylon.language::Iterable<Value,ceylon.language::Nothing>")
+            final Iterable<? extends Value, ? extends java.lang.Object> values) {
+        if (values instanceof LazyIterable) {
+            LazyIterable<?,?> stream = (LazyIterable<?,?>) values;
+            int last = stream.getNumExpressions()-1;
+            if (stream.isSpread() && last > 0) {
+                // a stream like { 1, *array }: multiply the listed
+                // elements, then the whole spread stream
+                java.lang.Object product = stream.evaluate(0);
+                for (int i = 1; i < last; i++) {
+                    product = ((Numeric) product).times((Numeric) stream.evaluate(i));
+                }
+                return (Value) times(product, (Iterable<?,?>) stream.evaluate(last));
+            }
+        }
+        Iterator<? extends Value> it = values.iterator();
+        java.lang.Object first = it.next();
+        if (first instanceof Finished) {
+            throw new AssertionError("Assertion failed: iterable must not be empty");
+        }
+        return (Value) times(first, it);
+    }
+
+    /** Multiply the given product by the elements of the given stream */
+    private static java.lang.Object times(java.lang.Object product,
+            Iterable<?,?> values) {
+        if (values instanceof Array) {
+            // multiply by the backing array, without boxing
+            Array<?> array = (Array<?>) values;
+            long[] longs = array.unsafeLongArray();
+            if (longs != null && product instanceof Integer) {
+                long result = ((Integer) product).longValue();
+                for (int i = 0; i < longs.length; i++) {
+                    result *= longs[i];
+                }
+                return Integer.instance(result);
+            }
+            double[] doubles = array.unsafeDoubleArray();
+            if (doubles != null && product instanceof Float) {
+                double result = ((Float) product).doubleValue();
+                for (int i = 0; i < doubles.length; i++) {
+                    result *= doubles[i];
+                }
+                return Float.instance(result);
+            }
+        }
+        return times(product, values.iterator());
+    }
+
+    /** Multiply the given product by the rest of the given iterator */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static java.lang.Object times(java.lang.Object product,
+            Iterator<?> it) {
+        if (product instanceof Integer) {
+            // unbox
+            long result = ((Integer) product).longValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Integer) {
+                result *= ((Integer) val).longValue();
+            }
+            return Integer.instance(result);
+        }
+        else if (product instanceof Float) {
+            // unbox
+            double result = ((Float) product).doubleValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Float) {
+                result *= ((Float) val).doubleValue();
+            }
+            return Float.instance(result);
+        }
+        else {
+            java.lang.Object result = product;
+            java.lang.Object val;
+            while (!((val = it.next()) instanceof Finished)) {
+                result = ((Numeric) result).times((Numeric) val);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package ceylon.language.serialization;
+
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Name;
+import com.redhat.ceylon.compiler.java.metadata.Transient;
+import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import com.redhat.ceylon.compiler.java.runtime.serialization.IdMap;
+
+import ceylon.language.Iterable;
+import ceylon.language.Iterator;
+import ceylon.language.Null;
+import ceylon.language.finished_;
+import ceylon.language.impl.BaseIterable;
+import ceylon.language.impl.BaseIterator;
+
+/**
+ * The JVM implementation of {@code NativeMap}, on top of an
+ * {@link IdMap}, since deserializing a large graph needs a
+ * lot of them, with a lot of entries.
+ */
+@Ceylon(major = 8, minor=0)
+@com.redhat.ceylon.compiler.java.metadata.Class
+@TypeParameters({
+    @TypeParameter(value = "Key"),
+    @TypeParameter(value = "Element")
+})
+class NativeMap<Key, Element> implements ReifiedType {
+
+    @Ignore
+    private final TypeDescriptor $reified$Key;
+    @Ignore
+    private final TypeDescriptor $reified$Element;
+    @Ignore
+    private final IdMap<Key, Element> m = new IdMap<Key, Element>();
+
+    NativeMap(@Ignore TypeDescriptor $reified$Key,
+            @Ignore TypeDescriptor $reified$Element) {
+        this.$reified$Key = $reified$Key;
+        this.$reified$Element = $reified$Element;
+    }
+
+    @TypeInfo("ceylon.language::Anything")
+    public final void put(
+            @Name("id") @TypeInfo("Key") Key id,
+            @Name("instanceOrPartial") @TypeInfo("Element") Element instanceOrPartial) {
+        m.put(id, instanceOrPartial);
+    }
+
+    @TypeInfo("Element?")
+    public final Element get(@Name("id") @TypeInfo("Key") Key id) {
+        return m.get(id);
+    }
+
+    @TypeInfo("ceylon.language::Boolean")
+    public final boolean contains(@Name("id") @TypeInfo("Key") Key id) {
+        return m.containsKey(id);
+    }
+
+    @TypeInfo("ceylon.language::Integer")
+    @Transient
+    public final long getSize() {
+        return m.size();
+    }
+
+    @TypeInfo("{Element*}")
+    @Transient
+    public final Iterable<? extends Element, ? extends java.lang.Object> getItems() {
+        return new NativeMapIterable<Element>($reified$Element, false);
+    }
+
+    @TypeInfo("{Key*}")
+    @Transient
+    public final Iterable<? extends Key, ? extends java.lang.Object> getKeys() {
+        return new NativeMapIterable<Key>($reified$Key, true);
+    }
+
+    @Override
+    @TypeInfo("ceylon.language::String")
+    @Transient
+    public final java.lang.String toString() {
+        return m.toString();
+    }
+
+    @Override
+    @Ignore
+    public TypeDescriptor $getType$() {
+        return TypeDescriptor.klass(NativeMap.class, $reified$Key, $reified$Element);
+    }
+
+    @Ignore
+    private final class NativeMapIterable<T>
+    extends BaseIterable<T, java.lang.Object> {
+
+        private final TypeDescriptor $reified$T;
+        private final boolean keys;
+
+        NativeMapIterable(TypeDescriptor $reified$T, boolean keys) {
+            super($reified$T, Null.$TypeDescriptor$);
+            this.$reified$T = $reified$T;
+            this.keys = keys;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Iterator<? extends T> iterator() {
+            final java.util.Iterator<T> it = keys ?
+                    (java.util.Iterator<T>)m.keyIterator() :
+                    (java.util.Iterator<T>)m.valueIterator();
+            return new BaseIterator<T>($reified$T) {
+                @Override
+                public java.lang.Object next() {
+                    if (it.hasNext()) {
+                        return it.next();
+                    } else {
+                        return finished_.get_();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -8,12 +8,14 @@ import java.util.Iterator;
 
 import com.redhat.ceylon.compiler.java.Util;
 import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.meta.ClassImpl;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.meta.MemberClassImpl;
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
 import com.redhat.ceylon.compiler.java.runtime.serialization.$Serialization$;
+import com.redhat.ceylon.compiler.java.runtime.serialization.ClassReferences;
 import com.redhat.ceylon.compiler.java.runtime.serialization.Serializable;
 import com.redhat.ceylon.model.typechecker.model.FunctionOrValue;
 import com.redhat.ceylon.model.typechecker.model.Type;
@@ -22,8 +24,6 @@ import com.redhat.ceylon.model.typechecker.model.TypedReference;
 
 import ceylon.language.AssertionError;
 import ceylon.language.Collection;
-import ceylon.language.Entry;
-import ceylon.language.String;
 import ceylon.language.Tuple;
 import ceylon.language.impl.ElementImpl;
 import ceylon.language.impl.MemberImpl;
@@ -203,7 +203,7 @@ class PartialImpl extends Partial {
         NativeMap<ReachableReference, Id> state = (NativeMap<ReachableReference, Id>)getState();
         // In this case we statically know the $references$, and they are:
         // the array's size and each of its elements (as integers)
-        ReachableReference sizeAttr = (ReachableReference)instance.$references$().iterator().next();//ceylon.language.String.instance("ceylon.language::Array.size");
+        ReachableReference sizeAttr = ClassReferences.of(instance).get(0);//ceylon.language.String.instance("ceylon.language::Array.size");
         ceylon.language.Integer size = (ceylon.language.Integer)getReferredInstance(context, 
                 state, 
                 sizeAttr);
@@ -212,23 +212,29 @@ class PartialImpl extends Partial {
         }
         instance.$set$(sizeAttr, size);
         int sz = Util.toInt(size.longValue());
+        TypeDescriptor.Class arrayType = (TypeDescriptor.Class)Metamodel.getTypeDescriptor(instance);
+        Type arrayElementType = Metamodel.getModuleManager().getCachedType(arrayType.getTypeArguments()[0]);
+        // elements are usually all of the same type, so remember 
+        // the last one we checked
+        TypeDescriptor accepted = null;
         for (int ii = 0; ii < sz; ii++) {
             ElementImpl index = new ElementImpl(ii);
             Id id = state.get(index);
             if (id == null) {
                 throw insufficiantState(index);
             }
-            TypeDescriptor.Class arrayType = (TypeDescriptor.Class)Metamodel.getTypeDescriptor(instance);
-            Type arrayElementType = Metamodel.getModuleManager().getCachedType(arrayType.getTypeArguments()[0]);
             Object element = getReferredInstance(context, id);
-            Type elementType = Metamodel.getModuleManager().getCachedType(Metamodel.getTypeDescriptor(element));
-            if (elementType.isSubtypeOf(arrayElementType)) {
-                instance.$set$(index, element);
-            } else {
-                throw notAssignable(index, 
-                        arrayElementType,
-                        elementType);
+            TypeDescriptor elementTypeDescriptor = Metamodel.getTypeDescriptor(element);
+            if (!elementTypeDescriptor.equals(accepted)) {
+                Type elementType = Metamodel.getModuleManager().getCachedType(elementTypeDescriptor);
+                if (!elementType.isSubtypeOf(arrayElementType)) {
+                    throw notAssignable(index, 
+                            arrayElementType,
+                            elementType);
+                }
+                accepted = elementTypeDescriptor;
             }
+            instance.$set$(index, element);
         }
         if (state.getSize() != sz + 1) {
             throw insufficiantState((ReachableReference)null);
@@ -240,23 +246,9 @@ class PartialImpl extends Partial {
             DeserializationContextImpl<Id> context,
             Serializable instance) {
         NativeMap<ReachableReference, Id> state = (NativeMap<ReachableReference, Id>)getState();
-        // TODO If it were a map of java.lang.String we'd avoid pointless extra boxing
-        java.util.Collection<ReachableReference> reachables = instance.$references$();
-        int numLate = 0;
-        for (ReachableReference r : reachables) {
-            if (r instanceof Member
-                    && ((Member)r).getAttribute().getLate()) {
-                numLate++;
-            } else if (r instanceof Outer) {
-                numLate++;
-            }
-        }
-        if (state.getSize() < reachables.size()-numLate) {
-            HashSet<ReachableReference> missingNames = new HashSet<ReachableReference>();
-            java.util.Iterator<ReachableReference> it = reachables.iterator();
-            while (it.hasNext()) {
-                missingNames.add(it.next());
-            }
+        ClassReferences references = ClassReferences.of(instance);
+        if (state.getSize() < references.getRequired()) {
+            HashSet<ReachableReference> missingNames = new HashSet<ReachableReference>(references.getReferences());
             ceylon.language.Iterator<? extends ReachableReference> it2 = state.getKeys().iterator();
             Object next;
             while (((next = it2.next()) instanceof ReachableReference)) {
@@ -264,21 +256,27 @@ class PartialImpl extends Partial {
             }
             throw insufficiantState(missingNames);
         }
-        for (ReachableReference reference : reachables) {
+        TypeDescriptor.Class classTypeDescriptor = getClassTypeDescriptor();
+        MemberTypes memberTypes = (MemberTypes)context.getMemberTypeCache().get(classTypeDescriptor);
+        if (memberTypes == null) {
+            memberTypes = new MemberTypes(references.size());
+            context.getMemberTypeCache().put(classTypeDescriptor, memberTypes);
+        }
+        for (int ii = 0; ii < references.size(); ii++) {
+            ReachableReference reference = references.get(ii);
             if (reference instanceof Member) {
                 Member member  = (Member)reference;
                 
                 if (member.getAttribute().getLate()
-                        && !state.contains(member)
-                        || state.get(member) == uninitializedLateValue_.get_()) {
+                        && !state.contains(member)) {
+                    continue;
+                }
+                Id referredId = state.get(member);
+                if (referredId == uninitializedLateValue_.get_()) {
                     continue;
                 }
                 
-                TypeDescriptor.Class classTypeDescriptor = getClassTypeDescriptor();
-                Entry<TypeDescriptor.Class,String> cacheKey = new Entry<TypeDescriptor.Class,String>(
-                        TypeDescriptor.klass(TypeDescriptor.Class.class), String.$TypeDescriptor$, 
-                        classTypeDescriptor, String.instance(member.getAttribute().getQualifiedName()));
-                Type memberType = (Type)context.getMemberTypeCache().get(cacheKey);
+                Type memberType = memberTypes.types[ii];
                 if (memberType == null) {
                     Type pt = Metamodel.getModuleManager().getCachedType(classTypeDescriptor);
                     while (!pt.getDeclaration().getQualifiedNameString().equals(((ClassDeclaration)member.getAttribute().getContainer()).getQualifiedName())) {
@@ -289,24 +287,24 @@ class PartialImpl extends Partial {
                     TypedReference attributeType = pt.getTypedMember(
                             attributeDeclaration, Collections.<Type>emptyList(), true);
                     memberType = attributeType.getType();
-                    context.getMemberTypeCache().put(cacheKey, memberType);
+                    memberTypes.types[ii] = memberType;
                 }
                 
-                Object referredInstance = getReferredInstance(context, state, 
-                        member);
-                Type instanceType = Metamodel.getModuleManager().getCachedType(
-                        Metamodel.getTypeDescriptor(referredInstance));
-                if (!instanceType.isSubtypeOf(memberType)) {
-                    throw notAssignable(member, memberType, instanceType);
+                Object referredInstance = getReferredInstance(context, referredId);
+                // the JVM will check the assignability, but we need to 
+                // check assignability at the ceylon level, which is 
+                // expensive, so we skip it when we get an instance 
+                // of the same type as last time
+                TypeDescriptor instanceTypeDescriptor = Metamodel.getTypeDescriptor(referredInstance);
+                if (!instanceTypeDescriptor.equals(memberTypes.accepted[ii])) {
+                    Type instanceType = Metamodel.getModuleManager().getCachedType(
+                            instanceTypeDescriptor);
+                    if (!instanceType.isSubtypeOf(memberType)) {
+                        throw notAssignable(member, memberType, instanceType);
+                    }
+                    memberTypes.accepted[ii] = instanceTypeDescriptor;
                 }
                 instance.$set$(member, referredInstance);
-                // the JVM will check the assignability, but we need to 
-                // check assignability at the ceylon level, so we need to know 
-                /// type of the attribute an the type that we're assigning.
-                // XXX this check is really expensive!
-                // we should cache the attribute type on the context
-                // when can we avoid this check.
-                // XXX we can cache MethodHandle setters on the context!
             } else if (reference instanceof Outer) {
                 // ignore it -- the DeserializationContext deals with
                 // instantiating member classes
@@ -317,6 +315,24 @@ class PartialImpl extends Partial {
         }
     }
     
+    /**
+     * The types of the references of a class, in the order of its 
+     * {@link ClassReferences}, for the whole 
+     * {@link DeserializationContextImpl}
+     */
+    @Ignore
+    private static final class MemberTypes {
+        /** The type of each attribute, once we've computed it */
+        final Type[] types;
+        /** The type of the last instance we checked we could assign to each attribute */
+        final TypeDescriptor[] accepted;
+        
+        MemberTypes(int size) {
+            types = new Type[size];
+            accepted = new TypeDescriptor[size];
+        }
+    }
+    
     java.lang.String descriptor(ReachableReference reachable) {
         if (reachable instanceof Member) {
             return java.lang.String.valueOf(((Member)reachable).getAttribute());
@@ -0,0 +1,71 @@
+package ceylon.language;
+
+import com.redhat.ceylon.compiler.java.language.AbstractCallable;
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Method;
+import com.redhat.ceylon.compiler.java.metadata.Name;
+import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+
+@Ceylon(major = 8)
+@Method
+public final class sort_ {
+
+    private sort_() {}
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @TypeParameters(@TypeParameter(value="Element", satisfies="ceylon.language::Comparable<Element>"))
+    @TypeInfo("ceylon.language::Sequential<Element>")
+    public static <Element extends Comparable<? super Element>> Sequential<? extends Element> sort(
+            @Ignore final TypeDescriptor $reifiedElement,
+            @Name("elements")
+            @TypeInfo("ceylon.language::Iterable<Element,ceylon.language::Null>")
+            final Iterable<? extends Element, ? extends java.lang.Object> elements) {
+        Array<Element> array = new Array<Element>($reifiedElement, elements);
+        if (array.getEmpty()) {
+            return (Sequential<? extends Element>) (Sequential) empty_.get_();
+        }
+        long[] longs = array.unsafeLongArray();
+        double[] doubles = array.unsafeDoubleArray();
+        if (longs != null) {
+            java.util.Arrays.sort(longs);
+        }
+        else if (doubles != null && isTotallyOrdered(doubles)) {
+            java.util.Arrays.sort(doubles);
+        }
+        else {
+            TypeDescriptor $reifiedArguments =
+                    TypeDescriptor.klass(Tuple.class, $reifiedElement, $reifiedElement,
+                            TypeDescriptor.klass(Tuple.class, $reifiedElement, $reifiedElement,
+                                    Empty.$TypeDescriptor$));
+            array.sortInPlace(new AbstractCallable<Comparison>(
+                    Comparison.$TypeDescriptor$, $reifiedArguments,
+                    "compare", (short)-1) {
+                @Override
+                public Comparison $call$(java.lang.Object x, java.lang.Object y) {
+                    return ((Element) x).compare((Element) y);
+                }
+            });
+        }
+        return new ArraySequence<Element>($reifiedElement, array);
+    }
+
+    /**
+     * Whether {@link java.util.Arrays#sort(double[])} sorts the
+     * given floats just like {@link Float#compare} does: it's
+     * only different for NaNs and negative zeros.
+     */
+    private static boolean isTotallyOrdered(double[] doubles) {
+        for (double d: doubles) {
+            if (d != d
+                    || d == 0.0 && Double.doubleToRawLongBits(d) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
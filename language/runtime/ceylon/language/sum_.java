@@ -0,0 +1,106 @@
+package ceylon.language;
+
+import com.redhat.ceylon.compiler.java.language.LazyIterable;
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Method;
+import com.redhat.ceylon.compiler.java.metadata.Name;
+import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
+import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+
+@Ceylon(major = 8)
+@Method
+public final class sum_ {
+
+    private sum_() {}
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @TypeParameters(@TypeParameter(value="Value", satisfies="ceylon.language::Summable<Value>"))
+    @TypeInfo("Value")
+    public static <Value extends Summable<Value>> Value sum(
+            @Ignore final TypeDescriptor $reifiedValue,
+            @Name("values")
+            @TypeInfo("ceylon.language::Iterable<Value,ceylon.language::Nothing>")
+            final Iterable<? extends Value, ? extends java.lang.Object> values) {
+        if (values instanceof LazyIterable) {
+            LazyIterable<?,?> stream = (LazyIterable<?,?>) values;
+            int last = stream.getNumExpressions()-1;
+            if (stream.isSpread() && last > 0) {
+                // a stream like { 0, *array }: add up the listed
+                // elements, then the whole spread stream
+                java.lang.Object sum = stream.evaluate(0);
+                for (int i = 1; i < last; i++) {
+                    sum = ((Summable) sum).plus((Summable) stream.evaluate(i));
+                }
+                return (Value) plus(sum, (Iterable<?,?>) stream.evaluate(last));
+            }
+        }
+        Iterator<? extends Value> it = values.iterator();
+        java.lang.Object first = it.next();
+        if (first instanceof Finished) {
+            throw new AssertionError("Assertion failed: iterable must not be empty");
+        }
+        return (Value) plus(first, it);
+    }
+
+    /** Add the elements of the given stream to the given sum */
+    private static java.lang.Object plus(java.lang.Object sum,
+            Iterable<?,?> values) {
+        if (values instanceof Array) {
+            // add up the backing array, without boxing
+            Array<?> array = (Array<?>) values;
+            long[] longs = array.unsafeLongArray();
+            if (longs != null && sum instanceof Integer) {
+                long result = ((Integer) sum).longValue();
+                for (int i = 0; i < longs.length; i++) {
+                    result += longs[i];
+                }
+                return Integer.instance(result);
+            }
+            double[] doubles = array.unsafeDoubleArray();
+            if (doubles != null && sum instanceof Float) {
+                double result = ((Float) sum).doubleValue();
+                for (int i = 0; i < doubles.length; i++) {
+                    result += doubles[i];
+                }
+                return Float.instance(result);
+            }
+        }
+        return plus(sum, values.iterator());
+    }
+
+    /** Add the rest of the given iterator to the given sum */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static java.lang.Object plus(java.lang.Object sum,
+            Iterator<?> it) {
+        if (sum instanceof Integer) {
+            // unbox
+            long result = ((Integer) sum).longValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Integer) {
+                result += ((Integer) val).longValue();
+            }
+            return Integer.instance(result);
+        }
+        else if (sum instanceof Float) {
+            // unbox
+            double result = ((Float) sum).doubleValue();
+            java.lang.Object val;
+            while ((val = it.next()) instanceof Float) {
+                result += ((Float) val).doubleValue();
+            }
+            return Float.instance(result);
+        }
+        else {
+            java.lang.Object result = sum;
+            java.lang.Object val;
+            while (!((val = it.next()) instanceof Finished)) {
+                result = ((Summable) result).plus((Summable) val);
+            }
+            return result;
+        }
+    }
+
+}
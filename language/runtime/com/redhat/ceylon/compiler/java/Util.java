@@ -4,7 +4,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ceylon.language.ArraySequence;
 import ceylon.language.AssertionError;
@@ -63,26 +63,33 @@ public class Util {
         return Metamodel.isReified(o, type);
     }
 
-    private static HashMap<java.lang.Class<?>, Class> classCache
-     = new HashMap<>();
+    /**
+     * The {@link Class} annotation of every class or of its closest annotated
+     * superclass. This is read from generated code on every thread, and the
+     * values are attached to the classes themselves, so they don't prevent
+     * modules from being unloaded.
+     */
+    private static final ClassValue<Class> classCache = new ClassValue<Class>() {
+        @Override
+        protected Class computeValue(java.lang.Class<?> klass) {
+            Class classAnnotation = klass.getAnnotation(Class.class);
+            if(classAnnotation != null) {
+                return classAnnotation;
+            } else if (klass != java.lang.Object.class) {
+                // else keep looking up
+                return getClassAnnotationForIdentifiableOrBasic(klass.getSuperclass());
+            } else {
+                return null;
+            }
+        }
+    };
     
     private static Class getClassAnnotationForIdentifiableOrBasic(
             final java.lang.Class<? extends Object> klass) {
-        if (classCache.containsKey(klass)) {
-            return classCache.get(klass);
-        }
-        Class classAnnotation = klass.getAnnotation(Class.class);
-        if(classAnnotation != null) {
-            classCache.put(klass, classAnnotation);
-            return classAnnotation;
-        } else if (klass != null && klass != java.lang.Object.class) {
-            // else keep looking up
-            Class c = getClassAnnotationForIdentifiableOrBasic(klass.getSuperclass());
-            classCache.put(klass, c);
-            return c;
-        } else {
+        if (klass == null) {
             return null;
         }
+        return classCache.get(klass);
     }
 
     /**
@@ -1773,6 +1780,18 @@ public class Util {
         return result;
     }
 
+    /**
+     * The setters obtained by {@link #setter(MethodHandles.Lookup, String)},
+     * by field name, for each class. Generated code asks for them for
+     * every field of every instance it deserializes.
+     */
+    private static final ClassValue<ConcurrentHashMap<String, MethodHandle>> setterCache = new ClassValue<ConcurrentHashMap<String, MethodHandle>>() {
+        @Override
+        protected ConcurrentHashMap<String, MethodHandle> computeValue(java.lang.Class<?> klass) {
+            return new ConcurrentHashMap<String, MethodHandle>();
+        }
+    };
+
     /**
      * Used during deserialization to obtain a MethodHandle used for resetting final fields.
      * @param lookup The lookup on the class containing the field
@@ -1782,9 +1801,14 @@ public class Util {
      */
     public static MethodHandle setter(MethodHandles.Lookup lookup, String fieldName) throws ReflectiveOperationException {
         // Should this be an instance method of some thing passed to the derserialize method
-        Field field = lookup.lookupClass().getDeclaredField(fieldName);
-        field.setAccessible(true);
-        MethodHandle handle = lookup.unreflectSetter(field);
+        ConcurrentHashMap<String, MethodHandle> setters = setterCache.get(lookup.lookupClass());
+        MethodHandle handle = setters.get(fieldName);
+        if (handle == null) {
+            Field field = lookup.lookupClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            handle = lookup.unreflectSetter(field);
+            setters.put(fieldName, handle);
+        }
         return handle;
     }
 }
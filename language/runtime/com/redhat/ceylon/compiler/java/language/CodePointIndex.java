@@ -0,0 +1,306 @@
+package com.redhat.ceylon.compiler.java.language;
+
+/**
+ * Maps between code point indexes and char offsets of a
+ * {@link java.lang.String}, so that indexed access to a
+ * Ceylon {@code String} doesn't need to count code points
+ * from the start of the string every time.
+ *
+ * Strings with no surrogates (the vast majority) are
+ * indexed directly by char. For the others we keep the
+ * char offset of every {@value #STRIDE}th code point, and
+ * only count code points from the closest one.
+ *
+ * The methods behave exactly like the
+ * {@link java.lang.String} methods of the same name,
+ * including the exceptions they throw.
+ */
+public final class CodePointIndex {
+
+    private static final int SHIFT = 6;
+    private static final int STRIDE = 1 << SHIFT;
+    private static final int MASK = STRIDE - 1;
+
+    /**
+     * Strings shorter than this are not worth remembering:
+     * counting their code points is cheap enough
+     */
+    private static final int CACHED_LENGTH = 32;
+    /**
+     * Strings longer than this are remembered in their own
+     * slot, without keeping them alive, so that the cache of
+     * a thread never keeps more than
+     * CACHE_SIZE * MAX_CACHED_LENGTH chars alive
+     */
+    private static final int MAX_CACHED_LENGTH = 1 << 16;
+    private static final int CACHE_SIZE = 16;
+
+    /**
+     * The last indexes we built for each thread, by identity
+     * of their string, so that loops over the code points of
+     * a string reuse the same index
+     */
+    private static final ThreadLocal<CodePointIndex[]> cache =
+            new ThreadLocal<CodePointIndex[]>() {
+        @Override
+        protected CodePointIndex[] initialValue() {
+            return new CodePointIndex[CACHE_SIZE];
+        }
+    };
+
+    /**
+     * The last index we built for a string longer than
+     * MAX_CACHED_LENGTH for each thread
+     */
+    private static final ThreadLocal<LargeIndex> largeCache =
+            new ThreadLocal<LargeIndex>();
+
+    /**
+     * The index of a large string, which only holds on to
+     * the string weakly
+     */
+    private static final class LargeIndex {
+        private final java.lang.ref.WeakReference<java.lang.String> string;
+        private final int size;
+        private final int[] offsets;
+
+        LargeIndex(CodePointIndex index) {
+            this.string = new java.lang.ref.WeakReference<java.lang.String>(index.string);
+            this.size = index.size;
+            this.offsets = index.offsets;
+        }
+
+        CodePointIndex get(java.lang.String string) {
+            return this.string.get() == string ?
+                    new CodePointIndex(string, size, offsets) : null;
+        }
+    }
+
+    private final java.lang.String string;
+    private final int size;
+    /**
+     * The char offset of every STRIDEth code point, or null
+     * if every char is a code point
+     */
+    private final int[] offsets;
+
+    private CodePointIndex(java.lang.String string) {
+        this.string = string;
+        int length = string.length();
+        this.size = string.codePointCount(0, length);
+        if (size == length) {
+            offsets = null;
+        }
+        else {
+            int[] offsets = new int[(size >>> SHIFT) + 1];
+            int index = 0;
+            for (int offset = 0; offset < length; index++) {
+                if ((index & MASK) == 0) {
+                    offsets[index >>> SHIFT] = offset;
+                }
+                offset += java.lang.Character.charCount(
+                        string.codePointAt(offset));
+            }
+            if ((index & MASK) == 0) {
+                offsets[index >>> SHIFT] = length;
+            }
+            this.offsets = offsets;
+        }
+    }
+
+    private CodePointIndex(java.lang.String string, int size,
+            int[] offsets) {
+        this.string = string;
+        this.size = size;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the index of the given string, which is built
+     * at most once per thread for the strings being worked
+     * on.
+     */
+    public static CodePointIndex of(java.lang.String string) {
+        if (string.length() < CACHED_LENGTH) {
+            return new CodePointIndex(string);
+        }
+        if (string.length() > MAX_CACHED_LENGTH) {
+            CodePointIndex index = cachedLarge(string);
+            if (index == null) {
+                index = new CodePointIndex(string);
+                largeCache.set(new LargeIndex(index));
+            }
+            return index;
+        }
+        CodePointIndex[] indexes = cache.get();
+        int slot = System.identityHashCode(string) & (CACHE_SIZE - 1);
+        CodePointIndex index = indexes[slot];
+        if (index == null || index.string != string) {
+            index = new CodePointIndex(string);
+            indexes[slot] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the given string if the current
+     * thread already built it, or null. Unlike
+     * {@link #of(java.lang.String)}, never counts the code
+     * points of the string.
+     */
+    public static CodePointIndex cached(java.lang.String string) {
+        if (string.length() < CACHED_LENGTH) {
+            return null;
+        }
+        if (string.length() > MAX_CACHED_LENGTH) {
+            return cachedLarge(string);
+        }
+        CodePointIndex index = cache.get()[
+                System.identityHashCode(string) & (CACHE_SIZE - 1)];
+        return index != null && index.string == string ? index : null;
+    }
+
+    private static CodePointIndex cachedLarge(java.lang.String string) {
+        LargeIndex index = largeCache.get();
+        return index != null ? index.get(string) : null;
+    }
+
+    /**
+     * Same as {@link java.lang.String#offsetByCodePoints(int, int)},
+     * but uses the index of the string if the current thread
+     * already built it. Otherwise we only count the code
+     * points we skip, rather than all of them to build the
+     * index.
+     */
+    public static int offsetByCodePoints(java.lang.String string,
+            int index, int codePointOffset) {
+        CodePointIndex codePoints = cached(string);
+        return codePoints != null ?
+                codePoints.offsetByCodePoints(index, codePointOffset) :
+                string.offsetByCodePoints(index, codePointOffset);
+    }
+
+    /**
+     * Same as {@link java.lang.String#codePointCount(int, int)},
+     * but uses the index of the string if the current thread
+     * already built it.
+     */
+    public static int codePointCount(java.lang.String string,
+            int beginIndex, int endIndex) {
+        CodePointIndex codePoints = cached(string);
+        return codePoints != null ?
+                codePoints.codePointCount(beginIndex, endIndex) :
+                string.codePointCount(beginIndex, endIndex);
+    }
+
+    /**
+     * Returns a new index of the given string, for callers
+     * that keep it themselves.
+     */
+    public static CodePointIndex create(java.lang.String string) {
+        return new CodePointIndex(string);
+    }
+
+    public java.lang.String string() {
+        return string;
+    }
+
+    /**
+     * The number of code points in the string.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether every char of the string is a code point.
+     */
+    public boolean isBasic() {
+        return offsets == null;
+    }
+
+    /**
+     * @see java.lang.String#offsetByCodePoints(int, int)
+     */
+    public int offsetByCodePoints(int index, int codePointOffset) {
+        int length = string.length();
+        if (index < 0 || index > length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (offsets == null) {
+            int offset = index + codePointOffset;
+            // careful with overflows
+            if (codePointOffset > length - index
+                    || codePointOffset < -index) {
+                throw new IndexOutOfBoundsException();
+            }
+            return offset;
+        }
+        if (!isBoundary(index)) {
+            return string.offsetByCodePoints(index, codePointOffset);
+        }
+        int codePoint = count(index);
+        if (codePointOffset > size - codePoint
+                || codePointOffset < -codePoint) {
+            throw new IndexOutOfBoundsException();
+        }
+        return offset(codePoint + codePointOffset);
+    }
+
+    /**
+     * @see java.lang.String#codePointCount(int, int)
+     */
+    public int codePointCount(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > string.length()
+                || beginIndex > endIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (offsets == null) {
+            return endIndex - beginIndex;
+        }
+        if (!isBoundary(beginIndex)) {
+            return string.codePointCount(beginIndex, endIndex);
+        }
+        return count(endIndex) - count(beginIndex);
+    }
+
+    /**
+     * Whether the given char offset is not in the middle
+     * of a surrogate pair.
+     */
+    private boolean isBoundary(int index) {
+        return index == 0 || index == string.length()
+                || !java.lang.Character.isLowSurrogate(string.charAt(index))
+                || !java.lang.Character.isHighSurrogate(string.charAt(index - 1));
+    }
+
+    /**
+     * The char offset of the given code point, which must
+     * be between 0 and size.
+     */
+    private int offset(int codePoint) {
+        return string.offsetByCodePoints(offsets[codePoint >>> SHIFT],
+                codePoint & MASK);
+    }
+
+    /**
+     * The number of code points before the given char
+     * offset.
+     */
+    private int count(int offset) {
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= offset) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return (low << SHIFT)
+                + string.codePointCount(offsets[low], offset);
+    }
+
+}
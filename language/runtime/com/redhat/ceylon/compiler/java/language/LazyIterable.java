@@ -126,4 +126,33 @@ extends BaseIterable<Element, Absent>{
         	return $numExpressions < length;
         }
     }
+
+    /**
+     * The number of listed expressions, including the spread
+     * one.
+     */
+    @Ignore
+    public final int getNumExpressions() {
+        return $numExpressions;
+    }
+
+    /**
+     * Whether the last expression is spread, as in
+     * <code>{ 0, *array }</code>, so that functions like
+     * {@code sum()} can consume the spread stream (say an
+     * {@code Array}) whole, instead of one element at a time.
+     */
+    @Ignore
+    public final boolean isSpread() {
+        return $spread;
+    }
+
+    /**
+     * Evaluate the expression at the given index, which
+     * callers must do in order, like our iterator does.
+     */
+    @Ignore
+    public final Object evaluate(int index) {
+        return $evaluate$(index);
+    }
 }
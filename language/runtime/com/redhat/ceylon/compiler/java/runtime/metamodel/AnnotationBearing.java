@@ -23,4 +23,11 @@ public interface AnnotationBearing extends Annotated {
     @Ignore
     boolean $isAnnotated$(java.lang.Class<? extends java.lang.annotation.Annotation> annotationType);
     
+    /**
+     * @return the cache of the Ceylon annotations of this Annotated, 
+     * or null if they should be instantiated on every query
+     */
+    @Ignore
+    AnnotationCache $getAnnotationCache$();
+    
 }
@@ -0,0 +1,101 @@
+package com.redhat.ceylon.compiler.java.runtime.metamodel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ceylon.language.Sequential;
+
+import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
+
+/**
+ * The annotations of an {@link AnnotationBearing} declaration, which we
+ * only instantiate once, and only query once per annotation type.
+ * <p>
+ * Ceylon annotations are immutable, so every query can share the same
+ * instances. The cache belongs to its declaration, so it goes away with
+ * it when its module is unloaded.
+ */
+public final class AnnotationCache {
+
+    private final AnnotationBearing annotated;
+
+    private volatile java.lang.annotation.Annotation[] javaAnnotations;
+
+    /** The Ceylon annotation of each Java annotation we instantiated */
+    private final ConcurrentMap<java.lang.annotation.Annotation, java.lang.annotation.Annotation> instances =
+            new ConcurrentHashMap<java.lang.annotation.Annotation, java.lang.annotation.Annotation>();
+
+    /** The result of {@link #annotations(TypeDescriptor)} for each annotation type */
+    private final ConcurrentMap<TypeDescriptor, Sequential<?>> results =
+            new ConcurrentHashMap<TypeDescriptor, Sequential<?>>();
+
+    public AnnotationCache(AnnotationBearing annotated) {
+        this.annotated = annotated;
+    }
+
+    /**
+     * @return the Java annotations of our declaration
+     */
+    java.lang.annotation.Annotation[] getJavaAnnotations() {
+        java.lang.annotation.Annotation[] ret = javaAnnotations;
+        if (ret == null) {
+            ret = annotated.$getJavaAnnotations$();
+            javaAnnotations = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the Ceylon annotation we instantiated for the given Java
+     * annotation, or null
+     */
+    java.lang.annotation.Annotation getInstance(java.lang.annotation.Annotation jAnnotation) {
+        return instances.get(jAnnotation);
+    }
+
+    /**
+     * Records the Ceylon annotation we instantiated for the given Java
+     * annotation, and returns the one we should use, in case another
+     * thread beat us to it
+     */
+    java.lang.annotation.Annotation putInstance(java.lang.annotation.Annotation jAnnotation,
+            java.lang.annotation.Annotation cAnnotation) {
+        java.lang.annotation.Annotation existing = instances.putIfAbsent(jAnnotation, cAnnotation);
+        return existing != null ? existing : cAnnotation;
+    }
+
+    /**
+     * @return the annotations of our declaration which are of the given type
+     */
+    @SuppressWarnings("unchecked")
+    public <A extends java.lang.annotation.Annotation> Sequential<? extends A> annotations(TypeDescriptor $reifiedValues) {
+        Sequential<? extends A> ret = (Sequential<? extends A>) results.get($reifiedValues);
+        if (ret == null) {
+            Predicates.Predicate<A> predicate = Predicates.isAnnotationOfType($reifiedValues);
+            ret = Metamodel.annotations($reifiedValues, annotated, predicate, this);
+            Sequential<?> existing = results.putIfAbsent($reifiedValues, ret);
+            if (existing != null)
+                ret = (Sequential<? extends A>) existing;
+        }
+        return ret;
+    }
+
+    /**
+     * Holds the cache of a declaration, which we only create when the
+     * annotations of the declaration are first queried, since most
+     * declarations never are.
+     */
+    public static final class Lazy {
+        private volatile AnnotationCache cache;
+
+        public AnnotationCache get(AnnotationBearing annotated) {
+            // racy but harmless: at worst two threads build their own cache
+            AnnotationCache ret = cache;
+            if (ret == null) {
+                ret = new AnnotationCache(annotated);
+                cache = ret;
+            }
+            return ret;
+        }
+    }
+}
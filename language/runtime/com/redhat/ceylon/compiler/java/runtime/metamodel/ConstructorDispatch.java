@@ -9,6 +9,8 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.compiler.java.Util;
 import com.redhat.ceylon.compiler.java.metadata.ConstructorName;
@@ -50,6 +52,10 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
     public final int firstDefaulted;
     public final int variadicIndex;
     private MethodHandle[] dispatch;
+    // constructor and dispatch taking their arguments as an array, created when needed
+    private MethodHandle spreadConstructor;
+    private MethodHandle[] spreadDispatch;
+    private volatile Map<Parameter, MethodHandle> defaultValueMethods;
     public final List<com.redhat.ceylon.model.typechecker.model.Type> parameterProducedTypes;
     final Sequential<? extends ceylon.language.meta.model.Type<? extends Object>> parameterTypes;
     final Object instance;
@@ -713,16 +719,31 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
     @Override
     public Type $call$(Object... args) {
         try {
-            if(firstDefaulted == -1)
-                return (Type)constructor.invokeWithArguments(args);
-            // FIXME: proper checks
-            return (Type)dispatch[args.length-firstDefaulted].invokeWithArguments(args);
+            return (Type)getSpreadConstructor(args.length).invokeExact(args);
         } catch (Throwable e) {
             Util.rethrow(e);
             return null;
         }
     }
     
+    private MethodHandle getSpreadConstructor(int argumentCount) {
+        if(firstDefaulted == -1){
+            MethodHandle spread = spreadConstructor;
+            if(spread == null)
+                spreadConstructor = spread = MethodHandleUtil.spreadArguments(constructor);
+            return spread;
+        }
+        // FIXME: proper checks
+        int index = argumentCount-firstDefaulted;
+        MethodHandle[] spreads = spreadDispatch;
+        if(spreads == null)
+            spreadDispatch = spreads = new MethodHandle[dispatch.length];
+        MethodHandle spread = spreads[index];
+        if(spread == null)
+            spreads[index] = spread = MethodHandleUtil.spreadArguments(dispatch[index]);
+        return spread;
+    }
+    
     @Override
     public Type $callvariadic$(Object... argsAndVarargs) {
         return $call$(argsAndVarargs);
@@ -744,6 +765,26 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
     
     @Override
     public Object getDefaultParameterValue(Parameter parameter, Array<Object> values, int collectedValueCount) {
+        Map<Parameter, MethodHandle> methods = defaultValueMethods;
+        if(methods == null)
+            defaultValueMethods = methods = new ConcurrentHashMap<Parameter, MethodHandle>();
+        MethodHandle methodHandle = methods.get(parameter);
+        if(methodHandle == null){
+            methodHandle = getDefaultValueMethod(parameter, collectedValueCount);
+            methods.put(parameter, methodHandle);
+        }
+        // sucks that we have to copy the array, but that's the MH API
+        java.lang.Object[] arguments = new java.lang.Object[collectedValueCount];
+        System.arraycopy(values.toArray(), 0, arguments, 0, collectedValueCount);
+        try {
+            return methodHandle.invokeExact(arguments);
+        } catch (Throwable e) {
+            Util.rethrow(e);
+            return null;
+        }
+    }
+    
+    private MethodHandle getDefaultValueMethod(Parameter parameter, int collectedValueCount) {
         com.redhat.ceylon.model.typechecker.model.Class decl = 
                 (com.redhat.ceylon.model.typechecker.model.Class)freeClass.declaration;
         java.lang.Class<?> javaClass = Metamodel.getJavaClass(decl);
@@ -777,15 +818,7 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
         // AFAIK default value methods cannot be Java-variadic 
         MethodHandle methodHandle = reflectionToMethodHandle(constructorReference, found, 
                 javaClass, this.instance, parameterProducedTypes, false, false);
-        // sucks that we have to copy the array, but that's the MH API
-        java.lang.Object[] arguments = new java.lang.Object[collectedValueCount];
-        System.arraycopy(values.toArray(), 0, arguments, 0, collectedValueCount);
-        try {
-            return methodHandle.invokeWithArguments(arguments);
-        } catch (Throwable e) {
-            Util.rethrow(e);
-            return null;
-        }
+        return MethodHandleUtil.spreadArguments(methodHandle);
     }
 
     @Override
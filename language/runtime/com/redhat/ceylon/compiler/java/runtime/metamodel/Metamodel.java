@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.modules.ModuleIdentifier;
 import org.jboss.modules.ModuleLoadException;
@@ -156,12 +157,14 @@ public class Metamodel {
 
     private static RuntimeModuleManager moduleManager;
     
-    // FIXME: this will need better thinking in terms of memory usage
-    private static Map<java.lang.Class, ceylon.language.meta.declaration.NestableDeclaration> classToDeclaration
-    = new HashMap<java.lang.Class, ceylon.language.meta.declaration.NestableDeclaration>();
+    // the declarations are attached to the classes themselves, so they don't prevent
+    // modules from being unloaded, and we start over when the module manager is reset
+    private static volatile ClassValue<ceylon.language.meta.declaration.NestableDeclaration> classToDeclaration
+        = newClassToDeclaration();
     
+    // read without the lock, but only written while holding it
     private static Map<com.redhat.ceylon.model.typechecker.model.Declaration, Object> typeCheckModelToRuntimeModel
-        = new HashMap<com.redhat.ceylon.model.typechecker.model.Declaration, Object>();
+        = new ConcurrentHashMap<com.redhat.ceylon.model.typechecker.model.Declaration, Object>();
 
     private static Map<com.redhat.ceylon.model.typechecker.model.Package, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl> typeCheckPackagesToRuntimeModel
         = new HashMap<com.redhat.ceylon.model.typechecker.model.Package, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl>();
@@ -201,10 +204,12 @@ public class Metamodel {
     }
     
     public static void resetModuleManager(RuntimeResolver runtimeResolver) {
+        if (moduleManager != null)
+            moduleManager.getModelLoader().close();
         moduleManager = new RuntimeModuleManager(runtimeResolver);
         moduleManager.initCoreModules(new Modules());
         moduleManager.prepareForTypeChecking();
-        classToDeclaration.clear();
+        classToDeclaration = newClassToDeclaration();
         typeCheckModelToRuntimeModel.clear();
         typeCheckModulesToRuntimeModel.clear();
         typeCheckPackagesToRuntimeModel.clear();
@@ -394,6 +399,9 @@ public class Metamodel {
     }
     
     public static <R> R getOrCreateMetamodel(com.redhat.ceylon.model.typechecker.model.Declaration declaration){
+        Object existing = typeCheckModelToRuntimeModel.get(declaration);
+        if(existing != null)
+            return (R)existing;
         synchronized(getLock()){
             Object ret = typeCheckModelToRuntimeModel.get(declaration);
             if(ret == null){
@@ -1061,7 +1069,8 @@ public class Metamodel {
             Annotated annotated, 
             ArrayList<A> ceylonAnnotations,
             java.lang.annotation.Annotation jAnnotation,
-            Predicates.Predicate<A> pred) {
+            Predicates.Predicate<A> pred,
+            AnnotationCache cache) {
         Class<? extends java.lang.annotation.Annotation> jAnnotationType = jAnnotation.annotationType();
         if (pred != null && pred instanceof Predicates.AnnotationPredicate && !((Predicates.AnnotationPredicate<A>)pred).shouldInstantiate(jAnnotationType)) {
             return;
@@ -1081,27 +1090,39 @@ public class Metamodel {
                 throw Metamodel.newModelError("While unwrapping a sequenced annotation of element " + annotated, e);
             }
             for (java.lang.annotation.Annotation wrapped : jAnnotations) {
-                addAnnotation(annotated, ceylonAnnotations, wrapped, pred);
+                addAnnotation(annotated, ceylonAnnotations, wrapped, pred, cache);
             }
         } else {
-            // Find the annotation class
-            java.lang.Class<A> annotationClass = getAnnotationClass(jAnnotationType, annotated);
-            
-            // Invoke it with the jAnnotation as the only argument
-            try {
-                Constructor<A> constructor = annotationClass.getDeclaredConstructor(jAnnotationType);
-                constructor.setAccessible(true);
-                A cAnnotation = constructor.newInstance(jAnnotation);
-                if (pred.accept(cAnnotation)) {
-                    ceylonAnnotations.add(cAnnotation);
-                }
-            } catch (RuntimeException e) {
-                throw e;
-            } catch (Exception e) {/* aka ReflectiveOperationException */
-                throw Metamodel.newModelError("While reflectively instantiating " + annotationClass + " on element " + annotated, e);
-            } 
+            A cAnnotation = cache != null ? (A)cache.getInstance(jAnnotation) : null;
+            if (cAnnotation == null) {
+                cAnnotation = instantiateAnnotation(annotated, jAnnotation, jAnnotationType);
+                if (cache != null)
+                    cAnnotation = (A)cache.putInstance(jAnnotation, cAnnotation);
+            }
+            if (pred == null || pred.accept(cAnnotation)) {
+                ceylonAnnotations.add(cAnnotation);
+            }
         }
     }
+    
+    private static <A extends java.lang.annotation.Annotation> A instantiateAnnotation(
+            Annotated annotated,
+            java.lang.annotation.Annotation jAnnotation,
+            Class<? extends java.lang.annotation.Annotation> jAnnotationType) {
+        // Find the annotation class
+        java.lang.Class<A> annotationClass = getAnnotationClass(jAnnotationType, annotated);
+        
+        // Invoke it with the jAnnotation as the only argument
+        try {
+            Constructor<A> constructor = annotationClass.getDeclaredConstructor(jAnnotationType);
+            constructor.setAccessible(true);
+            return constructor.newInstance(jAnnotation);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {/* aka ReflectiveOperationException */
+            throw Metamodel.newModelError("While reflectively instantiating " + annotationClass + " on element " + annotated, e);
+        } 
+    }
     /** 
      * Gets the {@code java.lang.Class} of the Ceylon annotation class, 
      * given the {@code java.lang.Class} of a Java annotation type
@@ -1161,14 +1182,25 @@ public class Metamodel {
             Annotated annotated) {
         // TODO If the annotated is not a valid target for the annotationType
         // we can return empty immediately
+        AnnotationCache cache = ((AnnotationBearing)annotated).$getAnnotationCache$();
+        if (cache != null) {
+            return cache.annotations($reifiedValues);
+        }
         Predicates.Predicate<A> predicate = Predicates.isAnnotationOfType($reifiedValues);
         return annotations($reifiedValues, annotated, predicate);
     }
 
-    @SuppressWarnings("unchecked")
     public static <A extends java.lang.annotation.Annotation> Sequential<? extends A> annotations(TypeDescriptor $reifiedValues,
             Annotated annotated, Predicates.Predicate<A> predicate) {
-        java.lang.annotation.Annotation[] jAnnotations = ((AnnotationBearing)annotated).$getJavaAnnotations$();
+        return annotations($reifiedValues, annotated, predicate, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <A extends java.lang.annotation.Annotation> Sequential<? extends A> annotations(TypeDescriptor $reifiedValues,
+            Annotated annotated, Predicates.Predicate<A> predicate, AnnotationCache cache) {
+        java.lang.annotation.Annotation[] jAnnotations = cache != null 
+                ? cache.getJavaAnnotations() 
+                : ((AnnotationBearing)annotated).$getJavaAnnotations$();
         if (jAnnotations == null) {
             throw Metamodel.newModelError("Unable to find java.lang.reflect.AnnotatedElement for " + annotated);
         }
@@ -1176,7 +1208,7 @@ public class Metamodel {
         // TODO Fix initial size estimate when query for OptionalAnnotation
         ArrayList<A> ceylonAnnotations = new ArrayList<A>(jAnnotations.length);
         for (java.lang.annotation.Annotation jAnnotation: jAnnotations) {
-            addAnnotation(annotated, ceylonAnnotations, jAnnotation, predicate);
+            addAnnotation(annotated, ceylonAnnotations, jAnnotation, predicate, cache);
         }
         java.lang.annotation.Annotation[] array = ceylonAnnotations.toArray(new java.lang.annotation.Annotation[0]);
 		return new ObjectArrayIterable<A>($reifiedValues, (A[]) array).sequence();
@@ -1295,20 +1327,25 @@ public class Metamodel {
      * In theory this can only be used for ClassOrInterface or TypeAlias.
      */
     public static ceylon.language.meta.declaration.NestableDeclaration getOrCreateMetamodel(java.lang.Class<?> klass){
-        synchronized(getLock()){
-            ceylon.language.meta.declaration.NestableDeclaration result = classToDeclaration.get(klass);
-            if (result == null) {
-                // FIXME: is this really enough?
-                String typeName = klass.getName();
-                com.redhat.ceylon.model.typechecker.model.Module module = moduleManager.findModuleForClass(klass);
-                com.redhat.ceylon.model.typechecker.model.TypeDeclaration decl = 
-                        (com.redhat.ceylon.model.typechecker.model.TypeDeclaration) 
-                            moduleManager.getModelLoader().getDeclaration(module, typeName, DeclarationType.TYPE);
-                result = (ceylon.language.meta.declaration.NestableDeclaration) getOrCreateMetamodel(decl);
-                classToDeclaration.put(klass, result);
+        return classToDeclaration.get(klass);
+    }
+
+    private static ClassValue<ceylon.language.meta.declaration.NestableDeclaration> newClassToDeclaration() {
+        return new ClassValue<ceylon.language.meta.declaration.NestableDeclaration>(){
+            @Override
+            protected ceylon.language.meta.declaration.NestableDeclaration computeValue(java.lang.Class<?> klass) {
+                // if two threads race we get the same declaration from the model anyway
+                synchronized(getLock()){
+                    // FIXME: is this really enough?
+                    String typeName = klass.getName();
+                    com.redhat.ceylon.model.typechecker.model.Module module = moduleManager.findModuleForClass(klass);
+                    com.redhat.ceylon.model.typechecker.model.TypeDeclaration decl = 
+                            (com.redhat.ceylon.model.typechecker.model.TypeDeclaration) 
+                                moduleManager.getModelLoader().getDeclaration(module, typeName, DeclarationType.TYPE);
+                    return (ceylon.language.meta.declaration.NestableDeclaration) getOrCreateMetamodel(decl);
+                }
             }
-            return result;
-        }
+        };
     }
 
     public static TypeDescriptor getTypeDescriptorForFunction(Reference appliedFunction) {
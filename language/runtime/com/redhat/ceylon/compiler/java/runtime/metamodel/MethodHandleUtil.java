@@ -282,6 +282,17 @@ public class MethodHandleUtil {
         }
     }
 
+    /**
+     * Adapts the given method handle, which takes any number of Object
+     * parameters and returns an Object, to take its arguments as a single
+     * Object[] of that size, so it can be called with invokeExact rather
+     * than invokeWithArguments, which needs to adapt it on every call.
+     */
+    public static MethodHandle spreadArguments(MethodHandle method) {
+        return method.asSpreader(Object[].class, method.type().parameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
     public static boolean isReifiedTypeSupported(Object methodOrConstructor, boolean skipFirstParameter) {
         int tpCount;
         Class<?>[] parameterTypes;
@@ -7,6 +7,7 @@ import com.redhat.ceylon.compiler.java.metadata.Ceylon;
 import com.redhat.ceylon.compiler.java.metadata.Ignore;
 import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationBearing;
+import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationCache;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel;
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
@@ -25,6 +26,8 @@ public class ImportImpl
     
     private final ModuleImport moduleImport;
     
+    private final AnnotationCache.Lazy annotationCache = new AnnotationCache.Lazy();
+    
     public ImportImpl(ModuleImpl module, ModuleImport moduleImport) {
         this.module = module;
         this.moduleImport = moduleImport;
@@ -43,6 +46,12 @@ public class ImportImpl
         final Field field = getField();
         return field != null ? field.isAnnotationPresent(annotationType) : false;
     }
+
+    @Override
+    @Ignore
+    public AnnotationCache $getAnnotationCache$() {
+        return annotationCache.get(this);
+    }
     
     @Override
     public <AnnotationType extends java.lang.annotation.Annotation> boolean annotated(TypeDescriptor reifed$AnnotationType) {
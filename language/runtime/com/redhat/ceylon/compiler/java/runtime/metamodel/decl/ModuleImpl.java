@@ -25,6 +25,7 @@ import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationBearing;
+import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationCache;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel;
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.RuntimeModelLoader;
@@ -41,6 +42,7 @@ public class ModuleImpl implements ceylon.language.meta.declaration.Module,
     protected com.redhat.ceylon.model.typechecker.model.Module declaration;
     private Sequential<? extends Package> packages;
     private Sequential<? extends Import> dependencies;
+    private final AnnotationCache.Lazy annotationCache = new AnnotationCache.Lazy();
     
     public ModuleImpl(com.redhat.ceylon.model.typechecker.model.Module declaration) {
         this.declaration = declaration;
@@ -62,6 +64,12 @@ public class ModuleImpl implements ceylon.language.meta.declaration.Module,
         final AnnotatedElement element = Metamodel.getJavaClass(declaration);;
         return element != null ? element.isAnnotationPresent(annotationType) : false;
     }
+
+    @Override
+    @Ignore
+    public AnnotationCache $getAnnotationCache$() {
+        return annotationCache.get(this);
+    }
     
     @Override
     public <AnnotationType extends java.lang.annotation.Annotation> boolean annotated(TypeDescriptor reifed$AnnotationType) {
@@ -9,6 +9,8 @@ import com.redhat.ceylon.compiler.java.metadata.Ignore;
 import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
+import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationBearing;
+import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationCache;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel;
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
@@ -26,10 +28,17 @@ public abstract class NestableDeclarationImpl
     
     private Package pkg;
 
+    private final AnnotationCache.Lazy annotationCache = new AnnotationCache.Lazy();
+
     public NestableDeclarationImpl(com.redhat.ceylon.model.typechecker.model.Declaration declaration) {
         this.declaration = declaration;
     }
 
+    @Ignore
+    public AnnotationCache $getAnnotationCache$() {
+        return annotationCache.get((AnnotationBearing)this);
+    }
+
     @Override
     public String getName() {
         return declaration.getName();
@@ -18,6 +18,7 @@ import com.redhat.ceylon.compiler.java.metadata.TypeInfo;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameter;
 import com.redhat.ceylon.compiler.java.metadata.TypeParameters;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationBearing;
+import com.redhat.ceylon.compiler.java.runtime.metamodel.AnnotationCache;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Predicates;
 import com.redhat.ceylon.compiler.java.runtime.metamodel.Predicates.Predicate;
@@ -37,6 +38,8 @@ public class PackageImpl implements ceylon.language.meta.declaration.Package,
 
     private ModuleImpl module;
 
+    private final AnnotationCache.Lazy annotationCache = new AnnotationCache.Lazy();
+
     public PackageImpl(com.redhat.ceylon.model.typechecker.model.Package declaration){
         this.declaration = declaration;
     }
@@ -54,6 +57,12 @@ public class PackageImpl implements ceylon.language.meta.declaration.Package,
         final AnnotatedElement element = Metamodel.getJavaClass(declaration);;
         return element != null ? element.isAnnotationPresent(annotationType) : false;
     }
+
+    @Override
+    @Ignore
+    public AnnotationCache $getAnnotationCache$() {
+        return annotationCache.get(this);
+    }
     
     @Override
     public <AnnotationType extends java.lang.annotation.Annotation> boolean annotated(TypeDescriptor reifed$AnnotationType) {
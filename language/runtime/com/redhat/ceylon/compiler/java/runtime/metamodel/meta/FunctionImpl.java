@@ -8,6 +8,7 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.compiler.java.Util;
 import com.redhat.ceylon.compiler.java.metadata.Ceylon;
@@ -51,6 +52,10 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
     protected final FunctionDeclarationImpl declaration;
     private MethodHandle method;
     private MethodHandle[] dispatch;
+    // method and dispatch taking their arguments as an array, created when needed
+    private MethodHandle spreadMethod;
+    private MethodHandle[] spreadDispatch;
+    private volatile Map<Parameter, MethodHandle> defaultValueMethods;
     private int firstDefaulted = -1;
     private int variadicIndex = -1;
     private ceylon.language.Map<? extends ceylon.language.meta.declaration.TypeParameter, ? extends ceylon.language.meta.model.Type<?>> typeArguments;
@@ -347,17 +352,31 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
     public Type $call$(Object... args) {
         checkMethod();
         try {
-            // FIXME: this does not do invokeExact and does boxing/widening
-            if(firstDefaulted == -1)
-                return (Type)method.invokeWithArguments(args);
-            // FIXME: proper checks
-            return (Type)dispatch[args.length-firstDefaulted].invokeWithArguments(args);
+            return (Type)getSpreadMethod(args.length).invokeExact(args);
         } catch (Throwable e) {
             Util.rethrow(e);
             return null;
         }
     }
 
+    private MethodHandle getSpreadMethod(int argumentCount) {
+        if(firstDefaulted == -1){
+            MethodHandle spread = spreadMethod;
+            if(spread == null)
+                spreadMethod = spread = MethodHandleUtil.spreadArguments(method);
+            return spread;
+        }
+        // FIXME: proper checks
+        int index = argumentCount-firstDefaulted;
+        MethodHandle[] spreads = spreadDispatch;
+        if(spreads == null)
+            spreadDispatch = spreads = new MethodHandle[dispatch.length];
+        MethodHandle spread = spreads[index];
+        if(spread == null)
+            spreads[index] = spread = MethodHandleUtil.spreadArguments(dispatch[index]);
+        return spread;
+    }
+
     @Ignore
     @Override
     public short $getVariadicParameterIndex$() {
@@ -454,6 +473,26 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
 
     @Override
     public Object getDefaultParameterValue(Parameter parameter, Array<Object> values, int collectedValueCount) {
+        Map<Parameter, MethodHandle> methods = defaultValueMethods;
+        if(methods == null)
+            defaultValueMethods = methods = new ConcurrentHashMap<Parameter, MethodHandle>();
+        MethodHandle methodHandle = methods.get(parameter);
+        if(methodHandle == null){
+            methodHandle = getDefaultValueMethod(parameter, collectedValueCount);
+            methods.put(parameter, methodHandle);
+        }
+        // sucks that we have to copy the array, but that's the MH API
+        java.lang.Object[] arguments = new java.lang.Object[collectedValueCount];
+        System.arraycopy(values.toArray(), 0, arguments, 0, collectedValueCount);
+        try {
+            return methodHandle.invokeExact(arguments);
+        } catch (Throwable e) {
+            Util.rethrow(e);
+            return null;
+        }
+    }
+
+    private MethodHandle getDefaultValueMethod(Parameter parameter, int collectedValueCount) {
         // find the right class
         java.lang.Class<?> javaClass = Metamodel.getJavaClass(declaration.declaration);
         // default method name
@@ -476,15 +515,7 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
         
         // AFAIK default value methods cannot be Java-variadic 
         MethodHandle methodHandle = reflectionToMethodHandle(found, javaClass, instance, appliedFunction, parameterProducedTypes, false, false);
-        // sucks that we have to copy the array, but that's the MH API
-        java.lang.Object[] arguments = new java.lang.Object[collectedValueCount];
-        System.arraycopy(values.toArray(), 0, arguments, 0, collectedValueCount);
-        try {
-            return methodHandle.invokeWithArguments(arguments);
-        } catch (Throwable e) {
-            Util.rethrow(e);
-            return null;
-        }
+        return MethodHandleUtil.spreadArguments(methodHandle);
     }
 
     @TypeInfo("ceylon.language::Sequential<ceylon.language.meta.model::Type<ceylon.language::Anything>>")
@@ -72,6 +72,14 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
         return jars.packageExists(module, packageName);
     }
 
+    /**
+     * Closes the jar files we opened to read their contents, which are
+     * opened again if we need to read them later
+     */
+    public void close() {
+        jars.close();
+    }
+
     public byte[] getContents(String path) {
         return jars.getContents(path);
     }
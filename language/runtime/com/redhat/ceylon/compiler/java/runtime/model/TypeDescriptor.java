@@ -4,10 +4,12 @@ import static com.redhat.ceylon.compiler.java.Util.isBasic;
 import static com.redhat.ceylon.compiler.java.Util.isIdentifiable;
 import static com.redhat.ceylon.compiler.java.runtime.metamodel.Metamodel.getProducedType;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.redhat.ceylon.compiler.java.language.BooleanArray;
 import com.redhat.ceylon.compiler.java.language.ByteArray;
@@ -52,6 +54,36 @@ public abstract class TypeDescriptor
     
     public static final TypeDescriptor NothingType = new Nothing();
     private static final Variance[] NO_VARIANCE = new Variance[0];
+    
+    /** 
+     * The number of instance types whose subtyping we remember for each type 
+     * descriptor, a power of two 
+     */
+    private static final int SUBTYPE_CACHE_SIZE = 16;
+    /** The size of the table of interned type descriptors, a power of two */
+    private static final int INTERNED_SIZE = 1024;
+    private static final AtomicReferenceArray<WeakReference<TypeDescriptor>> interned = 
+            new AtomicReferenceArray<WeakReference<TypeDescriptor>>(INTERNED_SIZE);
+    
+    /** 
+     * The results of the subtype checks of {@link #is(TypeDescriptor)} that
+     * needed the type model, in a lossy, fixed-size hash table by instance type
+     */
+    private transient volatile AtomicReferenceArray<SubtypeResult> subtypeCache;
+    
+    /**
+     * The result of a subtype check for an instance type. We only hold the
+     * instance type weakly, so that the descriptors of the classes of modules 
+     * that were unloaded don't stay reachable from ours.
+     */
+    private static final class SubtypeResult extends WeakReference<TypeDescriptor> {
+        final boolean result;
+        
+        SubtypeResult(TypeDescriptor instanceType, boolean result) {
+            super(instanceType);
+            this.result = result;
+        }
+    }
 
     //
     // Methods
@@ -187,6 +219,7 @@ public abstract class TypeDescriptor
         private static final long serialVersionUID = -490491495105002855L;
         
         protected final java.lang.Class<?> klass;
+        protected transient int hash;
 
         public Class(java.lang.Class<?> klass, Variance[] useSiteVariance, TypeDescriptor[] typeArguments){
             super(useSiteVariance, typeArguments);
@@ -278,11 +311,15 @@ public abstract class TypeDescriptor
         
         @Override
         public int hashCode() {
-            int ret = 17;
-            ret = 37 * ret + "class".hashCode();
-            ret = 37 * ret + Arrays.hashCode(typeArguments);
-            ret = 37 * ret + Arrays.hashCode(useSiteVariance);
-            ret = 37 * ret + klass.hashCode();
+            int ret = hash;
+            if (ret == 0) {
+                ret = 17;
+                ret = 37 * ret + "class".hashCode();
+                ret = 37 * ret + Arrays.hashCode(typeArguments);
+                ret = 37 * ret + Arrays.hashCode(useSiteVariance);
+                ret = 37 * ret + klass.hashCode();
+                hash = ret;
+            }
             return  ret;
         }
         
@@ -458,12 +495,16 @@ public abstract class TypeDescriptor
         
         @Override
         public int hashCode() {
-            int ret = 17;
-            ret = 37 * ret + "tuple".hashCode();
-            ret = 37 * ret + Arrays.hashCode(elements);
-            ret = 37 * ret + (variadic ? 1 : 0);
-            ret = 37 * ret + (atLeastOne ? 1 : 0);
-            ret = 37 * ret + firstDefaulted;
+            int ret = hash;
+            if (ret == 0) {
+                ret = 17;
+                ret = 37 * ret + "tuple".hashCode();
+                ret = 37 * ret + Arrays.hashCode(elements);
+                ret = 37 * ret + (variadic ? 1 : 0);
+                ret = 37 * ret + (atLeastOne ? 1 : 0);
+                ret = 37 * ret + firstDefaulted;
+                hash = ret;
+            }
             return  ret;
         }
 
@@ -801,6 +842,7 @@ public abstract class TypeDescriptor
         private static final long serialVersionUID = -5468389615462158394L;
         
         protected final TypeDescriptor[] members;
+        protected transient int hash;
 
         public Composite(TypeDescriptor[] members) {
             this.members = members;
@@ -892,9 +934,13 @@ public abstract class TypeDescriptor
 
         @Override
         public int hashCode() {
-            int ret = 17;
-            ret = 37 * ret + "union".hashCode();
-            ret = 37 * ret + unorderedHashCode(members);
+            int ret = hash;
+            if (ret == 0) {
+                ret = 17;
+                ret = 37 * ret + "union".hashCode();
+                ret = 37 * ret + unorderedHashCode(members);
+                hash = ret;
+            }
             return ret;
         }
 
@@ -970,9 +1016,13 @@ public abstract class TypeDescriptor
         
         @Override
         public int hashCode() {
-            int ret = 17;
-            ret = 37 * ret + "intersection".hashCode();
-            ret = 37 * ret + unorderedHashCode(members);
+            int ret = hash;
+            if (ret == 0) {
+                ret = 17;
+                ret = 37 * ret + "intersection".hashCode();
+                ret = 37 * ret + unorderedHashCode(members);
+                hash = ret;
+            }
             return ret;
         }
 
@@ -1038,8 +1088,11 @@ public abstract class TypeDescriptor
         // special-case for Tuples because we want to unwrap them even if someone constructs them manually
         TypeDescriptor tuple = unwrapTupleType(klass, useSiteVariance, typeArguments, false);
         if(tuple != null)
-            return tuple;
-        return new Class(klass, useSiteVariance, typeArguments);
+            return intern(tuple);
+        if(typeArguments.length == 0)
+            // those are held in static fields already
+            return new Class(klass, useSiteVariance, typeArguments);
+        return intern(new Class(klass, useSiteVariance, typeArguments));
     }
 
     private static TypeDescriptor.Tuple unwrapTupleType(java.lang.Class<?> klass, Variance[] useSiteVariance, TypeDescriptor[] typeArguments, boolean allOptional) {
@@ -1260,16 +1313,16 @@ public abstract class TypeDescriptor
                 // damn, so we have a []|[A] that we want to turn into a [A=]
                 Tuple tuple = (Tuple) alternative;
                 // trust the tuple on variadic, and same list of elements
-                return new Tuple(tuple.variadic, tuple.atLeastOne, 0, tuple.elements);
+                return intern(new Tuple(tuple.variadic, tuple.atLeastOne, 0, tuple.elements));
             }else if(alternative instanceof Class){
                 Class klass = (Class) alternative;
                 TypeDescriptor tuple = unwrapTupleType(klass.getKlass(), klass.useSiteVariance, klass.getTypeArguments(), true);
                 if(tuple != null)
-                    return tuple;
+                    return intern(tuple);
             }
         }
 
-        return new Union(members);
+        return intern(new Union(members));
     }
 
     public static TypeDescriptor intersection(TypeDescriptor... members){
@@ -1280,7 +1333,68 @@ public abstract class TypeDescriptor
         if(single != null)
             return single;
         members = removeDuplicates(members);
-        return new Intersection(members);
+        return intern(new Intersection(members));
+    }
+
+    /**
+     * Returns a type descriptor equal to the given one, which we share
+     * with the other callers asking for it, so that reified type checks 
+     * mostly compare identical descriptors and reuse their subtype cache.
+     * The table is a lossy, fixed-size hash table of weak references: a
+     * descriptor whose slot was taken by another one is simply not shared
+     * anymore, which is fine since sharing is only an optimisation.
+     * Unions and intersections are equal regardless of the order of their
+     * members, but they print them in order, so we only share descriptors
+     * that list them in the same order.
+     */
+    private static TypeDescriptor intern(TypeDescriptor td) {
+        int hash = td.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (INTERNED_SIZE - 1);
+        WeakReference<TypeDescriptor> ref = interned.get(index);
+        if(ref != null){
+            TypeDescriptor existing = ref.get();
+            if(existing != null && existing.equals(td) && sameOrder(existing, td))
+                return existing;
+        }
+        interned.set(index, new WeakReference<TypeDescriptor>(td));
+        return td;
+    }
+
+    /**
+     * Returns true if the given equal type descriptors also list the members
+     * of their unions and intersections in the same order
+     */
+    private static boolean sameOrder(TypeDescriptor a, TypeDescriptor b) {
+        if(a == b)
+            return true;
+        if(a instanceof Composite && b instanceof Composite){
+            TypeDescriptor[] aMembers = ((Composite) a).members;
+            TypeDescriptor[] bMembers = ((Composite) b).members;
+            if(aMembers.length != bMembers.length)
+                return false;
+            for(int i=0;i<aMembers.length;i++){
+                if(!aMembers[i].equals(bMembers[i])
+                        || !sameOrder(aMembers[i], bMembers[i]))
+                    return false;
+            }
+            return true;
+        }
+        if(a instanceof Tuple && b instanceof Tuple)
+            return sameOrder(((Tuple) a).elements, ((Tuple) b).elements);
+        if(a instanceof Generic && b instanceof Generic)
+            return sameOrder(((Generic) a).typeArguments, ((Generic) b).typeArguments);
+        if(a instanceof Member && b instanceof Member)
+            return sameOrder(((Member) a).container, ((Member) b).container)
+                    && sameOrder(((Member) a).member, ((Member) b).member);
+        return true;
+    }
+
+    private static boolean sameOrder(TypeDescriptor[] a, TypeDescriptor[] b) {
+        for(int i=0;i<a.length;i++){
+            if(!sameOrder(a[i], b[i]))
+                return false;
+        }
+        return true;
     }
 
     /**
@@ -1362,7 +1476,28 @@ public abstract class TypeDescriptor
     }
 
     public boolean is(TypeDescriptor instanceType) {
-        return this==instanceType ||
-                getProducedType(instanceType).isSubtypeOf(getProducedType(this));
+        if(this == instanceType)
+            return true;
+        // the type model is expensive and locked, so remember its answers
+        int hash = instanceType.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (SUBTYPE_CACHE_SIZE - 1);
+        AtomicReferenceArray<SubtypeResult> cache = subtypeCache;
+        if(cache != null){
+            SubtypeResult cached = cache.get(index);
+            if(cached != null){
+                TypeDescriptor cachedType = cached.get();
+                if(cachedType == instanceType
+                        || cachedType != null && cachedType.equals(instanceType))
+                    return cached.result;
+            }
+        }
+        boolean result = getProducedType(instanceType).isSubtypeOf(getProducedType(this));
+        if(cache == null){
+            // if two threads race, one cache is lost, which is harmless
+            cache = new AtomicReferenceArray<SubtypeResult>(SUBTYPE_CACHE_SIZE);
+            subtypeCache = cache;
+        }
+        cache.set(index, new SubtypeResult(instanceType, result));
+        return result;
     }
 }
@@ -0,0 +1,87 @@
+package com.redhat.ceylon.compiler.java.runtime.serialization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ceylon.language.serialization.Member;
+import ceylon.language.serialization.Outer;
+import ceylon.language.serialization.ReachableReference;
+
+/**
+ * <p>The {@link Serializable#$references$()} of a serializable class.</p>
+ *
+ * <p>They only depend on the class, but the generated method builds them
+ * again on every call (looking up the declaration of every attribute), so
+ * we only ask the first instance of each class for them. The references
+ * are immutable, so everyone can share them.</p>
+ *
+ * <p>Members are still read and written one reference at a time, through
+ * {@link Serializable#$get$} and {@link Serializable#$set$}, which the
+ * compiler generates as a switch on the name of the member. Batch
+ * accessors would have to be added to {@link Serializable}, which classes
+ * compiled by earlier compilers don't implement, and the
+ * {@code References} API deals in references anyway.</p>
+ */
+public final class ClassReferences {
+
+    private static final ClassValue<ClassReferences[]> cache = new ClassValue<ClassReferences[]>() {
+        @Override
+        protected ClassReferences[] computeValue(Class<?> type) {
+            return new ClassReferences[1];
+        }
+    };
+
+    private final ReachableReference[] references;
+    private final List<ReachableReference> list;
+    private final int required;
+
+    private ClassReferences(java.util.Collection<ReachableReference> references) {
+        this.references = references.toArray(new ReachableReference[references.size()]);
+        this.list = Collections.unmodifiableList(new ArrayList<ReachableReference>(references));
+        int required = 0;
+        for (ReachableReference reference : this.references) {
+            if (!(reference instanceof Outer)
+                    && !(reference instanceof Member
+                            && ((Member)reference).getAttribute().getLate())) {
+                required++;
+            }
+        }
+        this.required = required;
+    }
+
+    /**
+     * @return the references of the class of the given instance
+     */
+    public static ClassReferences of(Serializable instance) {
+        ClassReferences[] slot = cache.get(instance.getClass());
+        ClassReferences ret = slot[0];
+        if (ret == null) {
+            // racy but harmless: we're immutable
+            ret = new ClassReferences(instance.$references$());
+            slot[0] = ret;
+        }
+        return ret;
+    }
+
+    public List<ReachableReference> getReferences() {
+        return list;
+    }
+
+    public int size() {
+        return references.length;
+    }
+
+    public ReachableReference get(int index) {
+        return references[index];
+    }
+
+    /**
+     * @return the number of references which must have some state for us
+     * to deserialize an instance: all but the {@code late} attributes and
+     * the outer instance
+     */
+    public int getRequired() {
+        return required;
+    }
+}
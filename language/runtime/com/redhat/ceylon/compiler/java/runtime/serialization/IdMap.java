@@ -0,0 +1,286 @@
+package com.redhat.ceylon.compiler.java.runtime.serialization;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <p>An insertion-only hash map for the bookkeeping of the
+ * serialization runtime, which can hold millions of entries
+ * (one per instance id, and one per reference of each
+ * instance being deserialized).</p>
+ *
+ * <p>It uses open addressing, so adding an entry does not
+ * allocate anything, and {@code ceylon.language.Integer} keys
+ * (the usual kind of id) are stored by value in a separate
+ * table. Keys are compared by identity before we call
+ * {@code equals()}, which is what we need for keys like
+ * {@code MemberImpl}s which are usually shared.</p>
+ *
+ * <p>Keys and values can be null. Keys are equal as in a
+ * {@link java.util.HashMap}, so an integral
+ * {@code ceylon.language.Float} is the same key as the
+ * equal {@code ceylon.language.Integer} (we iterate it as an
+ * {@code Integer}).</p>
+ */
+public final class IdMap<K, V> {
+
+    /** Stands for a null value, since null marks free slots */
+    private static final Object NULL = new Object();
+
+    private static final int MIN_CAPACITY = 8;
+
+    /** Floats beyond this can't be equal to an Integer */
+    private static final double TWO_FIFTY_THREE = 1L << 53;
+
+    private long[] longKeys;
+    private Object[] longValues;
+    private int longSize;
+
+    private Object[] keys;
+    private Object[] values;
+    private int objectSize;
+
+    private boolean hasNullKey;
+    private Object nullValue;
+
+    public V get(java.lang.Object key) {
+        Object value;
+        if (key == null) {
+            value = nullValue;
+        } else if (isLongKey(key)) {
+            value = longValues != null ? longValues[findLong(longValue(key))] : null;
+        } else {
+            value = values != null ? values[find(key)] : null;
+        }
+        return unmask(value);
+    }
+
+    public boolean containsKey(java.lang.Object key) {
+        if (key == null) {
+            return hasNullKey;
+        } else if (isLongKey(key)) {
+            return longValues != null && longValues[findLong(longValue(key))] != null;
+        } else {
+            return values != null && values[find(key)] != null;
+        }
+    }
+
+    public void put(K key, V value) {
+        Object masked = value == null ? NULL : value;
+        if (key == null) {
+            hasNullKey = true;
+            nullValue = masked;
+        } else if (isLongKey(key)) {
+            long k = longValue(key);
+            if (longKeys == null) {
+                longKeys = new long[MIN_CAPACITY];
+                longValues = new Object[MIN_CAPACITY];
+            }
+            int index = findLong(k);
+            if (longValues[index] == null) {
+                if (isFull(longSize, longKeys.length)) {
+                    growLong();
+                    index = findLong(k);
+                }
+                longKeys[index] = k;
+                longSize++;
+            }
+            longValues[index] = masked;
+        } else {
+            if (keys == null) {
+                keys = new Object[MIN_CAPACITY];
+                values = new Object[MIN_CAPACITY];
+            }
+            int index = find(key);
+            if (keys[index] == null) {
+                if (isFull(objectSize, keys.length)) {
+                    grow();
+                    index = find(key);
+                }
+                keys[index] = key;
+                objectSize++;
+            }
+            values[index] = masked;
+        }
+    }
+
+    public int size() {
+        return longSize + objectSize + (hasNullKey ? 1 : 0);
+    }
+
+    public java.util.Iterator<K> keyIterator() {
+        return new Iter<K>(true);
+    }
+
+    public java.util.Iterator<V> valueIterator() {
+        return new Iter<V>(false);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        Iter<K> keyIt = new Iter<K>(true);
+        Iter<V> valueIt = new Iter<V>(false);
+        while (keyIt.hasNext()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(keyIt.next()).append('=').append(valueIt.next());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static boolean isLongKey(Object key) {
+        if (key instanceof ceylon.language.Integer) {
+            return true;
+        }
+        if (key instanceof ceylon.language.Float) {
+            double value = ((ceylon.language.Float)key).doubleValue();
+            return value == (long)value
+                    && value > -TWO_FIFTY_THREE
+                    && value < TWO_FIFTY_THREE;
+        }
+        return false;
+    }
+
+    private static long longValue(Object key) {
+        return key instanceof ceylon.language.Integer ?
+                ((ceylon.language.Integer)key).longValue() :
+                (long)((ceylon.language.Float)key).doubleValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unmask(Object value) {
+        return value == NULL ? null : (V)value;
+    }
+
+    private static boolean isFull(int size, int capacity) {
+        // keep the load factor under 2/3
+        return 3 * (size + 1) > 2 * capacity;
+    }
+
+    /**
+     * Fibonacci hashing: the top bits of the product depend on
+     * all the bits of the key, so regular ids (say all even, or
+     * all in a range) don't cluster under linear probing
+     */
+    private static int slot(long hash, int capacity) {
+        return (int)((hash * 0x9E3779B97F4A7C15L)
+                >>> (Long.numberOfLeadingZeros(capacity) + 1));
+    }
+
+    /** The slot of the given key, or the free slot where it belongs */
+    private int findLong(long key) {
+        int mask = longKeys.length - 1;
+        int index = slot(key, longKeys.length);
+        while (longValues[index] != null
+                && longKeys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /** The slot of the given key, or the free slot where it belongs */
+    private int find(Object key) {
+        int mask = keys.length - 1;
+        int index = slot(key.hashCode(), keys.length);
+        Object k;
+        while ((k = keys[index]) != null
+                && k != key
+                && !k.equals(key)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void growLong() {
+        long[] oldKeys = longKeys;
+        Object[] oldValues = longValues;
+        longKeys = new long[oldKeys.length * 2];
+        longValues = new Object[oldKeys.length * 2];
+        for (int ii = 0; ii < oldKeys.length; ii++) {
+            if (oldValues[ii] != null) {
+                int index = findLong(oldKeys[ii]);
+                longKeys[index] = oldKeys[ii];
+                longValues[index] = oldValues[ii];
+            }
+        }
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        for (int ii = 0; ii < oldKeys.length; ii++) {
+            if (oldKeys[ii] != null) {
+                int index = find(oldKeys[ii]);
+                keys[index] = oldKeys[ii];
+                values[index] = oldValues[ii];
+            }
+        }
+    }
+
+    /**
+     * Iterates the keys or the values: first the null key,
+     * then the long keys, then the others.
+     */
+    private class Iter<T> implements java.util.Iterator<T> {
+        private final boolean iterateKeys;
+        private boolean nullDone = !hasNullKey;
+        private int longIndex = 0;
+        private int index = 0;
+
+        Iter(boolean iterateKeys) {
+            this.iterateKeys = iterateKeys;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!nullDone) {
+                return true;
+            }
+            if (longValues != null) {
+                while (longIndex < longValues.length
+                        && longValues[longIndex] == null) {
+                    longIndex++;
+                }
+                if (longIndex < longValues.length) {
+                    return true;
+                }
+            }
+            if (keys != null) {
+                while (index < keys.length
+                        && keys[index] == null) {
+                    index++;
+                }
+                return index < keys.length;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (!nullDone) {
+                nullDone = true;
+                return iterateKeys ? null : IdMap.<T>unmask(nullValue);
+            }
+            if (longValues != null && longIndex < longValues.length) {
+                int ii = longIndex++;
+                return iterateKeys ?
+                        (T)ceylon.language.Integer.instance(longKeys[ii]) :
+                        IdMap.<T>unmask(longValues[ii]);
+            }
+            int ii = index++;
+            return iterateKeys ? (T)keys[ii] : IdMap.<T>unmask(values[ii]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package ceylon.language;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -28,4 +30,21 @@ public class IntegerTest {
             // Checking that this is thrown
         }
     }
+    
+    @Test
+    public void testSmallValuesAreShared() {
+        assertSame(Integer.instance(0), Integer.instance(0));
+        assertSame(Integer.instance(-128), Integer.instance(-128));
+        assertSame(Integer.instance(1023), Integer.instance(1023));
+        assertNotSame(Integer.instance(1024), Integer.instance(1024));
+        assertNotSame(Integer.instance(-129), Integer.instance(-129));
+        assertEquals(1024L, Integer.instance(1023).getSuccessor().longValue());
+        assertEquals(-129L, Integer.instance(-128).getPredecessor().longValue());
+        
+        assertSame(Byte.instance((byte)-1), Byte.instance((byte)255));
+        assertEquals(-1, Byte.instance((byte)-1).byteValue());
+        
+        assertSame(Character.instance('a'), Character.instance('a'));
+        assertEquals(0x1F600, Character.instance(0x1F600).intValue());
+    }
 }
@@ -7,15 +7,18 @@ import org.junit.runners.Suite.SuiteClasses;
 import com.redhat.ceylon.compiler.java.ArrayBuilderTest;
 import com.redhat.ceylon.compiler.java.TypeDescriptorTest;
 import com.redhat.ceylon.compiler.java.runtime.MainTest;
+import com.redhat.ceylon.compiler.java.runtime.serialization.IdMapTest;
 
 @RunWith(Suite.class) 
 @SuiteClasses({
     FloatTest.class,
     IntegerTest.class,
+    StringTest.class,
     ArrayBuilderTest.class,
     TypeDescriptorTest.class,
     PrimitiveArrayIterableTest.class,
-    MainTest.class
+    MainTest.class,
+    IdMapTest.class
 })
 public class LanguageUnitTestSuite {
 
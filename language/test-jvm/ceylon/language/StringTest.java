@@ -0,0 +1,159 @@
+package ceylon.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.redhat.ceylon.compiler.java.language.CodePointIndex;
+
+public class StringTest {
+
+    private static java.lang.String repeat(java.lang.String s, int times) {
+        java.lang.StringBuilder sb = new java.lang.StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static final java.lang.String ASCII = repeat("hello world ", 30);
+    private static final java.lang.String BMP = repeat("héllo wörld 世界 ", 30);
+    private static final java.lang.String ASTRAL = repeat("a😀b𐐷 ", 40);
+    // unpaired surrogates count as one code point each
+    private static final java.lang.String BROKEN = repeat("x\ud83d😀\ude00y", 30);
+
+    private static final java.lang.String[] STRINGS = {
+        "", "a", "😀", "\ud83d", ASCII, BMP, ASTRAL, BROKEN
+    };
+
+    @Test
+    public void testCodePointCount() {
+        for (java.lang.String s : STRINGS) {
+            CodePointIndex index = CodePointIndex.create(s);
+            assertEquals(s.codePointCount(0, s.length()), index.size());
+            assertEquals(s.codePointCount(0, s.length()) == s.length(), index.isBasic());
+            for (int begin = 0; begin <= s.length(); begin++) {
+                for (int end = begin; end <= s.length(); end += 7) {
+                    assertEquals(s.codePointCount(begin, end), index.codePointCount(begin, end));
+                }
+            }
+            try {
+                index.codePointCount(0, s.length() + 1);
+                fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Checking that this is thrown
+            }
+        }
+    }
+
+    @Test
+    public void testOffsetByCodePoints() {
+        for (java.lang.String s : STRINGS) {
+            CodePointIndex index = CodePointIndex.create(s);
+            int size = index.size();
+            for (int start = 0; start <= s.length(); start++) {
+                for (int offset = -size - 1; offset <= size + 1; offset++) {
+                    java.lang.Integer expected;
+                    try {
+                        expected = s.offsetByCodePoints(start, offset);
+                    } catch (IndexOutOfBoundsException e) {
+                        expected = null;
+                    }
+                    try {
+                        int actual = index.offsetByCodePoints(start, offset);
+                        assertEquals(expected, java.lang.Integer.valueOf(actual));
+                    } catch (IndexOutOfBoundsException e) {
+                        assertNull(expected);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexedAccess() {
+        for (java.lang.String s : STRINGS) {
+            String boxed = String.instance(s);
+            int size = s.codePointCount(0, s.length());
+            assertEquals(size, String.getSize(s));
+            assertEquals(size, boxed.getSize());
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                int codePoint = s.codePointAt(offset);
+                assertEquals(codePoint, String.getFromFirst(s, i).codePoint);
+                assertEquals(codePoint, boxed.getFromFirst(i).codePoint);
+                assertEquals(codePoint, String.getFromLast(s, size - 1 - i).codePoint);
+                assertEquals(codePoint, boxed.getFromLast(size - 1 - i).codePoint);
+                int next = offset + java.lang.Character.charCount(codePoint);
+                assertEquals(s.substring(offset, next), String.measure(s, i, 1));
+                assertEquals(s.substring(offset), String.spanFrom(s, i));
+                assertEquals(s.substring(0, next), String.spanTo(s, i));
+                assertEquals(s.substring(offset, next), boxed.span(Integer.instance(i), Integer.instance(i)).value);
+                assertTrue(String.occursAt(s, i, codePoint));
+                assertEquals(s.substring(0, offset), String.initial(s, i));
+                offset = next;
+            }
+            assertNull(String.getFromFirst(s, size));
+            assertNull(boxed.getFromFirst(-1));
+            assertNull(String.getFromLast(s, size));
+            assertFalse(String.longerThan(s, size));
+            assertFalse(String.shorterThan(s, size));
+            assertTrue(boxed.longerThan(size - 1));
+            assertTrue(boxed.shorterThan(size + 1));
+            assertEquals(s, String.initial(s, size + 1));
+        }
+    }
+
+    @Test
+    public void testCache() {
+        java.lang.String s = new java.lang.String(ASTRAL);
+        // only the methods that count every code point anyway
+        // build the index
+        assertTrue(String.longerThan(s, 10));
+        assertEquals("a😀b", String.initial(s, 3));
+        assertNull(CodePointIndex.cached(s));
+        String.getSize(s);
+        assertTrue(CodePointIndex.cached(s) != null);
+    }
+
+    @Test
+    public void testLargeCache() {
+        // strings longer than 64K chars have their own slot
+        java.lang.String ascii = repeat(ASCII, 200);
+        assertTrue(ascii.length() > 1 << 16);
+        assertNull(CodePointIndex.cached(ascii));
+        assertEquals(ascii.length(), String.getSize(ascii));
+        CodePointIndex index = CodePointIndex.cached(ascii);
+        assertTrue(index != null);
+        assertTrue(index.isBasic());
+        assertEquals('w', String.getFromFirst(ascii, 12 * 199 + 6).codePoint);
+        java.lang.String large = repeat(ASTRAL, 1000);
+        assertTrue(large.length() > 1 << 16);
+        assertEquals(5 * 40 * 1000, String.getSize(large));
+        index = CodePointIndex.cached(large);
+        assertTrue(index != null);
+        assertFalse(index.isBasic());
+        assertEquals(5 * 40 * 1000, index.size());
+        for (int i = 0; i < 5 * 40 * 1000; i += 997) {
+            assertEquals(large.codePointAt(large.offsetByCodePoints(0, i)),
+                    String.getFromFirst(large, i).codePoint);
+        }
+        assertEquals(0x10437, String.getFromLast(large, 1).codePoint);
+        // only the last large string is remembered
+        assertNull(CodePointIndex.cached(ascii));
+    }
+
+    @Test
+    public void testSearches() {
+        assertEquals(2, String.firstInclusion(ASTRAL, String.instance("b")).longValue());
+        assertEquals(2 + 5 * 39, String.lastInclusion(ASTRAL, String.instance("b")).longValue());
+        assertEquals(1, String.firstOccurrence(ASTRAL, 0x1F600).longValue());
+        assertEquals(1 + 5 * 39, String.lastOccurrence(ASTRAL, 0x1F600).longValue());
+        assertEquals(40, String.occurrences(ASTRAL, 0x10437).getSize());
+        assertEquals(Integer.instance(8), String.occurrences(ASTRAL, 0x10437, 5).iterator().next());
+    }
+}
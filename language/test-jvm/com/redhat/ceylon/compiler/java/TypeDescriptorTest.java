@@ -54,6 +54,19 @@ public class TypeDescriptorTest {
                            TypeDescriptor.intersection(String.$TypeDescriptor$, Integer.$TypeDescriptor$, Float.$TypeDescriptor$)));
     }
     
+    @Test
+    public void testInterning(){
+        Assert.assertSame(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$), 
+                          TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$));
+        Assert.assertSame(TypeDescriptor.union(String.$TypeDescriptor$, Integer.$TypeDescriptor$), 
+                          TypeDescriptor.union(String.$TypeDescriptor$, Integer.$TypeDescriptor$));
+        // equal, but printed differently
+        Assert.assertEquals("ceylon.language.Integer|ceylon.language.String", 
+                            TypeDescriptor.union(Integer.$TypeDescriptor$, String.$TypeDescriptor$).toString());
+        Assert.assertSame(TypeDescriptor.intersection(String.$TypeDescriptor$, Integer.$TypeDescriptor$), 
+                          TypeDescriptor.intersection(String.$TypeDescriptor$, Integer.$TypeDescriptor$));
+    }
+
     @Test
     public void testTupleTypeString(){
         TypeDescriptor tuple2 = TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$, String.$TypeDescriptor$);
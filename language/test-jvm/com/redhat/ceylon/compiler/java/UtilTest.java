@@ -0,0 +1,100 @@
+package com.redhat.ceylon.compiler.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ceylon.language.ArraySequence;
+import ceylon.language.Float;
+import ceylon.language.Integer;
+import ceylon.language.String;
+import ceylon.language.Tuple;
+
+import com.redhat.ceylon.compiler.java.metadata.Class;
+
+public class UtilTest {
+
+    private static final java.lang.Class<?>[] CLASSES = {
+        String.class, Integer.class, Float.class, Tuple.class, ArraySequence.class,
+        ceylon.language.Basic.class, ceylon.language.Object.class,
+        java.lang.Object.class, java.lang.String.class, java.util.ArrayList.class,
+        // an interface, which has no superclass
+        Runnable.class,
+        // a Java class extending a Ceylon class
+        JavaSubclassOfBasic.class,
+    };
+
+    static class JavaSubclassOfBasic extends ceylon.language.Basic {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static Class expectedClassAnnotation(java.lang.Class<?> klass) {
+        while (klass != null) {
+            Class annotation = klass.getAnnotation(Class.class);
+            if (annotation != null)
+                return annotation;
+            klass = klass.getSuperclass();
+        }
+        return null;
+    }
+
+    @Test
+    public void testIdentifiableAndBasic() {
+        Assert.assertFalse(Util.isIdentifiable(String.class));
+        Assert.assertFalse(Util.isBasic(String.class));
+        Assert.assertTrue(Util.isIdentifiable(JavaSubclassOfBasic.class));
+        Assert.assertTrue(Util.isBasic(JavaSubclassOfBasic.class));
+        Assert.assertTrue(Util.isIdentifiable(java.lang.Object.class));
+        Assert.assertTrue(Util.isBasic(Runnable.class));
+        Assert.assertFalse(Util.isIdentifiable((java.lang.Object)null));
+        Assert.assertFalse(Util.isBasic((java.lang.Object)null));
+    }
+
+    @Test
+    public void testConcurrentIdentifiableAndBasic() throws Exception {
+        final int threads = 8;
+        final int iterations = 20000;
+        final boolean[] identifiable = new boolean[CLASSES.length];
+        final boolean[] basic = new boolean[CLASSES.length];
+        for (int i = 0; i < CLASSES.length; i++) {
+            Class annotation = expectedClassAnnotation(CLASSES[i]);
+            identifiable[i] = annotation != null ? annotation.identifiable() : true;
+            basic[i] = annotation != null ? annotation.basic() : true;
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int n = 0; n < iterations; n++) {
+                            // every thread looks the classes up in a different order
+                            int i = (n + offset) % CLASSES.length;
+                            Assert.assertEquals(CLASSES[i].getName(), identifiable[i], Util.isIdentifiable(CLASSES[i]));
+                            Assert.assertEquals(CLASSES[i].getName(), basic[i], Util.isBasic(CLASSES[i]));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                // rethrows the assertion errors of the threads
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.redhat.ceylon.compiler.java.runtime.serialization;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdMapTest {
+
+    @Test
+    public void testAgainstHashMap() {
+        IdMap<Object, Object> map = new IdMap<Object, Object>();
+        HashMap<Object, Object> expected = new HashMap<Object, Object>();
+        for (int ii = 0; ii < 10000; ii++) {
+            // a mix of Integer ids, String ids and repeated keys
+            Object key = ii % 3 == 0 ?
+                    ceylon.language.Integer.instance(ii * 31L - 5000) :
+                    "id" + (ii % 7000);
+            Object value = ii % 10 == 0 ? null : "value" + ii;
+            map.put(key, value);
+            expected.put(key, value);
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Object, Object> entry : expected.entrySet()) {
+            Assert.assertTrue(map.containsKey(entry.getKey()));
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Assert.assertFalse(map.containsKey("id7000"));
+        Assert.assertFalse(map.containsKey(ceylon.language.Integer.instance(1)));
+        Assert.assertNull(map.get(ceylon.language.Integer.instance(1)));
+
+        HashMap<Object, Object> iterated = new HashMap<Object, Object>();
+        Iterator<Object> keys = map.keyIterator();
+        Iterator<Object> values = map.valueIterator();
+        while (keys.hasNext()) {
+            Assert.assertNull(iterated.put(keys.next(), values.next()));
+        }
+        Assert.assertFalse(values.hasNext());
+        Assert.assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void testNullsAndNumbers() {
+        IdMap<Object, Object> map = new IdMap<Object, Object>();
+        Assert.assertFalse(map.containsKey(null));
+        Assert.assertEquals("{}", map.toString());
+        map.put(null, "null");
+        map.put(ceylon.language.Integer.instance(2), null);
+        Assert.assertTrue(map.containsKey(null));
+        Assert.assertEquals("null", map.get(null));
+        Assert.assertTrue(map.containsKey(ceylon.language.Integer.instance(2)));
+        Assert.assertNull(map.get(ceylon.language.Integer.instance(2)));
+        // like Integer.equals(), an integral Float is the same key
+        Assert.assertTrue(map.containsKey(ceylon.language.Float.instance(2.0)));
+        Assert.assertFalse(map.containsKey(ceylon.language.Float.instance(2.5)));
+        map.put(ceylon.language.Float.instance(2.5), "2.5");
+        Assert.assertEquals("2.5", map.get(ceylon.language.Float.instance(2.5)));
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals("{null=null, 2=null, 2.5=2.5}", map.toString());
+    }
+}
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.Backends;
@@ -289,7 +290,7 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
      */
     protected Unit typeFactory;
     protected final Set<String> loadedPackages = new HashSet<String>();
-    protected final Map<String,LazyPackage> packagesByName = new HashMap<String,LazyPackage>();
+    protected final Map<String,LazyPackage> packagesByName = new ConcurrentHashMap<String,LazyPackage>();
     protected boolean packageDescriptorsNeedLoading = false;
     protected boolean isBootstrap;
     private ModuleManager moduleManager;
@@ -299,6 +300,15 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     protected Timer timer;
     private Map<String,LazyPackage> modulelessPackages = new HashMap<String,LazyPackage>();
     private ParameterNameParser parameterNameParser = new ParameterNameParser(this);
+    /**
+     * Lock-free views of the packages and declarations we already finished loading, which
+     * lets lookups of already loaded model elements skip the model loader lock. We only
+     * publish results when leaving the outermost lock, because until then what we create
+     * can still be partially initialised, due to recursive loading.
+     */
+    private final ConcurrentHashMap<String,LazyPackage> publishedPackages = new ConcurrentHashMap<String,LazyPackage>();
+    private final ConcurrentHashMap<String,Declaration> publishedTypeDeclarations = new ConcurrentHashMap<String,Declaration>();
+    private final ConcurrentHashMap<String,Declaration> publishedValueDeclarations = new ConcurrentHashMap<String,Declaration>();
     protected JdkProvider jdkProvider;
     
     protected final void initModuleManager(ModuleManager moduleManager) {
@@ -1638,6 +1648,26 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     }
 
     private Declaration convertToDeclaration(Module module, Declaration container, String typeName, DeclarationType declarationType)  {
+        // native header members and bootstrap declarations are never published
+        if(container != null || module == null || isBootstrap)
+            return convertToDeclarationLocked(module, container, typeName, declarationType);
+        Map<String,Declaration> published = declarationType == DeclarationType.TYPE 
+                ? publishedTypeDeclarations : publishedValueDeclarations;
+        String key = cacheKeyByModule(module, typeName.trim());
+        Declaration decl = published.get(key);
+        if(decl != null)
+            return decl;
+        boolean outermost = !Thread.holdsLock(getLock());
+        synchronized(getLock()){
+            decl = convertToDeclarationLocked(module, container, typeName, declarationType);
+            // do not publish errors, we want them reported again for every lookup
+            if(outermost && decl != null && decl instanceof UnknownType == false)
+                published.put(key, decl);
+            return decl;
+        }
+    }
+
+    private Declaration convertToDeclarationLocked(Module module, Declaration container, String typeName, DeclarationType declarationType)  {
         synchronized(getLock()){
             // FIXME: this needs to move to the type parser and report warnings
             //This should be done where the TypeInfo annotation is parsed
@@ -1747,11 +1777,18 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     // Packages
     
     public LazyPackage findExistingPackage(Module module, String pkgName) {
+        String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkgName);
+        LazyPackage published = findPublishedPackage(module, quotedPkgName);
+        if(published != null)
+            return published;
+        boolean outermost = !Thread.holdsLock(getLock());
         synchronized(getLock()){
-            String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkgName);
             LazyPackage pkg = findCachedPackage(module, quotedPkgName);
-            if(pkg != null)
+            if(pkg != null){
+                if(outermost)
+                    publishedPackages.put(cacheKeyByModule(module, quotedPkgName), pkg);
                 return pkg;
+            }
             // special case for the jdk module
             String moduleName = module.getNameAsString();
             if(jdkProvider.isJDKModule(moduleName)){
@@ -1769,7 +1806,16 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     }
     
     private LazyPackage findCachedPackage(Module module, String quotedPkgName) {
-        LazyPackage pkg = packagesByName.get(cacheKeyByModule(module, quotedPkgName));
+        return checkPackageModule(module, packagesByName.get(cacheKeyByModule(module, quotedPkgName)));
+    }
+
+    private LazyPackage findPublishedPackage(Module module, String quotedPkgName) {
+        if(module == null)
+            return null;
+        return checkPackageModule(module, publishedPackages.get(cacheKeyByModule(module, quotedPkgName)));
+    }
+
+    private LazyPackage checkPackageModule(Module module, LazyPackage pkg) {
         if(pkg != null){
             // only return it if it matches the module we're looking for, because if it doesn't we have an issue already logged
             // for a direct dependency on same module different versions logged, so no need to confuse this further
@@ -1781,8 +1827,21 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     }
 
     public LazyPackage findOrCreatePackage(Module module, final String pkgName)  {
+        String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkgName);
+        LazyPackage pkg = findPublishedPackage(module, quotedPkgName);
+        if(pkg != null)
+            return pkg;
+        boolean outermost = !Thread.holdsLock(getLock());
+        synchronized(getLock()){
+            pkg = findOrCreatePackageLocked(module, pkgName, quotedPkgName);
+            if(outermost && module != null)
+                publishedPackages.put(cacheKeyByModule(module, quotedPkgName), pkg);
+            return pkg;
+        }
+    }
+
+    private LazyPackage findOrCreatePackageLocked(Module module, final String pkgName, String quotedPkgName)  {
         synchronized(getLock()){
-            String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkgName);
             LazyPackage pkg = findCachedPackage(module, quotedPkgName);
             if(pkg != null)
                 return pkg;
@@ -5269,6 +5328,9 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     
     public void removeDeclarations(List<Declaration> declarations) {
         synchronized(getLock()){
+            // it is much simpler to republish everything lazily than to find what to unpublish
+            publishedTypeDeclarations.clear();
+            publishedValueDeclarations.clear();
             Set<String> qualifiedNames = new HashSet<>(declarations.size() * 2);
             
             // keep in sync with getOrCreateDeclaration
@@ -5487,7 +5549,9 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
             for(LazyPackage pkg : modulelessPackages.values()){
                 String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkg.getQualifiedNameString());
                 if (pkg.getModule() != null) {
-                    packagesByName.put(cacheKeyByModule(pkg.getModule(), quotedPkgName), pkg);
+                    String key = cacheKeyByModule(pkg.getModule(), quotedPkgName);
+                    packagesByName.put(key, pkg);
+                    publishedPackages.remove(key);
                 }
             }
             modulelessPackages.clear();
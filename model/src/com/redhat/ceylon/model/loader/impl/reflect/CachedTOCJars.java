@@ -2,21 +2,18 @@ package com.redhat.ceylon.model.loader.impl.reflect;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.common.config.Repositories;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.cmr.PathFilter;
 import com.redhat.ceylon.model.loader.ContentAwareArtifactResult;
@@ -25,6 +22,8 @@ import com.redhat.ceylon.model.typechecker.model.Module;
 
 public class CachedTOCJars {
 
+    static final String INDEX_FOLDER = ".toc-index";
+
     /**
      * Jar file where we cache the TOC
      */
@@ -32,74 +31,121 @@ public class CachedTOCJars {
         ArtifactResult artifact;
         // contents, folders and packages are lazy-loaded
         private boolean loaded = false;
-        // stores class file names with slashes
-        Set<String> contents = new HashSet<String>();
-        // stores folder names with slashes
-        Set<String> folders = new HashSet<String>();
+        // folder where we keep jar indexes, if any
+        private File indexFolder;
+        // TOC of jar files
+        private volatile JarIndex index;
+        // stores class file names with slashes, only for artifacts which know their contents
+        Set<String> contents;
         // stores package paths with slashes but not last one
-        Set<String> packages = new HashSet<String>();
+        Set<String> packages;
         // not not attempt to load contents from this jar, just its TOC
         boolean skipContents;
         
         CachedTOCJar(ArtifactResult artifact, boolean skipContents){
+            this(artifact, skipContents, null);
+        }
+
+        CachedTOCJar(ArtifactResult artifact, boolean skipContents, File indexFolder){
             this.artifact = artifact;
             this.skipContents = skipContents;
+            this.indexFolder = indexFolder;
         }
 
-        private void load(){
+        private synchronized void load(){
+            load(false);
+        }
+
+        private synchronized void load(boolean rebuild){
             if(loaded)
                 return;
             if (artifact instanceof ContentAwareArtifactResult) {
-                packages.addAll(((ContentAwareArtifactResult) artifact).getPackages());
-                contents.addAll(((ContentAwareArtifactResult) artifact).getEntries());
+                packages = new HashSet<String>(((ContentAwareArtifactResult) artifact).getPackages());
+                contents = new HashSet<String>(((ContentAwareArtifactResult) artifact).getEntries());
             } else {
                 if (artifact.artifact() != null) {
                     try {
-                        ZipFile zf = new ZipFile(artifact.artifact());
-                        try{
-                            Enumeration<? extends ZipEntry> entries = zf.entries();
-                            while(entries.hasMoreElements()){
-                                ZipEntry entry = entries.nextElement();
-                                // only cache class files
-                                String name = entry.getName();
-                                if(accept(name)){
-                                    if(entry.isDirectory()){
-                                        folders.add(name);
-                                    }else{
-                                        if(JvmBackendUtil.definesPackage(name))
-                                            packages.add(getPackageName(name));
-                                        contents.add(name);
-                                    }
-                                }
-                            }
-                        }finally{
-                            zf.close();
-                        }
+                        index = rebuild ? JarIndex.rebuild(artifact.artifact(), indexFolder)
+                                : JarIndex.open(artifact.artifact(), indexFolder);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
+                    if(artifact.filter() == null){
+                        packages = index.getPackages();
+                    }else{
+                        packages = new HashSet<String>();
+                        for(int folder = 0; folder < index.getFolderCount(); folder++){
+                            if(index.isPackage(folder) && definesPackage(folder))
+                                packages.add(index.getFolderName(folder));
+                        }
+                    }
+                }else{
+                    contents = Collections.emptySet();
+                    packages = Collections.emptySet();
                 }
             }
             loaded = true;
         }
+
+        /**
+         * Rebuilds the index of the jar, if it is still the given one, for
+         * when it turns out to no longer match the jar
+         */
+        private synchronized void rebuild(JarIndex stale){
+            if(index != stale)
+                return;
+            close();
+            loaded = false;
+            index = null;
+            load(true);
+        }
+
+        /**
+         * Closes the jar file, if we opened it
+         */
+        synchronized void close(){
+            if(index != null){
+                try {
+                    index.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
         
         private boolean accept(String path) {
             PathFilter filter = artifact.filter();
             return filter == null || filter.accept(path);
         }
 
-        private String getPackageName(String path) {
-            int sep = path.lastIndexOf('/');
-            if(sep != -1)
-                path = path.substring(0, sep);
-            else
-                path = "";// default package
-            return path;
+        // only used with filters, to find out if an accepted file defines the package
+        private boolean definesPackage(int folder) {
+            for(int entry = index.getFolderStart(folder); entry < index.getFolderEnd(folder); entry++){
+                if(!index.isFolder(entry)){
+                    String name = index.getName(entry);
+                    if(JvmBackendUtil.definesPackage(name) && accept(name))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        private int find(String path) {
+            return find(index, path);
+        }
+
+        private int find(JarIndex index, String path) {
+            if(index == null || !accept(path))
+                return -1;
+            return index.find(path);
         }
 
         boolean containsFile(String path){
             load();
-            return contents.contains(path);
+            if(contents != null)
+                return contents.contains(path);
+            int entry = find(path);
+            return entry != -1 && !index.isFolder(entry);
         }
 
         boolean containsPackage(String path) {
@@ -113,17 +159,27 @@ public class CachedTOCJars {
             }
             File jar = artifact.artifact();
             if (jar != null) {
-                try {
-                    ZipFile zf = new ZipFile(jar);
-                    try{
-                        ZipEntry entry = zf.getEntry(path);
-                        if(entry != null)
-                            return loadFile(zf.getInputStream(entry), (int)entry.getSize());
-                    }finally{
-                        zf.close();
+                load();
+                JarIndex index = this.index;
+                int entry = find(index, path);
+                if(entry != -1 && !index.isFolder(entry)){
+                    try {
+                        byte[] contents = index.getContents(entry);
+                        if(contents != null)
+                            return contents;
+                        // the jar changed without changing its size or date
+                        rebuild(index);
+                        index = this.index;
+                        entry = find(index, path);
+                        if(entry != -1 && !index.isFolder(entry)){
+                            contents = index.getContents(entry);
+                            if(contents != null)
+                                return contents;
+                            throw new IOException("Invalid entry: "+path+" in jar file: "+ jar.getPath());
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
                 }
                 throw new RuntimeException("Missing entry: "+path+" in jar file: "+ jar.getPath());
             }
@@ -138,7 +194,7 @@ public class CachedTOCJars {
             if (jar != null) {
                 load();
                 try{
-                    if(contents.contains(path) || folders.contains(path)){
+                    if(find(path) != -1){
                         String uripath = FileUtil.absoluteFile(jar).toURI().getSchemeSpecificPart();
                         return new URI("classpath", uripath + "!" + path, null);
                     }
@@ -150,20 +206,6 @@ public class CachedTOCJars {
             throw new RuntimeException("No file associated with artifact : " + artifact.toString());
         }
 
-        private byte[] loadFile(InputStream inputStream, int size) throws IOException {
-            byte[] buf = new byte[size];
-            try{
-                int read;
-                int offset = 0;
-                while(offset != size && (read = inputStream.read(buf, offset, size - offset)) >= 0){
-                    offset += read;
-                }
-                return buf;
-            }finally    {
-                inputStream.close();
-            }
-        }
-        
         private List<String> getFileNames(String path){
             if (artifact instanceof ContentAwareArtifactResult) {
                 return ((ContentAwareArtifactResult) artifact).getFileNames(path);
@@ -172,23 +214,17 @@ public class CachedTOCJars {
             File jar = artifact.artifact();
             if (jar != null) {
                 load();
-                // add a trailing / to only list members
-                boolean emptyPackage = path.isEmpty();
-                // only used for non-empty packages
-                path += "/";
                 List<String> ret = new ArrayList<String>();
-                for(String name : contents){
-                    String part = null;
-                    if(!emptyPackage && name.startsWith(path)){
-                        // keep only the part after the package name
-                        part = name.substring(path.length());
-                    }else if(emptyPackage){
-                        // keep it all, we'll filter later those in subfolders
-                        part = name;
+                int folder = index.findFolder(path);
+                if(folder != -1){
+                    // the members of a folder are contiguous, and sub-folders are elsewhere
+                    for(int entry = index.getFolderStart(folder); entry < index.getFolderEnd(folder); entry++){
+                        if(!index.isFolder(entry)){
+                            String name = index.getName(entry);
+                            if(accept(name))
+                                ret.add(name);
+                        }
                     }
-                    // only keep those not in subfolders
-                    if(part != null && part.indexOf('/') == -1)
-                        ret.add(name);
                 }
                 return ret;
             } else {
@@ -208,6 +244,33 @@ public class CachedTOCJars {
     }
     
     private Map<Module, CachedTOCJar> jars = new HashMap<Module, CachedTOCJar>();
+    private File indexFolder;
+
+    /**
+     * Keeps the TOC of jar files in the Ceylon cache repository, so that
+     * we do not read every entry of every jar again the next time. Only the
+     * TOCs of the jars we used the most recently are kept there.
+     */
+    public CachedTOCJars() {
+        this(getDefaultIndexFolder());
+    }
+
+    /**
+     * Keeps the TOC of jar files in the given folder, or only in memory if
+     * it is null
+     */
+    public CachedTOCJars(File indexFolder) {
+        this.indexFolder = indexFolder;
+    }
+
+    private static File getDefaultIndexFolder() {
+        try {
+            return new File(Repositories.get().getCacheRepoDir(), INDEX_FOLDER);
+        } catch (RuntimeException e) {
+            // no configuration, keep them in memory
+            return null;
+        }
+    }
     
     public void addJar(ArtifactResult artifact, Module module) {
         addJar(artifact, module, false);
@@ -217,7 +280,7 @@ public class CachedTOCJars {
         // skip duplicates
         if(jars.containsKey(module))
             return;
-        jars.put(module, new CachedTOCJar(artifact, skipContents));
+        jars.put(module, new CachedTOCJar(artifact, skipContents, indexFolder));
     }
 
     public boolean packageExists(Module module, String name) {
@@ -275,6 +338,16 @@ public class CachedTOCJars {
         return null;
    }
 
+    /**
+     * Closes every jar file we opened to read their contents. They are
+     * opened again if we need to read them later.
+     */
+    public void close() {
+        for(CachedTOCJar jar : jars.values()){
+            jar.close();
+        }
+    }
+
     @Override
     public String toString(){
         return "CachedTOCJars[jars="+jars+"]";
@@ -0,0 +1,630 @@
+package com.redhat.ceylon.model.loader.impl.reflect;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.model.loader.JvmBackendUtil;
+
+/**
+ * Compact index of the central directory of a jar file.
+ * <p>
+ * Entry names are stored once as UTF-8 in a name pool, and the entries are
+ * sorted by folder then by file name, so that the members of a folder are
+ * contiguous and can be found with a binary search, without ever creating
+ * a String per entry. Each folder has its range of entries in a second
+ * table. Entries also record where their data starts in the jar, so that we
+ * can read their contents with a single file channel per jar instead of
+ * opening the jar again for every read.
+ * <p>
+ * The index is saved in the given folder, named after the SHA-1 of the path
+ * of its jar, and memory-mapped the next time we need it, as long as the jar
+ * did not change since. A folder keeps at most {@link #MAX_INDEXES} of them:
+ * saving a new one drops the ones that were used the least recently.
+ */
+final class JarIndex {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x43544f43; // "CTOC"
+    private static final int VERSION = 1;
+
+    /** The number of index files we keep in a folder */
+    static final int MAX_INDEXES = 1000;
+    /** How often we record that an index file is still used */
+    private static final long TOUCH_INTERVAL = 24 * 60 * 60 * 1000L;
+    private static final int HEADER_SIZE = 36;
+    private static final int ENTRY_SIZE = 24;
+    private static final int FOLDER_SIZE = 8;
+
+    // entry flags
+    private static final int FLAG_FOLDER = 1;
+    // folder flags, stored in the top bit of the end of its range
+    private static final int FLAG_PACKAGE = 0x80000000;
+
+    private static final int UNKNOWN_OFFSET = -1;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final File jar;
+    private final ByteBuffer index;
+    private final int entryCount;
+    private final int folderCount;
+    private final int entriesStart;
+    private final int foldersStart;
+    private final int namesStart;
+    private FileInputStream stream;
+    private ZipFile zipFile;
+    private Set<String> packages;
+
+    private JarIndex(File jar, ByteBuffer index) {
+        this.jar = jar;
+        this.index = index;
+        this.entryCount = index.getInt(24);
+        this.folderCount = index.getInt(28);
+        this.entriesStart = HEADER_SIZE;
+        this.foldersStart = entriesStart + entryCount * ENTRY_SIZE;
+        this.namesStart = foldersStart + folderCount * FOLDER_SIZE;
+    }
+
+    /**
+     * Returns the index of the given jar, from the given folder if it is
+     * up to date, or after saving it there otherwise
+     *
+     * @param folder where we keep indexes, or null to not save them
+     */
+    static JarIndex open(File jar, File folder) throws IOException {
+        File file = getIndexFile(jar, folder);
+        if (file != null && file.isFile()) {
+            ByteBuffer index = map(file, jar);
+            if (index != null) {
+                touch(file);
+                return new JarIndex(jar, index);
+            }
+        }
+        return build(jar, file);
+    }
+
+    /**
+     * Returns a new index of the given jar, after saving it in the given
+     * folder, for when the saved one turned out not to match the jar even
+     * though the jar has the same size and modification time
+     *
+     * @param folder where we keep indexes, or null to not save them
+     */
+    static JarIndex rebuild(File jar, File folder) throws IOException {
+        return build(jar, getIndexFile(jar, folder));
+    }
+
+    private static File getIndexFile(File jar, File folder) {
+        return folder != null ? new File(folder, CacheFile.sha1(FileUtil.absoluteFile(jar).getPath())) : null;
+    }
+
+    private static JarIndex build(File jar, File file) throws IOException {
+        ByteBuffer index = build(jar);
+        if (file != null && CacheFile.replace(file, index.array(), index.limit())) {
+            prune(file.getParentFile());
+            ByteBuffer mapped = map(file, jar);
+            if (mapped != null)
+                return new JarIndex(jar, mapped);
+        }
+        return new JarIndex(jar, index);
+    }
+
+    /**
+     * Records that the given index file is still used, so that we do not
+     * prune it
+     */
+    private static void touch(File file) {
+        long now = System.currentTimeMillis();
+        if (now - file.lastModified() > TOUCH_INTERVAL)
+            file.setLastModified(now);
+    }
+
+    /**
+     * Deletes the index files of the given folder that were used the least
+     * recently, until it has no more than MAX_INDEXES of them
+     */
+    static void prune(File folder) {
+        File[] files = folder.listFiles();
+        if (files == null || files.length <= MAX_INDEXES)
+            return;
+        long[] times = new long[files.length];
+        for (int i = 0; i < files.length; i++)
+            times[i] = files[i].lastModified();
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long oldest = sorted[files.length - MAX_INDEXES];
+        for (int i = 0; i < files.length; i++) {
+            if (times[i] < oldest)
+                FileUtil.deleteQuietly(files[i]);
+        }
+    }
+
+    /**
+     * Returns the number of the entry with the given path, or -1 if there
+     * is none
+     */
+    int find(String path) {
+        byte[] name = path.getBytes(UTF8);
+        int nameStart = fileStart(name);
+        int folderLength = Math.max(0, nameStart - 1);
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = entriesStart + mid * ENTRY_SIZE;
+            int offset = namesStart + index.getInt(entry);
+            int length = index.getChar(entry + 4);
+            int start = index.getChar(entry + 6);
+            int cmp = compare(offset, Math.max(0, start - 1), name, 0, folderLength);
+            if (cmp == 0)
+                cmp = compare(offset + start, length - start, name, nameStart, name.length - nameStart);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    boolean isFolder(int entry) {
+        return (index.getChar(entriesStart + entry * ENTRY_SIZE + 22) & FLAG_FOLDER) != 0;
+    }
+
+    String getName(int entry) {
+        int offset = entriesStart + entry * ENTRY_SIZE;
+        return decode(namesStart + index.getInt(offset), index.getChar(offset + 4));
+    }
+
+    /**
+     * Returns the number of the given folder, using slashes and no trailing
+     * slash, or -1 if it has no entries
+     */
+    int findFolder(String path) {
+        byte[] name = path.getBytes(UTF8);
+        int low = 0;
+        int high = folderCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = entriesStart + getFolderStart(mid) * ENTRY_SIZE;
+            int start = index.getChar(entry + 6);
+            int cmp = compare(namesStart + index.getInt(entry), Math.max(0, start - 1), name, 0, name.length);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    int getFolderCount() {
+        return folderCount;
+    }
+
+    /**
+     * Returns the first entry of the given folder
+     */
+    int getFolderStart(int folder) {
+        return index.getInt(foldersStart + folder * FOLDER_SIZE);
+    }
+
+    /**
+     * Returns the entry after the last entry of the given folder
+     */
+    int getFolderEnd(int folder) {
+        return index.getInt(foldersStart + folder * FOLDER_SIZE + 4) & ~FLAG_PACKAGE;
+    }
+
+    /**
+     * Returns true if the given folder contains a file which defines a
+     * package, as per {@link JvmBackendUtil#definesPackage(String)}
+     */
+    boolean isPackage(int folder) {
+        return (index.getInt(foldersStart + folder * FOLDER_SIZE + 4) & FLAG_PACKAGE) != 0;
+    }
+
+    /**
+     * Returns the paths of every package, with slashes but not the last one
+     */
+    synchronized Set<String> getPackages() {
+        if (packages == null) {
+            Set<String> ret = new HashSet<String>();
+            for (int folder = 0; folder < folderCount; folder++) {
+                if (isPackage(folder))
+                    ret.add(getFolderName(folder));
+            }
+            packages = Collections.unmodifiableSet(ret);
+        }
+        return packages;
+    }
+
+    String getFolderName(int folder) {
+        int entry = entriesStart + getFolderStart(folder) * ENTRY_SIZE;
+        return decode(namesStart + index.getInt(entry), Math.max(0, index.getChar(entry + 6) - 1));
+    }
+
+    /**
+     * Returns the contents of the given file entry, or null if the jar no
+     * longer has that entry where the index says it is, in which case the
+     * index should be rebuilt
+     */
+    byte[] getContents(int entry) throws IOException {
+        int offset = entriesStart + entry * ENTRY_SIZE;
+        long localOffset = index.getInt(offset + 8) & 0xFFFFFFFFL;
+        long compressedSize = index.getInt(offset + 12) & 0xFFFFFFFFL;
+        long size = index.getInt(offset + 16) & 0xFFFFFFFFL;
+        int method = index.getChar(offset + 20);
+        if (index.getInt(offset + 8) != UNKNOWN_OFFSET
+                && (method == ZipEntry.STORED || method == ZipEntry.DEFLATED)
+                && compressedSize < Integer.MAX_VALUE
+                && size < Integer.MAX_VALUE) {
+            FileChannel channel = getChannel();
+            ByteBuffer header = read(channel, localOffset, 30, 0);
+            if (header == null || header.getInt(0) != LOCAL_SIGNATURE)
+                return null;
+            int nameLength = header.getChar(26);
+            ByteBuffer name = read(channel, localOffset + 30, nameLength, 0);
+            if (name == null || compare(namesStart + index.getInt(offset), index.getChar(offset + 4),
+                    name.array(), 0, nameLength) != 0)
+                return null;
+            long dataOffset = localOffset + 30 + nameLength + header.getChar(28);
+            if (method == ZipEntry.STORED) {
+                ByteBuffer data = read(channel, dataOffset, (int) size, 0);
+                if (data != null)
+                    return data.array();
+            } else {
+                // nowrap inflaters want an extra dummy byte
+                ByteBuffer data = read(channel, dataOffset, (int) compressedSize, 1);
+                if (data != null)
+                    return inflate(data.array(), (int) size);
+            }
+            return null;
+        }
+        // we don't know how to read it ourselves
+        return getContents(getName(entry));
+    }
+
+    private byte[] getContents(String path) throws IOException {
+        ZipFile zf = getZipFile();
+        ZipEntry entry = zf.getEntry(path);
+        if (entry == null)
+            throw new IOException("Missing entry: " + path + " in jar file: " + jar.getPath());
+        InputStream inputStream = zf.getInputStream(entry);
+        try {
+            int size = (int) entry.getSize();
+            byte[] buf = new byte[size];
+            int read;
+            int offset = 0;
+            while (offset != size && (read = inputStream.read(buf, offset, size - offset)) >= 0) {
+                offset += read;
+            }
+            return buf;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Closes the jar file, which we open again if we need to read it later
+     */
+    synchronized void close() throws IOException {
+        FileInputStream stream = this.stream;
+        ZipFile zipFile = this.zipFile;
+        this.stream = null;
+        this.zipFile = null;
+        try {
+            if (stream != null)
+                stream.close();
+        } finally {
+            if (zipFile != null)
+                zipFile.close();
+        }
+    }
+
+    private synchronized FileChannel getChannel() throws IOException {
+        if (stream == null)
+            stream = new FileInputStream(jar);
+        return stream.getChannel();
+    }
+
+    private synchronized ZipFile getZipFile() throws IOException {
+        if (zipFile == null)
+            zipFile = new ZipFile(jar);
+        return zipFile;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length, int padding) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length + padding).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                return null;
+        }
+        return buffer;
+    }
+
+    private static byte[] inflate(byte[] data, int size) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] ret = new byte[size];
+            int offset = 0;
+            while (offset < size) {
+                int read = inflater.inflate(ret, offset, size - offset);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    throw new ZipException("Truncated entry data");
+                offset += read;
+            }
+            return ret;
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private int compare(int offset, int length, byte[] other, int otherOffset, int otherLength) {
+        int min = Math.min(length, otherLength);
+        for (int i = 0; i < min; i++) {
+            int cmp = (index.get(offset + i) & 0xFF) - (other[otherOffset + i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return length - otherLength;
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = index.get(offset + i);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Returns where the file name starts in the given path: after its last
+     * slash, not counting the trailing slash of folders
+     */
+    private static int fileStart(byte[] name) {
+        int i = name.length - 1;
+        if (i >= 0 && name[i] == '/')
+            i--;
+        for (; i >= 0; i--) {
+            if (name[i] == '/')
+                return i + 1;
+        }
+        return 0;
+    }
+
+    //
+    // Building and saving indexes
+
+    private static class Entry {
+        final byte[] name;
+        final int start;
+        final boolean folder;
+        final boolean definesPackage;
+        final long localOffset;
+        final long compressedSize;
+        final long size;
+        final int method;
+
+        Entry(String name, boolean folder, long localOffset, long compressedSize, long size, int method) {
+            this.name = name.getBytes(UTF8);
+            this.start = fileStart(this.name);
+            this.folder = folder;
+            this.definesPackage = !folder && JvmBackendUtil.definesPackage(name);
+            this.localOffset = localOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int cmp = compareBytes(a.name, 0, Math.max(0, a.start - 1), b.name, 0, Math.max(0, b.start - 1));
+            if (cmp == 0)
+                cmp = compareBytes(a.name, a.start, a.name.length - a.start, b.name, b.start, b.name.length - b.start);
+            return cmp;
+        }
+    };
+
+    private static int compareBytes(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        int min = Math.min(aLength, bLength);
+        for (int i = 0; i < min; i++) {
+            int cmp = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return aLength - bLength;
+    }
+
+    private static ByteBuffer build(File jar) throws IOException {
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+        List<Entry> entries;
+        try {
+            entries = readCentralDirectory(jar);
+        } catch (ZipException e) {
+            // Zip64 and other oddities: let ZipFile deal with them
+            entries = readZipFile(jar);
+        }
+        Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(sorted, ORDER);
+        // drop duplicates, the first one wins like in ZipFile
+        int count = 0;
+        int namesSize = 0;
+        int folders = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (count > 0 && ORDER.compare(sorted[count - 1], sorted[i]) == 0)
+                continue;
+            if (count == 0 || !sameFolder(sorted[count - 1], sorted[i]))
+                folders++;
+            namesSize += sorted[i].name.length;
+            sorted[count++] = sorted[i];
+        }
+        ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE + folders * FOLDER_SIZE + namesSize);
+        index.putInt(MAGIC).putInt(VERSION).putLong(length).putLong(lastModified)
+            .putInt(count).putInt(folders).putInt(namesSize);
+        int nameOffset = 0;
+        for (int i = 0; i < count; i++) {
+            Entry entry = sorted[i];
+            index.putInt(nameOffset)
+                .putChar((char) entry.name.length)
+                .putChar((char) entry.start)
+                .putInt((int) entry.localOffset)
+                .putInt((int) entry.compressedSize)
+                .putInt((int) entry.size)
+                .putChar((char) entry.method)
+                .putChar((char) (entry.folder ? FLAG_FOLDER : 0));
+            nameOffset += entry.name.length;
+        }
+        int start = 0;
+        boolean isPackage = false;
+        for (int i = 0; i < count; i++) {
+            isPackage |= sorted[i].definesPackage;
+            if (i == count - 1 || !sameFolder(sorted[i], sorted[i + 1])) {
+                index.putInt(start).putInt((i + 1) | (isPackage ? FLAG_PACKAGE : 0));
+                start = i + 1;
+                isPackage = false;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            index.put(sorted[i].name);
+        }
+        index.flip();
+        return index;
+    }
+
+    private static boolean sameFolder(Entry a, Entry b) {
+        return compareBytes(a.name, 0, Math.max(0, a.start - 1), b.name, 0, Math.max(0, b.start - 1)) == 0;
+    }
+
+    private static List<Entry> readCentralDirectory(File jar) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(jar, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+            ByteBuffer tail = read(channel, size - tailSize, tailSize, 0);
+            if (tail == null)
+                throw new ZipException("Truncated jar file");
+            int end = -1;
+            for (int i = tailSize - END_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end == -1)
+                throw new ZipException("Missing end of central directory");
+            int total = tail.getChar(end + 10);
+            long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            if (total == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL
+                    || directoryOffset + directorySize > size)
+                throw new ZipException("Zip64 or invalid central directory");
+            ByteBuffer directory = read(channel, directoryOffset, (int) directorySize, 0);
+            if (directory == null)
+                throw new ZipException("Truncated central directory");
+            List<Entry> entries = new ArrayList<Entry>(total);
+            int pos = 0;
+            for (int i = 0; i < total; i++) {
+                if (pos + 46 > directory.limit() || directory.getInt(pos) != CENTRAL_SIGNATURE)
+                    throw new ZipException("Invalid central directory entry");
+                int flags = directory.getChar(pos + 8);
+                int method = directory.getChar(pos + 10);
+                long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                long uncompressedSize = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+                int nameLength = directory.getChar(pos + 28);
+                int extraLength = directory.getChar(pos + 30);
+                int commentLength = directory.getChar(pos + 32);
+                long localOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+                if (pos + 46 + nameLength > directory.limit())
+                    throw new ZipException("Invalid central directory entry");
+                byte[] nameBytes = new byte[nameLength];
+                for (int j = 0; j < nameLength; j++)
+                    nameBytes[j] = directory.get(pos + 46 + j);
+                String name = new String(nameBytes, UTF8);
+                if ((flags & 1) != 0 // encrypted
+                        || compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL)
+                    localOffset = UNKNOWN_OFFSET & 0xFFFFFFFFL;
+                entries.add(new Entry(name, name.endsWith("/"), localOffset, compressedSize, uncompressedSize, method));
+                pos += 46 + nameLength + extraLength + commentLength;
+            }
+            return entries;
+        }
+    }
+
+    private static List<Entry> readZipFile(File jar) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        ZipFile zf = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> zipEntries = zf.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                entries.add(new Entry(entry.getName(), entry.isDirectory(), UNKNOWN_OFFSET & 0xFFFFFFFFL,
+                        0, entry.getSize(), entry.getMethod()));
+            }
+        } finally {
+            zf.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Maps the given index file, if it is valid and up to date
+     */
+    private static ByteBuffer map(File file, File jar) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+                return null;
+            // the mapping stays valid after we close the file
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (index.getInt(0) != MAGIC
+                    || index.getInt(4) != VERSION
+                    || index.getLong(8) != jar.length()
+                    || index.getLong(16) != jar.lastModified())
+                return null;
+            long expected = HEADER_SIZE
+                    + (long) index.getInt(24) * ENTRY_SIZE
+                    + (long) index.getInt(28) * FOLDER_SIZE
+                    + index.getInt(32);
+            return expected == size ? index : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
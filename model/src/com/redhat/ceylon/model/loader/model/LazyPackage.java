@@ -36,7 +36,7 @@ public class LazyPackage extends Package {
     private AbstractModelLoader modelLoader;
     private List<Declaration> compiledDeclarations = new ArrayList<Declaration>(3);
     private Set<Unit> lazyUnits = new HashSet<Unit>();
-    private Map<String,Declaration> cache = new HashMap<String,Declaration>();
+    private final Map<String,Declaration> cache = new HashMap<String,Declaration>();
     
     public LazyPackage(AbstractModelLoader modelLoader){
         this.modelLoader = modelLoader;
@@ -54,8 +54,14 @@ public class LazyPackage extends Package {
 //        System.err.println("getMember "+name+" "+signature+" "+ellipsis);
         boolean canCache = (signature == null && !ellipsis);
         if(canCache){
-            if(cache.containsKey(name)) {
-                Declaration cachedDeclaration = cache.get(name);
+            boolean cached;
+            Declaration cachedDeclaration;
+            // the cache has its own lock so that hits do not need the model loader lock
+            synchronized(cache){
+                cached = cache.containsKey(name);
+                cachedDeclaration = cache.get(name);
+            }
+            if(cached) {
                 if (! modelLoader.searchAgain(cachedDeclaration, this, name)) {
                     return cachedDeclaration;
                 }
@@ -64,7 +70,9 @@ public class LazyPackage extends Package {
         }
         Declaration ret = getDirectMemberMemoised(name, signature, ellipsis, Backends.ANY);
         if(canCache){
-            cache.put(name, ret);
+            synchronized(cache){
+                cache.put(name, ret);
+            }
         }
         return ret;
     }
@@ -189,7 +197,9 @@ public class LazyPackage extends Package {
     }
     
     private void flushCache(Declaration declaration) {
-        cache.remove(declaration.getName());
+        synchronized(cache){
+            cache.remove(declaration.getName());
+        }
     }
 
     public void addCompiledMember(Declaration d) {
@@ -1,17 +1,58 @@
 package com.redhat.ceylon.model.typechecker.context;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.redhat.ceylon.model.typechecker.model.Type;
 import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
 import com.redhat.ceylon.model.typechecker.model.UnknownType;
 
+/**
+ * A bounded cache of type relationships: supertype lookups
+ * and subtype checks. Each
+ * {@link com.redhat.ceylon.model.typechecker.model.Module}
+ * gets its own cache, unless the system property
+ * {@code ceylon.typecache.shared} is set, in which case all
+ * modules of the process share a single instance.
+ * <p>
+ * The number of entries is limited by the system property
+ * {@code ceylon.typecache.size}. When the limit is exceeded
+ * a quarter of the entries is evicted. Hits, misses and
+ * evictions are counted and can be read with
+ * {@link #getHits()}, {@link #getMisses()} and
+ * {@link #getEvictions()}.
+ */
 public class TypeCache {
     
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    
+    private static final int maxSizeByDefault = 
+            Integer.getInteger("ceylon.typecache.size", 
+                    DEFAULT_MAX_SIZE);
+    
+    private static final boolean sharedByDefault = 
+            Boolean.getBoolean("ceylon.typecache.shared");
+    
+    private static final TypeCache sharedCache = 
+            new TypeCache();
+    
+    /**
+     * The cache to use for a new module: a new one, or the
+     * process-wide one if {@code ceylon.typecache.shared}
+     * is set.
+     */
+    public static TypeCache newModuleCache() {
+        return sharedByDefault ? sharedCache : new TypeCache();
+    }
+    
+    public static TypeCache getSharedCache() {
+        return sharedCache;
+    }
+    
     private static boolean cachingEnabledByDefault = true;
     
     public static void setEnabledByDefault(boolean enabled) {
@@ -80,44 +121,167 @@ public class TypeCache {
     
     // need a special value for null because ConcurrentHashMap does not support null
     private final static Type NULL_VALUE = new UnknownType(null).getType();
+    
+    private static final int SUPERTYPE = 0;
+    private static final int SUBTYPE = 1;
+    
+    /**
+     * The key of a cache entry: the kind of query and its
+     * two operands.
+     */
+    private static final class Key {
+        private final int kind;
+        private final Object first;
+        private final Object second;
+        private final int hash;
+        
+        Key(int kind, Object first, Object second) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+            this.hash = (kind * 31 + first.hashCode()) * 31 
+                    + second.hashCode();
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return kind == other.kind
+                    && hash == other.hash
+                    && first.equals(other.first)
+                    && second.equals(other.second);
+        }
+    }
+    
     // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
     // on concurrent operations
-    private final Map<Type, Map<TypeDeclaration, Type>> superTypes = 
-            new ConcurrentHashMap<Type, Map<TypeDeclaration, Type>>();
+    private final Map<Key, Object> entries = 
+            new ConcurrentHashMap<Key, Object>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
     
-    public boolean containsKey(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            return false;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    public TypeCache() {
+        this(maxSizeByDefault);
+    }
+    
+    public TypeCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+    
+    private Object lookup(Key key) {
+        Object ret = entries.get(key);
+        if (ret == null) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
+        }
+        return ret;
+    }
+    
+    private void store(Key key, Object value) {
+        if (entries.put(key, value) == null 
+                && size.incrementAndGet() > maxSize) {
+            evict();
+        }
+    }
+    
+    /**
+     * Drop about a quarter of the entries. The iteration
+     * order of the map is hash order, so what gets dropped 
+     * is effectively random, which is good enough for a 
+     * cache that's mostly hit by the same few queries.
+     */
+    private synchronized void evict() {
+        if (size.get() <= maxSize) {
+            // another thread got here first
+            return;
         }
-        return cache.containsKey(dec);
+        int toEvict = Math.max(1, maxSize / 4);
+        Iterator<Key> it = entries.keySet().iterator();
+        while (toEvict > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            size.decrementAndGet();
+            evictions.incrementAndGet();
+            toEvict--;
+        }
+    }
+    
+    public boolean containsKey(Type producedType, TypeDeclaration dec) {
+        return entries.containsKey(new Key(SUPERTYPE, producedType, dec));
     }
 
     public Type get(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            return null;
-        }
-        Type ret = cache.get(dec);
-        return ret == NULL_VALUE ? null : ret;
+        Object ret = entries.get(new Key(SUPERTYPE, producedType, dec));
+        return ret == NULL_VALUE ? null : (Type) ret;
+    }
+
+    /**
+     * Look up a cached supertype in a single step, since an
+     * entry can be evicted between {@link #containsKey} and 
+     * {@link #get}.
+     * 
+     * @return the cached supertype, 
+     *         {@link #isNoSupertype(Type) a marker} if the 
+     *         type is known to have no such supertype, or 
+     *         null if nothing is cached
+     */
+    public Type getSupertype(Type producedType, TypeDeclaration dec) {
+        return (Type) lookup(new Key(SUPERTYPE, producedType, dec));
+    }
+    
+    /**
+     * Is the given value returned by 
+     * {@link #getSupertype(Type, TypeDeclaration)} the 
+     * marker for "no such supertype"?
+     */
+    public static boolean isNoSupertype(Type cached) {
+        return cached == NULL_VALUE;
     }
 
     public void put(Type producedType, TypeDeclaration dec, Type superType) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
-            // on concurrent operations
-            cache = new ConcurrentHashMap<TypeDeclaration, Type>();
-            superTypes.put(producedType, cache);
-        }
         if (superType == null) {
             superType = NULL_VALUE;
         }
-        cache.put(dec, superType);
+        store(new Key(SUPERTYPE, producedType, dec), superType);
+    }
+    
+    /**
+     * @return the cached result of 
+     *         {@code type.isSubtypeOf(supertype)}, or null if 
+     *         nothing is cached
+     */
+    public Boolean getSubtype(Type type, Type supertype) {
+        return (Boolean) lookup(new Key(SUBTYPE, type, supertype));
     }
+    
+    public void putSubtype(Type type, Type supertype, boolean result) {
+        store(new Key(SUBTYPE, type, supertype), result);
+    }
+    
 
     public void clear(){
-        superTypes.clear();
+        entries.clear();
+        size.set(0);
     }
 
     public void clearForDeclaration(TypeDeclaration decl) {
@@ -127,29 +291,47 @@ public class TypeCache {
     }
     
     public void clearNullValues() {
-        List<Type> cachesToremove = new LinkedList<Type>();
-        for (Map.Entry<Type, Map<TypeDeclaration, Type>> entry: 
-                superTypes.entrySet()) {
-            Map<TypeDeclaration, Type> cache = entry.getValue();
-            if (cache == null) {
-                cachesToremove.add(entry.getKey());
-            }
-            else {
-                List<TypeDeclaration> valuesToremove = 
-                        new LinkedList<TypeDeclaration>();
-                for (Map.Entry<TypeDeclaration, Type> cacheEntry: 
-                        cache.entrySet()) {
-                    if (cacheEntry.getValue() == NULL_VALUE) {
-                        valuesToremove.add(cacheEntry.getKey());
-                    }
-                }
-                for (TypeDeclaration toRemove: valuesToremove) {
-                    cache.remove(toRemove);
-                }
+        Iterator<Object> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == NULL_VALUE) {
+                it.remove();
+                size.decrementAndGet();
             }
         }
-        for (Type toRemove: cachesToremove) {
-            superTypes.remove(toRemove);
-        }
+    }
+    
+    public int getSize() {
+        return size.get();
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
+    }
+    
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+    
+    @Override
+    public String toString() {
+        return "TypeCache[size=" + getSize() 
+                + ", maxSize=" + maxSize
+                + ", hits=" + getHits() 
+                + ", misses=" + getMisses() 
+                + ", evictions=" + getEvictions() + "]";
     }
 }
@@ -39,7 +39,7 @@ public class Module
             new ArrayList<Annotation>();
     private Unit unit;
     private String memoisedName;
-    private TypeCache cache = new TypeCache();
+    private TypeCache cache = TypeCache.newModuleCache();
     private String signature;
     private List<ModuleImport> overridenImports = null;
     private Backends nativeBackends = Backends.ANY;
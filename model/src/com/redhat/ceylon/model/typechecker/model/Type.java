@@ -549,8 +549,73 @@ public class Type extends Reference {
      * Is this type a subtype of the given type? 
      */
     public boolean isSubtypeOf(Type type) {
-        return type!=null && resolveAliases()
-                .isSubtypeOfInternal(type.resolveAliases());
+        if (type==null) {
+            return false;
+        }
+        Type rt = resolveAliases();
+        Type rst = type.resolveAliases();
+        if (rt.canCacheSubtype(rst)) {
+            TypeCache cache = 
+                    rst.getDeclaration().getUnit().getCache();
+            if (cache != null) {
+                Boolean cached = cache.getSubtype(rt, rst);
+                if (cached != null) {
+                    return cached;
+                }
+                boolean result = rt.isSubtypeOfInternal(rst);
+                cache.putSubtype(rt, rst, result);
+                return result;
+            }
+        }
+        return rt.isSubtypeOfInternal(rst);
+    }
+    
+    /**
+     * Only cache subtype checks which are expensive enough to
+     * be worth a lookup, that is, those involving type 
+     * arguments, unions or intersections, and whose answer is 
+     * fully determined by {@link #equals(Object)}. The cheap
+     * tests come first, so that a check which can't be cached
+     * costs next to nothing.
+     */
+    private boolean canCacheSubtype(Type type) {
+        return (isWorthCaching() || type.isWorthCaching()) &&
+                isCacheableOperand() && 
+                type.isCacheableOperand() &&
+                TypeCache.isEnabled() &&
+                isFullyKnown() &&
+                type.isFullyKnown();
+    }
+    
+    private boolean isWorthCaching() {
+        return isUnion() || isIntersection() || 
+                !getTypeArgumentList().isEmpty();
+    }
+    
+    private boolean isCacheableOperand() {
+        TypeDeclaration dec = getDeclaration();
+        return dec != null &&
+                dec.getUnit() != null &&
+                !isRaw() &&
+                !isTypeConstructor() &&
+                !hasUnderlyingType();
+    }
+    
+    private int fullyKnown;
+    
+    /**
+     * Does this type have no unknown parts and no use-site
+     * variance overrides? Both depend only on the structure
+     * of the type, so we compute them once.
+     */
+    private boolean isFullyKnown() {
+        if (fullyKnown==0) {
+            fullyKnown =
+                    collectVarianceOverrides().isEmpty() &&
+                    !containsUnknowns() ?
+                            1 : -1;
+        }
+        return fullyKnown>0;
     }
 
     /**
@@ -1441,8 +1506,10 @@ public class Type extends Reference {
         boolean canCache = canCacheSupertype(dec);
         if (canCache) {
             TypeCache cache = dec.getUnit().getCache();
-            if (cache.containsKey(this, dec)) {
-                return cache.get(this, dec);
+            Type cached = cache.getSupertype(this, dec);
+            if (cached != null) {
+                return TypeCache.isNoSupertype(cached) ? 
+                        null : cached;
             }
         }
         
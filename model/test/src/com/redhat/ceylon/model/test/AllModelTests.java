@@ -5,11 +5,13 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.redhat.ceylon.model.test.loader.impl.reflect.CachedTOCJarsTest;
+import com.redhat.ceylon.model.test.typechecker.TypeCacheTest;
 
 @RunWith(Suite.class) 
 @SuiteClasses({
     CachedTOCJarsTest.class,
-    ClassFileUtilTest.class
+    ClassFileUtilTest.class,
+    TypeCacheTest.class
 })
 public class AllModelTests {
 }
@@ -3,8 +3,11 @@ package com.redhat.ceylon.model.test.loader.impl.reflect;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -36,7 +39,9 @@ public class CachedTOCJarsTest {
 
     @Test
     public void spacesOnPathTest() throws IOException {
-        CachedTOCJars cachedTOCJars = new CachedTOCJars();
+        File folder = File.createTempFile("toc-index", "");
+        folder.delete();
+        CachedTOCJars cachedTOCJars = new CachedTOCJars(folder);
         Module module = new Module();
         module.setName(Collections.singletonList("testModule"));
         module.setVersion("testVersion");
@@ -57,8 +62,199 @@ public class CachedTOCJarsTest {
             // I'm not comparing URI part for equality to avoid symbolic links resolution issues. 
             Assert.assertTrue(uriPart, uriPart.endsWith(artifactFile.getName() + "!" + ALSO_INSIDE_JAR));
         } finally {
+            cachedTOCJars.close();
             artifactFile.delete();
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    @Test
+    public void indexTest() throws IOException {
+        File folder = File.createTempFile("toc-index", "");
+        folder.delete();
+        File artifactFile = File.createTempFile("index", ".jar");
+        try {
+            ZipOutputStream artifactOut = new ZipOutputStream(new FileOutputStream(artifactFile));
+            try {
+                artifactOut.putNextEntry(new ZipEntry("a/"));
+                artifactOut.putNextEntry(new ZipEntry("a/b/"));
+                putEntry(artifactOut, "a/b/Foo.class", "foo", false);
+                putEntry(artifactOut, "a/b/c/Bar.class", "bar", true);
+                putEntry(artifactOut, "a/b/Gee.class", "gee", true);
+                putEntry(artifactOut, "a/b/foo.txt", "text", false);
+                putEntry(artifactOut, "Default.class", "default", false);
+                putEntry(artifactOut, "META-INF/MANIFEST.MF", "manifest", false);
+            } finally {
+                artifactOut.close();
+            }
+            Module module = new Module();
+            module.setName(Collections.singletonList("testModule"));
+            module.setVersion("testVersion");
+            ArtifactResult artifact = new TestArtifactResult(artifactFile, module);
+            
+            // the first one builds the index, the second one maps it
+            for (int i = 0; i < 2; i++) {
+                CachedTOCJars cachedTOCJars = new CachedTOCJars(folder);
+                cachedTOCJars.addJar(artifact, module);
+                
+                Assert.assertTrue(cachedTOCJars.packageExists(module, "a.b"));
+                Assert.assertTrue(cachedTOCJars.packageExists(module, "a.b.c"));
+                Assert.assertTrue(cachedTOCJars.packageExists(module, ""));
+                Assert.assertFalse(cachedTOCJars.packageExists(module, "a"));
+                Assert.assertFalse(cachedTOCJars.packageExists(module, "META-INF"));
+                Assert.assertEquals(new HashSet<String>(Arrays.asList("a/b", "a/b/c", "")), 
+                        cachedTOCJars.getPackagePaths(module));
+                
+                Assert.assertEquals(new HashSet<String>(Arrays.asList("a/b/Foo.class", "a/b/Gee.class", "a/b/foo.txt")), 
+                        new HashSet<String>(cachedTOCJars.getPackageList(module, "a.b")));
+                Assert.assertEquals(Collections.singletonList("a/b/c/Bar.class"), cachedTOCJars.getPackageList(module, "a.b.c"));
+                Assert.assertEquals(Collections.singletonList("Default.class"), cachedTOCJars.getPackageList(module, ""));
+                
+                Assert.assertEquals("foo", new String(cachedTOCJars.getContents(module, "a/b/Foo.class"), "UTF-8"));
+                Assert.assertEquals("bar", new String(cachedTOCJars.getContents(module, "a/b/c/Bar.class"), "UTF-8"));
+                Assert.assertEquals("gee", new String(cachedTOCJars.getContents("a/b/Gee.class"), "UTF-8"));
+                Assert.assertEquals("default", new String(cachedTOCJars.getContents(module, "Default.class"), "UTF-8"));
+                Assert.assertNull(cachedTOCJars.getContents(module, "a/b/Missing.class"));
+                Assert.assertNull(cachedTOCJars.getContents(module, "a/b/"));
+                
+                Assert.assertTrue(cachedTOCJars.getContentUri(module, "a/b/foo.txt").getSchemeSpecificPart().endsWith("!a/b/foo.txt"));
+                Assert.assertNull(cachedTOCJars.getContentUri(module, "a/c/foo.txt"));
+                
+                Assert.assertEquals(1, folder.listFiles().length);
+            }
+            
+            // a changed jar is indexed again
+            ZipOutputStream changedOut = new ZipOutputStream(new FileOutputStream(artifactFile));
+            try {
+                putEntry(changedOut, "x/Changed.class", "changed", true);
+            } finally {
+                changedOut.close();
+            }
+            artifactFile.setLastModified(artifactFile.lastModified() + 2000);
+            CachedTOCJars cachedTOCJars = new CachedTOCJars(folder);
+            cachedTOCJars.addJar(artifact, module);
+            Assert.assertFalse(cachedTOCJars.packageExists(module, "a.b"));
+            Assert.assertEquals("changed", new String(cachedTOCJars.getContents(module, "x/Changed.class"), "UTF-8"));
+        } finally {
+            artifactFile.delete();
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    @Test
+    public void rewrittenJarTest() throws IOException {
+        File folder = File.createTempFile("toc-index", "");
+        folder.delete();
+        File artifactFile = File.createTempFile("rewritten", ".jar");
+        try {
+            ZipOutputStream artifactOut = new ZipOutputStream(new FileOutputStream(artifactFile));
+            try {
+                putEntry(artifactOut, "a/A.class", "one", false);
+                putEntry(artifactOut, "a/B.class", "two", false);
+            } finally {
+                artifactOut.close();
+            }
+            long lastModified = artifactFile.lastModified();
+            Module module = new Module();
+            module.setName(Collections.singletonList("testModule"));
+            module.setVersion("testVersion");
+            ArtifactResult artifact = new TestArtifactResult(artifactFile, module);
+            CachedTOCJars cachedTOCJars = new CachedTOCJars(folder);
+            cachedTOCJars.addJar(artifact, module);
+            Assert.assertEquals("one", new String(cachedTOCJars.getContents(module, "a/A.class"), "UTF-8"));
+            cachedTOCJars.close();
+            
+            // same size and date, but the entries moved: we must not trust the index
+            ZipOutputStream changedOut = new ZipOutputStream(new FileOutputStream(artifactFile));
+            try {
+                putEntry(changedOut, "a/B.class", "two", false);
+                putEntry(changedOut, "a/A.class", "one", false);
+            } finally {
+                changedOut.close();
+            }
+            artifactFile.setLastModified(lastModified);
+            cachedTOCJars = new CachedTOCJars(folder);
+            cachedTOCJars.addJar(artifact, module);
+            Assert.assertEquals("one", new String(cachedTOCJars.getContents(module, "a/A.class"), "UTF-8"));
+            Assert.assertEquals("two", new String(cachedTOCJars.getContents(module, "a/B.class"), "UTF-8"));
+            cachedTOCJars.close();
+        } finally {
+            artifactFile.delete();
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    @Test
+    public void pruneTest() throws IOException {
+        File folder = File.createTempFile("toc-index", "");
+        folder.delete();
+        folder.mkdirs();
+        File artifactFile = File.createTempFile("pruned", ".jar");
+        try {
+            // we keep 1000 indexes: fill the folder with old ones
+            long lastModified = System.currentTimeMillis() - 60000;
+            for (int i = 0; i < 1000; i++) {
+                File file = new File(folder, "old" + i);
+                new FileOutputStream(file).close();
+                file.setLastModified(lastModified + i);
+            }
+            ZipOutputStream artifactOut = new ZipOutputStream(new FileOutputStream(artifactFile));
+            try {
+                putEntry(artifactOut, "a/A.class", "one", false);
+            } finally {
+                artifactOut.close();
+            }
+            Module module = new Module();
+            module.setName(Collections.singletonList("testModule"));
+            module.setVersion("testVersion");
+            CachedTOCJars cachedTOCJars = new CachedTOCJars(folder);
+            cachedTOCJars.addJar(new TestArtifactResult(artifactFile, module), module);
+            Assert.assertEquals("one", new String(cachedTOCJars.getContents(module, "a/A.class"), "UTF-8"));
+            cachedTOCJars.close();
+            
+            // saving the new index dropped the oldest one
+            Assert.assertEquals(1000, folder.listFiles().length);
+            Assert.assertFalse(new File(folder, "old0").exists());
+            Assert.assertTrue(new File(folder, "old1").exists());
+        } finally {
+            artifactFile.delete();
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, String contents, boolean compressed) throws IOException {
+        byte[] bytes = contents.getBytes("UTF-8");
+        ZipEntry entry = new ZipEntry(name);
+        if (!compressed) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCrc(crc.getValue());
         }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
     }
 
     private final class TestArtifactResult implements ArtifactResult {
@@ -0,0 +1,94 @@
+package com.redhat.ceylon.model.test.typechecker;
+
+import static java.util.Arrays.asList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.model.Class;
+import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Type;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+public class TypeCacheTest {
+    
+    private Unit unit;
+    
+    private Class newClass(String name) {
+        if (unit == null) {
+            Module module = new Module();
+            module.setName(asList("test"));
+            Package pkg = new Package();
+            pkg.setName(asList("test"));
+            pkg.setModule(module);
+            unit = new Unit();
+            unit.setPackage(pkg);
+        }
+        Class c = new Class();
+        c.setName(name);
+        c.setUnit(unit);
+        c.setContainer(unit.getPackage());
+        return c;
+    }
+    
+    @Test
+    public void testCountsHitsAndMisses() {
+        TypeCache cache = new TypeCache(10);
+        Class a = newClass("A");
+        Class b = newClass("B");
+        Type at = a.getType();
+        
+        Assert.assertNull(cache.getSupertype(at, b));
+        cache.put(at, b, null);
+        Type cached = cache.getSupertype(at, b);
+        Assert.assertTrue(TypeCache.isNoSupertype(cached));
+        cache.put(at, a, at);
+        Assert.assertSame(at, cache.getSupertype(at, a));
+        
+        Assert.assertNull(cache.getSubtype(at, b.getType()));
+        cache.putSubtype(at, b.getType(), false);
+        Assert.assertEquals(Boolean.FALSE, cache.getSubtype(at, b.getType()));
+        
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(3, cache.getSize());
+        Assert.assertEquals(0, cache.getEvictions());
+        
+        cache.clearNullValues();
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertNull(cache.getSupertype(at, b));
+        
+        cache.clear();
+        Assert.assertEquals(0, cache.getSize());
+        cache.resetStatistics();
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+    }
+    
+    @Test
+    public void testEvictsWhenFull() {
+        TypeCache cache = new TypeCache(8);
+        Class target = newClass("Target");
+        for (int i = 0; i < 100; i++) {
+            Type type = newClass("C" + i).getType();
+            cache.putSubtype(type, target.getType(), true);
+            Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+        }
+        Assert.assertTrue(cache.getEvictions() > 0);
+        Assert.assertEquals(100 - cache.getEvictions(), cache.getSize());
+    }
+    
+    @Test
+    public void testEqualTypesShareEntries() {
+        TypeCache cache = new TypeCache(10);
+        Class a = newClass("A");
+        Class b = newClass("B");
+        cache.putSubtype(a.getType(), b.getType(), true);
+        // distinct but equal instances
+        Assert.assertEquals(Boolean.TRUE, 
+                cache.getSubtype(a.getType(), b.getType()));
+        Assert.assertNull(cache.getSubtype(b.getType(), a.getType()));
+    }
+}
@@ -17,6 +17,7 @@
 
 package ceylon.modules.jboss.runtime;
 
+import java.io.File;
 import java.util.NavigableMap;
 import java.util.Set;
 
@@ -37,6 +38,7 @@ import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
 import com.redhat.ceylon.cmr.impl.CMRJULLogger;
 import com.redhat.ceylon.cmr.spi.ContentTransformer;
 import com.redhat.ceylon.cmr.spi.MergeStrategy;
+import com.redhat.ceylon.common.FileUtil;
 import com.redhat.ceylon.common.Versions;
 
 import org.jboss.modules.Module;
@@ -76,7 +78,13 @@ public abstract class AbstractJBossRuntime extends AbstractRuntime {
         }
         try {
             ModuleLoader moduleLoader = createModuleLoader(conf);
-            Module module = moduleLoader.loadModule(moduleIdentifier);
+            Module module;
+            try {
+                module = moduleLoader.loadModule(moduleIdentifier);
+            } finally {
+                if (moduleLoader instanceof CeylonModuleLoader)
+                    ((CeylonModuleLoader) moduleLoader).clearPrefetchedArtifacts();
+            }
             return new ClassLoaderHolderImpl(module);
         } catch (ModuleNotFoundException e) {
             String spec = e.getMessage();
@@ -129,6 +137,41 @@ public abstract class AbstractJBossRuntime extends AbstractRuntime {
         return createRepository(conf, false);
     }
 
+    /**
+     * Get the cache of the module graphs we resolved in previous runs with
+     * the same configuration, or null if we can't tell whether the
+     * repositories would resolve the same artifacts.
+     *
+     * @param conf       the configuration
+     * @param repository the repository we would resolve them with
+     * @return the module graph cache or null
+     */
+    ModuleGraphCache getModuleGraphCache(Configuration conf, RepositoryManager repository) {
+        if (conf.cacheContent
+                || conf.impl.containsKey(MergeStrategy.class.getName())
+                || conf.impl.containsKey(ContentTransformer.class.getName()))
+            return null;
+        StringBuilder configuration = new StringBuilder(Versions.CEYLON_VERSION_NUMBER);
+        for (String repo : repository.getRepositoriesDisplayString()) {
+            configuration.append('\n').append(repo);
+        }
+        if (conf.overrides != null) {
+            File overrides = FileUtil.applyCwd(conf.cwd != null ? new File(conf.cwd) : null, new File(conf.overrides));
+            configuration.append("\noverrides:").append(overrides.getAbsolutePath())
+                .append(':').append(overrides.length())
+                .append(':').append(overrides.lastModified());
+        }
+        configuration.append("\nupgradeDist:").append(conf.upgradeDist)
+            .append("\nautoExportMavenDependencies:").append(conf.autoExportMavenDependencies)
+            .append("\noffline:").append(conf.offline);
+        try {
+            return ModuleGraphCache.get(configuration.toString());
+        } catch (RuntimeException e) {
+            // no cache repository, we'll do without
+            return null;
+        }
+    }
+
     /**
      * Get repository service.
      *
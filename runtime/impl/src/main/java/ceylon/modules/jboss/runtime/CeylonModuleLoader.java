@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import org.jboss.modules.AliasModuleSpec;
 import org.jboss.modules.DependencySpec;
@@ -44,6 +45,7 @@ import org.jboss.modules.filter.PathFilter;
 import org.jboss.modules.filter.PathFilters;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.ConcurrentArtifactLookup;
 import com.redhat.ceylon.cmr.api.ModuleDependencyInfo;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.common.Constants;
@@ -154,17 +156,26 @@ public class CeylonModuleLoader extends ModuleLoader
 
     private RepositoryManager repository;
     private Map<ModuleIdentifier, List<DependencySpec>> dependencies = new ConcurrentHashMap<>();
+    private Map<ModuleIdentifier, Future<ArtifactResult>> prefetchedArtifacts = new ConcurrentHashMap<>();
     private Graph<ModuleIdentifier, ModuleIdentifier, Boolean> graph = new Graph<>();
+    private ModuleGraphCache graphCache;
     private boolean exportMavenImports = false;
     // Stef: enable back when we upgrade jboss modules
 //    private Map<String,Object> classNamesToModules = new ConcurrentHashMap<>();
     
 
     public CeylonModuleLoader(RepositoryManager repository, boolean autoExportMavenDependencies) throws Exception {
+        this(repository, autoExportMavenDependencies, null);
+    }
+
+    CeylonModuleLoader(RepositoryManager repository, boolean autoExportMavenDependencies, ModuleGraphCache graphCache) throws Exception {
         if (repository == null)
             throw new IllegalArgumentException("Null repository adapter");
         this.repository = repository;
         this.exportMavenImports = autoExportMavenDependencies;
+        // log checkers may replace dependencies by looking at their artifacts,
+        // which we don't keep
+        this.graphCache = checkers.isEmpty() ? graphCache : null;
         // initialise runtime modules
         init();
     }
@@ -252,8 +263,63 @@ public class CeylonModuleLoader extends ModuleLoader
     }
 
     protected ArtifactResult findArtifact(ModuleIdentifier mi) {
-        final ArtifactContext context = new ArtifactContext(mi.getName(), mi.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR);
-        return repository.getArtifactResult(context);
+        Future<ArtifactResult> prefetched = prefetchedArtifacts.remove(mi);
+        if (prefetched != null)
+            return ConcurrentArtifactLookup.getArtifactResult(prefetched);
+        ArtifactResult cached = findCachedArtifact(mi);
+        if (cached != null)
+            return cached;
+        return repository.getArtifactResult(createArtifactContext(mi));
+    }
+
+    private ArtifactResult findCachedArtifact(ModuleIdentifier mi) {
+        return graphCache != null ? graphCache.find(mi, repository) : null;
+    }
+
+    private static ArtifactContext createArtifactContext(ModuleIdentifier mi) {
+        return new ArtifactContext(mi.getName(), mi.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR);
+    }
+
+    /**
+     * Starts looking up the artifacts of the given dependencies that are not
+     * loaded yet all at once, so that they are downloaded concurrently from
+     * remote repositories before JBoss Modules asks for them one by one.
+     * {@link #findArtifact} then waits for their lookup, and throws what it
+     * threw if it failed, so that we report errors as usual.
+     */
+    private void prefetchArtifacts(List<ModuleIdentifier> dependencies) {
+        List<ModuleIdentifier> identifiers = new ArrayList<>(dependencies.size());
+        List<ArtifactContext> contexts = new ArrayList<>(dependencies.size());
+        for (ModuleIdentifier mi : dependencies) {
+            if (!BOOTSTRAP.contains(mi)
+                    && findLoadedModuleLocal(mi) == null
+                    && !prefetchedArtifacts.containsKey(mi)
+                    && !identifiers.contains(mi)
+                    && findCachedArtifact(mi) == null) {
+                identifiers.add(mi);
+                contexts.add(createArtifactContext(mi));
+            }
+        }
+        if (identifiers.size() < 2) {
+            // nothing to gain
+            return;
+        }
+        List<Future<ArtifactResult>> artifacts = ConcurrentArtifactLookup.lookUpArtifactResults(repository, contexts);
+        for (int i = 0; i < identifiers.size(); i++) {
+            prefetchedArtifacts.put(identifiers.get(i), artifacts.get(i));
+        }
+    }
+
+    /**
+     * Forgets the artifacts we looked up in advance but JBoss Modules never
+     * asked for, once it's done loading a module and its dependencies.
+     */
+    void clearPrefetchedArtifacts() {
+        for (Future<ArtifactResult> prefetched : prefetchedArtifacts.values()) {
+            // let the downloads that already started finish
+            prefetched.cancel(false);
+        }
+        prefetchedArtifacts.clear();
     }
     
     protected ModuleIdentifier findOverride(ModuleIdentifier mi) {
@@ -324,6 +390,7 @@ public class CeylonModuleLoader extends ModuleLoader
 
             if (isDefault == false) {
                 Node<ArtifactResult> root = new Node<>();
+                List<ModuleIdentifier> requiredDependencies = new ArrayList<>();
                 for (ArtifactResult i : artifact.dependencies()) {
                     final String name = i.name();
 
@@ -353,6 +420,7 @@ public class CeylonModuleLoader extends ModuleLoader
                         DependencySpec mds = createModuleDependency(i, exportMavenImports && isMaven && isDepMaven);
                         builder.addDependency(mds);
                         deps.add(mds);
+                        requiredDependencies.add(findOverride(createModuleIdentifier(i)));
                     }
 
                     ModuleIdentifier mi = createModuleIdentifier(i);
@@ -363,8 +431,12 @@ public class CeylonModuleLoader extends ModuleLoader
                     LocalLoader onDemandLoader = new OnDemandLocalLoader(moduleIdentifier, this, root);
                     builder.setFallbackLoader(onDemandLoader);
                 }
+                prefetchArtifacts(requiredDependencies);
             }
 
+            if (graphCache != null)
+                graphCache.record(moduleIdentifier, artifact, artifact.dependencies());
+
             // automagically import the JDK module
             builder.addDependency(JDK_DEPENDENCY);
             // no need to track system deps -- cannot be updated anyway
@@ -521,7 +593,12 @@ public class CeylonModuleLoader extends ModuleLoader
 
     public void loadModuleSynchronous(String name, String version) throws ModuleLoadException{
         ModuleIdentifier moduleIdentifier = ModuleIdentifier.create(name, version);
-        Module module = loadModule(moduleIdentifier);
+        Module module;
+        try {
+            module = loadModule(moduleIdentifier);
+        } finally {
+            clearPrefetchedArtifacts();
+        }
         ModuleClassLoader classLoader = module.getClassLoader();
         if(classLoader instanceof CeylonModuleClassLoader){
             ((CeylonModuleClassLoader) classLoader).registerInMetaModel();
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ceylon.modules.jboss.runtime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.modules.ModuleIdentifier;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.CmrRepository;
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.spi.Node;
+import com.redhat.ceylon.cmr.impl.AbstractArtifactResult;
+import com.redhat.ceylon.cmr.impl.LazyArtifactResult;
+import com.redhat.ceylon.common.CacheFile;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.common.ModuleUtil;
+import com.redhat.ceylon.common.config.Repositories;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+import com.redhat.ceylon.model.cmr.ArtifactResultType;
+import com.redhat.ceylon.model.cmr.ImportType;
+import com.redhat.ceylon.model.cmr.RepositoryException;
+
+/**
+ * Persistent record of how the module loader resolved each module: which
+ * artifact it found and what its dependencies were, so that the next run
+ * with the same configuration can find the artifact of a module without
+ * asking the repositories again, and its dependencies without reading its
+ * module descriptor. Modules are still loaded and linked one at a time,
+ * when JBoss Modules asks for them.
+ * <p>
+ * There is one cache file per configuration (repositories, overrides and
+ * runtime options), named after its SHA-1. A module's record only holds
+ * as long as its artifact has the same size and modification time, which
+ * covers the module descriptors inside it, and no local repository that
+ * comes before the one we found it in has that module now, such as when we
+ * just compiled it to ./modules. We only record released versions, of
+ * artifacts without path filters.
+ */
+final class ModuleGraphCache {
+
+    static final String CACHE_FOLDER = ".module-graph";
+
+    /** We rewrite cache files that have this many more records than entries */
+    private static final int MAX_STALE_RECORDS = 1000;
+    private static final int VERSION = 2;
+
+    private static final ConcurrentMap<File, ModuleGraphCache> caches = new ConcurrentHashMap<>();
+
+    private static class Dependency {
+        final String name;
+        final String version;
+        final ImportType importType;
+
+        Dependency(String name, String version, ImportType importType) {
+            this.name = name;
+            this.version = version;
+            this.importType = importType;
+        }
+    }
+
+    private static class Plan {
+        final String name;
+        final String version;
+        final ArtifactResultType type;
+        final String repositoryDisplayString;
+        final File file;
+        final long size;
+        final long lastModified;
+        final List<Dependency> dependencies;
+
+        Plan(String name, String version, ArtifactResultType type, String repositoryDisplayString,
+                File file, long size, long lastModified, List<Dependency> dependencies) {
+            this.name = name;
+            this.version = version;
+            this.type = type;
+            this.repositoryDisplayString = repositoryDisplayString;
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.dependencies = dependencies;
+        }
+
+        boolean isValid() {
+            return size == file.length() && lastModified == file.lastModified();
+        }
+    }
+
+    private final CacheFile file;
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    private ModuleGraphCache(File file) {
+        this.file = new CacheFile(file, VERSION);
+        load();
+    }
+
+    /**
+     * Returns the cache of the given configuration, stored in the cache
+     * repository
+     */
+    static ModuleGraphCache get(String configuration) {
+        return get(new File(Repositories.get().getCacheRepoDir(), CACHE_FOLDER), configuration);
+    }
+
+    /**
+     * Returns the cache of the given configuration, stored in the given
+     * folder
+     */
+    static ModuleGraphCache get(File folder, String configuration) {
+        File file = new File(FileUtil.absoluteFile(folder), CacheFile.sha1(configuration));
+        ModuleGraphCache cache = caches.get(file);
+        if (cache == null) {
+            ModuleGraphCache newCache = new ModuleGraphCache(file);
+            cache = caches.putIfAbsent(file, newCache);
+            if (cache == null)
+                cache = newCache;
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the artifact we resolved for the given module last time, with
+     * the same dependencies, or null if we don't know it or it changed since
+     *
+     * @param repository used to look up the artifacts of the dependencies,
+     *                   if someone asks for them
+     */
+    ArtifactResult find(ModuleIdentifier mi, RepositoryManager repository) {
+        String key = getKey(mi);
+        Plan plan = plans.get(key);
+        if (plan == null)
+            return null;
+        if (!plan.isValid() || isShadowed(plan, mi, repository)) {
+            plans.remove(key, plan);
+            return null;
+        }
+        List<ArtifactResult> dependencies = new ArrayList<>(plan.dependencies.size());
+        for (Dependency dep : plan.dependencies) {
+            dependencies.add(new LazyArtifactResult(repository, dep.name, dep.version, dep.importType));
+        }
+        return new CachedArtifactResult(plan, dependencies);
+    }
+
+    /**
+     * Returns true if a repository that comes before the one we found the
+     * artifact in has it now, or if we no longer use that repository. We only
+     * look in local Ceylon repositories, since asking remote ones would
+     * defeat the purpose of this cache.
+     */
+    private static boolean isShadowed(Plan plan, ModuleIdentifier mi, RepositoryManager repository) {
+        ArtifactContext context = new ArtifactContext(mi.getName(), mi.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR);
+        for (CmrRepository repo : repository.getRepositories()) {
+            if (repo.getDisplayString().equals(plan.repositoryDisplayString))
+                return false;
+            if (repo.isMaven() || context.isMaven() || repo.getRoot().isRemote())
+                continue;
+            Node parent = repo.findParent(context);
+            if (parent == null)
+                continue;
+            context.toNode(parent);
+            try {
+                for (String name : repo.getArtifactNames(context)) {
+                    if (parent.getChild(name) != null)
+                        return true;
+                }
+            } finally {
+                ArtifactContext.removeNode(parent);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remembers the artifact we resolved for the given module, and its
+     * dependencies, if we can trust them next time
+     */
+    void record(ModuleIdentifier mi, ArtifactResult artifact, List<ArtifactResult> dependencies) {
+        if (artifact instanceof CachedArtifactResult
+                || artifact.filter() != null
+                || !ModuleUtil.isReleasedVersion(artifact.version()))
+            return;
+        File artifactFile;
+        try {
+            artifactFile = artifact.artifact();
+        } catch (RepositoryException e) {
+            return;
+        }
+        if (artifactFile == null || !artifactFile.isFile())
+            return;
+        List<Dependency> deps = new ArrayList<>(dependencies.size());
+        for (ArtifactResult dep : dependencies) {
+            deps.add(new Dependency(dep.name(), dep.version(), dep.importType()));
+        }
+        Plan plan = new Plan(artifact.name(), artifact.version(), artifact.type(), artifact.repositoryDisplayString(),
+                FileUtil.absoluteFile(artifactFile), artifactFile.length(), artifactFile.lastModified(),
+                Collections.unmodifiableList(deps));
+        String key = getKey(mi);
+        plans.put(key, plan);
+        append(key, plan);
+    }
+
+    private static String getKey(ModuleIdentifier mi) {
+        return mi.getName() + "/" + mi.getSlot();
+    }
+
+    private void append(String key, Plan plan) {
+        file.append(new Record(key, plan));
+    }
+
+    private static class Record implements CacheFile.RecordWriter {
+        final String key;
+        final Plan plan;
+
+        Record(String key, Plan plan) {
+            this.key = key;
+            this.plan = plan;
+        }
+
+        @Override
+        public void write(DataOutputStream data) throws IOException {
+            data.writeUTF(key);
+            data.writeUTF(plan.name);
+            data.writeUTF(plan.version);
+            data.writeUTF(plan.type.name());
+            CacheFile.writeString(data, plan.repositoryDisplayString);
+            data.writeUTF(plan.file.getPath());
+            data.writeLong(plan.size);
+            data.writeLong(plan.lastModified);
+            data.writeInt(plan.dependencies.size());
+            for (Dependency dep : plan.dependencies) {
+                data.writeUTF(dep.name);
+                CacheFile.writeString(data, dep.version);
+                data.writeUTF(dep.importType.name());
+            }
+        }
+    }
+
+    private void load() {
+        int records = file.load(new CacheFile.RecordReader() {
+            @Override
+            public void read(DataInputStream data) throws IOException {
+                String key = data.readUTF();
+                String name = data.readUTF();
+                String version = data.readUTF();
+                ArtifactResultType type = ArtifactResultType.valueOf(data.readUTF());
+                String repositoryDisplayString = CacheFile.readString(data);
+                File artifact = new File(data.readUTF());
+                long size = data.readLong();
+                long lastModified = data.readLong();
+                int count = data.readInt();
+                List<Dependency> dependencies = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    dependencies.add(new Dependency(data.readUTF(), CacheFile.readString(data),
+                            ImportType.valueOf(data.readUTF())));
+                }
+                plans.put(key, new Plan(name, version, type, repositoryDisplayString,
+                        artifact, size, lastModified, Collections.unmodifiableList(dependencies)));
+            }
+        });
+        // forget the artifacts that changed
+        int stale = 0;
+        for (Iterator<Plan> it = plans.values().iterator(); it.hasNext(); ) {
+            if (!it.next().isValid()) {
+                it.remove();
+                stale++;
+            }
+        }
+        if (records == -1 || stale > 0 && records - plans.size() > MAX_STALE_RECORDS) {
+            List<Record> current = new ArrayList<>(plans.size());
+            for (Map.Entry<String, Plan> entry : plans.entrySet()) {
+                current.add(new Record(entry.getKey(), entry.getValue()));
+            }
+            file.rewrite(current);
+        }
+    }
+
+    /**
+     * An artifact we resolved in a previous run
+     */
+    private static class CachedArtifactResult extends AbstractArtifactResult {
+        private final Plan plan;
+        private final List<ArtifactResult> dependencies;
+
+        CachedArtifactResult(Plan plan, List<ArtifactResult> dependencies) {
+            super(null, plan.name, plan.version);
+            this.plan = plan;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public ArtifactResultType type() {
+            return plan.type;
+        }
+
+        @Override
+        protected File artifactInternal() {
+            return plan.file;
+        }
+
+        @Override
+        public List<ArtifactResult> dependencies() {
+            return Collections.unmodifiableList(dependencies);
+        }
+
+        @Override
+        public String repositoryDisplayString() {
+            return plan.repositoryDisplayString;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Red Hat inc. and third party contributors as noted
+ * by the author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ceylon.modules.jboss.runtime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+
+/**
+ * Test when the module graph cache trusts what it recorded.
+ */
+public class ModuleGraphCacheTestCase {
+    private static final ModuleIdentifier MODULE = ModuleIdentifier.create("com.acme.graph", "1.0.0");
+
+    private File tmp;
+    private File front;
+    private File back;
+    private ModuleGraphCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("module-graph").toFile();
+        front = new File(tmp, "front");
+        back = new File(tmp, "back");
+        FileUtil.mkdirs(front);
+        writeCar(back, "back");
+        cache = ModuleGraphCache.get(new File(tmp, "cache"), "test");
+        ArtifactResult artifact = createRepositoryManager().getArtifactResult(
+                new ArtifactContext(MODULE.getName(), MODULE.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR));
+        Assert.assertNotNull(artifact);
+        cache.record(MODULE, artifact, Collections.<ArtifactResult>emptyList());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(tmp);
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        ArtifactResult cached = cache.find(MODULE, createRepositoryManager());
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(getCar(back).getCanonicalFile(), cached.artifact().getCanonicalFile());
+        Assert.assertTrue(cached.dependencies().isEmpty());
+    }
+
+    @Test
+    public void testChangedArtifact() throws IOException {
+        writeCar(back, "changed back");
+        Assert.assertNull(cache.find(MODULE, createRepositoryManager()));
+    }
+
+    @Test
+    public void testShadowedArtifact() throws IOException {
+        writeCar(front, "front");
+        Assert.assertNull(cache.find(MODULE, createRepositoryManager()));
+    }
+
+    // a new one for every run, which doesn't know what the previous one saw
+    private RepositoryManager createRepositoryManager() {
+        return CeylonUtils.repoManager()
+                .noSystemRepo(true)
+                .noCacheRepo(true)
+                .noDefaultRepos(true)
+                .offline(true)
+                .userRepos(Arrays.asList(front.getPath(), back.getPath()))
+                .buildManager();
+    }
+
+    private static File getCar(File repo) {
+        return new File(repo, "com/acme/graph/1.0.0/com.acme.graph-1.0.0.car");
+    }
+
+    private static void writeCar(File repo, String contents) throws IOException {
+        File car = getCar(repo);
+        FileUtil.mkdirs(car.getParentFile());
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(car))) {
+            out.putNextEntry(new ZipEntry("contents.txt"));
+            out.write(contents.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+    }
+}
@@ -34,6 +34,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import ceylon.modules.jboss.runtime.ModuleGraphCacheTestCase;
+
 @RunWith(Suite.class)
 @SuiteClasses({
     SmokeTestCase.class,
@@ -47,6 +49,7 @@ import org.junit.runners.Suite.SuiteClasses;
     ServicesTestCase.class,
     LoggingDependencyTestCase.class,
     RunToolTestCase.class,
+    ModuleGraphCacheTestCase.class,
 })
 public class AllRuntimeTests {
 }
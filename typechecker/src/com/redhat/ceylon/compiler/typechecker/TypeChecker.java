@@ -45,7 +45,8 @@ public class TypeChecker {
             boolean verbose, boolean statistics,
             List<String> moduleFilters, 
             List<VirtualFile> srcFiles, 
-            String encoding) {
+            String encoding, 
+            int jobs) {
         long start = System.nanoTime();
         this.verbose = verbose;
         this.statistics = statistics;
@@ -59,6 +60,7 @@ public class TypeChecker {
         phasedUnits.setSourceFiles(srcFiles);
         phasedUnits.setModuleFilters(moduleFilters);
         phasedUnits.setEncoding(encoding);
+        phasedUnits.setJobs(jobs);
         phasedUnits.parseUnits(srcDirectories);
         long time = System.nanoTime()-start;
         if(statistics)
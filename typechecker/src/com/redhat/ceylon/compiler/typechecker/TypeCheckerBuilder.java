@@ -29,6 +29,7 @@ public class TypeCheckerBuilder {
     private boolean verbose = false;
     private boolean statistics = false;
     private String encoding;
+    private int jobs = 1;
     private List<VirtualFile> srcDirectories = new ArrayList<VirtualFile>();
     private List<VirtualFile> srcFiles = null;
     private final VFS vfs;
@@ -150,6 +151,14 @@ public class TypeCheckerBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to parse the source files
+     */
+    public TypeCheckerBuilder jobs(int jobs) {
+        this.jobs = jobs;
+        return this;
+    }
+
     public TypeChecker getTypeChecker() {
         if (repositoryManager == null) {
             repositoryManager = CeylonUtils.repoManager()
@@ -157,7 +166,7 @@ public class TypeCheckerBuilder {
                     .buildManager();
         }
         return new TypeChecker(vfs, srcDirectories, repositoryManager, verifyDependencies, assertionVisitor,
-                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding);
+                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding, jobs);
     }
 
 }
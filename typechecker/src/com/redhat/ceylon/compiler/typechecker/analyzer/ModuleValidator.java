@@ -10,8 +10,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.ConcurrentArtifactLookup;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.cmr.api.VersionComparator;
 import com.redhat.ceylon.common.Backends;
@@ -43,7 +45,24 @@ public class ModuleValidator {
     private final ModuleSourceMapper moduleManagerUtil;
     private Map<Module, ArtifactResult> searchedArtifacts = new HashMap<Module, ArtifactResult>();
     private Map<Module, List<Module>> moduleToImportPath = new HashMap<>();
+    private Map<Module, PrefetchedArtifact> prefetchedArtifacts = new HashMap<Module, PrefetchedArtifact>();
 
+    /** An artifact we started looking up before resolving its module */
+    private static class PrefetchedArtifact {
+        final ArtifactContext artifactContext;
+        final Future<ArtifactResult> artifact;
+
+        PrefetchedArtifact(ArtifactContext artifactContext, Future<ArtifactResult> artifact) {
+            this.artifactContext = artifactContext;
+            this.artifact = artifact;
+        }
+    }
+
+    /**
+     * Told about each module artifact we look up. Several artifacts may be
+     * looked up at once, in which case the callbacks of their contexts may 
+     * be called concurrently.
+     */
     public static interface ProgressListener {
         void retrievingModuleArtifact(Module module, ArtifactContext artifactContext);
         void retrievingModuleArtifactFailed(Module module, ArtifactContext artifactContext);
@@ -111,11 +130,15 @@ public class ModuleValidator {
                 modules.add(context.getModules().getLanguageModule());
                 modules.add(context.getModules().getDefaultModule());
                 modules.addAll(compiledModules);
-                for (Module module : modules) {
-                    dependencyTree.addLast(module);
-                    //we don't care about propagated dependency here as top modules are independent from one another
-                    verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
-                    dependencyTree.pollLast();
+                try {
+                    for (Module module : modules) {
+                        dependencyTree.addLast(module);
+                        //we don't care about propagated dependency here as top modules are independent from one another
+                        verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
+                        dependencyTree.pollLast();
+                    }
+                } finally {
+                    clearPrefetchedArtifacts();
                 }
                 for (Module module : compiledModules) {
                     verifyNative(module);
@@ -208,6 +231,7 @@ public class ModuleValidator {
             Map<Module, ArtifactResult> alreadySearchedArtifacts) {
         List<Module> visibleDependencies = new ArrayList<Module>();
         visibleDependencies.add(dependencyTree.getLast()); //first addition => no possible conflict
+        prefetchArtifacts(moduleImports, dependencyTree, alreadySearchedArtifacts);
         for (ModuleImport moduleImport : moduleImports) {
             if (moduleImport.isNative() &&
                     !isForBackend(moduleImport.getNativeBackends(), moduleManager)) {
@@ -243,6 +267,62 @@ public class ModuleValidator {
         }
     }
 
+    /**
+     * Starts looking up the artifacts of all the given imports that we will
+     * have to resolve at once, so that they are downloaded concurrently from
+     * remote repositories rather than one round-trip at a time. The listener
+     * is told about each of them before we start. Resolving their module then
+     * waits for their lookup, and reports its errors as usual.
+     */
+    private void prefetchArtifacts(Collection<ModuleImport> moduleImports, 
+            LinkedList<Module> dependencyTree, 
+            Map<Module, ArtifactResult> alreadySearchedArtifacts) {
+        List<Module> modules = new ArrayList<Module>(moduleImports.size());
+        List<ArtifactContext> artifactContexts = new ArrayList<ArtifactContext>(moduleImports.size());
+        for (ModuleImport moduleImport : moduleImports) {
+            if (moduleImport.isNative() &&
+                    !isForBackend(moduleImport.getNativeBackends(), moduleManager)) {
+                continue;
+            }
+            Module module = moduleImport.getModule();
+            if (module.isAvailable()
+                    || alreadySearchedArtifacts.containsKey(module)
+                    || prefetchedArtifacts.containsKey(module)
+                    || moduleManager.findModule(module, dependencyTree, true) != null) {
+                continue;
+            }
+            modules.add(module);
+        }
+        if (modules.size() < 2) {
+            // nothing to gain
+            return;
+        }
+        for (Module module : modules) {
+            ArtifactContext artifactContext = getArtifactContext(module);
+            listener.retrievingModuleArtifact(module, artifactContext);
+            artifactContexts.add(artifactContext);
+        }
+        List<Future<ArtifactResult>> artifacts = 
+                ConcurrentArtifactLookup.lookUpArtifactResults(context.getRepositoryManager(), artifactContexts);
+        for (int i = 0; i < modules.size(); i++) {
+            prefetchedArtifacts.put(modules.get(i), 
+                    new PrefetchedArtifact(artifactContexts.get(i), artifacts.get(i)));
+        }
+    }
+
+    private void clearPrefetchedArtifacts() {
+        for (PrefetchedArtifact prefetched : prefetchedArtifacts.values()) {
+            // let the downloads that already started finish
+            prefetched.artifact.cancel(false);
+        }
+        prefetchedArtifacts.clear();
+    }
+
+    private ArtifactContext getArtifactContext(Module module) {
+        Iterable<String> searchedArtifactExtensions = moduleManager.getSearchedArtifactExtensions();
+        return new ArtifactContext(module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
+    }
+
     private void resolveModuleIfRequired(Module module, boolean forCompiledModule, ModuleImport moduleImport, ImportDepth importDepth, LinkedList<Module> dependencyTree, Map<Module, ArtifactResult> alreadySearchedArtifacts) {
         if ( ! module.isAvailable()) {
             ArtifactResult artifact = null;
@@ -254,13 +334,24 @@ public class ModuleValidator {
                 //try and load the module from the repository
                 RepositoryManager repositoryManager = context.getRepositoryManager();
                 Exception exceptionOnGetArtifact = null;
-                Iterable<String> searchedArtifactExtensions = moduleManager.getSearchedArtifactExtensions();
-                ArtifactContext artifactContext = new ArtifactContext(module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
-                listener.retrievingModuleArtifact(module, artifactContext);
-                try {
-                    artifact = repositoryManager.getArtifactResult(artifactContext);
-                } catch (Exception e) {
-                    exceptionOnGetArtifact = catchIfPossible(e);
+                ArtifactContext artifactContext;
+                PrefetchedArtifact prefetched = prefetchedArtifacts.remove(module);
+                if (prefetched != null) {
+                    // the listener was told before we started looking it up
+                    artifactContext = prefetched.artifactContext;
+                    try {
+                        artifact = ConcurrentArtifactLookup.getArtifactResult(prefetched.artifact);
+                    } catch (Exception e) {
+                        exceptionOnGetArtifact = catchIfPossible(e);
+                    }
+                } else {
+                    artifactContext = getArtifactContext(module);
+                    listener.retrievingModuleArtifact(module, artifactContext);
+                    try {
+                        artifact = repositoryManager.getArtifactResult(artifactContext);
+                    } catch (Exception e) {
+                        exceptionOnGetArtifact = catchIfPossible(e);
+                    }
                 }
                 if (artifact == null) {
                     //not there => error
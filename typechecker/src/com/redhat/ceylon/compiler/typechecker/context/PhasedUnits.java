@@ -1,19 +1,19 @@
 package com.redhat.ceylon.compiler.typechecker.context;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.antlr.runtime.ANTLRInputStream;
-import org.antlr.runtime.CommonToken;
-import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.CharStream;
 
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
-import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
-import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
+import com.redhat.ceylon.compiler.typechecker.parser.ParallelParser;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
@@ -34,6 +34,9 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     private List<String> moduleFilters;
     private Set<VirtualFile> sourceFiles  = new HashSet<VirtualFile>();
     private String encoding;
+    private int jobs = 1;
+    /** The files found by the current parallel parse, in order */
+    private List<PendingFile> pendingFiles;
 
     public PhasedUnits(Context context) {
         this.context = context;
@@ -78,9 +81,30 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         return moduleSourceMapper;
     }
 
+    /**
+     * Sets the number of threads used to lex and parse the source
+     * files. With more than one, we first walk the source directories
+     * to find the files to parse, then parse them in parallel, and
+     * finally add their units in the order we found them.
+     */
+    public void setJobs(int jobs) {
+        this.jobs = Math.max(1, jobs);
+    }
+
     public void parseUnits(List<VirtualFile> srcDirectories) {
-        for (VirtualFile file : srcDirectories) {
-            parseUnit(file, file);
+        boolean parallel = startParallelParse();
+        try {
+            for (VirtualFile file : srcDirectories) {
+                parseUnit(file, file);
+            }
+            if (parallel) {
+                parsePendingFiles();
+            }
+        }
+        finally {
+            if (parallel) {
+                pendingFiles = null;
+            }
         }
     }
 
@@ -89,6 +113,7 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     }
 
     public void parseUnit(VirtualFile file, VirtualFile srcDir) {
+        boolean parallel = startParallelParse();
         try {
             if (file.isFolder()) {
                 //root directory is the src dir => start from here
@@ -102,6 +127,9 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
                 //TODO is that really valid?
                 parseFileOrDirectory(file, srcDir);
             }
+            if (parallel) {
+                parsePendingFiles();
+            }
         }
         catch (RuntimeException e) {
             //let it go
@@ -110,37 +138,96 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         catch (Exception e) {
             throw new RuntimeException("Error while parsing the source directory: " + file.toString(), e);
         }
+        finally {
+            if (parallel) {
+                pendingFiles = null;
+            }
+        }
+    }
+
+    /**
+     * Starts collecting the files to parse in parallel, unless we
+     * parse sequentially or are already collecting them, and tells
+     * whether we did.
+     */
+    private boolean startParallelParse() {
+        if (jobs > 1 && pendingFiles == null) {
+            pendingFiles = new ArrayList<PendingFile>();
+            return true;
+        }
+        return false;
+    }
+
+    private void parsePendingFiles() {
+        List<ParallelParser.Result> results;
+        try {
+            results = ParallelParser.parse(pendingFiles, jobs);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Error while parsing the source files", e);
+        }
+        for (int i = 0; i < results.size(); i++) {
+            PendingFile pending = pendingFiles.get(i);
+            addPhasedUnit(pending.file, pending.srcDir, pending.pkg, results.get(i));
+        }
     }
 
     protected void parseFile(VirtualFile file, VirtualFile srcDir) throws Exception {
         if (file.getName().endsWith(".ceylon") && (sourceFiles.isEmpty() || sourceFiles.contains(file))) {
+            if (pendingFiles != null) {
+                //parsed along with the others, see parsePendingFiles()
+                pendingFiles.add(new PendingFile(file, srcDir, moduleSourceMapper.getCurrentPackage()));
+            }
+            else {
+                addPhasedUnit(file, srcDir, moduleSourceMapper.getCurrentPackage(), 
+                        ParallelParser.parse(open(file)));
+            }
+        }
+    }
 
-            //System.out.println("Parsing " + file.getName());
-            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
-            CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-            CeylonParser parser = new CeylonParser(tokenStream);
-            Tree.CompilationUnit cu = parser.compilationUnit();
-            List<CommonToken> tokens = new ArrayList<CommonToken>(tokenStream.getTokens().size()); 
-            tokens.addAll(tokenStream.getTokens());
-            PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
-                    moduleSourceMapper.getCurrentPackage(), moduleManager, moduleSourceMapper,
-                    context, tokens);
-            addPhasedUnit(file, phasedUnit);
+    private void addPhasedUnit(VirtualFile file, VirtualFile srcDir, Package pkg, 
+            ParallelParser.Result result) {
+        Tree.CompilationUnit cu = result.getCompilationUnit();
+        PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
+                pkg, moduleManager, moduleSourceMapper,
+                context, result.getTokens());
+        addPhasedUnit(file, phasedUnit);
 
-            List<LexError> lexerErrors = lexer.getErrors();
-            for (LexError le : lexerErrors) {
-                //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
-                cu.addLexError(le);
-            }
-            lexerErrors.clear();
+        for (LexError le : result.getLexErrors()) {
+            cu.addLexError(le);
+        }
+        for (ParseError pe : result.getParseErrors()) {
+            cu.addParseError(pe);
+        }
+    }
 
-            List<ParseError> parserErrors = parser.getErrors();
-            for (ParseError pe : parserErrors) {
-                //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
-                cu.addParseError(pe);
-            }
-            parserErrors.clear();
+    private CharStream open(VirtualFile file) throws IOException {
+        InputStream inputStream = file.getInputStream();
+        try {
+            return new ANTLRInputStream(inputStream, getEncoding());
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * A file found by a parallel parse, with the package it belongs to
+     */
+    private class PendingFile implements ParallelParser.Source {
+        final VirtualFile file;
+        final VirtualFile srcDir;
+        final Package pkg;
+
+        PendingFile(VirtualFile file, VirtualFile srcDir, Package pkg) {
+            this.file = file;
+            this.srcDir = srcDir;
+            this.pkg = pkg;
+        }
 
+        @Override
+        public CharStream open() throws IOException {
+            return PhasedUnits.this.open(file);
         }
     }
 
@@ -0,0 +1,172 @@
+package com.redhat.ceylon.compiler.typechecker.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+
+/**
+ * Lexes and parses Ceylon sources, spreading them over several
+ * threads when asked to. Lexing and parsing a source does not touch
+ * any shared state, so sources can be parsed in any order, and the
+ * results are always returned in the order of the sources so that
+ * callers can register their units deterministically.
+ */
+public class ParallelParser {
+
+    /**
+     * A source to parse, opened by the thread that parses it
+     */
+    public interface Source {
+        CharStream open() throws IOException;
+    }
+
+    /**
+     * The compilation unit, tokens and errors of a parsed source
+     */
+    public static class Result {
+        private final Tree.CompilationUnit compilationUnit;
+        private final List<CommonToken> tokens;
+        private final List<LexError> lexErrors;
+        private final List<ParseError> parseErrors;
+
+        Result(Tree.CompilationUnit compilationUnit, List<CommonToken> tokens,
+                List<LexError> lexErrors, List<ParseError> parseErrors) {
+            this.compilationUnit = compilationUnit;
+            this.tokens = tokens;
+            this.lexErrors = lexErrors;
+            this.parseErrors = parseErrors;
+        }
+
+        public Tree.CompilationUnit getCompilationUnit() {
+            return compilationUnit;
+        }
+
+        public List<CommonToken> getTokens() {
+            return tokens;
+        }
+
+        public List<LexError> getLexErrors() {
+            return lexErrors;
+        }
+
+        public List<ParseError> getParseErrors() {
+            return parseErrors;
+        }
+    }
+
+    /**
+     * Lexes and parses the given input on the current thread
+     */
+    public static Result parse(CharStream input) throws RecognitionException {
+        CeylonLexer lexer = new CeylonLexer(input);
+        CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        CeylonParser parser = new CeylonParser(tokenStream);
+        Tree.CompilationUnit cu = parser.compilationUnit();
+        List<CommonToken> tokens = new ArrayList<CommonToken>(tokenStream.getTokens().size());
+        for (Object token : tokenStream.getTokens()) {
+            tokens.add((CommonToken) token);
+        }
+        List<LexError> lexErrors = new ArrayList<LexError>(lexer.getErrors());
+        lexer.getErrors().clear();
+        List<ParseError> parseErrors = new ArrayList<ParseError>(parser.getErrors());
+        parser.getErrors().clear();
+        return new Result(cu, tokens, lexErrors, parseErrors);
+    }
+
+    /**
+     * Lexes and parses the given sources on up to {@code jobs} threads,
+     * and returns their results in the same order. If parsing sources
+     * failed we rethrow the failure of the first of them in list order.
+     */
+    public static List<Result> parse(final List<? extends Source> sources, int jobs)
+            throws IOException {
+        final int size = sources.size();
+        final Result[] results = new Result[size];
+        final Throwable[] failures = new Throwable[size];
+        final int threads = Math.min(jobs, size);
+        if (threads < 2) {
+            for (int i = 0; i < size; i++) {
+                if (!parse(sources, i, results, failures))
+                    break;
+            }
+        }
+        else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ceylon-parser-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            final AtomicInteger next = new AtomicInteger();
+            List<Callable<Void>> workers = new ArrayList<Callable<Void>>(threads);
+            for (int w = 0; w < threads; w++) {
+                workers.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        int index;
+                        while ((index = next.getAndIncrement()) < size) {
+                            if (!parse(sources, index, results, failures)) {
+                                // stop handing out sources to every worker
+                                next.set(size);
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            try {
+                // invokeAll only returns once every worker is done
+                executor.invokeAll(workers);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+        for (Throwable failure : failures) {
+            if (failure instanceof IOException)
+                throw (IOException) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+            if (failure != null)
+                throw new RuntimeException(failure);
+        }
+        List<Result> result = new ArrayList<Result>(size);
+        for (Result r : results) {
+            result.add(r);
+        }
+        return result;
+    }
+
+    private static boolean parse(List<? extends Source> sources, int index,
+            Result[] results, Throwable[] failures) {
+        try {
+            results[index] = parse(sources.get(index).open());
+            return true;
+        }
+        catch (Throwable x) {
+            failures[index] = x;
+            return false;
+        }
+    }
+}
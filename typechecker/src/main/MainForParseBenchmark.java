@@ -0,0 +1,82 @@
+package main;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+
+/**
+ * Times parsing the sources of the language module sequentially
+ * and with several jobs, and checks that both give the same units
+ * in the same order.
+ * <p>
+ * Arguments: [jobs (default: number of processors)] [iterations (default: 10)]
+ */
+public class MainForParseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int jobs = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ClosableVirtualFile latestZippedLanguageSourceFile =
+                MainHelper.getLatestZippedLanguageSourceFile();
+        RepositoryManager repositoryManager = CeylonUtils.repoManager()
+                .systemRepo("../dist/dist/repo")
+                .logger(new LeakingLogger())
+                .buildManager();
+        try {
+            List<String> sequentialUnits = parse(latestZippedLanguageSourceFile, repositoryManager, 1);
+            List<String> parallelUnits = parse(latestZippedLanguageSourceFile, repositoryManager, jobs);
+            if (!sequentialUnits.equals(parallelUnits)) {
+                throw new AssertionError("Parsing with " + jobs + " jobs gave different units: "
+                        + parallelUnits + " instead of " + sequentialUnits);
+            }
+            System.out.println("Parsing " + sequentialUnits.size() + " units, " + iterations + " iterations");
+            // warm up both modes before timing them
+            for (int i = 0; i < iterations; i++) {
+                parse(latestZippedLanguageSourceFile, repositoryManager, 1);
+                parse(latestZippedLanguageSourceFile, repositoryManager, jobs);
+            }
+            time(latestZippedLanguageSourceFile, repositoryManager, 1, iterations);
+            time(latestZippedLanguageSourceFile, repositoryManager, jobs, iterations);
+        }
+        finally {
+            latestZippedLanguageSourceFile.close();
+        }
+    }
+
+    private static void time(ClosableVirtualFile src, RepositoryManager repositoryManager,
+            int jobs, int iterations) {
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            parse(src, repositoryManager, jobs);
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            total += time;
+        }
+        System.out.println(jobs + " job(s): best " + best/1000000 + " ms, average "
+                + total/iterations/1000000 + " ms");
+    }
+
+    private static List<String> parse(ClosableVirtualFile src, RepositoryManager repositoryManager, int jobs) {
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .addSrcDirectory(src)
+                .setRepositoryManager(repositoryManager)
+                .jobs(jobs)
+                .getTypeChecker();
+        List<String> units = new ArrayList<String>();
+        for (PhasedUnit phasedUnit : typeChecker.getPhasedUnits().getPhasedUnits()) {
+            units.add(phasedUnit.getPathRelativeToSrcDir());
+        }
+        return units;
+    }
+}